@@ -20,7 +20,6 @@
 package org.openremote.agent.protocol;
 
 import org.apache.camel.ProducerTemplate;
-import org.apache.camel.builder.RouteBuilder;
 import org.openremote.container.concurrent.GlobalLock;
 import org.openremote.container.message.MessageBrokerContext;
 import org.openremote.container.message.MessageBrokerService;
@@ -44,7 +43,6 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import static org.openremote.container.concurrent.GlobalLock.withLock;
@@ -75,6 +73,7 @@ import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
 public abstract class AbstractProtocol<T extends Agent<T, ?, U>, U extends AgentLink<?>> implements Protocol<T> {
 
     private static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, AbstractProtocol.class);
+    public static final int WRITE_QUEUE_CAPACITY = 1000;
     protected final Map<AttributeRef, Attribute<?>> linkedAttributes = new HashMap<>();
     protected final Set<AttributeRef> dynamicAttributes = new HashSet<>();
     protected MessageBrokerContext messageBrokerContext;
@@ -83,6 +82,7 @@ public abstract class AbstractProtocol<T extends Agent<T, ?, U>, U extends Agent
     protected ScheduledExecutorService executorService;
     protected ProtocolAssetService assetService;
     protected ProtocolPredictedAssetService predictedAssetService;
+    protected volatile ProtocolWriteQueue writeQueue;
     protected T agent;
 
     public AbstractProtocol(T agent) {
@@ -99,33 +99,11 @@ public abstract class AbstractProtocol<T extends Agent<T, ?, U>, U extends Agent
 
         withLock(getProtocolName() + "::start", () -> {
             try {
-                messageBrokerContext.addRoutes(new RouteBuilder() {
-                    @Override
-                    public void configure() throws Exception {
-                        from(ACTUATOR_TOPIC)
-                            .routeId("Actuator-" + getProtocolName() + getAgent().getId())
-                            .process(exchange -> {
-                                Protocol<?> protocolInstance = exchange.getIn().getHeader(ACTUATOR_TOPIC_TARGET_PROTOCOL, Protocol.class);
-                                if (protocolInstance != AbstractProtocol.this) {
-                                    return;
-                                }
-
-                                AttributeEvent event = exchange.getIn().getBody(AttributeEvent.class);
-                                Attribute<?> linkedAttribute = getLinkedAttributes().get(event.getAttributeRef());
-
-                                if (linkedAttribute == null) {
-                                    LOG.info("Attempt to write to attribute that is not actually linked to this protocol '" + AbstractProtocol.this + "': " + linkedAttribute);
-                                    return;
-                                }
-                                if (linkedAttribute.getMetaValue(MetaItemType.READ_ONLY).orElse(false)) {
-                                    LOG.info("Attempt to write to readonly attribute: " + linkedAttribute);
-                                    return;
-                                }
-
-                                processLinkedAttributeWrite(event);
-                            });
-                    }
-                });
+                writeQueue = new ProtocolWriteQueue(
+                    getProtocolName() + "-" + getAgent().getId(),
+                    WRITE_QUEUE_CAPACITY,
+                    this::onLinkedAttributeWrite
+                );
 
                 doStart(container);
 
@@ -141,8 +119,9 @@ public abstract class AbstractProtocol<T extends Agent<T, ?, U>, U extends Agent
         withLock(getProtocolName() + "::stop", () -> {
             linkedAttributes.clear();
             try {
-                messageBrokerContext.stopRoute("Actuator-" + getProtocolName(), 1, TimeUnit.MILLISECONDS);
-                messageBrokerContext.removeRoute("Actuator-" + getProtocolName());
+                if (writeQueue != null) {
+                    writeQueue.close();
+                }
 
                 doStop(container);
 
@@ -202,6 +181,38 @@ public abstract class AbstractProtocol<T extends Agent<T, ?, U>, U extends Agent
         return this.agent;
     }
 
+    @Override
+    public boolean queueLinkedAttributeWrite(AttributeEvent event) {
+        ProtocolWriteQueue queue = writeQueue;
+        if (queue == null) {
+            LOG.info("Protocol has not been started, ignoring write: protocol=" + this + ", event=" + event);
+            return true;
+        }
+        return queue.offer(event);
+    }
+
+    /**
+     * @return The queue of linked attribute writes, <code>null</code> if the protocol has not been started.
+     */
+    public ProtocolWriteQueue getWriteQueue() {
+        return writeQueue;
+    }
+
+    protected void onLinkedAttributeWrite(AttributeEvent event) {
+        Attribute<?> linkedAttribute = getLinkedAttributes().get(event.getAttributeRef());
+
+        if (linkedAttribute == null) {
+            LOG.info("Attempt to write to attribute that is not actually linked to this protocol '" + this + "': " + event.getAttributeRef());
+            return;
+        }
+        if (linkedAttribute.getMetaValue(MetaItemType.READ_ONLY).orElse(false)) {
+            LOG.info("Attempt to write to readonly attribute: " + linkedAttribute);
+            return;
+        }
+
+        processLinkedAttributeWrite(event);
+    }
+
     @Override
     public Map<AttributeRef, Attribute<?>> getLinkedAttributes() {
         return linkedAttributes;
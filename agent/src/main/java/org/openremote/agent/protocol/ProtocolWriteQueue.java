@@ -0,0 +1,177 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol;
+
+import org.openremote.container.concurrent.ContainerExecutor;
+import org.openremote.container.concurrent.ContainerThreadFactory;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.syslog.SyslogCategory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
+
+/**
+ * The bounded queue of linked attribute writes of a single protocol instance. Writes are processed in order, one at a
+ * time, by the queue's own single thread executor, so a slow or blocked protocol can't delay the writes of other
+ * protocols. The thread is stopped when the queue has been idle for {@link #IDLE_THREAD_KEEP_ALIVE_SECONDS}.
+ * <p>
+ * When the queue is full, writes are rejected. Once {@link #close} has been called all pending writes are discarded.
+ */
+public class ProtocolWriteQueue {
+
+    private static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, ProtocolWriteQueue.class);
+    public static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 60L;
+
+    protected class PendingWrite implements Runnable {
+        protected final AttributeEvent event;
+        protected final long queuedNanos;
+
+        protected PendingWrite(AttributeEvent event, long queuedNanos) {
+            this.event = event;
+            this.queuedNanos = queuedNanos;
+        }
+
+        @Override
+        public void run() {
+            long latencyNanos = System.nanoTime() - queuedNanos;
+            totalLatencyNanos.add(latencyNanos);
+            maxLatencyNanos.accumulate(latencyNanos);
+            try {
+                writer.accept(event);
+                processedWrites.increment();
+            } catch (Exception e) {
+                failedWrites.increment();
+                LOG.log(Level.WARNING, "Failed to process write of protocol: protocol=" + name + ", event=" + event, e);
+            }
+        }
+    }
+
+    protected final String name;
+    protected final int capacity;
+    protected final ThreadPoolExecutor executor;
+    protected final Consumer<AttributeEvent> writer;
+    protected final LongAdder queuedWrites = new LongAdder();
+    protected final LongAdder processedWrites = new LongAdder();
+    protected final LongAdder failedWrites = new LongAdder();
+    protected final LongAdder droppedWrites = new LongAdder();
+    protected final LongAdder totalLatencyNanos = new LongAdder();
+    protected final LongAccumulator maxLatencyNanos = new LongAccumulator(Long::max, 0L);
+
+    /**
+     * @param name     Names the executor thread and is printed in log messages.
+     * @param capacity The maximum number of pending writes.
+     * @param writer   Processes a single write.
+     */
+    public ProtocolWriteQueue(String name, int capacity, Consumer<AttributeEvent> writer) {
+        this.name = name;
+        this.capacity = capacity;
+        this.writer = writer;
+        this.executor = new ContainerExecutor(
+            new ContainerThreadFactory("Protocol writes " + name),
+            new ThreadPoolExecutor.AbortPolicy(),
+            1,
+            1,
+            IDLE_THREAD_KEEP_ALIVE_SECONDS,
+            new ArrayBlockingQueue<>(capacity)
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return <code>false</code> if the write was dropped because the queue is full or closed.
+     */
+    public boolean offer(AttributeEvent event) {
+        try {
+            executor.execute(new PendingWrite(event, System.nanoTime()));
+        } catch (RejectedExecutionException e) {
+            droppedWrites.increment();
+            LOG.warning("Write queue of protocol is " + (executor.isShutdown() ? "closed" : "full") + ", dropping write: protocol=" + name + ", event=" + event);
+            return false;
+        }
+        queuedWrites.increment();
+        return true;
+    }
+
+    /**
+     * Discards all pending writes and stops the executor, writes offered afterwards are dropped.
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    public int getSize() {
+        return executor.getQueue().size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getQueuedWrites() {
+        return queuedWrites.sum();
+    }
+
+    public long getProcessedWrites() {
+        return processedWrites.sum();
+    }
+
+    public long getFailedWrites() {
+        return failedWrites.sum();
+    }
+
+    public long getDroppedWrites() {
+        return droppedWrites.sum();
+    }
+
+    /**
+     * @return The average time writes waited in the queue before processing started.
+     */
+    public double getAverageLatencyMillis() {
+        long count = processedWrites.sum() + failedWrites.sum();
+        return count == 0 ? 0d : (double) totalLatencyNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public long getMaxLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "name='" + name + '\'' +
+            ", size=" + getSize() +
+            ", queuedWrites=" + getQueuedWrites() +
+            ", processedWrites=" + getProcessedWrites() +
+            ", failedWrites=" + getFailedWrites() +
+            ", droppedWrites=" + getDroppedWrites() +
+            ", averageLatencyMillis=" + getAverageLatencyMillis() +
+            ", maxLatencyMillis=" + getMaxLatencyMillis() +
+            '}';
+    }
+}
@@ -26,6 +26,8 @@ import org.jboss.resteasy.core.Headers;
 import org.jboss.resteasy.specimpl.BuiltResponse;
 import org.jboss.resteasy.specimpl.ResponseBuilderImpl;
 import org.openremote.agent.protocol.AbstractProtocol;
+import org.openremote.container.concurrent.ContainerExecutor;
+import org.openremote.container.concurrent.ContainerThreadFactory;
 import org.openremote.container.web.QueryParameterInjectorFilter;
 import org.openremote.container.web.WebTargetBuilder;
 import org.openremote.model.Container;
@@ -44,6 +46,7 @@ import javax.ws.rs.HttpMethod;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedHashMap;
 import javax.ws.rs.core.MultivaluedMap;
@@ -53,14 +56,16 @@ import java.lang.reflect.Type;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static org.openremote.agent.protocol.http.HTTPAgent.*;
 import static org.openremote.container.concurrent.GlobalLock.withLock;
+import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.container.web.QueryParameterInjectorFilter.QUERY_PARAMETERS_PROPERTY;
 import static org.openremote.container.web.WebTargetBuilder.createClient;
 import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
@@ -114,6 +119,13 @@ import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
  * }
  * </pre></blockquote>
  * Actual body used for the request = "{myObject: {prop1: true, prop2: "test", prop3: {prop4: 1234.4223}}}"
+ * <h1>Polling</h1>
+ * Polling requests are only triggered by the container scheduler and executed by a dedicated, bounded thread pool
+ * that is shared by the HTTP protocol instances of a container (see {@link #HTTP_POLLING_THREADS_MAX}) and shut down
+ * when the last of them stops, so slow servers can't delay other scheduled tasks. A poll is skipped while
+ * the previous poll of the same attribute is still running, and identical requests of an agent that are due at the same
+ * time share one execution. GET requests without paging are conditional: the ETag and Last-Modified headers of the last
+ * response are sent back and a 304 (Not Modified) response doesn't update the linked attribute.
  */
 public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
 
@@ -219,11 +231,26 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
         }
 
         public Response invoke(String value) {
+            return invoke(value, null);
+        }
+
+        public Response invoke(String value, MultivaluedMap<String, Object> additionalHeaders) {
             Invocation.Builder requestBuilder = getRequestBuilder(value);
+            if (additionalHeaders != null) {
+                additionalHeaders.forEach((name, values) -> values.forEach(headerValue -> requestBuilder.header(name, headerValue)));
+            }
             Invocation invocation = buildInvocation(requestBuilder, value);
             return invocation.invoke();
         }
 
+        /**
+         * @return A key that is equal for requests that are sent with the same target, method, headers and query
+         * parameters, given the same body.
+         */
+        protected String getRequestKey(String body) {
+            return method + " " + this + " " + queryParameters + " " + headers + " " + pagingEnabled + " " + body;
+        }
+
         @Override
         public String toString() {
             return client.getUri() + (path != null ? "/" + path : "");
@@ -261,6 +288,52 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
         }
     }
 
+    /**
+     * The state of polling of a linked attribute, the validators are kept per attribute as a request can be shared by
+     * attributes that polled the server at different times.
+     */
+    protected static class PollingState {
+        protected final AttributeRef attributeRef;
+        protected final HttpClientRequest clientRequest;
+        protected final String body;
+        protected final boolean conditional;
+        protected final AtomicBoolean running = new AtomicBoolean();
+        protected volatile String eTag;
+        protected volatile String lastModified;
+
+        protected PollingState(AttributeRef attributeRef, HttpClientRequest clientRequest, String body) {
+            this.attributeRef = attributeRef;
+            this.clientRequest = clientRequest;
+            this.body = body;
+            this.conditional = !clientRequest.pagingEnabled && HttpMethod.GET.equals(clientRequest.method);
+        }
+
+        protected MultivaluedMap<String, Object> getConditionalHeaders() {
+            if (!conditional || (eTag == null && lastModified == null)) {
+                return null;
+            }
+            MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+            if (eTag != null) {
+                headers.add(HttpHeaders.IF_NONE_MATCH, eTag);
+            }
+            if (lastModified != null) {
+                headers.add(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+            }
+            return headers;
+        }
+
+        protected String getRequestKey() {
+            return clientRequest.getRequestKey(body) + (conditional ? " " + eTag + " " + lastModified : "");
+        }
+
+        protected void updateValidators(Response response) {
+            if (conditional && response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL) {
+                eTag = response.getHeaderString(HttpHeaders.ETAG);
+                lastModified = response.getHeaderString(HttpHeaders.LAST_MODIFIED);
+            }
+        }
+    }
+
     protected static class PagingResponseBuilder extends ResponseBuilderImpl {
         @Override
         public Response build() {
@@ -275,12 +348,25 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
     public static final String DEFAULT_CONTENT_TYPE = MediaType.TEXT_PLAIN;
     protected static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, HTTPProtocol.class);
     public static int MIN_POLLING_MILLIS = 5000;
+    public static final String HTTP_POLLING_THREADS_MAX = "HTTP_POLLING_THREADS_MAX";
+    public static final int HTTP_POLLING_THREADS_MAX_DEFAULT = 20;
+    public static final int HTTP_POLLING_QUEUE_SIZE = 1000;
+    // The polling executor of each container and the number of started protocol instances using it
+    protected static final Map<Container, ThreadPoolExecutor> pollingExecutors = new HashMap<>();
+    protected static final Map<Container, Integer> pollingExecutorUsers = new HashMap<>();
 
     protected ResteasyWebTarget webTarget;
     protected final Map<AttributeRef, HttpClientRequest> requestMap = new HashMap<>();
     protected final Map<AttributeRef, ScheduledFuture<?>> pollingMap = new HashMap<>();
     protected final Map<AttributeRef, Set<AttributeRef>> pollingLinkedAttributeMap = new HashMap<>();
+    protected final Map<String, CompletableFuture<Response>> runningPolls = new ConcurrentHashMap<>();
+    protected final LongAdder polls = new LongAdder();
+    protected final LongAdder skippedPolls = new LongAdder();
+    protected final LongAdder coalescedPolls = new LongAdder();
+    protected final LongAdder notModifiedPolls = new LongAdder();
+    protected final LongAdder failedPolls = new LongAdder();
     protected static ResteasyClient client;
+    protected ThreadPoolExecutor pollingExecutor;
 
     static {
         client = createClient(org.openremote.container.Container.EXECUTOR_SERVICE);
@@ -295,6 +381,50 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
         pollingMap.forEach((attributeRef, scheduledFuture) -> scheduledFuture.cancel(true));
         pollingMap.clear();
         requestMap.clear();
+
+        if (pollingExecutor != null) {
+            releasePollingExecutor(container);
+            pollingExecutor = null;
+        }
+    }
+
+    /**
+     * @return The polling executor of the container, created with the container configuration on first use.
+     */
+    protected static ThreadPoolExecutor acquirePollingExecutor(Container container) {
+        synchronized (pollingExecutors) {
+            ThreadPoolExecutor executor = pollingExecutors.computeIfAbsent(container, c -> {
+                int pollingThreads = Math.max(1, getInteger(c.getConfig(), HTTP_POLLING_THREADS_MAX, HTTP_POLLING_THREADS_MAX_DEFAULT));
+                ThreadPoolExecutor newExecutor = new ContainerExecutor(
+                    new ContainerThreadFactory("HTTP polling"),
+                    new ThreadPoolExecutor.AbortPolicy(),
+                    pollingThreads,
+                    pollingThreads,
+                    60L,
+                    new ArrayBlockingQueue<>(HTTP_POLLING_QUEUE_SIZE)
+                );
+                newExecutor.allowCoreThreadTimeOut(true);
+                return newExecutor;
+            });
+            pollingExecutorUsers.merge(container, 1, Integer::sum);
+            return executor;
+        }
+    }
+
+    /**
+     * Shuts down the polling executor of the container when no other started protocol instance uses it.
+     */
+    protected static void releasePollingExecutor(Container container) {
+        synchronized (pollingExecutors) {
+            Integer users = pollingExecutorUsers.computeIfPresent(container, (c, count) -> count > 1 ? count - 1 : null);
+            if (users == null) {
+                ThreadPoolExecutor executor = pollingExecutors.remove(container);
+                if (executor != null) {
+                    LOG.fine("Shutting down HTTP polling executor");
+                    executor.shutdownNow();
+                }
+            }
+        }
     }
 
     @Override
@@ -350,6 +480,7 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
 
         LOG.fine("Creating web target client '" + baseUri + "'");
         webTarget = webTargetBuilder.build();
+        pollingExecutor = acquirePollingExecutor(container);
 
         setConnectionStatus(ConnectionStatus.CONNECTED);
     }
@@ -491,38 +622,113 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
 
         LOG.fine("Scheduling polling request '" + clientRequest + "' to execute every " + pollingMillis + " ms for attribute: " + attributeRef);
 
-        return executorService.scheduleWithFixedDelay(() ->
-                executePollingRequest(clientRequest, body, response -> {
+        PollingState pollingState = new PollingState(attributeRef, clientRequest, body);
+        return executorService.scheduleWithFixedDelay(() -> triggerPollingRequest(pollingState), 0, pollingMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts a poll on the polling executor, unless the previous poll of the attribute is still running; joins an
+     * identical poll that is already running.
+     */
+    protected void triggerPollingRequest(PollingState pollingState) {
+        if (!pollingState.running.compareAndSet(false, true)) {
+            LOG.finest("Previous poll still running, skipping: " + pollingState.attributeRef);
+            skippedPolls.increment();
+            return;
+        }
+
+        polls.increment();
+        String requestKey = pollingState.getRequestKey();
+        CompletableFuture<Response> poll = new CompletableFuture<>();
+        CompletableFuture<Response> runningPoll = runningPolls.putIfAbsent(requestKey, poll);
+
+        if (runningPoll != null) {
+            coalescedPolls.increment();
+            poll = runningPoll;
+        } else {
+            MultivaluedMap<String, Object> conditionalHeaders = pollingState.getConditionalHeaders();
+            CompletableFuture<Response> newPoll = poll;
+            ThreadPoolExecutor executor = pollingExecutor;
+            try {
+                if (executor == null) {
+                    throw new RejectedExecutionException("Protocol has been stopped");
+                }
+                executor.execute(() -> {
                     try {
-                        onPollingResponse(
-                            clientRequest,
-                            response,
-                            attributeRef);
-                    } catch (Exception e) {
-                        LOG.log(Level.WARNING, prefixLogMessage("Exception thrown whilst processing polling response [" + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage()) + "]: " + clientRequest.requestTarget.getUriBuilder().build().toString()));
+                        newPoll.complete(executePollingRequest(pollingState.clientRequest, pollingState.body, conditionalHeaders));
+                    } catch (Throwable t) {
+                        newPoll.completeExceptionally(t);
+                    } finally {
+                        runningPolls.remove(requestKey, newPoll);
                     }
-                }), 0, pollingMillis, TimeUnit.MILLISECONDS);
+                });
+            } catch (RejectedExecutionException e) {
+                runningPolls.remove(requestKey, newPoll);
+                newPoll.completeExceptionally(e);
+            }
+        }
+
+        poll.whenComplete((response, throwable) -> {
+            try {
+                onPollingRequestComplete(pollingState, response, throwable);
+            } finally {
+                pollingState.running.set(false);
+            }
+        });
     }
 
-    protected void executePollingRequest(HttpClientRequest clientRequest, String body, Consumer<Response> responseConsumer) {
+    protected void onPollingRequestComplete(PollingState pollingState, Response response, Throwable throwable) {
+        HttpClientRequest clientRequest = pollingState.clientRequest;
+
+        if (throwable != null) {
+            failedPolls.increment();
+            LOG.log(Level.WARNING, prefixLogMessage("Exception thrown whilst doing polling request [" + (throwable.getCause() != null ? throwable.getCause().getMessage() : throwable.getMessage()) + "]: " + clientRequest));
+            return;
+        }
+
+        if (response.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode()) {
+            LOG.finest("Polling response not modified: " + pollingState.attributeRef);
+            notModifiedPolls.increment();
+            return;
+        }
+
+        pollingState.updateValidators(response);
+
+        try {
+            onPollingResponse(
+                clientRequest,
+                response,
+                pollingState.attributeRef);
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, prefixLogMessage("Exception thrown whilst processing polling response [" + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage()) + "]: " + clientRequest));
+        }
+    }
+
+    /**
+     * Executes the request including any paging requests and returns a response with the body already read, so it can
+     * be shared by attributes polling the same request.
+     */
+    protected Response executePollingRequest(HttpClientRequest clientRequest, String body, MultivaluedMap<String, Object> conditionalHeaders) {
         Response originalResponse = null, lastResponse = null;
-        List<String> entities = new ArrayList<>();
 
         try {
-            originalResponse = clientRequest.invoke(body);
+            originalResponse = clientRequest.invoke(body, conditionalHeaders);
+            Object entity = null;
+
             if (clientRequest.pagingEnabled) {
+                List<String> entities = new ArrayList<>();
                 lastResponse = originalResponse;
                 entities.add(lastResponse.readEntity(String.class));
                 while ((lastResponse = executePagingRequest(clientRequest, lastResponse)) != null) {
                     entities.add(lastResponse.readEntity(String.class));
                     lastResponse.close();
                 }
-                originalResponse = PagingResponse.fromResponse(originalResponse).entity(entities).build();
+                entity = entities;
+            } else if (originalResponse.hasEntity()) {
+                entity = originalResponse.readEntity(String.class);
             }
 
-            responseConsumer.accept(originalResponse);
-        } catch (Exception e) {
-            LOG.log(Level.WARNING, prefixLogMessage("Exception thrown whilst doing polling request [" + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage()) + "]: " + clientRequest.requestTarget.getUriBuilder().build().toString()));
+            return PagingResponse.fromResponse(originalResponse).entity(entity).build();
         } finally {
             if (originalResponse != null) {
                 originalResponse.close();
@@ -600,6 +806,26 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
         }
     }
 
+    public long getPolls() {
+        return polls.sum();
+    }
+
+    public long getSkippedPolls() {
+        return skippedPolls.sum();
+    }
+
+    public long getCoalescedPolls() {
+        return coalescedPolls.sum();
+    }
+
+    public long getNotModifiedPolls() {
+        return notModifiedPolls.sum();
+    }
+
+    public long getFailedPolls() {
+        return failedPolls.sum();
+    }
+
     protected void cancelPolling(AttributeRef attributeRef) {
         withLock(getProtocolName() + "::cancelPolling", () -> {
             ScheduledFuture<?> pollTask = pollingMap.remove(attributeRef);
@@ -120,6 +120,7 @@ public abstract class AbstractIOClientProtocol<T extends AbstractIOClientProtoco
 
     public static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, AbstractIOClientProtocol.class);
     protected ProtocolIOClient<V, W> client;
+    protected IOEventLoops eventLoops;
 
     protected AbstractIOClientProtocol(U agent) {
         super(agent);
@@ -141,6 +142,7 @@ public abstract class AbstractIOClientProtocol<T extends AbstractIOClientProtoco
 
     @Override
     protected void doStart(Container container) throws Exception {
+        eventLoops = IOEventLoops.get(container);
         try {
             client = createIoClient();
             LOG.fine("Created IO client '" + client.ioClient.getClientUri() + "' for protocol: " + this);
@@ -170,6 +172,9 @@ public abstract class AbstractIOClientProtocol<T extends AbstractIOClientProtoco
 
     protected ProtocolIOClient<V, W> createIoClient() throws Exception {
         W client = doCreateIoClient();
+        if (client instanceof AbstractNettyIOClient) {
+            ((AbstractNettyIOClient<?, ?>) client).setEventLoops(eventLoops);
+        }
         ProtocolIOClient<V, W> protocolIoClient = new ProtocolIOClient<>(client, this::onConnectionStatusChanged, this::onMessageReceived);
         this.client = protocolIoClient;
         Supplier<ChannelHandler[]> encoderDecoderProvider = getEncoderDecoderProvider();
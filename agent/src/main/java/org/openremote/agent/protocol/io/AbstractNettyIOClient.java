@@ -22,6 +22,7 @@ package org.openremote.agent.protocol.io;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
 import org.openremote.agent.protocol.udp.UDPIOClient;
 import org.openremote.agent.protocol.websocket.WebsocketIOClient;
 import org.openremote.container.Container;
@@ -171,6 +172,8 @@ public abstract class AbstractNettyIOClient<T, U extends SocketAddress> implemen
     protected Retry connectRetry;
     protected boolean permanentError;
     protected Supplier<ChannelHandler[]> encoderDecoderProvider;
+    protected IOEventLoops eventLoops;
+    protected IOChannelStatistics channelStatistics = new IOChannelStatistics();
 
     protected AbstractNettyIOClient() {
         this.executorService = Container.EXECUTOR_SERVICE;
@@ -181,9 +184,24 @@ public abstract class AbstractNettyIOClient<T, U extends SocketAddress> implemen
         this.encoderDecoderProvider = encoderDecoderProvider;
     }
 
+    /**
+     * Use the event loop group of the given container service, must be called before {@link #connect}; without it
+     * this client uses its own single threaded NIO group.
+     */
+    public void setEventLoops(IOEventLoops eventLoops) {
+        this.eventLoops = eventLoops;
+        this.channelStatistics = new IOChannelStatistics(eventLoops != null ? eventLoops.getChannelStatistics() : null);
+    }
+
     protected abstract Class<? extends Channel> getChannelClass();
 
-    protected abstract EventLoopGroup getWorkerGroup();
+    /**
+     * Override to use a dedicated group, by default the group of the {@link IOEventLoops} is used and the {@link
+     * #getChannelClass} must match its transport.
+     */
+    protected EventLoopGroup getWorkerGroup() {
+        return eventLoops != null ? eventLoops.getGroup() : new NioEventLoopGroup(1);
+    }
 
     protected abstract ChannelFuture startChannel();
 
@@ -206,6 +224,9 @@ public abstract class AbstractNettyIOClient<T, U extends SocketAddress> implemen
 
             LOG.fine("Connecting IO Client: " + getClientUri());
             onConnectionStatusChanged(ConnectionStatus.CONNECTING);
+            if (eventLoops != null) {
+                eventLoops.register(this);
+            }
         }
 
         scheduleDoConnect();
@@ -254,6 +275,7 @@ public abstract class AbstractNettyIOClient<T, U extends SocketAddress> implemen
             @Override
             public void initChannel(Channel channel) {
                 AbstractNettyIOClient.this.initChannel(channel);
+                channel.pipeline().addFirst(channelStatistics);
             }
         });
 
@@ -312,6 +334,9 @@ public abstract class AbstractNettyIOClient<T, U extends SocketAddress> implemen
 
             LOG.finest("Disconnecting IO client: " + getClientUri());
             onConnectionStatusChanged(ConnectionStatus.DISCONNECTED);
+            if (eventLoops != null) {
+                eventLoops.unregister(this);
+            }
         }
 
         if (connectRetry != null) {
@@ -337,7 +362,9 @@ public abstract class AbstractNettyIOClient<T, U extends SocketAddress> implemen
             }
         } finally {
             if (workerGroup != null) {
-                workerGroup.shutdownGracefully();
+                if (eventLoops == null || !eventLoops.isShared(workerGroup)) {
+                    workerGroup.shutdownGracefully();
+                }
                 workerGroup = null;
             }
         }
@@ -358,6 +385,10 @@ public abstract class AbstractNettyIOClient<T, U extends SocketAddress> implemen
         }
     }
 
+    public IOChannelStatistics getChannelStatistics() {
+        return channelStatistics;
+    }
+
     @Override
     public ConnectionStatus getConnectionStatus() {
         return connectionStatus;
@@ -66,6 +66,8 @@ public abstract class AbstractNettyIOServer<T, U extends Channel, V extends Abst
     protected final List<BiConsumer<U, ConnectionStatus>> clientConnectionStatusConsumers = new ArrayList<>();
     protected ScheduledFuture<?> reconnectTask;
     protected int reconnectDelayMilliseconds = INITIAL_RECONNECT_DELAY_MILLIS;
+    protected IOEventLoops eventLoops;
+    protected IOChannelStatistics channelStatistics = new IOChannelStatistics();
 
     public AbstractNettyIOServer() {
         this.executorService = Container.EXECUTOR_SERVICE;
@@ -82,8 +84,10 @@ public abstract class AbstractNettyIOServer<T, U extends Channel, V extends Abst
         onConnectionStatusChanged(ConnectionStatus.CONNECTING);
 
         if (workerGroup == null) {
-            // TODO: In Netty 5 you can pass in an executor service; can only pass in thread factory for now
-            workerGroup = new NioEventLoopGroup();
+            workerGroup = getWorkerGroup();
+        }
+        if (eventLoops != null) {
+            eventLoops.register(this);
         }
 
         try {
@@ -173,13 +177,46 @@ public abstract class AbstractNettyIOServer<T, U extends Channel, V extends Abst
 
         } finally {
             if (workerGroup != null) {
-                workerGroup.shutdownGracefully();
+                if (eventLoops == null || !eventLoops.isShared(workerGroup)) {
+                    workerGroup.shutdownGracefully();
+                }
                 workerGroup = null;
             }
+            if (eventLoops != null) {
+                eventLoops.unregister(this);
+            }
             onConnectionStatusChanged(ConnectionStatus.DISCONNECTED);
         }
     }
 
+    /**
+     * Use the event loop group of the given container service, must be called before {@link #start}; without it this
+     * server uses its own NIO group.
+     */
+    public void setEventLoops(IOEventLoops eventLoops) {
+        this.eventLoops = eventLoops;
+        this.channelStatistics = new IOChannelStatistics(eventLoops != null ? eventLoops.getChannelStatistics() : null);
+    }
+
+    /**
+     * Override to use a dedicated group, by default the group of the {@link IOEventLoops} is used and the bootstrap
+     * channel class must match its transport.
+     */
+    protected EventLoopGroup getWorkerGroup() {
+        return eventLoops != null ? eventLoops.getGroup() : new NioEventLoopGroup();
+    }
+
+    public IOChannelStatistics getChannelStatistics() {
+        return channelStatistics;
+    }
+
+    /**
+     * @return The address this server listens on, as printed in log messages.
+     */
+    public String getServerAddress() {
+        return getSocketAddressString();
+    }
+
     @Override
     public void addMessageConsumer(IoServerMessageConsumer<T, U, W> messageConsumer) {
         LOG.finest("Adding message consumer");
@@ -287,6 +324,8 @@ public abstract class AbstractNettyIOServer<T, U extends Channel, V extends Abst
     protected void initClientChannel(U channel) {
         LOG.fine("Client initialising: " + getClientDescriptor(channel));
 
+        channel.pipeline().addLast(channelStatistics);
+
         // Add handler to track when a channel becomes active and to handle exceptions
         channel.pipeline().addLast(new ChannelInboundHandlerAdapter() {
             @Override
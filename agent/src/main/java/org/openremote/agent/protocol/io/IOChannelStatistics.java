@@ -0,0 +1,175 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol.io;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the channels, messages and bytes that pass through it; add it as the first handler of a channel pipeline to
+ * count the bytes on the wire. Counts are also added to the parent statistics, if any.
+ */
+@ChannelHandler.Sharable
+public class IOChannelStatistics extends ChannelDuplexHandler {
+
+    protected final IOChannelStatistics parent;
+    protected final AtomicInteger activeChannels = new AtomicInteger();
+    protected final LongAdder openedChannels = new LongAdder();
+    protected final LongAdder messagesRead = new LongAdder();
+    protected final LongAdder messagesWritten = new LongAdder();
+    protected final LongAdder bytesRead = new LongAdder();
+    protected final LongAdder bytesWritten = new LongAdder();
+    protected final LongAdder exceptions = new LongAdder();
+
+    public IOChannelStatistics() {
+        this(null);
+    }
+
+    public IOChannelStatistics(IOChannelStatistics parent) {
+        this.parent = parent;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        recordActive();
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        recordInactive();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        recordRead(sizeOf(msg));
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        recordWritten(sizeOf(msg));
+        super.write(ctx, msg, promise);
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        recordException();
+        super.exceptionCaught(ctx, cause);
+    }
+
+    protected void recordActive() {
+        activeChannels.incrementAndGet();
+        openedChannels.increment();
+        if (parent != null) {
+            parent.recordActive();
+        }
+    }
+
+    protected void recordInactive() {
+        activeChannels.decrementAndGet();
+        if (parent != null) {
+            parent.recordInactive();
+        }
+    }
+
+    protected void recordRead(int bytes) {
+        messagesRead.increment();
+        bytesRead.add(bytes);
+        if (parent != null) {
+            parent.recordRead(bytes);
+        }
+    }
+
+    protected void recordWritten(int bytes) {
+        messagesWritten.increment();
+        bytesWritten.add(bytes);
+        if (parent != null) {
+            parent.recordWritten(bytes);
+        }
+    }
+
+    protected void recordException() {
+        exceptions.increment();
+        if (parent != null) {
+            parent.recordException();
+        }
+    }
+
+    protected static int sizeOf(Object msg) {
+        if (msg instanceof ByteBuf) {
+            return ((ByteBuf) msg).readableBytes();
+        }
+        if (msg instanceof ByteBufHolder) {
+            return ((ByteBufHolder) msg).content().readableBytes();
+        }
+        return 0;
+    }
+
+    public int getActiveChannels() {
+        return activeChannels.get();
+    }
+
+    public long getOpenedChannels() {
+        return openedChannels.sum();
+    }
+
+    public long getMessagesRead() {
+        return messagesRead.sum();
+    }
+
+    public long getMessagesWritten() {
+        return messagesWritten.sum();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public long getExceptions() {
+        return exceptions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "activeChannels=" + getActiveChannels() +
+            ", openedChannels=" + getOpenedChannels() +
+            ", messagesRead=" + getMessagesRead() +
+            ", messagesWritten=" + getMessagesWritten() +
+            ", bytesRead=" + getBytesRead() +
+            ", bytesWritten=" + getBytesWritten() +
+            ", exceptions=" + getExceptions() +
+            '}';
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol.io;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.openremote.model.Container;
+import org.openremote.model.ContainerService;
+import org.openremote.model.syslog.SyslogCategory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+
+import static org.openremote.container.util.MapAccess.getBoolean;
+import static org.openremote.container.util.MapAccess.getInteger;
+import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
+
+/**
+ * The Netty event loop group of the container, shared by all {@link AbstractNettyIOClient}s and {@link
+ * AbstractNettyIOServer}s that are given this service with {@link AbstractNettyIOClient#setEventLoops} or {@link
+ * AbstractNettyIOServer#setEventLoops}, so the number of IO threads doesn't grow with the number of agents. The native
+ * epoll transport is used when it is available (Linux), otherwise NIO; channels must be created with the matching
+ * channel class returned by this service.
+ * <p>
+ * The group is created when first used and shut down when the container stops. Clients and servers using the group
+ * are registered while connected, so their channel statistics can be reported individually.
+ */
+public class IOEventLoops implements ContainerService {
+
+    private static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, IOEventLoops.class);
+    public static final String IO_EVENT_LOOP_THREADS = "IO_EVENT_LOOP_THREADS";
+    public static final int IO_EVENT_LOOP_THREADS_DEFAULT = Math.max(Runtime.getRuntime().availableProcessors(), 2);
+    public static final String IO_EVENT_LOOP_NATIVE = "IO_EVENT_LOOP_NATIVE";
+    public static final boolean IO_EVENT_LOOP_NATIVE_DEFAULT = true;
+
+    protected final IOChannelStatistics channelStatistics = new IOChannelStatistics();
+    protected final Set<AbstractNettyIOClient<?, ?>> clients = ConcurrentHashMap.newKeySet();
+    protected final Set<AbstractNettyIOServer<?, ?, ?, ?>> servers = ConcurrentHashMap.newKeySet();
+    protected int threads = IO_EVENT_LOOP_THREADS_DEFAULT;
+    protected boolean nativeEnabled = IO_EVENT_LOOP_NATIVE_DEFAULT;
+    protected EventLoopGroup group;
+    protected boolean epoll;
+
+    /**
+     * @return The service of the container, or <code>null</code> if the container doesn't have it, in which case
+     * clients and servers use their own event loop group.
+     */
+    public static IOEventLoops get(Container container) {
+        return container != null && container.hasService(IOEventLoops.class) ? container.getService(IOEventLoops.class) : null;
+    }
+
+    @Override
+    public int getPriority() {
+        return ContainerService.DEFAULT_PRIORITY;
+    }
+
+    @Override
+    public synchronized void init(Container container) throws Exception {
+        threads = Math.max(1, getInteger(container.getConfig(), IO_EVENT_LOOP_THREADS, IO_EVENT_LOOP_THREADS_DEFAULT));
+        nativeEnabled = getBoolean(container.getConfig(), IO_EVENT_LOOP_NATIVE, IO_EVENT_LOOP_NATIVE_DEFAULT);
+    }
+
+    @Override
+    public void start(Container container) throws Exception {
+    }
+
+    @Override
+    public synchronized void stop(Container container) throws Exception {
+        if (group != null) {
+            LOG.fine("Shutting down IO event loop group");
+            group.shutdownGracefully();
+            group = null;
+        }
+        clients.clear();
+        servers.clear();
+    }
+
+    public synchronized EventLoopGroup getGroup() {
+        if (group == null) {
+            ThreadFactory threadFactory = new DefaultThreadFactory("IO event loop", true);
+            epoll = nativeEnabled && isEpollAvailable();
+            group = epoll ? new EpollEventLoopGroup(threads, threadFactory) : new NioEventLoopGroup(threads, threadFactory);
+            LOG.info("Created IO event loop group: threads=" + threads + ", transport=" + (epoll ? "epoll" : "nio"));
+        }
+        return group;
+    }
+
+    /**
+     * @return <code>true</code> if the given group is the group of this service and must not be shut down by its user.
+     */
+    public synchronized boolean isShared(EventLoopGroup eventLoopGroup) {
+        return eventLoopGroup != null && eventLoopGroup == group;
+    }
+
+    public synchronized boolean isEpoll() {
+        getGroup();
+        return epoll;
+    }
+
+    public Class<? extends SocketChannel> getSocketChannelClass() {
+        return isEpoll() ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    public Class<? extends ServerSocketChannel> getServerSocketChannelClass() {
+        return isEpoll() ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    public Class<? extends DatagramChannel> getDatagramChannelClass() {
+        return isEpoll() ? EpollDatagramChannel.class : NioDatagramChannel.class;
+    }
+
+    public synchronized int getThreads() {
+        return group != null ? threads : 0;
+    }
+
+    /**
+     * @return The totals of all clients and servers that used this service.
+     */
+    public IOChannelStatistics getChannelStatistics() {
+        return channelStatistics;
+    }
+
+    public Collection<AbstractNettyIOClient<?, ?>> getClients() {
+        return new ArrayList<>(clients);
+    }
+
+    public Collection<AbstractNettyIOServer<?, ?, ?, ?>> getServers() {
+        return new ArrayList<>(servers);
+    }
+
+    protected void register(AbstractNettyIOClient<?, ?> client) {
+        clients.add(client);
+    }
+
+    protected void unregister(AbstractNettyIOClient<?, ?> client) {
+        clients.remove(client);
+    }
+
+    protected void register(AbstractNettyIOServer<?, ?, ?, ?> server) {
+        servers.add(server);
+    }
+
+    protected void unregister(AbstractNettyIOServer<?, ?, ?, ?> server) {
+        servers.remove(server);
+    }
+
+    protected static boolean isEpollAvailable() {
+        try {
+            if (Epoll.isAvailable()) {
+                return true;
+            }
+            LOG.fine("Native epoll transport is not available: " + Epoll.unavailabilityCause());
+        } catch (LinkageError e) {
+            LOG.fine("Native epoll transport is not available: " + e);
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "threads=" + threads +
+            ", nativeEnabled=" + nativeEnabled +
+            ", clients=" + clients.size() +
+            ", servers=" + servers.size() +
+            '}';
+    }
+}
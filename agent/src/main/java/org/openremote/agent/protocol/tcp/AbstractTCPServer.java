@@ -50,7 +50,7 @@ public abstract class AbstractTCPServer<T> extends AbstractNettyIOServer<T, Sock
     @Override
     protected ServerBootstrap createAndConfigureBootstrap() {
         ServerBootstrap bootstrap = new ServerBootstrap();
-        bootstrap.channel(NioServerSocketChannel.class);
+        bootstrap.channel(eventLoops != null ? eventLoops.getServerSocketChannelClass() : NioServerSocketChannel.class);
         bootstrap.group(workerGroup);
         bootstrap.localAddress(localAddress);
         bootstrap.option(ChannelOption.SO_BACKLOG, clientLimit);
@@ -20,6 +20,7 @@
 package org.openremote.agent.protocol.tcp;
 
 import org.openremote.agent.protocol.AbstractProtocol;
+import org.openremote.agent.protocol.io.IOEventLoops;
 import org.openremote.model.Container;
 import org.openremote.model.asset.agent.AgentLink;
 import org.openremote.model.asset.agent.ConnectionStatus;
@@ -53,6 +54,7 @@ public abstract class AbstractTCPServerProtocol<R, S extends AbstractTCPServer<R
 
         LOG.info("Creating TCP server instance");
         tcpServer = createTcpServer(port, bindAddress, agent);
+        tcpServer.setEventLoops(IOEventLoops.get(container));
         Consumer<ConnectionStatus> connectionStatusConsumer = this::onServerConnectionStatusChanged;
         tcpServer.addConnectionStatusConsumer(connectionStatusConsumer);
         startTcpServer();
@@ -20,7 +20,6 @@
 package org.openremote.agent.protocol.tcp;
 
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import org.openremote.agent.protocol.io.AbstractNettyIOClient;
 import org.openremote.agent.protocol.io.IOClient;
@@ -50,7 +49,7 @@ public class TCPIOClient<T> extends AbstractNettyIOClient<T, InetSocketAddress>
 
     @Override
     protected Class<? extends Channel> getChannelClass() {
-        return NioSocketChannel.class;
+        return eventLoops != null ? eventLoops.getSocketChannelClass() : NioSocketChannel.class;
     }
 
     @Override
@@ -58,11 +57,6 @@ public class TCPIOClient<T> extends AbstractNettyIOClient<T, InetSocketAddress>
         return "tcp://" + host + ":" + port;
     }
 
-    @Override
-    protected EventLoopGroup getWorkerGroup() {
-        return new NioEventLoopGroup(1);
-    }
-
     @Override
     protected ChannelFuture startChannel() {
         return bootstrap.connect(new InetSocketAddress(host, port));
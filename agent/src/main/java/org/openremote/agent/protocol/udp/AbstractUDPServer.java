@@ -22,7 +22,6 @@ package org.openremote.agent.protocol.udp;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.DatagramPacket;
 import io.netty.channel.socket.nio.NioDatagramChannel;
@@ -64,8 +63,8 @@ public abstract class AbstractUDPServer<T> extends AbstractNettyIOServer<T, Data
     @Override
     protected Bootstrap createAndConfigureBootstrap() {
         Bootstrap b = new Bootstrap();
-        b.group(new NioEventLoopGroup())
-                .channel(NioDatagramChannel.class)
+        b.group(workerGroup)
+                .channel(eventLoops != null ? eventLoops.getDatagramChannelClass() : NioDatagramChannel.class)
                 .localAddress(localAddress)
                 .option(ChannelOption.SO_BROADCAST, true);
         return b;
@@ -75,6 +74,9 @@ public abstract class AbstractUDPServer<T> extends AbstractNettyIOServer<T, Data
     protected void initChannel(DatagramChannel channel) {
         super.initChannel(channel);
 
+        // Connectionless so the server channel carries all datagrams
+        channel.pipeline().addLast(channelStatistics);
+
         // Convert datagram packet to default address envelope
         channel.pipeline().addLast(new MessageToMessageDecoder<DatagramPacket>() {
             @Override
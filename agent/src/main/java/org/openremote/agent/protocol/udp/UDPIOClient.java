@@ -21,7 +21,6 @@ package org.openremote.agent.protocol.udp;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.DatagramPacket;
 import io.netty.channel.socket.nio.NioDatagramChannel;
 import io.netty.handler.codec.MessageToMessageEncoder;
@@ -95,7 +94,7 @@ public class UDPIOClient<T> extends AbstractNettyIOClient<T, InetSocketAddress>
 
     @Override
     protected Class<? extends Channel> getChannelClass() {
-        return NioDatagramChannel.class;
+        return eventLoops != null ? eventLoops.getDatagramChannelClass() : NioDatagramChannel.class;
     }
 
     @Override
@@ -103,11 +102,6 @@ public class UDPIOClient<T> extends AbstractNettyIOClient<T, InetSocketAddress>
         return "udp://" + (host != null ? host : "0.0.0.0") + ":" + port + " (bindPort: " + bindPort + ")";
     }
 
-    @Override
-    protected EventLoopGroup getWorkerGroup() {
-        return new NioEventLoopGroup(1);
-    }
-
     @Override
     protected void configureChannel() {
         super.configureChannel();
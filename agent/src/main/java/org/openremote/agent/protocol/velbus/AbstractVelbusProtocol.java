@@ -20,7 +20,9 @@
 package org.openremote.agent.protocol.velbus;
 
 import org.openremote.agent.protocol.AbstractProtocol;
+import org.openremote.agent.protocol.io.AbstractNettyIOClient;
 import org.openremote.agent.protocol.io.IOClient;
+import org.openremote.agent.protocol.io.IOEventLoops;
 import org.openremote.agent.protocol.velbus.device.VelbusDeviceType;
 import org.openremote.model.Container;
 import org.openremote.model.asset.Asset;
@@ -75,6 +77,9 @@ public abstract class AbstractVelbusProtocol<S extends AbstractVelbusProtocol<S,
         try {
 
             IOClient<VelbusPacket> messageProcessor = createIoClient(agent);
+            if (messageProcessor instanceof AbstractNettyIOClient) {
+                ((AbstractNettyIOClient<?, ?>) messageProcessor).setEventLoops(IOEventLoops.get(container));
+            }
             int timeInjectionSeconds = agent.getTimeInjectionInterval().orElse(DEFAULT_TIME_INJECTION_INTERVAL_SECONDS);
 
             LOG.fine("Creating new VELBUS network instance for protocol instance: " + agent);
@@ -21,7 +21,6 @@ package org.openremote.agent.protocol.websocket;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.MessageToMessageEncoder;
 import io.netty.handler.codec.http.*;
@@ -171,7 +170,7 @@ public class WebsocketIOClient<T> extends AbstractNettyIOClient<T, InetSocketAdd
 
     @Override
     protected Class<? extends Channel> getChannelClass() {
-        return NioSocketChannel.class;
+        return eventLoops != null ? eventLoops.getSocketChannelClass() : NioSocketChannel.class;
     }
 
     @Override
@@ -179,11 +178,6 @@ public class WebsocketIOClient<T> extends AbstractNettyIOClient<T, InetSocketAdd
         return uri.toString();
     }
 
-    @Override
-    protected EventLoopGroup getWorkerGroup() {
-        return new NioEventLoopGroup(1);
-    }
-
     @Override
     protected ChannelFuture startChannel() {
         return bootstrap.connect(new InetSocketAddress(host, port));
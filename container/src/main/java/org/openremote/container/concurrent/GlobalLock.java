@@ -41,7 +41,11 @@ public class GlobalLock {
         String info;
 
         public CustomReentrantLock() {
-            super(true);
+            this(true);
+        }
+
+        public CustomReentrantLock(boolean fair) {
+            super(fair);
         }
 
         String owner() {
@@ -69,6 +73,7 @@ public class GlobalLock {
 
     // Provides exclusive access to shared state
     static protected final CustomReentrantLock lock = new CustomReentrantLock();
+    static protected final LockStatistics statistics = new LockStatistics();
 
     protected GlobalLock() {
     }
@@ -100,8 +105,25 @@ public class GlobalLock {
      * @param supplier The guarded code to execute while holding the lock.
      */
     static public <R> R withLockReturning(String info, Supplier<R> supplier) {
+        return withLockReturning(lock, statistics, getLockTimeoutMillis(), info, supplier);
+    }
+
+    /**
+     * @return Wait and hold time counters of the global lock.
+     */
+    static public LockStatistics getStatistics() {
+        return statistics;
+    }
+
+    static <R> R withLockReturning(CustomReentrantLock lock, LockStatistics statistics, long timeoutMillis, String info, Supplier<R> supplier) {
+        long waitStart = System.nanoTime();
         try {
-            if (lock.tryLock(info, getLockTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+            if (lock.tryLock(info, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                long holdStart = System.nanoTime();
+                boolean outermost = lock.getHoldCount() == 1;
+                if (outermost) {
+                    statistics.recordAcquired(holdStart - waitStart);
+                }
                 LOG.finest("+ Acquired lock (count: " + lock.getHoldCount() + "): " + info);
                 try {
                     return supplier.get();
@@ -110,12 +132,16 @@ public class GlobalLock {
                     if (!lock.isHeldByCurrentThread()) {
                         LOG.severe("Lock is held by another thread, ensure the same thread acquires and releases the lock!");
                     } else {
+                        if (outermost) {
+                            statistics.recordReleased(System.nanoTime() - holdStart);
+                        }
                         lock.unlock();
                     }
                 }
             } else {
+                statistics.recordTimeout(System.nanoTime() - waitStart);
                 throw new IllegalStateException(
-                    "Could not acquire lock owned by " + lock.owner() + " after waiting " + getLockTimeoutMillis() + "ms: " + Thread.currentThread().getName() + " executing " + info
+                    "Could not acquire lock owned by " + lock.owner() + " after waiting " + timeoutMillis + "ms: " + Thread.currentThread().getName() + " executing " + info
                 );
             }
         } catch (InterruptedException ex) {
@@ -123,4 +149,4 @@ public class GlobalLock {
             return null;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.container.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wait and hold time counters of a lock, only the outermost acquisition of a reentrant lock is recorded.
+ */
+public class LockStatistics {
+
+    protected final LongAdder acquisitions = new LongAdder();
+    protected final LongAdder timeouts = new LongAdder();
+    protected final LongAdder totalWaitNanos = new LongAdder();
+    protected final LongAdder totalHoldNanos = new LongAdder();
+    protected final LongAccumulator maxWaitNanos = new LongAccumulator(Long::max, 0L);
+    protected final LongAccumulator maxHoldNanos = new LongAccumulator(Long::max, 0L);
+
+    void recordAcquired(long waitNanos) {
+        acquisitions.increment();
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulate(waitNanos);
+    }
+
+    void recordReleased(long holdNanos) {
+        totalHoldNanos.add(holdNanos);
+        maxHoldNanos.accumulate(holdNanos);
+    }
+
+    void recordTimeout(long waitNanos) {
+        timeouts.increment();
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulate(waitNanos);
+    }
+
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public double getAverageWaitMillis() {
+        return average(totalWaitNanos.sum(), acquisitions.sum() + timeouts.sum());
+    }
+
+    public double getAverageHoldMillis() {
+        return average(totalHoldNanos.sum(), acquisitions.sum());
+    }
+
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    public long getMaxHoldMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxHoldNanos.get());
+    }
+
+    protected static double average(long totalNanos, long count) {
+        return count == 0 ? 0d : (double) totalNanos / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "acquisitions=" + getAcquisitions() +
+            ", timeouts=" + getTimeouts() +
+            ", averageWaitMillis=" + getAverageWaitMillis() +
+            ", maxWaitMillis=" + getMaxWaitMillis() +
+            ", averageHoldMillis=" + getAverageHoldMillis() +
+            ", maxHoldMillis=" + getMaxHoldMillis() +
+            '}';
+    }
+}
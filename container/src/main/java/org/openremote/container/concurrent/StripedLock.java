@@ -0,0 +1,123 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.container.concurrent;
+
+import java.util.function.Supplier;
+
+/**
+ * A set of reentrant exclusive locks where each key (e.g. an asset ID) maps to one of a fixed number of stripes,
+ * work on keys that map to different stripes can execute concurrently. Use convenience methods {@link #withLock}
+ * and {@link #withLockReturning}.
+ * <p>
+ * This is not a replacement for {@link GlobalLock}, which still guards shared state that spans keys. When both are
+ * needed the striped lock must be acquired first.
+ */
+public class StripedLock {
+
+    protected final String name;
+    protected final GlobalLock.CustomReentrantLock[] stripes;
+    protected final long timeoutMillis;
+    protected final LockStatistics statistics = new LockStatistics();
+
+    /**
+     * @param stripeCount   Number of locks, this limits the concurrency but also the memory required.
+     * @param timeoutMillis Maximum time to wait for a stripe before an {@link IllegalStateException} is thrown.
+     */
+    public StripedLock(String name, int stripeCount, long timeoutMillis) {
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("Stripe count must be at least 1: " + stripeCount);
+        }
+        this.name = name;
+        this.timeoutMillis = timeoutMillis;
+        this.stripes = new GlobalLock.CustomReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new GlobalLock.CustomReentrantLock(false);
+        }
+    }
+
+    public StripedLock(String name, int stripeCount) {
+        this(name, stripeCount, GlobalLock.getLockTimeoutMillis());
+    }
+
+    /**
+     * Obtain the lock of the key's stripe or throw {@link IllegalStateException}.
+     *
+     * @param key      The key to lock, must not be <code>null</code>.
+     * @param info     An informal text that is printed in log messages.
+     * @param runnable The guarded code to execute while holding the lock.
+     */
+    public void withLock(Object key, String info, Runnable runnable) {
+        withLockReturning(key, info, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * Obtain the lock of the key's stripe or throw {@link IllegalStateException}.
+     *
+     * @param key      The key to lock, must not be <code>null</code>.
+     * @param info     An informal text that is printed in log messages.
+     * @param supplier The guarded code to execute while holding the lock.
+     */
+    public <R> R withLockReturning(Object key, String info, Supplier<R> supplier) {
+        return GlobalLock.withLockReturning(stripes[getStripeIndex(key)], statistics, timeoutMillis, name + "::" + info, supplier);
+    }
+
+    /**
+     * @return The index of the stripe that guards the given key, keys with the same stripe index share a lock.
+     */
+    public int getStripeIndex(Object key) {
+        int hash = key.hashCode();
+        // Spread the higher bits, string hash codes of similar IDs mostly differ in the lower bits
+        hash ^= (hash >>> 16);
+        return (hash & Integer.MAX_VALUE) % stripes.length;
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * @return Number of stripes currently held by a thread.
+     */
+    public int getLockedStripeCount() {
+        int count = 0;
+        for (GlobalLock.CustomReentrantLock stripe : stripes) {
+            if (stripe.isLocked()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public LockStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "name='" + name + '\'' +
+            ", stripes=" + stripes.length +
+            ", statistics=" + statistics +
+            '}';
+    }
+}
@@ -34,18 +34,31 @@ import org.openremote.container.security.IdentityService;
 import org.openremote.container.web.DefaultWebsocketComponent;
 import org.openremote.container.web.WebService;
 import org.openremote.container.web.socket.WebsocketComponent;
+import org.openremote.container.web.socket.WebsocketSessionQueue;
 
+import java.util.Locale;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.logging.Logger;
 
+import static org.openremote.container.util.MapAccess.getBoolean;
+import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.container.util.MapAccess.getString;
 
 public class MessageBrokerService implements ContainerService {
 
     public static final String MESSAGE_SESSION_ALLOWED_ORIGIN = "MESSAGE_SESSION_ALLOWED_ORIGIN";
     public static final String MESSAGE_SESSION_ALLOWED_ORIGIN_DEFAULT = null;
+    // Maximum number of queued outbound messages per websocket session, 0 sends messages synchronously
+    public static final String WEBSOCKET_SESSION_QUEUE_SIZE = "WEBSOCKET_SESSION_QUEUE_SIZE";
+    public static final int WEBSOCKET_SESSION_QUEUE_SIZE_DEFAULT = 0;
+    // What happens when the queue of a websocket session is full: DROP_OLDEST, CONFLATE or DISCONNECT
+    public static final String WEBSOCKET_SESSION_QUEUE_POLICY = "WEBSOCKET_SESSION_QUEUE_POLICY";
+    public static final String WEBSOCKET_SESSION_QUEUE_POLICY_DEFAULT = WebsocketSessionQueue.Policy.DROP_OLDEST.name();
+    // Accept the permessage-deflate extension so websocket clients that support it can send and receive compressed frames
+    public static final String WEBSOCKET_COMPRESSION = "WEBSOCKET_COMPRESSION";
+    public static final boolean WEBSOCKET_COMPRESSION_DEFAULT = false;
     private static final Logger LOG = Logger.getLogger(MessageBrokerService.class.getName());
     public static final int PRIORITY = ContainerService.HIGH_PRIORITY;
 
@@ -133,10 +146,18 @@ public class MessageBrokerService implements ContainerService {
         context.getRegistry().put(Container.class.getName(), container);
 
         String allowedOrigin = getString(container.getConfig(), MESSAGE_SESSION_ALLOWED_ORIGIN, MESSAGE_SESSION_ALLOWED_ORIGIN_DEFAULT);
+        int sessionQueueSize = getInteger(container.getConfig(), WEBSOCKET_SESSION_QUEUE_SIZE, WEBSOCKET_SESSION_QUEUE_SIZE_DEFAULT);
+        WebsocketSessionQueue.Policy sessionQueuePolicy = WebsocketSessionQueue.Policy.valueOf(
+            getString(container.getConfig(), WEBSOCKET_SESSION_QUEUE_POLICY, WEBSOCKET_SESSION_QUEUE_POLICY_DEFAULT).toUpperCase(Locale.ROOT)
+        );
+        boolean compression = getBoolean(container.getConfig(), WEBSOCKET_COMPRESSION, WEBSOCKET_COMPRESSION_DEFAULT);
         WebsocketComponent websocketComponent = new DefaultWebsocketComponent(
             container.getService(IdentityService.class),
             container.getService(WebService.class),
-            allowedOrigin
+            allowedOrigin,
+            sessionQueueSize,
+            sessionQueuePolicy,
+            compression
         );
 
         context.addComponent(WebsocketComponent.NAME, websocketComponent);
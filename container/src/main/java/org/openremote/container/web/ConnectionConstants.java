@@ -24,6 +24,7 @@ public interface ConnectionConstants {
     String SESSION = "connection.session";
     String SESSION_KEY = "connection.sessionKey";
     String SEND_TO_ALL = "connection.sendToAll";
+    String CONFLATION_KEY = "connection.conflationKey";
     String HANDSHAKE_AUTH = "connection.auth";
     String SESSION_OPEN = "connection.sessionOpen";
     String SESSION_CLOSE = "connection.sessionClose";
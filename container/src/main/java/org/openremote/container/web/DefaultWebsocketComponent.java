@@ -25,6 +25,7 @@ import io.undertow.servlet.api.DeploymentInfo;
 import io.undertow.servlet.api.SecurityConstraint;
 import io.undertow.servlet.api.SecurityInfo;
 import io.undertow.servlet.api.WebResourceCollection;
+import io.undertow.websockets.extensions.PerMessageDeflateHandshake;
 import io.undertow.websockets.jsr.DefaultContainerConfigurator;
 import io.undertow.websockets.jsr.UndertowContainerProvider;
 import io.undertow.websockets.jsr.WebSocketDeploymentInfo;
@@ -35,6 +36,7 @@ import org.openremote.container.security.basic.BasicAuthContext;
 import org.openremote.container.security.keycloak.AccessTokenAuthContext;
 import org.openremote.container.web.socket.WebsocketAdapter;
 import org.openremote.container.web.socket.WebsocketComponent;
+import org.openremote.container.web.socket.WebsocketSessionQueue;
 import org.xnio.OptionMap;
 import org.xnio.Options;
 import org.xnio.Xnio;
@@ -62,13 +64,20 @@ public class DefaultWebsocketComponent extends WebsocketComponent {
     final protected IdentityService identityService;
     final protected WebService webService;
     final protected String allowedOrigin;
+    final protected boolean compression;
     protected DeploymentInfo deploymentInfo;
     protected WebService.RequestHandler websocketHttpHandler;
 
     public DefaultWebsocketComponent(IdentityService identityService, WebService webService, String allowedOrigin) {
+        this(identityService, webService, allowedOrigin, 0, WebsocketSessionQueue.Policy.DROP_OLDEST, false);
+    }
+
+    public DefaultWebsocketComponent(IdentityService identityService, WebService webService, String allowedOrigin, int sessionQueueCapacity, WebsocketSessionQueue.Policy sessionQueuePolicy, boolean compression) {
+        super(sessionQueueCapacity, sessionQueuePolicy);
         this.identityService = identityService;
         this.webService = webService;
         this.allowedOrigin = allowedOrigin;
+        this.compression = compression;
     }
 
     @Override
@@ -124,6 +133,11 @@ public class DefaultWebsocketComponent extends WebsocketComponent {
         // pool for websocket frame processing
         webSocketDeploymentInfo.setDispatchToWorkerThread(false);
 
+        if (compression) {
+            // Only used when the client also requests it, the deflater context is kept between messages
+            webSocketDeploymentInfo.addExtension(new PerMessageDeflateHandshake(false, PerMessageDeflateHandshake.DEFAULT_DEFLATER));
+        }
+
         // Make the shit Undertow/Websocket JSR client bootstrap happy - this is the pool that would be used
         // when Undertow acts as a WebSocket client, which we don't do... and I'm not even sure it can do that...
         webSocketDeploymentInfo.setWorker(Xnio.getInstance().createWorker(
@@ -56,6 +56,7 @@ import java.util.stream.Collectors;
 public class WebTargetBuilder {
 
     public static final int CONNECTION_POOL_SIZE = 10;
+    public static final int CONNECTION_POOL_MAX_ROUTES = 20;
     public static final long CONNECTION_CHECKOUT_TIMEOUT_MILLISECONDS = 5000;
     public static final long CONNECTION_TIMEOUT_MILLISECONDS = 10000;
     protected ResteasyClient client;
@@ -187,8 +188,11 @@ public class WebTargetBuilder {
             .setConnectTimeout(new Long(CONNECTION_CHECKOUT_TIMEOUT_MILLISECONDS).intValue())
             .setSocketTimeout(new Long(overrideSocketTimeout).intValue())
             .build();
+        // Pool connections per route (scheme, host and port) so requests to a server reuse connections
         HttpClient apacheClient = HttpClientBuilder.create()
             .setDefaultRequestConfig(requestConfig)
+            .setMaxConnPerRoute(connectionPoolSize)
+            .setMaxConnTotal(connectionPoolSize * CONNECTION_POOL_MAX_ROUTES)
             .build();
         ApacheHttpClient43Engine engine = new ApacheHttpClient43Engine(apacheClient);
 
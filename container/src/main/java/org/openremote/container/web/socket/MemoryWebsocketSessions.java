@@ -19,20 +19,50 @@
  */
 package org.openremote.container.web.socket;
 
+import io.undertow.websockets.core.WebSockets;
+import io.undertow.websockets.jsr.UndertowSession;
+
 import javax.websocket.Session;
+import java.io.IOException;
 import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Keeps sessions in memory. When the queue capacity is greater than 0 each session has a bounded {@link
+ * WebsocketSessionQueue}, otherwise messages are sent synchronously on the calling thread.
+ */
 public class MemoryWebsocketSessions extends ConcurrentHashMap<String, Session> implements WebsocketSessions {
 
+    protected final int queueCapacity;
+    protected final WebsocketSessionQueue.Policy queuePolicy;
+    protected final Map<String, WebsocketSessionQueue> queues = new ConcurrentHashMap<>();
+    protected final WebsocketSessionQueue.Statistics queueStatistics = new WebsocketSessionQueue.Statistics();
+
+    public MemoryWebsocketSessions() {
+        this(0, WebsocketSessionQueue.Policy.DROP_OLDEST);
+    }
+
+    public MemoryWebsocketSessions(int queueCapacity, WebsocketSessionQueue.Policy queuePolicy) {
+        this.queueCapacity = queueCapacity;
+        this.queuePolicy = queuePolicy;
+    }
+
     @Override
     public void add(Session websocketSession) {
         super.put(websocketSession.getId(), websocketSession);
+        if (queueCapacity > 0) {
+            queues.put(websocketSession.getId(), new WebsocketSessionQueue(websocketSession, queueCapacity, queuePolicy, queueStatistics));
+        }
     }
 
     @Override
     public void remove(Session websocketSession) {
         super.remove(websocketSession.getId());
+        WebsocketSessionQueue queue = queues.remove(websocketSession.getId());
+        if (queue != null) {
+            queue.close();
+        }
     }
 
     @Override
@@ -45,6 +75,40 @@ public class MemoryWebsocketSessions extends ConcurrentHashMap<String, Session>
         return super.values();
     }
 
+    @Override
+    public void send(Session session, String message, String conflationKey) throws IOException {
+        WebsocketSessionQueue queue = queues.get(session.getId());
+        if (queue != null) {
+            queue.send(message, conflationKey);
+        } else if (queueCapacity <= 0) {
+            session.getBasicRemote().sendText(message);
+        }
+    }
+
+    @Override
+    public void send(Session session, WebsocketTextMessage message, String conflationKey) throws IOException {
+        WebsocketSessionQueue queue = queues.get(session.getId());
+        if (queue != null) {
+            queue.send(message, conflationKey);
+        } else if (queueCapacity <= 0) {
+            if (session instanceof UndertowSession) {
+                WebSockets.sendTextBlocking(message.toByteBuffer(), ((UndertowSession) session).getWebSocketChannel());
+            } else {
+                session.getBasicRemote().sendText(message.getText());
+            }
+        }
+    }
+
+    @Override
+    public WebsocketSessionQueue.Statistics getQueueStatistics() {
+        return queueStatistics;
+    }
+
+    @Override
+    public int getQueuedMessageCount() {
+        return queues.values().stream().mapToInt(WebsocketSessionQueue::getSize).sum();
+    }
+
     @Override
     public void start() throws Exception {
         // noop
@@ -52,6 +116,8 @@ public class MemoryWebsocketSessions extends ConcurrentHashMap<String, Session>
 
     @Override
     public void stop() throws Exception {
+        queues.values().forEach(WebsocketSessionQueue::close);
+        queues.clear();
         clear();
     }
 }
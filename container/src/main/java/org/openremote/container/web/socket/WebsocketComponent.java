@@ -40,6 +40,15 @@ public abstract class WebsocketComponent extends DefaultComponent {
         this.websocketSessions = new MemoryWebsocketSessions();
     }
 
+    /**
+     * @param sessionQueueCapacity The maximum number of queued outbound messages per session, 0 sends messages
+     *                             synchronously without a queue.
+     * @param sessionQueuePolicy   What happens when a message is sent to a session whose queue is full.
+     */
+    public WebsocketComponent(int sessionQueueCapacity, WebsocketSessionQueue.Policy sessionQueuePolicy) {
+        this.websocketSessions = new MemoryWebsocketSessions(sessionQueueCapacity, sessionQueuePolicy);
+    }
+
     @Override
     protected Endpoint createEndpoint(String uri, String remaining, Map<String, Object> parameters) throws Exception {
         WebsocketEndpoint endpoint = new WebsocketEndpoint(this, uri, remaining, parameters);
@@ -48,7 +48,7 @@ public class WebsocketProducer extends DefaultProducer {
     public void process(Exchange exchange) throws Exception {
         Message in = exchange.getIn();
         Object message = in.getMandatoryBody();
-        if (!(message == null || message instanceof String || message instanceof byte[])) {
+        if (!(message == null || message instanceof String || message instanceof byte[] || message instanceof WebsocketTextMessage)) {
             message = in.getMandatoryBody(String.class);
         }
         if (isSendToAllSet(in)) {
@@ -57,7 +57,7 @@ public class WebsocketProducer extends DefaultProducer {
             String sessionKey = in.getHeader(ConnectionConstants.SESSION_KEY, String.class);
             if (sessionKey != null) {
                 Session websocket = getEndpoint().getComponent().getWebsocketSessions().get(sessionKey);
-                sendMessage(websocket, message);
+                sendMessage(websocket, message, in.getHeader(ConnectionConstants.CONFLATION_KEY, String.class));
             } else {
                 throw new IllegalArgumentException("Failed to send message to Websocket session; session key not set.");
             }
@@ -94,11 +94,19 @@ public class WebsocketProducer extends DefaultProducer {
     }
 
     protected void sendMessage(Session session, Object message) throws IOException {
+        sendMessage(session, message, null);
+    }
+
+    protected void sendMessage(Session session, Object message, String conflationKey) throws IOException {
         if (session != null && session.isOpen()) {
             if (message instanceof String) {
                 if (LOG.isLoggable(Level.FINE))
                     LOG.finer("Sending to session " + session.getId() + ": " + message);
-                session.getBasicRemote().sendText((String) message);
+                getEndpoint().getComponent().getWebsocketSessions().send(session, (String) message, conflationKey);
+            } else if (message instanceof WebsocketTextMessage) {
+                if (LOG.isLoggable(Level.FINE))
+                    LOG.finer("Sending to session " + session.getId() + ": " + message);
+                getEndpoint().getComponent().getWebsocketSessions().send(session, (WebsocketTextMessage) message, conflationKey);
             }
         }
     }
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.container.web.socket;
+
+import io.undertow.websockets.core.WebSocketCallback;
+import io.undertow.websockets.core.WebSocketChannel;
+import io.undertow.websockets.core.WebSockets;
+import io.undertow.websockets.jsr.UndertowSession;
+
+import javax.websocket.CloseReason;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded outbound message queue of a websocket session. Messages are sent asynchronously one at a time, so a slow
+ * session doesn't block the thread delivering messages to all sessions. When the queue is full the {@link Policy}
+ * decides what happens to the session.
+ * <p>
+ * A {@link WebsocketTextMessage} is written to the channel of an Undertow session as UTF-8 bytes, without building a
+ * {@link String} for the session.
+ */
+public class WebsocketSessionQueue {
+
+    /**
+     * What happens when a message is sent to a session whose queue is full.
+     */
+    public enum Policy {
+        /**
+         * Drop the oldest queued message.
+         */
+        DROP_OLDEST,
+        /**
+         * Replace a queued message with the same conflation key, otherwise drop the oldest queued message.
+         */
+        CONFLATE,
+        /**
+         * Close the session, the client has to reconnect and resubscribe.
+         */
+        DISCONNECT
+    }
+
+    /**
+     * Counters shared by the queues of all sessions.
+     */
+    public static class Statistics {
+        protected final LongAdder queuedMessages = new LongAdder();
+        protected final LongAdder sentMessages = new LongAdder();
+        protected final LongAdder failedMessages = new LongAdder();
+        protected final LongAdder droppedMessages = new LongAdder();
+        protected final LongAdder conflatedMessages = new LongAdder();
+        protected final LongAdder disconnectedSessions = new LongAdder();
+        protected final LongAccumulator maxQueueSize = new LongAccumulator(Long::max, 0L);
+
+        public long getQueuedMessages() {
+            return queuedMessages.sum();
+        }
+
+        public long getSentMessages() {
+            return sentMessages.sum();
+        }
+
+        public long getFailedMessages() {
+            return failedMessages.sum();
+        }
+
+        public long getDroppedMessages() {
+            return droppedMessages.sum();
+        }
+
+        public long getConflatedMessages() {
+            return conflatedMessages.sum();
+        }
+
+        public long getDisconnectedSessions() {
+            return disconnectedSessions.sum();
+        }
+
+        public long getMaxQueueSize() {
+            return maxQueueSize.get();
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "{" +
+                "queuedMessages=" + getQueuedMessages() +
+                ", sentMessages=" + getSentMessages() +
+                ", failedMessages=" + getFailedMessages() +
+                ", droppedMessages=" + getDroppedMessages() +
+                ", conflatedMessages=" + getConflatedMessages() +
+                ", disconnectedSessions=" + getDisconnectedSessions() +
+                ", maxQueueSize=" + getMaxQueueSize() +
+                '}';
+        }
+    }
+
+    protected static class QueuedMessage {
+        // A String or WebsocketTextMessage
+        protected Object message;
+        protected final String conflationKey;
+
+        protected QueuedMessage(Object message, String conflationKey) {
+            this.message = message;
+            this.conflationKey = conflationKey;
+        }
+    }
+
+    private static final Logger LOG = Logger.getLogger(WebsocketSessionQueue.class.getName());
+
+    protected final Session session;
+    protected final int capacity;
+    protected final Policy policy;
+    protected final Statistics statistics;
+    protected final Deque<QueuedMessage> queue = new ArrayDeque<>();
+    protected final Map<String, QueuedMessage> conflatableMessages = new HashMap<>();
+    protected boolean sending;
+    protected boolean sendInProgress;
+    protected boolean sendCompletedInline;
+    protected boolean closed;
+
+    public WebsocketSessionQueue(Session session, int capacity, Policy policy, Statistics statistics) {
+        this.session = session;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Queues the message and returns immediately.
+     *
+     * @param conflationKey Messages with the same key may replace each other, can be <code>null</code>.
+     */
+    public void send(String message, String conflationKey) {
+        enqueue(message, conflationKey);
+    }
+
+    /**
+     * Queues the message and returns immediately, see {@link #send(String, String)}.
+     */
+    public void send(WebsocketTextMessage message, String conflationKey) {
+        enqueue(message, conflationKey);
+    }
+
+    protected void enqueue(Object message, String conflationKey) {
+        QueuedMessage next;
+        boolean disconnect = false;
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            statistics.queuedMessages.increment();
+
+            if (policy == Policy.CONFLATE && conflationKey != null) {
+                QueuedMessage queued = conflatableMessages.get(conflationKey);
+                if (queued != null) {
+                    queued.message = message;
+                    statistics.conflatedMessages.increment();
+                    return;
+                }
+            }
+
+            if (queue.size() >= capacity) {
+                if (policy == Policy.DISCONNECT) {
+                    statistics.droppedMessages.add(queue.size() + 1);
+                    close();
+                    disconnect = true;
+                } else {
+                    QueuedMessage dropped = queue.poll();
+                    if (dropped != null && dropped.conflationKey != null) {
+                        conflatableMessages.remove(dropped.conflationKey);
+                    }
+                    statistics.droppedMessages.increment();
+                }
+            }
+
+            if (!disconnect) {
+                QueuedMessage queued = new QueuedMessage(message, conflationKey);
+                queue.add(queued);
+                if (policy == Policy.CONFLATE && conflationKey != null) {
+                    conflatableMessages.put(conflationKey, queued);
+                }
+                statistics.maxQueueSize.accumulate(queue.size());
+            }
+
+            if (disconnect || sending) {
+                next = null;
+            } else {
+                sending = true;
+                next = pollNext();
+            }
+        }
+
+        if (disconnect) {
+            disconnect();
+        } else if (next != null) {
+            sendAsync(next);
+        }
+    }
+
+    /**
+     * Discards all queued messages, messages sent afterwards are ignored.
+     */
+    public synchronized void close() {
+        closed = true;
+        queue.clear();
+        conflatableMessages.clear();
+    }
+
+    public synchronized int getSize() {
+        return queue.size();
+    }
+
+    /**
+     * Sends messages until the queue is empty or a send doesn't complete immediately; in that case the completion
+     * handler continues. This avoids unbounded recursion when the container completes sends inline.
+     */
+    protected void sendAsync(QueuedMessage next) {
+        while (next != null) {
+            synchronized (this) {
+                sendInProgress = true;
+                sendCompletedInline = false;
+            }
+            try {
+                sendText(next.message);
+            } catch (Exception e) {
+                LOG.log(Level.FINE, "Failed to send message to websocket session: " + session.getId(), e);
+                statistics.failedMessages.increment();
+                synchronized (this) {
+                    sendCompletedInline = true;
+                }
+            }
+            synchronized (this) {
+                sendInProgress = false;
+                if (!sendCompletedInline) {
+                    return;
+                }
+                next = pollNext();
+            }
+        }
+    }
+
+    protected void sendText(Object message) {
+        if (message instanceof WebsocketTextMessage && session instanceof UndertowSession) {
+            WebSocketChannel channel = ((UndertowSession) session).getWebSocketChannel();
+            WebSockets.sendText(((WebsocketTextMessage) message).toByteBuffer(), channel, new WebSocketCallback<Void>() {
+                @Override
+                public void complete(WebSocketChannel channel, Void context) {
+                    onSendResult(new SendResult());
+                }
+
+                @Override
+                public void onError(WebSocketChannel channel, Void context, Throwable throwable) {
+                    onSendResult(new SendResult(throwable));
+                }
+            });
+        } else if (message instanceof WebsocketTextMessage) {
+            session.getAsyncRemote().sendText(((WebsocketTextMessage) message).getText(), this::onSendResult);
+        } else {
+            session.getAsyncRemote().sendText((String) message, this::onSendResult);
+        }
+    }
+
+    protected void onSendResult(SendResult result) {
+        if (result.isOK()) {
+            statistics.sentMessages.increment();
+        } else {
+            statistics.failedMessages.increment();
+            if (LOG.isLoggable(Level.FINE))
+                LOG.log(Level.FINE, "Failed to send message to websocket session: " + session.getId(), result.getException());
+        }
+
+        QueuedMessage next;
+        synchronized (this) {
+            if (sendInProgress) {
+                sendCompletedInline = true;
+                return;
+            }
+            next = pollNext();
+        }
+        sendAsync(next);
+    }
+
+    /**
+     * Must be called while holding the lock of this queue by the thread that is sending.
+     */
+    protected QueuedMessage pollNext() {
+        QueuedMessage next = closed ? null : queue.poll();
+        if (next == null) {
+            sending = false;
+        } else if (next.conflationKey != null) {
+            conflatableMessages.remove(next.conflationKey);
+        }
+        return next;
+    }
+
+    protected void disconnect() {
+        LOG.info("Outbound message queue of websocket session is full, closing session: " + session.getId());
+        statistics.disconnectedSessions.increment();
+        try {
+            session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Outbound message queue full"));
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Failed to close websocket session: " + session.getId(), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "session=" + session.getId() +
+            ", capacity=" + capacity +
+            ", policy=" + policy +
+            ", size=" + getSize() +
+            '}';
+    }
+}
@@ -22,6 +22,7 @@ package org.openremote.container.web.socket;
 import org.apache.camel.Service;
 
 import javax.websocket.Session;
+import java.io.IOException;
 import java.util.Collection;
 
 public interface WebsocketSessions extends Service {
@@ -33,4 +34,26 @@ public interface WebsocketSessions extends Service {
     Session get(String sessionId);
 
     Collection<Session> getAll();
+
+    /**
+     * Sends a text message to the session, through its outbound {@link WebsocketSessionQueue} if queues are enabled.
+     *
+     * @param conflationKey Messages with the same key may replace each other while queued, can be <code>null</code>.
+     */
+    void send(Session session, String message, String conflationKey) throws IOException;
+
+    /**
+     * Sends a text message to the session as UTF-8 bytes, see {@link #send(Session, String, String)}.
+     */
+    void send(Session session, WebsocketTextMessage message, String conflationKey) throws IOException;
+
+    /**
+     * @return The counters of the outbound queues of all sessions.
+     */
+    WebsocketSessionQueue.Statistics getQueueStatistics();
+
+    /**
+     * @return The number of messages currently queued for all sessions.
+     */
+    int getQueuedMessageCount();
 }
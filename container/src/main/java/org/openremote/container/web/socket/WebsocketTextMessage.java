@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.container.web.socket;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A text message that is written to websocket sessions as UTF-8 bytes, so it doesn't have to be built as a {@link
+ * String} for each session, e.g. a per-session envelope around a payload that is shared by all sessions.
+ */
+public interface WebsocketTextMessage {
+
+    /**
+     * @return The number of UTF-8 bytes of the message.
+     */
+    int getLength();
+
+    /**
+     * Writes the UTF-8 bytes of the message to the buffer, which has at least {@link #getLength} bytes remaining.
+     */
+    void writeTo(ByteBuffer buffer);
+
+    /**
+     * @return A buffer containing the UTF-8 bytes of the message, ready to be sent.
+     */
+    default ByteBuffer toByteBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(getLength());
+        writeTo(buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @return The message as text, for sessions that can't be written to as bytes.
+     */
+    default String getText() {
+        return UTF_8.decode(toByteBuffer()).toString();
+    }
+}
@@ -19,11 +19,19 @@
  */
 package org.openremote.manager.agent;
 
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openremote.agent.protocol.AbstractProtocol;
+import org.openremote.agent.protocol.ProtocolWriteQueue;
+import org.openremote.agent.protocol.io.AbstractNettyIOClient;
+import org.openremote.agent.protocol.io.AbstractNettyIOServer;
+import org.openremote.agent.protocol.io.IOChannelStatistics;
+import org.openremote.agent.protocol.io.IOEventLoops;
 import org.openremote.model.Container;
 import org.openremote.model.ContainerService;
 import org.openremote.model.asset.agent.Agent;
 import org.openremote.model.asset.agent.ConnectionStatus;
+import org.openremote.model.asset.agent.Protocol;
 import org.openremote.model.system.HealthStatusProvider;
 import org.openremote.model.value.Values;
 
@@ -34,6 +42,7 @@ public class AgentHealthStatusProvider implements HealthStatusProvider, Containe
     public static final String NAME = "agents";
     public static final String VERSION = "1.0";
     protected AgentService agentService;
+    protected IOEventLoops eventLoops;
 
     @Override
     public int getPriority() {
@@ -43,6 +52,7 @@ public class AgentHealthStatusProvider implements HealthStatusProvider, Containe
     @Override
     public void init(Container container) throws Exception {
         agentService = container.getService(AgentService.class);
+        eventLoops = IOEventLoops.get(container);
     }
 
     @Override
@@ -106,6 +116,20 @@ public class AgentHealthStatusProvider implements HealthStatusProvider, Containe
             agentValue.put("name", agent.getName());
             agentValue.put("status", status != null ? status.name() : "null");
             agentValue.put("type", agent.getType());
+
+            Protocol<?> protocol = agentService.protocolInstanceMap.get(agent.getId());
+            ProtocolWriteQueue writeQueue = protocol instanceof AbstractProtocol ? ((AbstractProtocol<?, ?>) protocol).getWriteQueue() : null;
+            if (writeQueue != null) {
+                ObjectNode writeQueueValue = Values.JSON.createObjectNode();
+                writeQueueValue.put("size", writeQueue.getSize());
+                writeQueueValue.put("queuedWrites", writeQueue.getQueuedWrites());
+                writeQueueValue.put("processedWrites", writeQueue.getProcessedWrites());
+                writeQueueValue.put("failedWrites", writeQueue.getFailedWrites());
+                writeQueueValue.put("droppedWrites", writeQueue.getDroppedWrites());
+                writeQueueValue.put("averageLatencyMillis", writeQueue.getAverageLatencyMillis());
+                writeQueueValue.put("maxLatencyMillis", writeQueue.getMaxLatencyMillis());
+                agentValue.set("writeQueue", writeQueueValue);
+            }
             objectValue.set(agent.getId(), agentValue);
         }
 
@@ -115,6 +139,41 @@ public class AgentHealthStatusProvider implements HealthStatusProvider, Containe
         objectValue.put("disabledAgents", disabledCount.get());
         objectValue.put("otherAgents", otherCount.get());
 
+        if (eventLoops != null) {
+            ObjectNode ioValue = getChannelStatisticsValue(eventLoops.getChannelStatistics());
+            ioValue.put("threads", eventLoops.getThreads());
+
+            ArrayNode clientsValue = Values.JSON.createArrayNode();
+            for (AbstractNettyIOClient<?, ?> client : eventLoops.getClients()) {
+                ObjectNode clientValue = getChannelStatisticsValue(client.getChannelStatistics());
+                clientValue.put("uri", client.getClientUri());
+                clientValue.put("status", client.getConnectionStatus().name());
+                clientsValue.add(clientValue);
+            }
+            ioValue.set("clients", clientsValue);
+
+            ArrayNode serversValue = Values.JSON.createArrayNode();
+            for (AbstractNettyIOServer<?, ?, ?, ?> server : eventLoops.getServers()) {
+                ObjectNode serverValue = getChannelStatisticsValue(server.getChannelStatistics());
+                serverValue.put("address", server.getServerAddress());
+                serversValue.add(serverValue);
+            }
+            ioValue.set("servers", serversValue);
+            objectValue.set("io", ioValue);
+        }
+
         return objectValue;
     }
+
+    protected static ObjectNode getChannelStatisticsValue(IOChannelStatistics channelStatistics) {
+        ObjectNode value = Values.JSON.createObjectNode();
+        value.put("activeChannels", channelStatistics.getActiveChannels());
+        value.put("openedChannels", channelStatistics.getOpenedChannels());
+        value.put("messagesRead", channelStatistics.getMessagesRead());
+        value.put("messagesWritten", channelStatistics.getMessagesWritten());
+        value.put("bytesRead", channelStatistics.getBytesRead());
+        value.put("bytesWritten", channelStatistics.getBytesWritten());
+        value.put("exceptions", channelStatistics.getExceptions());
+        return value;
+    }
 }
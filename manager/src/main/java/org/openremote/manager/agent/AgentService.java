@@ -55,6 +55,7 @@ import org.openremote.model.util.TextUtil;
 
 import javax.persistence.EntityManager;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Consumer;
@@ -72,11 +73,11 @@ import static org.openremote.container.persistence.PersistenceEvent.PERSISTENCE_
 import static org.openremote.container.persistence.PersistenceEvent.isPersistenceEventForEntityType;
 import static org.openremote.manager.asset.AssetProcessingService.ASSET_QUEUE;
 import static org.openremote.manager.gateway.GatewayService.isNotForGateway;
-import static org.openremote.model.asset.agent.Protocol.ACTUATOR_TOPIC;
 import static org.openremote.model.asset.agent.Protocol.SENSOR_QUEUE;
 import static org.openremote.model.attribute.Attribute.getAddedOrModifiedAttributes;
 import static org.openremote.model.attribute.AttributeEvent.HEADER_SOURCE;
 import static org.openremote.model.attribute.AttributeEvent.Source.*;
+import static org.openremote.model.attribute.AttributeWriteFailure.PROTOCOL_WRITE_QUEUE_FULL;
 import static org.openremote.model.value.MetaItemType.AGENT_LINK;
 
 /**
@@ -98,7 +99,7 @@ public class AgentService extends RouteBuilder implements ContainerService, Asse
     protected ScheduledExecutorService executorService;
     protected Map<String, Agent<?, ?, ?>> agentMap;
     protected final Map<String, Future<Void>> agentDiscoveryImportFutureMap = new HashMap<>();
-    protected final Map<String, Protocol<?>> protocolInstanceMap = new HashMap<>();
+    protected final Map<String, Protocol<?>> protocolInstanceMap = new ConcurrentHashMap<>();
     protected final Map<String, List<Consumer<PersistenceEvent<Asset<?>>>>> childAssetSubscriptions = new HashMap<>();
     protected boolean initDone;
     protected Container container;
@@ -536,38 +537,40 @@ public class AgentService extends RouteBuilder implements ContainerService, Asse
             // is not ideal as value is not committed to the DB and could in theory be consumed by another processor
             // but we need to know the source which isn't available from the client event service.
             // TODO: Expose event source to client event subscriptions
-            Agent<?, ?, ?> agent = getAgent(attributeEvent.getAssetId());
+            withLock(getClass().getSimpleName() + "::processAgentUpdate", () -> {
+                Agent<?, ?, ?> agent = getAgent(attributeEvent.getAssetId());
 
-            if (agent != null) {
+                if (agent != null) {
 
-                // Update in memory agent
-                agent.addOrReplaceAttributes(attribute);
+                    // Update in memory agent
+                    agent.addOrReplaceAttributes(attribute);
 
-                if (source == CLIENT && agent.isConfigurationAttribute(attribute.getName())) {
-                    LOG.finer("Agent attribute event occurred from a client for an agent config attribute so updating: agent=" + agent.getId() + ", event=" + attributeEvent);
-                    onAgentUpdated(agent);
+                    if (source == CLIENT && agent.isConfigurationAttribute(attribute.getName())) {
+                        LOG.finer("Agent attribute event occurred from a client for an agent config attribute so updating: agent=" + agent.getId() + ", event=" + attributeEvent);
+                        onAgentUpdated(agent);
+                    }
                 }
-            }
+            });
 
             // Don't consume the event as we want the agent attribute to be updated in the DB
             return false;
         }
 
-        Boolean result = withLockReturning(getClass().getSimpleName() + "::processAssetUpdate", () ->
-            attribute.getMetaValue(AGENT_LINK)
-                .map(agentLink -> {
-                    LOG.finer("Attribute write for agent linked attribute: agent=" + agentLink.getId() + ", asset=" + asset.getId() + ", attribute=" + attribute.getName());
-
-                    messageBrokerService.getProducerTemplate().sendBodyAndHeader(
-                        ACTUATOR_TOPIC,
-                        attributeEvent,
-                        Protocol.ACTUATOR_TOPIC_TARGET_PROTOCOL,
-                        getProtocolInstance(agentLink.getId())
-                    );
-                    return true; // Processing complete, skip other processors
-                }).orElse(false) // This is a regular attribute so allow the processing to continue
-        );
-        return result != null ? result : false;
+        // The protocol instances are held in a concurrent map, agents are (re)deployed while holding the global lock
+        return attribute.getMetaValue(AGENT_LINK)
+            .map(agentLink -> {
+                LOG.finer("Attribute write for agent linked attribute: agent=" + agentLink.getId() + ", asset=" + asset.getId() + ", attribute=" + attribute.getName());
+
+                Protocol<?> protocol = getProtocolInstance(agentLink.getId());
+                if (protocol != null) {
+                    if (!protocol.queueLinkedAttributeWrite(attributeEvent)) {
+                        throw new AssetProcessingException(PROTOCOL_WRITE_QUEUE_FULL, "Write queue of agent protocol is full: agent=" + agentLink.getId());
+                    }
+                } else {
+                    LOG.fine("Agent protocol instance not found, ignoring write: agent=" + agentLink.getId() + ", event=" + attributeEvent);
+                }
+                return true; // Processing complete, skip other processors
+            }).orElse(false); // This is a regular attribute so allow the processing to continue
     }
 
     /**
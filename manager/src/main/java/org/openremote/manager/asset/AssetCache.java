@@ -0,0 +1,136 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.asset;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.openremote.container.persistence.PersistenceEvent;
+import org.openremote.model.asset.Asset;
+import org.openremote.model.attribute.Attribute;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of completely loaded {@link Asset}s, so {@link AssetProcessingService} can validate and process
+ * attribute events without reading the asset from the database.
+ * <p>
+ * The cached instances are never handed out, {@link #get} and {@link #put} work with an {@link Asset#copy}, so
+ * processors can't modify the cached state. Attribute values stored by the {@link AssetProcessingService} are written
+ * through with {@link #putAttribute}. Assets modified through CRUD are invalidated when the transaction has been
+ * committed, other modifications are detected through the {@link PersistenceEvent}s handled in {@link
+ * AssetStorageService#publishModificationEvents}.
+ * <p>
+ * Attribute values of a cached asset must only be written through by the thread processing events of that asset.
+ */
+public class AssetCache {
+
+    protected final long maximumSize;
+    protected final Cache<String, Asset<?>> cache;
+    // Incremented on each invalidation, a loaded asset is not cached if it might have been invalidated while loading
+    protected final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param maximumSize The maximum number of cached assets, the cache is disabled when this is 0.
+     */
+    public AssetCache(long maximumSize) {
+        this.maximumSize = Math.max(0, maximumSize);
+        this.cache = CacheBuilder.newBuilder()
+            .maximumSize(this.maximumSize)
+            .recordStats()
+            .build();
+    }
+
+    public boolean isEnabled() {
+        return maximumSize > 0;
+    }
+
+    /**
+     * @return A copy of the cached asset or <code>null</code> if the asset must be loaded from the database.
+     */
+    public Asset<?> get(String assetId) {
+        Asset<?> asset = isEnabled() ? cache.getIfPresent(assetId) : null;
+        return asset != null ? asset.copy() : null;
+    }
+
+    /**
+     * Call this before loading assets that should be cached and pass the result to {@link #put}.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Caches a copy of an asset loaded from the database, unless any asset was invalidated since the given generation.
+     */
+    public synchronized void put(Asset<?> asset, long loadGeneration) {
+        if (!isEnabled() || asset == null || generation.get() != loadGeneration) {
+            return;
+        }
+        cache.put(asset.getId(), asset.copy());
+    }
+
+    /**
+     * Writes a stored attribute value through to the cached asset, if the asset is cached.
+     */
+    public void putAttribute(String assetId, Attribute<?> attribute) {
+        Asset<?> asset = isEnabled() ? cache.getIfPresent(assetId) : null;
+        if (asset != null) {
+            asset.addOrReplaceAttributes(attribute);
+        }
+    }
+
+    public synchronized void invalidate(String assetId) {
+        generation.incrementAndGet();
+        cache.invalidate(assetId);
+    }
+
+    public synchronized void invalidate(Collection<String> assetIds) {
+        generation.incrementAndGet();
+        cache.invalidateAll(assetIds);
+    }
+
+    public synchronized void clear() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getSize() {
+        return cache.size();
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "maximumSize=" + maximumSize +
+            ", size=" + getSize() +
+            ", stats=" + getStats() +
+            '}';
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.asset;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.cache.CacheStats;
+import org.openremote.container.concurrent.GlobalLock;
+import org.openremote.container.concurrent.LockStatistics;
+import org.openremote.model.Container;
+import org.openremote.model.ContainerService;
+import org.openremote.model.system.HealthStatusProvider;
+import org.openremote.model.value.Values;
+
+public class AssetProcessingHealthStatusProvider implements HealthStatusProvider, ContainerService {
+
+    public static final String NAME = "assetProcessing";
+    public static final String VERSION = "1.0";
+    protected AssetProcessingService assetProcessingService;
+    protected AssetStorageService assetStorageService;
+
+    @Override
+    public int getPriority() {
+        return ContainerService.DEFAULT_PRIORITY;
+    }
+
+    @Override
+    public void init(Container container) throws Exception {
+        assetProcessingService = container.getService(AssetProcessingService.class);
+        assetStorageService = container.getService(AssetStorageService.class);
+    }
+
+    @Override
+    public void start(Container container) throws Exception {
+
+    }
+
+    @Override
+    public void stop(Container container) throws Exception {
+
+    }
+
+    @Override
+    public String getHealthStatusName() {
+        return NAME;
+    }
+
+    @Override
+    public String getHealthStatusVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public Object getHealthStatus() {
+        ObjectNode value = Values.JSON.createObjectNode();
+        value.put("queueSize", assetProcessingService.getAssetQueueSize());
+
+        int[] laneSizes = assetProcessingService.getAssetQueueLaneSizes();
+        long[] laneEventCounts = assetProcessingService.getAssetQueueLaneEventCounts();
+        ArrayNode lanes = value.putArray("lanes");
+        for (int i = 0; i < laneSizes.length; i++) {
+            ObjectNode lane = lanes.addObject();
+            lane.put("queueSize", laneSizes[i]);
+            lane.put("events", laneEventCounts[i]);
+        }
+
+        ObjectNode batches = value.putObject("batches");
+        batches.put("batchSize", assetProcessingService.getAssetQueueBatchSize());
+        batches.put("batches", assetProcessingService.getAssetQueueBatchCount());
+        batches.put("events", assetProcessingService.getAssetQueueBatchEventCount());
+
+        ObjectNode assetLock = toJson(assetProcessingService.assetLock.getStatistics());
+        assetLock.put("stripes", assetProcessingService.assetLock.getStripeCount());
+        assetLock.put("lockedStripes", assetProcessingService.assetLock.getLockedStripeCount());
+        value.set("assetLock", assetLock);
+        value.set("globalLock", toJson(GlobalLock.getStatistics()));
+
+        AssetCache cache = assetStorageService.getAssetCache();
+        CacheStats cacheStats = cache.getStats();
+        ObjectNode assetCache = value.putObject("assetCache");
+        assetCache.put("maximumSize", cache.getMaximumSize());
+        assetCache.put("size", cache.getSize());
+        assetCache.put("hits", cacheStats.hitCount());
+        assetCache.put("misses", cacheStats.missCount());
+        assetCache.put("hitRate", cacheStats.hitRate());
+        assetCache.put("evictions", cacheStats.evictionCount());
+
+        AttributeWriteBehind writeBehind = assetStorageService.getAttributeWriteBehind();
+        if (writeBehind != null) {
+            ObjectNode attributeWriteBehind = value.putObject("attributeWriteBehind");
+            attributeWriteBehind.put("pendingAssets", writeBehind.getPendingAssetCount());
+            attributeWriteBehind.put("offeredValues", writeBehind.getOfferedValues());
+            attributeWriteBehind.put("flushes", writeBehind.getFlushes());
+            attributeWriteBehind.put("flushedAssets", writeBehind.getFlushedAssets());
+            attributeWriteBehind.put("flushedValues", writeBehind.getFlushedValues());
+            attributeWriteBehind.put("failedFlushes", writeBehind.getFailedFlushes());
+        }
+
+        return value;
+    }
+
+    protected static ObjectNode toJson(LockStatistics statistics) {
+        ObjectNode value = Values.JSON.createObjectNode();
+        value.put("acquisitions", statistics.getAcquisitions());
+        value.put("timeouts", statistics.getTimeouts());
+        value.put("averageWaitMillis", statistics.getAverageWaitMillis());
+        value.put("maxWaitMillis", statistics.getMaxWaitMillis());
+        value.put("averageHoldMillis", statistics.getAverageHoldMillis());
+        value.put("maxHoldMillis", statistics.getMaxHoldMillis());
+        return value;
+    }
+}
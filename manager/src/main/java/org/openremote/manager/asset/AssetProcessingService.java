@@ -19,9 +19,15 @@
  */
 package org.openremote.manager.asset;
 
+import org.apache.camel.Endpoint;
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
 import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.seda.SedaEndpoint;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.camel.spi.Synchronization;
+import org.openremote.container.concurrent.GlobalLock;
+import org.openremote.container.concurrent.StripedLock;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.persistence.PersistenceService;
 import org.openremote.container.security.AuthContext;
@@ -42,19 +48,24 @@ import org.openremote.model.asset.agent.Protocol;
 import org.openremote.model.attribute.*;
 import org.openremote.model.attribute.AttributeEvent.Source;
 import org.openremote.model.security.ClientRole;
+import org.openremote.model.util.Pair;
 import org.openremote.model.value.MetaItemType;
 import org.openremote.model.value.ValueType;
 import org.openremote.model.value.Values;
 
 import javax.persistence.EntityManager;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
-import static org.openremote.container.concurrent.GlobalLock.withLock;
+import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.model.attribute.AttributeWriteFailure.*;
 import static org.openremote.manager.event.ClientEventService.CLIENT_EVENT_TOPIC;
 import static org.openremote.model.attribute.AttributeEvent.HEADER_SOURCE;
@@ -80,6 +91,18 @@ import static org.openremote.model.value.MetaItemType.AGENT_LINK;
  * at any point then an {@link AssetProcessingException} will be logged as a warning with an
  * {@link AttributeWriteFailure}.
  * <p>
+ * Events sent to {@link #ASSET_QUEUE} are dispatched to one of {@link #ASSET_QUEUE_LANES} lanes by hashing the asset ID,
+ * each lane has a single consumer, so events of the same asset are always processed in the order they were received
+ * while events of unrelated assets are processed concurrently. Events are processed while holding the
+ * {@link #assetLock} stripe of the event's asset. The {@link GlobalLock} is only obtained when protocols or rulesets are
+ * (re)deployed and attributes are linked or unlinked.
+ * <p>
+ * With {@link #ASSET_QUEUE_BATCH_SIZE} greater than 1, a lane processes up to that many events in one database
+ * transaction, see {@link #processBatchFromAssetQueue(List)}.
+ * <p>
+ * The asset of an event is a copy taken from the {@link AssetCache} if enabled, attribute values are written through
+ * to the cached asset once they have been committed.
+ * <p>
  * Once successfully validated a chain of {@link AssetUpdateProcessor}s is handling the update message:
  * <ul>
  * <li>{@link AgentService}</li>
@@ -93,7 +116,7 @@ import static org.openremote.model.value.MetaItemType.AGENT_LINK;
  * When the update messages' source is {@link Source#SENSOR}, the agent service ignores the message.
  * The message will also be ignored if the updated attribute is not linked to an agent.
  * <p>
- * If the updated attribute has a valid agent link, an {@link AttributeEvent} is sent on the {@link Protocol#ACTUATOR_TOPIC},
+ * If the updated attribute has a valid agent link, the {@link AttributeEvent} is queued with {@link Protocol#queueLinkedAttributeWrite},
  * for execution on an actual device or service 'things'. The update is then considered complete, and no further processing
  * is necessary. The update will not reach the rules engine or the database.
  * <p>
@@ -126,6 +149,22 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
     // TODO: Some of these options should be configurable depending on expected load etc.
     // Message topic for communicating individual asset attribute changes
     public static final String ASSET_QUEUE = "seda://AssetQueue?waitForTaskToComplete=IfReplyExpected&timeout=10000&purgeWhenStopping=true&discardIfNoConsumers=false&size=25000";
+    // Number of partitions (each with one consumer thread) that attribute events are processed in
+    public static final String ASSET_QUEUE_LANES = "ASSET_QUEUE_LANES";
+    public static final int ASSET_QUEUE_LANES_DEFAULT = 1;
+    public static final String ASSET_QUEUE_LANE_PREFIX = "seda://AssetQueueLane";
+    public static final String ASSET_QUEUE_LANE_OPTIONS = "?waitForTaskToComplete=IfReplyExpected&timeout=10000&purgeWhenStopping=true&discardIfNoConsumers=false&size=25000";
+    // Maximum number of events a lane processes in one database transaction, 1 processes each event on its own
+    public static final String ASSET_QUEUE_BATCH_SIZE = "ASSET_QUEUE_BATCH_SIZE";
+    public static final int ASSET_QUEUE_BATCH_SIZE_DEFAULT = 1;
+    // Maximum time a lane waits for more events before it processes an incomplete batch
+    public static final String ASSET_QUEUE_BATCH_MAX_WAIT_MILLIS = "ASSET_QUEUE_BATCH_MAX_WAIT_MILLIS";
+    public static final int ASSET_QUEUE_BATCH_MAX_WAIT_MILLIS_DEFAULT = 20;
+    public static final String HEADER_ASSET_QUEUE_LANE = AssetProcessingService.class.getSimpleName() + ".ASSET_QUEUE_LANE";
+    public static final int ASSET_LOCK_STRIPES = 1024;
+    // Completed with the processing failure (or null) of an event sent by processAttributeEvent
+    public static final String HEADER_ASSET_QUEUE_RESULT = AssetProcessingService.class.getSimpleName() + ".ASSET_QUEUE_RESULT";
+    public static final int ASSET_QUEUE_RESULT_TIMEOUT_MILLIS = 10000;
     private static final Logger LOG = Logger.getLogger(AssetProcessingService.class.getName());
     final protected List<AssetUpdateProcessor> processors = new ArrayList<>();
     protected TimerService timerService;
@@ -139,8 +178,16 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
     protected AttributeLinkingService assetAttributeLinkingService;
     protected MessageBrokerService messageBrokerService;
     protected ClientEventService clientEventService;
+    protected String[] assetQueueLanes;
+    protected LongAdder[] assetQueueLaneEventCounts;
+    protected int assetQueueBatchSize;
+    protected long assetQueueBatchMaxWaitMillis;
+    final protected LongAdder assetQueueBatchCount = new LongAdder();
+    final protected LongAdder assetQueueBatchEventCount = new LongAdder();
+    // Serialises processing of events for the same asset
+    final protected StripedLock assetLock = new StripedLock(getClass().getSimpleName(), ASSET_LOCK_STRIPES);
     // Used in testing to detect if initial/startup processing has completed
-    protected long lastProcessedEventTimestamp = System.currentTimeMillis();
+    protected volatile long lastProcessedEventTimestamp = System.currentTimeMillis();
 
     protected static Processor handleAssetProcessingException(Logger logger) {
         return exchange -> {
@@ -193,6 +240,22 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
         assetAttributeLinkingService = container.getService(AttributeLinkingService.class);
         messageBrokerService = container.getService(MessageBrokerService.class);
         clientEventService = container.getService(ClientEventService.class);
+
+        int laneCount = Math.max(1, getInteger(container.getConfig(), ASSET_QUEUE_LANES, ASSET_QUEUE_LANES_DEFAULT));
+        assetQueueLanes = new String[laneCount];
+        assetQueueLaneEventCounts = new LongAdder[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            assetQueueLanes[i] = ASSET_QUEUE_LANE_PREFIX + i + ASSET_QUEUE_LANE_OPTIONS;
+            assetQueueLaneEventCounts[i] = new LongAdder();
+        }
+        LOG.info("Processing attribute events in lanes: " + laneCount);
+
+        assetQueueBatchSize = Math.max(1, getInteger(container.getConfig(), ASSET_QUEUE_BATCH_SIZE, ASSET_QUEUE_BATCH_SIZE_DEFAULT));
+        assetQueueBatchMaxWaitMillis = Math.max(0, getInteger(container.getConfig(), ASSET_QUEUE_BATCH_MAX_WAIT_MILLIS, ASSET_QUEUE_BATCH_MAX_WAIT_MILLIS_DEFAULT));
+        if (assetQueueBatchSize > 1) {
+            LOG.info("Processing attribute events in batches of up to " + assetQueueBatchSize + " events, waiting max (ms): " + assetQueueBatchMaxWaitMillis);
+        }
+
         EventSubscriptionAuthorizer assetEventAuthorizer = AssetStorageService.assetInfoAuthorizer(identityService, assetStorageService);
 
         clientEventService.addSubscriptionAuthorizer((auth, subscription) -> {
@@ -247,131 +310,469 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
          - See pseudocode here: http://activemq.apache.org/should-i-use-xa.html
          - Do we want JMS/AMQP/WSS or SOME_API/MQTT/WSS? ActiveMQ or Moquette?
         */
+        // Partition by asset so events of the same asset are processed in order by the same lane
         from(ASSET_QUEUE)
-            .routeId("AssetQueueProcessor")
+            .routeId("AssetQueueDispatcher")
             .filter(body().isInstanceOf(AttributeEvent.class))
-            .doTry()
-            // Lock the global context, we can only process attribute events when the
-            // context isn't locked. Agent- and RulesService lock the context while protocols
-            // or rulesets are modified.
-            .process(exchange -> withLock(getClass().getSimpleName() + "::processFromAssetQueue", () -> {
+            .process(exchange -> {
+                AttributeEvent event = exchange.getIn().getBody(AttributeEvent.class);
+                exchange.getIn().setHeader(HEADER_ASSET_QUEUE_LANE, getAssetQueueLane(event.getAssetId()));
+            })
+            .recipientList(header(HEADER_ASSET_QUEUE_LANE));
+
+        for (int i = 0; i < assetQueueLanes.length; i++) {
+            final LongAdder laneEventCount = assetQueueLaneEventCounts[i];
+
+            if (assetQueueBatchSize > 1) {
+                // Exceptions are handled per event of the batch
+                from(assetQueueLanes[i])
+                    .routeId("AssetQueueProcessor" + i)
+                    .process(exchange -> {
+                        List<Exchange> batch = drainAssetQueueLane(exchange);
+                        laneEventCount.add(batch.size());
+                        processBatchFromAssetQueue(batch);
+                    });
+                continue;
+            }
+
+            from(assetQueueLanes[i])
+                .routeId("AssetQueueProcessor" + i)
+                .filter(body().isInstanceOf(AttributeEvent.class))
+                .doTry()
+                // The lane has a single consumer so events of an asset are processed in order, the global
+                // context is locked for processors that are not thread-safe
+                .process(exchange -> {
+                    laneEventCount.increment();
+                    AttributeEvent event = exchange.getIn().getBody(AttributeEvent.class);
+                    LOG.finest("Processing: " + event);
+                    try {
+                        if (event.getAssetId() != null && !event.getAssetId().isEmpty()
+                            && event.getAttributeName() != null && !event.getAttributeName().isEmpty()) {
+                            assetLock.withLock(event.getAssetId(), "processFromAssetQueue", () -> processFromAssetQueue(exchange, event));
+                        }
+                        completeAssetQueueResult(exchange, null);
+                    } catch (Exception ex) {
+                        completeAssetQueueResult(exchange, ex);
+                        throw ex;
+                    }
+                })
+                .endDoTry()
+                .doCatch(AssetProcessingException.class)
+                .process(handleAssetProcessingException(LOG));
+        }
+    }
+
+    protected void processFromAssetQueue(Exchange exchange, AttributeEvent event) {
+        Source source = getSource(exchange);
+
+        // Process the asset update in a database transaction, this ensures that processors
+        // will see consistent database state and we only commit if no processor failed. This
+        // still won't make this procedure consistent with the message queue from which we consume!
+        Pair<Asset<?>, Attribute<?>> storedAttribute = persistenceService.doReturningTransaction(em -> {
+            Asset<?> asset = assetStorageService.findCached(em, event.getAssetId());
+            Attribute<?> updatedAttribute = prepareAttributeUpdate(exchange, event, source, asset);
+
+            if (updatedAttribute == null) {
+                return null;
+            }
+
+            // Push through all processors
+            boolean consumedCompletely = processAssetUpdate(em, asset, updatedAttribute, source);
+            return consumedCompletely ? null : new Pair<>(asset, updatedAttribute);
+        });
+
+        // Publish a new event for clients if no processor consumed the update completely
+        if (storedAttribute != null) {
+            assetStorageService.getAssetCache().putAttribute(storedAttribute.key.getId(), storedAttribute.value);
+            publishClientEvent(storedAttribute.key, storedAttribute.value);
+        }
+    }
+
+    /**
+     * Takes further events from the lane queue of the given exchange, until {@link #ASSET_QUEUE_BATCH_SIZE} events
+     * have been collected or {@link #ASSET_QUEUE_BATCH_MAX_WAIT_MILLIS} have passed.
+     */
+    protected List<Exchange> drainAssetQueueLane(Exchange exchange) {
+        List<Exchange> batch = new ArrayList<>(assetQueueBatchSize);
+        batch.add(exchange);
 
+        if (!(exchange.getFromEndpoint() instanceof SedaEndpoint)) {
+            return batch;
+        }
+
+        BlockingQueue<Exchange> queue = ((SedaEndpoint) exchange.getFromEndpoint()).getQueue();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(assetQueueBatchMaxWaitMillis);
+        try {
+            while (batch.size() < assetQueueBatchSize) {
+                Exchange next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return batch;
+    }
+
+    /**
+     * Processes a batch of events in a single database transaction: the affected assets are loaded with one query,
+     * each event is pushed through the processors in order while holding its asset's lock, and the attribute values
+     * that have not been consumed by a processor are stored with one JDBC batch. When several events of the batch
+     * update the same attribute, only the last value is stored. An event that fails validation is handled on its own,
+     * client events are published after commit.
+     * <p>
+     * When a processor fails, the batch transaction is rolled back as the processor might have aborted it: the values
+     * of the events processed before are stored in a new transaction, without processing them again, and the rest of
+     * the batch is processed one event at a time, see {@link #recoverBatchFromAssetQueue}.
+     * <p>
+     * The first exchange is completed by the route, all other exchanges were taken directly from the lane queue and
+     * are completed here.
+     */
+    protected void processBatchFromAssetQueue(List<Exchange> exchanges) {
+        assetQueueBatchCount.increment();
+        assetQueueBatchEventCount.add(exchanges.size());
+
+        List<BatchedAttributeEvent> events = new ArrayList<>(exchanges.size());
+        Set<String> assetIds = new LinkedHashSet<>();
+
+        try {
+            for (Exchange exchange : exchanges) {
+                if (!(exchange.getIn().getBody() instanceof AttributeEvent)) {
+                    continue;
+                }
                 AttributeEvent event = exchange.getIn().getBody(AttributeEvent.class);
                 LOG.finest("Processing: " + event);
                 if (event.getAssetId() == null || event.getAssetId().isEmpty())
-                    return;
+                    continue;
                 if (event.getAttributeName() == null || event.getAttributeName().isEmpty())
-                    return;
-                Source source = exchange.getIn().getHeader(HEADER_SOURCE, () -> null, Source.class);
-                if (source == null) {
-                    throw new AssetProcessingException(MISSING_SOURCE);
+                    continue;
+
+                BatchedAttributeEvent batchedEvent = new BatchedAttributeEvent(exchange, event);
+                events.add(batchedEvent);
+                try {
+                    batchedEvent.source = getSource(exchange);
+                    assetIds.add(event.getAssetId());
+                } catch (AssetProcessingException ex) {
+                    batchedEvent.failure = ex;
                 }
+            }
 
-                // Process the asset update in a database transaction, this ensures that processors
-                // will see consistent database state and we only commit if no processor failed. This
-                // still won't make this procedure consistent with the message queue from which we consume!
-                persistenceService.doTransaction(em -> {
-                    Asset<?> asset = assetStorageService.find(em, event.getAssetId(), true);
+            if (!assetIds.isEmpty()) {
+                try {
+                    persistenceService.doTransaction(em -> processBatchFromAssetQueue(em, events, assetIds));
+                } catch (Exception ex) {
+                    LOG.log(Level.FINE, "Batch transaction failed, recovering events of the batch", ex);
+                    recoverBatchFromAssetQueue(events);
+                }
+            }
 
-                    if (asset == null) {
-                        if (source == SENSOR) {
-                            // Fail silently as a protocol may have queued updates before the asset was deleted
-                            return;
-                        }
+            for (BatchedAttributeEvent batchedEvent : events) {
+                if (batchedEvent.failure != null) {
+                    handleBatchedEventFailure(batchedEvent);
+                } else if (batchedEvent.attribute != null && !batchedEvent.consumed) {
+                    assetStorageService.getAssetCache().putAttribute(batchedEvent.asset.getId(), batchedEvent.attribute);
+                    publishClientEvent(batchedEvent.asset, batchedEvent.attribute);
+                }
+                completeAssetQueueResult(batchedEvent.exchange, batchedEvent.failure);
+            }
+        } catch (RuntimeException ex) {
+            exchanges.forEach(exchange -> completeAssetQueueResult(exchange, ex));
+            throw ex;
+        } finally {
+            exchanges.forEach(exchange -> completeAssetQueueResult(exchange, null));
+            for (int i = 1; i < exchanges.size(); i++) {
+                completeDrainedExchange(exchanges.get(i));
+            }
+        }
+    }
 
-                        throw new AssetProcessingException(ASSET_NOT_FOUND);
+    protected void processBatchFromAssetQueue(EntityManager em, List<BatchedAttributeEvent> events, Set<String> assetIds) {
+        Map<String, Asset<?>> assets = assetStorageService.findAllCached(em, assetIds);
+
+        for (BatchedAttributeEvent batchedEvent : events) {
+            if (batchedEvent.failure != null) {
+                continue;
+            }
+            Asset<?> asset = assets.get(batchedEvent.event.getAssetId());
+            assetLock.withLock(batchedEvent.event.getAssetId(), "processBatchFromAssetQueue", () ->
+                processBatchedEvent(em, batchedEvent, asset)
+            );
+        }
+
+        storeBatchedAttributeValues(em, events);
+    }
+
+    protected void processBatchedEvent(EntityManager em, BatchedAttributeEvent batchedEvent, Asset<?> asset) {
+        Attribute<?> updatedAttribute;
+        try {
+            updatedAttribute = prepareAttributeUpdate(batchedEvent.exchange, batchedEvent.event, batchedEvent.source, asset);
+        } catch (AssetProcessingException ex) {
+            batchedEvent.failure = ex;
+            return;
+        }
+
+        if (updatedAttribute != null) {
+            batchedEvent.asset = asset;
+            batchedEvent.attribute = updatedAttribute;
+            try {
+                batchedEvent.consumed = applyProcessors(em, asset, updatedAttribute, batchedEvent.source);
+            } catch (RuntimeException ex) {
+                // Roll back the batch transaction, it can't be used after the processor failed
+                batchedEvent.failure = ex;
+                batchedEvent.attribute = null;
+                throw ex;
+            }
+
+            if (!batchedEvent.consumed) {
+                // Later events of the batch must see this state of the attribute
+                asset.addOrReplaceAttributes(updatedAttribute);
+            }
+        }
+        batchedEvent.processed = true;
+    }
+
+    /**
+     * Stores the attribute values of the processed events that have not been consumed by a processor with one JDBC
+     * batch, when several events update the same attribute only the last value is stored.
+     */
+    protected void storeBatchedAttributeValues(EntityManager em, List<BatchedAttributeEvent> events) {
+        Map<AttributeRef, Pair<Asset<?>, Attribute<?>>> attributeUpdates = new LinkedHashMap<>();
+        for (BatchedAttributeEvent batchedEvent : events) {
+            if (batchedEvent.processed && batchedEvent.failure == null && batchedEvent.attribute != null && !batchedEvent.consumed) {
+                attributeUpdates.put(
+                    new AttributeRef(batchedEvent.asset.getId(), batchedEvent.attribute.getName()),
+                    new Pair<>(batchedEvent.asset, batchedEvent.attribute)
+                );
+            }
+        }
+
+        List<AttributeRef> attributeRefs = new ArrayList<>(attributeUpdates.keySet());
+        boolean[] stored = assetStorageService.updateAttributeValues(em, new ArrayList<>(attributeUpdates.values()));
+        Set<AttributeRef> failedAttributeRefs = new HashSet<>();
+        for (int i = 0; i < stored.length; i++) {
+            if (!stored[i]) {
+                failedAttributeRefs.add(attributeRefs.get(i));
+            }
+        }
+
+        if (!failedAttributeRefs.isEmpty()) {
+            assetStorageService.getAssetCache().invalidate(
+                failedAttributeRefs.stream().map(AttributeRef::getId).collect(Collectors.toSet())
+            );
+            events.stream()
+                .filter(batchedEvent -> batchedEvent.failure == null && batchedEvent.attribute != null && !batchedEvent.consumed)
+                .filter(batchedEvent -> failedAttributeRefs.contains(new AttributeRef(batchedEvent.asset.getId(), batchedEvent.attribute.getName())))
+                .forEach(batchedEvent -> {
+                    batchedEvent.failure = new AssetProcessingException(STATE_STORAGE_FAILED, "database update failed, no rows updated");
+                    batchedEvent.attribute = null;
+                });
+        }
+    }
+
+    /**
+     * Called after the batch transaction has been rolled back: the values of the events that have been processed are
+     * stored again in a new transaction, the side effects of their processors are not repeated. The events that have
+     * not been processed yet are processed one at a time, each in its own transaction.
+     */
+    protected void recoverBatchFromAssetQueue(List<BatchedAttributeEvent> events) {
+        List<BatchedAttributeEvent> processedEvents = events.stream()
+            .filter(batchedEvent -> batchedEvent.processed && batchedEvent.failure == null)
+            .collect(Collectors.toList());
+
+        if (!processedEvents.isEmpty()) {
+            try {
+                persistenceService.doTransaction(em -> storeBatchedAttributeValues(em, processedEvents));
+            } catch (Exception ex) {
+                processedEvents.forEach(batchedEvent -> {
+                    batchedEvent.failure = ex;
+                    batchedEvent.attribute = null;
+                });
+            }
+        }
+
+        for (BatchedAttributeEvent batchedEvent : events) {
+            if (batchedEvent.processed || batchedEvent.failure != null) {
+                continue;
+            }
+            try {
+                persistenceService.doTransaction(em -> assetLock.withLock(batchedEvent.event.getAssetId(), "recoverBatchFromAssetQueue", () -> {
+                    Asset<?> asset = assetStorageService.findCached(em, batchedEvent.event.getAssetId());
+                    Attribute<?> updatedAttribute = prepareAttributeUpdate(batchedEvent.exchange, batchedEvent.event, batchedEvent.source, asset);
+                    if (updatedAttribute != null) {
+                        batchedEvent.asset = asset;
+                        batchedEvent.attribute = updatedAttribute;
+                        batchedEvent.consumed = processAssetUpdate(em, asset, updatedAttribute, batchedEvent.source);
                     }
+                }));
+                batchedEvent.processed = true;
+            } catch (Exception ex) {
+                batchedEvent.failure = ex;
+                batchedEvent.attribute = null;
+            }
+        }
+    }
 
-                    Attribute<?> oldAttribute = asset.getAttribute(event.getAttributeName()).orElse(null);
-                    if (oldAttribute == null) {
-                        if (source == SENSOR) {
-                            // Fail silently as a protocol may have queued updates before the attribute was modified/deleted
-                            return;
-                        }
+    protected void handleBatchedEventFailure(BatchedAttributeEvent batchedEvent) {
+        batchedEvent.exchange.setProperty(Exchange.EXCEPTION_CAUGHT, batchedEvent.failure);
+        try {
+            handleAssetProcessingException(LOG).process(batchedEvent.exchange);
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, "Error handling failed attribute event: " + batchedEvent.event, ex);
+        }
+    }
 
-                        throw new AssetProcessingException(ATTRIBUTE_NOT_FOUND);
+    /**
+     * Completes an exchange that was taken from the queue without going through the route, this replies to an InOut
+     * producer waiting for the result.
+     */
+    protected void completeDrainedExchange(Exchange exchange) {
+        List<Synchronization> synchronizations = exchange.handoverCompletions();
+        if (synchronizations == null) {
+            return;
+        }
+        for (Synchronization synchronization : synchronizations) {
+            try {
+                if (exchange.isFailed()) {
+                    synchronization.onFailure(exchange);
+                } else {
+                    synchronization.onComplete(exchange);
+                }
+            } catch (Exception ex) {
+                LOG.log(Level.WARNING, "Error completing exchange: " + exchange, ex);
+            }
+        }
+    }
+
+    /**
+     * Notifies the caller of {@link #processAttributeEvent} waiting for the result of the exchange's event, only the
+     * first result of an exchange is used.
+     */
+    @SuppressWarnings("unchecked")
+    protected static void completeAssetQueueResult(Exchange exchange, Exception failure) {
+        CompletableFuture<Exception> result = exchange.getIn().getHeader(HEADER_ASSET_QUEUE_RESULT, CompletableFuture.class);
+        if (result != null) {
+            result.complete(failure);
+        }
+    }
+
+    protected static Source getSource(Exchange exchange) throws AssetProcessingException {
+        Source source = exchange.getIn().getHeader(HEADER_SOURCE, () -> null, Source.class);
+        if (source == null) {
+            throw new AssetProcessingException(MISSING_SOURCE);
+        }
+        return source;
+    }
+
+    /**
+     * Validates the event against the current state of the asset and creates a copy of the attribute with the new
+     * value and timestamp.
+     *
+     * @return The updated attribute or <code>null</code> if the event should be ignored silently.
+     * @throws AssetProcessingException When the event is not valid for the asset.
+     */
+    @SuppressWarnings("rawtypes")
+    protected Attribute<?> prepareAttributeUpdate(Exchange exchange, AttributeEvent event, Source source, Asset<?> asset) throws AssetProcessingException {
+        if (asset == null) {
+            if (source == SENSOR) {
+                // Fail silently as a protocol may have queued updates before the asset was deleted
+                return null;
+            }
+
+            throw new AssetProcessingException(ASSET_NOT_FOUND);
+        }
+
+        Attribute<?> oldAttribute = asset.getAttribute(event.getAttributeName()).orElse(null);
+        if (oldAttribute == null) {
+            if (source == SENSOR) {
+                // Fail silently as a protocol may have queued updates before the attribute was modified/deleted
+                return null;
+            }
+
+            throw new AssetProcessingException(ATTRIBUTE_NOT_FOUND);
+        }
+
+        switch (source) {
+            case CLIENT:
+
+                AuthContext authContext = exchange.getIn().getHeader(Constants.AUTH_CONTEXT, AuthContext.class);
+                if (authContext == null) {
+                    // Check attribute has public write flag
+                    if (!oldAttribute.hasMeta(MetaItemType.ACCESS_PUBLIC_WRITE)) {
+                        throw new AssetProcessingException(INSUFFICIENT_ACCESS);
+                    }
+                    // Check read-only
+                    if (oldAttribute.hasMeta(MetaItemType.READ_ONLY)) {
+                        throw new AssetProcessingException(INSUFFICIENT_ACCESS);
+                    }
+                } else {
+                    // Check realm, must be accessible
+                    if (!identityService.getIdentityProvider().isTenantActiveAndAccessible(authContext,
+                        asset.getRealm())) {
+                        throw new AssetProcessingException(INSUFFICIENT_ACCESS);
                     }
 
-                    switch (source) {
-                        case CLIENT:
-
-                            AuthContext authContext = exchange.getIn().getHeader(Constants.AUTH_CONTEXT, AuthContext.class);
-                            if (authContext == null) {
-                                // Check attribute has public write flag
-                                if (!oldAttribute.hasMeta(MetaItemType.ACCESS_PUBLIC_WRITE)) {
-                                    throw new AssetProcessingException(INSUFFICIENT_ACCESS);
-                                }
-                                // Check read-only
-                                if (oldAttribute.hasMeta(MetaItemType.READ_ONLY)) {
-                                    throw new AssetProcessingException(INSUFFICIENT_ACCESS);
-                                }
-                            } else {
-                                // Check realm, must be accessible
-                                if (!identityService.getIdentityProvider().isTenantActiveAndAccessible(authContext,
-                                    asset.getRealm())) {
-                                    throw new AssetProcessingException(INSUFFICIENT_ACCESS);
-                                }
-
-                                // Check read-only
-                                if (oldAttribute.hasMeta(MetaItemType.READ_ONLY) && !authContext.isSuperUser()) {
-                                    throw new AssetProcessingException(INSUFFICIENT_ACCESS);
-                                }
-
-                                // Regular user must have write attributes role
-                                if (!authContext.hasResourceRoleOrIsSuperUser(ClientRole.WRITE_ATTRIBUTES.getValue(),
-                                    authContext.getClientId())) {
-                                    throw new AssetProcessingException(INSUFFICIENT_ACCESS);
-                                }
-
-                                // Check restricted user
-                                if (identityService.getIdentityProvider().isRestrictedUser(authContext.getUserId())) {
-                                    // Must be asset linked to user
-                                    if (!assetStorageService.isUserAsset(authContext.getUserId(),
-                                        event.getAssetId())) {
-                                        throw new AssetProcessingException(INSUFFICIENT_ACCESS);
-                                    }
-                                    // Must be writable by restricted client
-                                    if (!oldAttribute.getMetaValue(MetaItemType.ACCESS_RESTRICTED_WRITE).orElse(false)) {
-                                        throw new AssetProcessingException(INSUFFICIENT_ACCESS);
-                                    }
-                                }
-                            }
-                            break;
-
-                        case SENSOR:
-                            Optional<Protocol<?>> protocol = oldAttribute.getMetaValue(AGENT_LINK)
-                                .map(agentLink -> agentService.getProtocolInstance(agentLink.getId()));
-
-                            // Sensor event must be for an attribute linked to an agent
-                            if (!protocol.isPresent()) {
-                                throw new AssetProcessingException(INVALID_AGENT_LINK);
-                            }
-                            break;
+                    // Check read-only
+                    if (oldAttribute.hasMeta(MetaItemType.READ_ONLY) && !authContext.isSuperUser()) {
+                        throw new AssetProcessingException(INSUFFICIENT_ACCESS);
                     }
 
-                    // For executable attributes, non-sensor sources can set a writable attribute execute status
-                    if (oldAttribute.getType() == ValueType.EXECUTION_STATUS && source != SENSOR) {
-                        Optional<AttributeExecuteStatus> status = event.getValue()
-                            .flatMap(Values::getString)
-                            .flatMap(AttributeExecuteStatus::fromString);
+                    // Regular user must have write attributes role
+                    if (!authContext.hasResourceRoleOrIsSuperUser(ClientRole.WRITE_ATTRIBUTES.getValue(),
+                        authContext.getClientId())) {
+                        throw new AssetProcessingException(INSUFFICIENT_ACCESS);
+                    }
 
-                        if (status.isPresent() && !status.get().isWrite()) {
-                            throw new AssetProcessingException(INVALID_ATTRIBUTE_EXECUTE_STATUS);
+                    // Check restricted user
+                    if (identityService.getIdentityProvider().isRestrictedUser(authContext.getUserId())) {
+                        // Must be asset linked to user
+                        if (!assetStorageService.isUserAsset(authContext.getUserId(),
+                            event.getAssetId())) {
+                            throw new AssetProcessingException(INSUFFICIENT_ACCESS);
+                        }
+                        // Must be writable by restricted client
+                        if (!oldAttribute.getMetaValue(MetaItemType.ACCESS_RESTRICTED_WRITE).orElse(false)) {
+                            throw new AssetProcessingException(INSUFFICIENT_ACCESS);
                         }
                     }
+                }
+                break;
+
+            case SENSOR:
+                Optional<Protocol<?>> protocol = oldAttribute.getMetaValue(AGENT_LINK)
+                    .map(agentLink -> agentService.getProtocolInstance(agentLink.getId()));
 
-                    // Type coercion
-                    Object value = event.getValue().map(eventValue -> {
-                        Class<?> attributeValueType = oldAttribute.getType().getType();
-                        return Values.getValueCoerced(eventValue, attributeValueType).orElseThrow(() -> {
-                            LOG.info("Failed to coerce attribute event value into the correct value type: event value type=" + eventValue.getClass() + ", attribute value type=" + attributeValueType);
-                            return new AssetProcessingException(INVALID_VALUE_FOR_WELL_KNOWN_ATTRIBUTE);
-                        });
+                // Sensor event must be for an attribute linked to an agent
+                if (!protocol.isPresent()) {
+                    throw new AssetProcessingException(INVALID_AGENT_LINK);
+                }
+                break;
+        }
 
-                    }).orElse(null);
+        // For executable attributes, non-sensor sources can set a writable attribute execute status
+        if (oldAttribute.getType() == ValueType.EXECUTION_STATUS && source != SENSOR) {
+            Optional<AttributeExecuteStatus> status = event.getValue()
+                .flatMap(Values::getString)
+                .flatMap(AttributeExecuteStatus::fromString);
 
-                    // TODO: Use schema validation
-                    // Check if attribute is well known and the value is valid
+            if (status.isPresent() && !status.get().isWrite()) {
+                throw new AssetProcessingException(INVALID_ATTRIBUTE_EXECUTE_STATUS);
+            }
+        }
+
+        // Type coercion
+        Object value = event.getValue().map(eventValue -> {
+            Class<?> attributeValueType = oldAttribute.getType().getType();
+            return Values.getValueCoerced(eventValue, attributeValueType).orElseThrow(() -> {
+                LOG.info("Failed to coerce attribute event value into the correct value type: event value type=" + eventValue.getClass() + ", attribute value type=" + attributeValueType);
+                return new AssetProcessingException(INVALID_VALUE_FOR_WELL_KNOWN_ATTRIBUTE);
+            });
+
+        }).orElse(null);
+
+        // TODO: Use schema validation
+        // Check if attribute is well known and the value is valid
 //                    AssetModelUtil.getAssetDescriptor(asset.getType()).map(assetDescriptor -> assetDescriptor.get)
 //                    AssetModelUtil.getAttributeDescriptor(oldAttribute.name).ifPresent(wellKnownAttribute -> {
 //                        // Check if the value is valid
@@ -384,50 +785,83 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
 //                            });
 //                    });
 
-                    // Either use the timestamp of the event or set event time to processing time
-                    long processingTime = timerService.getCurrentTimeMillis();
-                    long eventTime = event.getTimestamp() > 0 ? event.getTimestamp() : processingTime;
-
-                    // Ensure timestamp of event is not in the future as that would essentially block access to
-                    // the attribute until after that time (maybe that is desirable behaviour)
-                    if (eventTime - processingTime > 0) {
-                        // TODO: Decide how to handle update events in the future - ignore or change timestamp
-                        throw new AssetProcessingException(
-                            EVENT_IN_FUTURE,
-                            "current time: " + new Date(processingTime) + "/" + processingTime
-                                + ", event time: " + new Date(eventTime) + "/" + eventTime
-                        );
-                    }
+        // Either use the timestamp of the event or set event time to processing time
+        long processingTime = timerService.getCurrentTimeMillis();
+        long eventTime = event.getTimestamp() > 0 ? event.getTimestamp() : processingTime;
 
-                    // Check the last update timestamp of the attribute, ignoring any event that is older than last update
-                    // TODO This means we drop out-of-sequence events but accept events with the same source timestamp
-                    // TODO Several attribute events can occur in the same millisecond, then order of application is undefined
-                    oldAttribute.getTimestamp().filter(t -> t >= 0 && eventTime < t).ifPresent(
-                        lastStateTime -> {
-                            throw new AssetProcessingException(
-                                EVENT_OUTDATED,
-                                "last asset state time: " + new Date(lastStateTime) + "/" + lastStateTime
-                                    + ", event time: " + new Date(eventTime) + "/" + eventTime);
-                        }
-                    );
+        // Ensure timestamp of event is not in the future as that would essentially block access to
+        // the attribute until after that time (maybe that is desirable behaviour)
+        if (eventTime - processingTime > 0) {
+            // TODO: Decide how to handle update events in the future - ignore or change timestamp
+            throw new AssetProcessingException(
+                EVENT_IN_FUTURE,
+                "current time: " + new Date(processingTime) + "/" + processingTime
+                    + ", event time: " + new Date(eventTime) + "/" + eventTime
+            );
+        }
+
+        // Check the last update timestamp of the attribute, ignoring any event that is older than last update
+        // TODO This means we drop out-of-sequence events but accept events with the same source timestamp
+        // TODO Several attribute events can occur in the same millisecond, then order of application is undefined
+        oldAttribute.getTimestamp().filter(t -> t >= 0 && eventTime < t).ifPresent(
+            lastStateTime -> {
+                throw new AssetProcessingException(
+                    EVENT_OUTDATED,
+                    "last asset state time: " + new Date(lastStateTime) + "/" + lastStateTime
+                        + ", event time: " + new Date(eventTime) + "/" + eventTime);
+            }
+        );
 
-                    // Create a copy of the attribute and set the new value and timestamp
-                    @SuppressWarnings("rawtypes")
-                    Attribute updatedAttribute = Values.clone(oldAttribute);
-                    updatedAttribute.setValue(value, eventTime);
+        // Create a copy of the attribute and set the new value and timestamp, the meta is shared until modified
+        Attribute updatedAttribute = oldAttribute.copy();
+        updatedAttribute.setValue(value, eventTime);
+        return updatedAttribute;
+    }
 
-                    // Push through all processors
-                    boolean consumedCompletely = processAssetUpdate(em, asset, updatedAttribute, source);
+    /**
+     * @return The queue endpoint URI of the lane that processes events of the given asset.
+     */
+    public String getAssetQueueLane(String assetId) {
+        if (assetQueueLanes.length == 1 || assetId == null) {
+            return assetQueueLanes[0];
+        }
+        int hash = assetId.hashCode();
+        hash ^= (hash >>> 16);
+        return assetQueueLanes[(hash & Integer.MAX_VALUE) % assetQueueLanes.length];
+    }
 
-                    // Publish a new event for clients if no processor consumed the update completely
-                    if (!consumedCompletely) {
-                        publishClientEvent(asset, updatedAttribute);
-                    }
-                });
-            }))
-            .endDoTry()
-            .doCatch(AssetProcessingException.class)
-            .process(handleAssetProcessingException(LOG));
+    /**
+     * @return Number of events waiting in {@link #ASSET_QUEUE} to be dispatched to a lane.
+     */
+    public int getAssetQueueSize() {
+        return getQueueSize(ASSET_QUEUE);
+    }
+
+    /**
+     * @return Number of events waiting in each lane to be processed.
+     */
+    public int[] getAssetQueueLaneSizes() {
+        int[] sizes = new int[assetQueueLanes.length];
+        for (int i = 0; i < assetQueueLanes.length; i++) {
+            sizes[i] = getQueueSize(assetQueueLanes[i]);
+        }
+        return sizes;
+    }
+
+    /**
+     * @return Number of events received by each lane since startup.
+     */
+    public long[] getAssetQueueLaneEventCounts() {
+        long[] counts = new long[assetQueueLaneEventCounts.length];
+        for (int i = 0; i < assetQueueLaneEventCounts.length; i++) {
+            counts[i] = assetQueueLaneEventCounts[i].sum();
+        }
+        return counts;
+    }
+
+    protected int getQueueSize(String endpointUri) {
+        Endpoint endpoint = messageBrokerService.getContext().hasEndpoint(endpointUri);
+        return endpoint instanceof SedaEndpoint ? ((SedaEndpoint) endpoint).getCurrentQueueSize() : 0;
     }
 
     /**
@@ -437,6 +871,55 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
         sendAttributeEvent(attributeEvent, INTERNAL);
     }
 
+    /**
+     * Sends an {@link AttributeEvent} to the {@link #ASSET_QUEUE} and waits until it has been processed. The event is
+     * dispatched like any other event, so it is processed after all events of the same asset that were queued before,
+     * without blocking the dispatching of other events while waiting.
+     *
+     * @return The exception that failed processing of the event, or <code>null</code> if it has been processed.
+     * @throws IllegalStateException If the event hasn't been processed within {@link #ASSET_QUEUE_RESULT_TIMEOUT_MILLIS}.
+     */
+    public Exception processAttributeEvent(AttributeEvent attributeEvent, Map<String, Object> headers) {
+        CompletableFuture<Exception> result = new CompletableFuture<>();
+        Map<String, Object> eventHeaders = new HashMap<>(headers);
+        eventHeaders.put(HEADER_ASSET_QUEUE_RESULT, result);
+        messageBrokerService.getProducerTemplate().sendBodyAndHeaders(ASSET_QUEUE, attributeEvent, eventHeaders);
+
+        try {
+            return result.get(ASSET_QUEUE_RESULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for attribute event to be processed: " + attributeEvent, ex);
+        } catch (ExecutionException | TimeoutException ex) {
+            throw new IllegalStateException("Attribute event has not been processed in time: " + attributeEvent, ex);
+        }
+    }
+
+    /**
+     * Sends an {@link AttributeEvent} received from a client straight to the {@link #ASSET_QUEUE}, skipping the client
+     * event queue and topic. The event is passed to the client event interceptors first, like events on the client
+     * event queue. The headers must contain the {@link Constants#AUTH_CONTEXT} of the client as the event is authorized
+     * when it is processed, the {@link AttributeEvent#HEADER_SOURCE} header is set to {@link Source#CLIENT}.
+     *
+     * @return <code>false</code> if an interceptor consumed the event.
+     */
+    public boolean sendClientAttributeEvent(AttributeEvent attributeEvent, Map<String, Object> headers) {
+        if (attributeEvent.getTimestamp() <= 0) {
+            attributeEvent.setTimestamp(timerService.getCurrentTimeMillis());
+        }
+        Exchange exchange = new DefaultExchange(messageBrokerService.getContext());
+        exchange.getIn().setBody(attributeEvent);
+        exchange.getIn().setHeaders(new HashMap<>(headers));
+
+        if (!clientEventService.interceptInboundEvent(exchange)) {
+            return false;
+        }
+
+        exchange.getIn().setHeader(HEADER_SOURCE, CLIENT);
+        messageBrokerService.getProducerTemplate().send(ASSET_QUEUE, exchange);
+        return true;
+    }
+
     public void sendAttributeEvent(AttributeEvent attributeEvent, Source source) {
         // Set event source time if not already set
         if (attributeEvent.getTimestamp() <= 0) {
@@ -456,6 +939,26 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
                                          Attribute<?> attribute,
                                          Source source) throws AssetProcessingException {
 
+        boolean complete = applyProcessors(em, asset, attribute, source);
+
+        if (!complete) {
+            LOG.fine("No processor consumed the update completely, storing: Asset ID=" + asset.getId() + ", " + attribute);
+            storeAttributeValue(em, asset, attribute);
+        }
+
+        return complete;
+    }
+
+    /**
+     * Pushes the update through the chain of {@link AssetUpdateProcessor}s, without storing the attribute value.
+     *
+     * @return <code>true</code> if a processor completely consumed the update.
+     */
+    protected boolean applyProcessors(EntityManager em,
+                                      Asset<?> asset,
+                                      Attribute<?> attribute,
+                                      Source source) throws AssetProcessingException {
+
         String attributeStr = "Asset ID=" + asset.getId() + ", Asset name=" + asset.getName() + ", " + attribute;
 
         LOG.fine(">>> Processing start: " + attributeStr);
@@ -486,11 +989,6 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
             }
         }
 
-        if (!complete) {
-            LOG.fine("No processor consumed the update completely, storing: " + attributeStr);
-            storeAttributeValue(em, asset, attribute);
-        }
-
         LOG.fine("<<< Processing complete: " + attributeStr);
         return complete;
     }
@@ -517,6 +1015,44 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
         );
     }
 
+    /**
+     * @return Number of batches processed since startup, see {@link #ASSET_QUEUE_BATCH_SIZE}.
+     */
+    public long getAssetQueueBatchCount() {
+        return assetQueueBatchCount.sum();
+    }
+
+    /**
+     * @return Number of events processed in batches since startup.
+     */
+    public long getAssetQueueBatchEventCount() {
+        return assetQueueBatchEventCount.sum();
+    }
+
+    public int getAssetQueueBatchSize() {
+        return assetQueueBatchSize;
+    }
+
+    /**
+     * The processing state of an event in a batch.
+     */
+    protected static class BatchedAttributeEvent {
+        final protected Exchange exchange;
+        final protected AttributeEvent event;
+        protected Source source;
+        protected Asset<?> asset;
+        protected Attribute<?> attribute;
+        protected boolean consumed;
+        // Pushed through the processors, in the batch transaction or on its own
+        protected boolean processed;
+        protected Exception failure;
+
+        protected BatchedAttributeEvent(Exchange exchange, AttributeEvent event) {
+            this.exchange = exchange;
+            this.event = event;
+        }
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "{" +
@@ -57,14 +57,17 @@ public class AssetResourceImpl extends ManagerWebResource implements AssetResour
 
     protected final static Asset<?>[] EMPTY_ASSETS = new Asset<?>[0];
     protected final AssetStorageService assetStorageService;
+    protected final AssetProcessingService assetProcessingService;
     protected final MessageBrokerService messageBrokerService;
 
     public AssetResourceImpl(TimerService timerService,
                              ManagerIdentityService identityService,
                              AssetStorageService assetStorageService,
+                             AssetProcessingService assetProcessingService,
                              MessageBrokerService messageBrokerService) {
         super(timerService, identityService);
         this.assetStorageService = assetStorageService;
+        this.assetProcessingService = assetProcessingService;
         this.messageBrokerService = messageBrokerService;
     }
 
@@ -603,10 +606,8 @@ public class AssetResourceImpl extends ManagerWebResource implements AssetResour
 
             LOG.info("Write attribute value request: " + event);
 
-            // Process synchronously
-            Object result = messageBrokerService.getProducerTemplate().requestBodyAndHeaders(
-                AssetProcessingService.ASSET_QUEUE, event, headers
-            );
+            // Process synchronously, after any queued events of the asset
+            Exception result = assetProcessingService.processAttributeEvent(event, headers);
 
             if (result instanceof AssetProcessingException) {
                 AssetProcessingException processingException = (AssetProcessingException) result;
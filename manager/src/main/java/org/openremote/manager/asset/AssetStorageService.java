@@ -19,6 +19,7 @@
  */
 package org.openremote.manager.asset;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.vladmihalcea.hibernate.type.array.StringArrayType;
 import org.apache.camel.builder.RouteBuilder;
 import org.hibernate.Session;
@@ -28,6 +29,7 @@ import org.openremote.container.persistence.PersistenceEvent;
 import org.openremote.container.persistence.PersistenceService;
 import org.openremote.container.security.AuthContext;
 import org.openremote.container.timer.TimerService;
+import org.openremote.container.util.UniqueIdentifierGenerator;
 import org.openremote.manager.asset.console.ConsoleResourceImpl;
 import org.openremote.manager.event.ClientEventService;
 import org.openremote.manager.event.EventSubscriptionAuthorizer;
@@ -62,12 +64,16 @@ import org.postgresql.util.PGobject;
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.TypedQuery;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import java.lang.reflect.Field;
 import java.sql.*;
 import java.util.Date;
 import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
@@ -82,6 +88,7 @@ import static java.util.stream.Collectors.groupingBy;
 import static org.apache.camel.builder.PredicateBuilder.or;
 import static org.openremote.container.persistence.PersistenceEvent.PERSISTENCE_TOPIC;
 import static org.openremote.container.persistence.PersistenceEvent.isPersistenceEventForEntityType;
+import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.manager.event.ClientEventService.CLIENT_EVENT_TOPIC;
 import static org.openremote.model.attribute.Attribute.getAddedOrModifiedAttributes;
 import static org.openremote.model.query.AssetQuery.*;
@@ -127,6 +134,12 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
 
     private static final Logger LOG = Logger.getLogger(AssetStorageService.class.getName());
     public static final int PRIORITY = MED_PRIORITY;
+    // Maximum number of assets kept in memory for attribute event processing, 0 disables the cache
+    public static final String ASSET_CACHE_MAX_SIZE = "ASSET_CACHE_MAX_SIZE";
+    public static final int ASSET_CACHE_MAX_SIZE_DEFAULT = 0;
+    // Interval in which buffered attribute values are stored, 0 stores each attribute value immediately
+    public static final String ATTRIBUTE_WRITE_BEHIND_MILLIS = "ATTRIBUTE_WRITE_BEHIND_MILLIS";
+    public static final int ATTRIBUTE_WRITE_BEHIND_MILLIS_DEFAULT = 0;
     protected static final Field assetParentNameField;
     protected static final Field assetParentTypeField;
 
@@ -216,6 +229,10 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
     protected ManagerIdentityService identityService;
     protected ClientEventService clientEventService;
     protected GatewayService gatewayService;
+    protected AssetCache assetCache = new AssetCache(0);
+    protected AttributeWriteBehind attributeWriteBehind;
+    protected long attributeWriteBehindMillis;
+    protected ScheduledFuture<?> attributeWriteBehindFuture;
 
     /**
      * Will evaluate each {@link CalendarEventPredicate} and apply it depending on the {@link LogicGroup} type
@@ -301,6 +318,15 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         identityService = container.getService(ManagerIdentityService.class);
         clientEventService = container.getService(ClientEventService.class);
         gatewayService = container.getService(GatewayService.class);
+        assetCache = new AssetCache(getInteger(container.getConfig(), ASSET_CACHE_MAX_SIZE, ASSET_CACHE_MAX_SIZE_DEFAULT));
+        if (assetCache.isEnabled()) {
+            LOG.info("Caching assets for attribute event processing, maximum size: " + assetCache.getMaximumSize());
+        }
+        attributeWriteBehindMillis = getInteger(container.getConfig(), ATTRIBUTE_WRITE_BEHIND_MILLIS, ATTRIBUTE_WRITE_BEHIND_MILLIS_DEFAULT);
+        if (attributeWriteBehindMillis > 0) {
+            LOG.info("Storing attribute values write-behind, flush interval (ms): " + attributeWriteBehindMillis);
+            attributeWriteBehind = new AttributeWriteBehind();
+        }
         EventSubscriptionAuthorizer assetEventAuthorizer = AssetStorageService.assetInfoAuthorizer(identityService, this);
 
         clientEventService.addSubscriptionAuthorizer((auth, subscription) -> {
@@ -316,6 +342,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                 container.getService(TimerService.class),
                 identityService,
                 this,
+                container.getService(AssetProcessingService.class),
                 container.getService(MessageBrokerService.class)
             )
         );
@@ -332,12 +359,31 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
 
     @Override
     public void start(Container container) throws Exception {
-
+        if (attributeWriteBehind != null) {
+            attributeWriteBehindFuture = container.getExecutorService().scheduleWithFixedDelay(
+                this::flushAttributeValues,
+                attributeWriteBehindMillis,
+                attributeWriteBehindMillis,
+                TimeUnit.MILLISECONDS
+            );
+        }
     }
 
     @Override
     public void stop(Container container) throws Exception {
-
+        if (attributeWriteBehind != null) {
+            if (attributeWriteBehindFuture != null) {
+                attributeWriteBehindFuture.cancel(false);
+                attributeWriteBehindFuture = null;
+            }
+            // Values arriving from now on are stored directly, so nothing is left in the buffer after this flush
+            attributeWriteBehind.close();
+            flushAttributeValues();
+            if (attributeWriteBehind.getPendingAssetCount() > 0) {
+                LOG.warning("Failed to store buffered attribute values of assets: " + attributeWriteBehind.getPendingAssetCount());
+            }
+        }
+        assetCache.clear();
     }
 
     @SuppressWarnings("unchecked")
@@ -586,7 +632,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
      */
     @SuppressWarnings("unchecked")
     public <T extends Asset<?>> T merge(T asset, boolean overrideVersion, boolean skipGatewayCheck, String userName) throws IllegalStateException, ConstraintViolationException {
-        return persistenceService.doReturningTransaction(em -> {
+        T mergedAsset = persistenceService.doReturningTransaction(em -> {
 
             T existingAsset = TextUtil.isNullOrEmpty(asset.getId()) ? null : (T)em.find(Asset.class, asset.getId());
 
@@ -634,9 +680,10 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
             }
 
             // Validate parent
+            Asset<?> parent = null;
             if (asset.getParentId() != null) {
                 // If this is a not a root asset...
-                Asset<?> parent = find(em, asset.getParentId(), true);
+                parent = find(em, asset.getParentId(), true);
 
                 // .. the parent must exist
                 if (parent == null) {
@@ -751,7 +798,12 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                 LOG.fine("Sending asset merge request to gateway: Gateway ID=" + gatewayId);
                 updatedAsset = gatewayService.mergeGatewayAsset(gatewayId, asset);
             } else {
+                boolean moved = existingAsset != null && !Objects.equals(existingAsset.getParentId(), asset.getParentId());
+                updateAssetPath(asset, parent);
                 updatedAsset = em.merge(asset);
+                if (moved) {
+                    updateDescendantAssetPaths(em, updatedAsset);
+                }
                 if (existingAsset == null) {
                     LOG.fine("Asset created: " + updatedAsset);
                 } else {
@@ -765,6 +817,46 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
 
             return updatedAsset;
         });
+
+        // Don't wait for the persistence event, attribute events must not be processed with the previous meta
+        if (mergedAsset != null) {
+            assetCache.invalidate(mergedAsset.getId());
+        }
+        return mergedAsset;
+    }
+
+    /**
+     * Sets the stored path of the asset, the identifier of a new asset is generated here so it can be included.
+     */
+    protected static void updateAssetPath(Asset<?> asset, Asset<?> parent) {
+        if (TextUtil.isNullOrEmpty(asset.getId())) {
+            asset.setId(UniqueIdentifierGenerator.generateId());
+        }
+
+        String[] parentPath = parent != null ? parent.getPath() : new String[0];
+        String[] path = new String[parentPath.length + 1];
+        path[0] = asset.getId();
+        System.arraycopy(parentPath, 0, path, 1, parentPath.length);
+        asset.setPath(path);
+    }
+
+    /**
+     * Replaces the part of the stored path of all descendants of a moved asset that follows the asset with the new
+     * path of the asset. Cached assets are cleared as they may contain the previous path.
+     */
+    protected void updateDescendantAssetPaths(EntityManager em, Asset<?> asset) {
+        int updated = em.createNativeQuery(
+            "update ASSET set PATH = PATH[1:array_position(PATH, cast(?1 as text)) - 1] || ?2 " +
+                "where PATH @> array[cast(?1 as text)] and ID <> ?1")
+            .unwrap(org.hibernate.query.Query.class)
+            .setParameter(1, asset.getId())
+            .setParameter(2, asset.getPath(), StringArrayType.INSTANCE)
+            .executeUpdate();
+
+        if (updated > 0) {
+            LOG.fine("Updated path of descendant assets of moved asset: count=" + updated + ", asset=" + asset);
+            assetCache.clear();
+        }
     }
 
     /**
@@ -865,6 +957,8 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
             });
         } catch (Exception e) {
             return false;
+        } finally {
+            assetCache.invalidate(ids);
         }
 
         return true;
@@ -971,7 +1065,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         return persistenceService.doReturningTransaction(entityManager -> entityManager.unwrap(Session.class).doReturningWork(new AbstractReturningWork<Boolean>() {
             @Override
             public Boolean execute(Connection connection) throws SQLException {
-                try (PreparedStatement st = connection.prepareStatement("select count(*) from Asset a where ? = ANY(get_asset_tree_path(a.ID)) AND a.id = ANY(?)")) {
+                try (PreparedStatement st = connection.prepareStatement("select count(*) from Asset a where a.PATH @> array[cast(? as text)] AND a.id = ANY(?)")) {
                     st.setString(1, parentAssetId);
                     st.setArray(2, st.getConnection().createArrayOf("text", assetIds.toArray()));
                     ResultSet rs = st.executeQuery();
@@ -1092,6 +1186,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                     LOG.log(Level.WARNING, "Failed to set asset parent name and/or type fields", e);
                 }
             }
+            applyPendingAttributeValues(em, asset);
             return asset;
         });
 
@@ -1102,56 +1197,197 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         return assetStream.collect(Collectors.toList());
     }
 
+    public AssetCache getAssetCache() {
+        return assetCache;
+    }
+
+    /**
+     * Gets the completely loaded asset from the {@link AssetCache} or loads it and adds it to the cache. The returned
+     * instance is not shared with the cache, so it can be modified by the caller.
+     */
+    protected Asset<?> findCached(EntityManager em, String assetId) {
+        Asset<?> asset = assetCache.get(assetId);
+        if (asset == null) {
+            long loadGeneration = assetCache.getGeneration();
+            asset = find(em, assetId, true);
+            if (asset != null) {
+                em.detach(asset);
+            }
+            assetCache.put(asset, loadGeneration);
+        }
+        return asset;
+    }
+
+    /**
+     * Gets the completely loaded assets from the {@link AssetCache}, all missing assets are loaded with a single
+     * query and added to the cache. The returned instances are not shared with the cache.
+     */
+    protected Map<String, Asset<?>> findAllCached(EntityManager em, Collection<String> assetIds) {
+        Map<String, Asset<?>> assets = new HashMap<>(assetIds.size());
+        List<String> missingAssetIds = new ArrayList<>();
+
+        for (String assetId : assetIds) {
+            Asset<?> asset = assetCache.get(assetId);
+            if (asset != null) {
+                assets.put(assetId, asset);
+            } else {
+                missingAssetIds.add(assetId);
+            }
+        }
+
+        if (!missingAssetIds.isEmpty()) {
+            long loadGeneration = assetCache.getGeneration();
+            for (Asset<?> asset : findAll(em, new AssetQuery().ids(missingAssetIds.toArray(new String[0])))) {
+                em.detach(asset);
+                assets.put(asset.getId(), asset);
+                assetCache.put(asset, loadGeneration);
+            }
+        }
+        return assets;
+    }
+
+    /**
+     * Applies the attribute values buffered for write-behind to an asset loaded from the database, the asset is
+     * detached first so these values are not stored by the entity manager.
+     */
+    @SuppressWarnings("unchecked")
+    protected void applyPendingAttributeValues(EntityManager em, Asset<?> asset) {
+        if (attributeWriteBehind == null) {
+            return;
+        }
+        List<Attribute<?>> pendingAttributes = attributeWriteBehind.getPendingAttributes(asset.getId());
+        if (pendingAttributes.isEmpty()) {
+            return;
+        }
+        em.detach(asset);
+        for (Attribute<?> pendingAttribute : pendingAttributes) {
+            asset.getAttribute(pendingAttribute.getName()).ifPresent(attribute -> {
+                long timestamp = pendingAttribute.getTimestamp().orElse(0L);
+                if (timestamp >= attribute.getTimestamp().orElse(0L)) {
+                    ((Attribute<Object>) attribute).setValue(pendingAttribute.getValue().orElse(null), timestamp);
+                }
+            });
+        }
+    }
+
+    /**
+     * Stores all attribute values buffered for write-behind, with one update per asset in a single JDBC batch. A
+     * buffered value is not stored if the attribute has been removed or has a later value in the meantime. When the
+     * update fails the values are buffered again. Until the update has been committed, the values remain visible to
+     * {@link #applyPendingAttributeValues} as in flight values of the buffer.
+     */
+    protected void flushAttributeValues() {
+        if (attributeWriteBehind == null) {
+            return;
+        }
+
+        Map<String, Collection<Attribute<?>>> assetAttributes = attributeWriteBehind.drain();
+        if (assetAttributes.isEmpty()) {
+            return;
+        }
+
+        try {
+            int values = persistenceService.doReturningTransaction(em -> em.unwrap(Session.class).doReturningWork(connection -> {
+                int count = 0;
+                try (PreparedStatement statement = connection.prepareStatement(UPDATE_ATTRIBUTE_VALUES_SQL)) {
+                    for (Map.Entry<String, Collection<Attribute<?>>> entry : assetAttributes.entrySet()) {
+                        ObjectNode attributeValues = Values.JSON.createObjectNode();
+                        for (Attribute<?> attribute : entry.getValue()) {
+                            ObjectNode attributeValue = attributeValues.putObject(attribute.getName());
+                            attributeValue.set("value", Values.JSON.valueToTree(attribute.getValue().orElse(null)));
+                            attributeValue.put("timestamp", attribute.getTimestamp().orElseGet(timerService::getCurrentTimeMillis));
+                            count++;
+                        }
+                        PGobject pgJsonValues = new PGobject();
+                        pgJsonValues.setType("jsonb");
+                        pgJsonValues.setValue(Values.asJSON(attributeValues).orElse("{}"));
+                        statement.setObject(1, pgJsonValues);
+                        statement.setString(2, entry.getKey());
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+                return count;
+            }));
+            assetAttributes.forEach(attributeWriteBehind::complete);
+            attributeWriteBehind.recordFlush(assetAttributes.size(), values);
+            LOG.finest("Stored buffered attribute values of assets: " + assetAttributes.size());
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to store buffered attribute values, retrying in next flush", e);
+            attributeWriteBehind.recordFailedFlush();
+            assetAttributes.forEach(attributeWriteBehind::restore);
+        }
+    }
+
+    public AttributeWriteBehind getAttributeWriteBehind() {
+        return attributeWriteBehind;
+    }
+
+    /**
+     * Buffers the attribute value for write-behind once the transaction of the entity manager has been committed, so
+     * the value of a rolled back update is never stored. If the buffer has been closed in the meantime, the value is
+     * stored directly in a new transaction.
+     *
+     * @return <code>false</code> if write-behind is not enabled and the value must be stored directly.
+     */
+    protected boolean offerAttributeValueAfterCommit(EntityManager em, Asset<?> asset, Attribute<?> attribute) {
+        if (attributeWriteBehind == null || attributeWriteBehind.isClosed()) {
+            return false;
+        }
+        em.unwrap(Session.class).getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != Status.STATUS_COMMITTED || attributeWriteBehind.offer(asset.getId(), attribute)) {
+                    return;
+                }
+                try {
+                    persistenceService.doTransaction(entityManager -> entityManager.unwrap(Session.class).doWork(connection -> {
+                        try (PreparedStatement statement = connection.prepareStatement(UPDATE_ATTRIBUTE_VALUE_SQL)) {
+                            bindAttributeValue(connection, statement, asset, attribute);
+                            logStoredAttributeValue(asset, attribute, statement.executeUpdate());
+                        }
+                    }));
+                } catch (Exception e) {
+                    LOG.log(Level.WARNING, "Failed to store attribute value", e);
+                }
+            }
+        });
+        return true;
+    }
+
+    // Merges the value and timestamp of each attribute in the given object into the existing attributes
+    protected static final String UPDATE_ATTRIBUTE_VALUES_SQL = "update Asset" +
+        " set attributes = attributes || coalesce((" +
+        "select jsonb_object_agg(e.key, (attributes -> e.key) || e.value) from jsonb_each(?) e" +
+        " where attributes -> e.key is not null" +
+        " and coalesce((attributes -> e.key ->> 'timestamp')::bigint, 0) <= (e.value ->> 'timestamp')::bigint" +
+        "), '{}'::jsonb)" +
+        " where id = ?";
+
+    protected static final String UPDATE_ATTRIBUTE_VALUE_SQL = "update Asset" +
+        " set attributes = jsonb_set(jsonb_set(attributes, ?, ?, true), ?, ?, true)" +
+        " where id = ? and attributes -> ? is not null";
+
     protected boolean updateAttributeValue(EntityManager em, Asset<?> asset, Attribute<?> attribute) {
 
         try {
 
             // Detach the asset from the em so we can manually update the attribute
             em.detach(asset);
-            String attributeName = attribute.getName();
-            Object value = attribute.getValue();
-            long timestamp = attribute.getTimestamp().orElseGet(timerService::getCurrentTimeMillis);
 
-            return em.unwrap(Session.class).doReturningWork(connection -> {
-                String jpql = "update Asset" +
-                    " set attributes = jsonb_set(jsonb_set(attributes, ?, ?, true), ?, ?, true)" +
-                    " where id = ? and attributes -> ? is not null";
-
-                try (PreparedStatement statement = connection.prepareStatement(jpql)) {
-                    Array attributeValuePath = connection.createArrayOf(
-                        "text",
-                        new String[]{attributeName, "value"}
-                    );
-                    statement.setArray(1, attributeValuePath);
-
-                    PGobject pgJsonValue = new PGobject();
-                    pgJsonValue.setType("jsonb");
-                    // Careful, do not set Java null here! It will erase your whole SQL column!
-                    pgJsonValue.setValue(Values.asJSON(value).orElse(Values.NULL_LITERAL));
-                    statement.setObject(2, pgJsonValue);
-
-                    // Bind the value timestamp
-                    Array attributeValueTimestampPath = connection.createArrayOf(
-                        "text",
-                        new String[]{attributeName, "timestamp"}
-                    );
-                    statement.setArray(3, attributeValueTimestampPath);
-                    PGobject pgJsonValueTimestamp = new PGobject();
-                    pgJsonValueTimestamp.setType("jsonb");
-                    pgJsonValueTimestamp.setValue(Long.toString(timestamp));
-                    statement.setObject(4, pgJsonValueTimestamp);
-
-                    // Bind asset ID and attribute name
-                    statement.setString(5, asset.getId());
-                    statement.setString(6, attributeName);
+            if (offerAttributeValueAfterCommit(em, asset, attribute)) {
+                return true;
+            }
 
+            return em.unwrap(Session.class).doReturningWork(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(UPDATE_ATTRIBUTE_VALUE_SQL)) {
+                    bindAttributeValue(connection, statement, asset, attribute);
                     int updatedRows = statement.executeUpdate();
-                    if (LOG.isLoggable(Level.FINEST)) {
-                        LOG.finest("Stored asset '" + asset.getId()
-                            + "' attribute '" + attributeName
-                            + "' (affected rows: " + updatedRows + ") value: "
-                            + (value != null ? Values.asJSON(value).orElse("null") : "null"));
-                    }
+                    logStoredAttributeValue(asset, attribute, updatedRows);
                     return updatedRows == 1;
                 }
             });
@@ -1161,8 +1397,102 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         }
     }
 
+    /**
+     * Stores the values of several attributes with a single JDBC batch, the statements are executed in the given
+     * order.
+     *
+     * @return The update result of each asset attribute pair, <code>true</code> if the attribute value was stored.
+     */
+    protected boolean[] updateAttributeValues(EntityManager em, List<Pair<Asset<?>, Attribute<?>>> assetAttributes) {
+        boolean[] result = new boolean[assetAttributes.size()];
+        List<Integer> updateIndexes = new ArrayList<>(assetAttributes.size());
+
+        // Detach the assets from the em so we can manually update the attributes
+        for (int i = 0; i < assetAttributes.size(); i++) {
+            Pair<Asset<?>, Attribute<?>> assetAttribute = assetAttributes.get(i);
+            em.detach(assetAttribute.key);
+            if (offerAttributeValueAfterCommit(em, assetAttribute.key, assetAttribute.value)) {
+                result[i] = true;
+            } else {
+                updateIndexes.add(i);
+            }
+        }
+
+        if (updateIndexes.isEmpty()) {
+            return result;
+        }
+
+        try {
+            em.unwrap(Session.class).doWork(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(UPDATE_ATTRIBUTE_VALUE_SQL)) {
+                    for (int index : updateIndexes) {
+                        bindAttributeValue(connection, statement, assetAttributes.get(index).key, assetAttributes.get(index).value);
+                        statement.addBatch();
+                    }
+                    int[] updatedRows = statement.executeBatch();
+                    for (int i = 0; i < updatedRows.length; i++) {
+                        int index = updateIndexes.get(i);
+                        logStoredAttributeValue(assetAttributes.get(index).key, assetAttributes.get(index).value, updatedRows[i]);
+                        result[index] = updatedRows[i] == 1 || updatedRows[i] == Statement.SUCCESS_NO_INFO;
+                    }
+                }
+            });
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to store attribute values", e);
+            updateIndexes.forEach(index -> result[index] = false);
+        }
+        return result;
+    }
+
+    protected void bindAttributeValue(Connection connection, PreparedStatement statement, Asset<?> asset, Attribute<?> attribute) throws SQLException {
+        String attributeName = attribute.getName();
+        Object value = attribute.getValue();
+        long timestamp = attribute.getTimestamp().orElseGet(timerService::getCurrentTimeMillis);
+
+        Array attributeValuePath = connection.createArrayOf(
+            "text",
+            new String[]{attributeName, "value"}
+        );
+        statement.setArray(1, attributeValuePath);
+
+        PGobject pgJsonValue = new PGobject();
+        pgJsonValue.setType("jsonb");
+        // Careful, do not set Java null here! It will erase your whole SQL column!
+        pgJsonValue.setValue(Values.asJSON(value).orElse(Values.NULL_LITERAL));
+        statement.setObject(2, pgJsonValue);
+
+        // Bind the value timestamp
+        Array attributeValueTimestampPath = connection.createArrayOf(
+            "text",
+            new String[]{attributeName, "timestamp"}
+        );
+        statement.setArray(3, attributeValueTimestampPath);
+        PGobject pgJsonValueTimestamp = new PGobject();
+        pgJsonValueTimestamp.setType("jsonb");
+        pgJsonValueTimestamp.setValue(Long.toString(timestamp));
+        statement.setObject(4, pgJsonValueTimestamp);
+
+        // Bind asset ID and attribute name
+        statement.setString(5, asset.getId());
+        statement.setString(6, attributeName);
+    }
+
+    protected void logStoredAttributeValue(Asset<?> asset, Attribute<?> attribute, int updatedRows) {
+        if (LOG.isLoggable(Level.FINEST)) {
+            Object value = attribute.getValue();
+            LOG.finest("Stored asset '" + asset.getId()
+                + "' attribute '" + attribute.getName()
+                + "' (affected rows: " + updatedRows + ") value: "
+                + (value != null ? Values.asJSON(value).orElse("null") : "null"));
+        }
+    }
+
     protected void publishModificationEvents(PersistenceEvent<Asset<?>> persistenceEvent) {
         Asset<?> asset = persistenceEvent.getEntity();
+
+        // Any modification not made through attribute event processing makes the cached asset obsolete
+        assetCache.invalidate(asset.getId());
+
         switch (persistenceEvent.getCause()) {
             case CREATE:
                 // Fully load the asset
@@ -1314,12 +1644,10 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
             }
         }
 
-        if (!query.recursive || level == 3) {
-            if (select == null || !select.excludePath) {
-                sb.append(", get_asset_tree_path(A.ID) as PATH");
-            } else {
-                sb.append(", NULL as PATH");
-            }
+        if (select == null || !select.excludePath) {
+            sb.append(", A.PATH as PATH");
+        } else if (!query.recursive || level == 3) {
+            sb.append(", NULL as PATH");
         }
 
         if (select == null || !select.excludeAttributes) {
@@ -1531,7 +1859,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                 isFirst = false;
 
                 final int pos = binders.size() + 1;
-                sb.append("?").append(pos).append(" <@ get_asset_tree_path(A.id)");
+                sb.append("A.PATH @> ?").append(pos);
                 binders.add((em, st) -> st.setParameter(pos, pred.path, StringArrayType.INSTANCE));
             }
 
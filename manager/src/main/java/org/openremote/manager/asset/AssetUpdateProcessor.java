@@ -29,10 +29,10 @@ import javax.persistence.EntityManager;
 /**
  * Process update of an asset attribute (value), from a {@link Source}.
  *
- * Implementations don't have to lock the whole context through {@link GlobalLock}, the
- * caller of this has already obtained the lock. Internal synchronization and thread-safety
- * must still be maintained if shared state of a processor can be modified by concurrent tasks
- * maintained by that processor.
+ * The caller of this has obtained the lock of the updated asset only, updates of other assets
+ * may be processed concurrently. Implementations must keep their shared state thread-safe (e.g.
+ * with concurrent collections) rather than waiting for the {@link GlobalLock}, which is held
+ * while protocols or rulesets are (re)deployed and attributes are linked or unlinked.
  */
 public interface AssetUpdateProcessor {
 
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.asset;
+
+import org.openremote.model.attribute.Attribute;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Buffers the latest value and timestamp of each asset attribute until {@link AssetStorageService} flushes them,
+ * several updates of the same attribute in one interval only store the latest value and all attributes of an asset
+ * are stored with one update.
+ * <p>
+ * An attribute value is only replaced by a value with the same or a later timestamp. Once {@link #close} has been
+ * called no more values are accepted, so a final flush stores all buffered values.
+ * <p>
+ * Drained values are kept in flight until the flush has been committed or failed, {@link #getPendingAttributes}
+ * returns them meanwhile as they are neither buffered nor stored in the database.
+ */
+public class AttributeWriteBehind {
+
+    protected final Map<String, Map<String, Attribute<?>>> pendingAttributes = new ConcurrentHashMap<>();
+    protected final Map<String, Map<String, Attribute<?>>> inFlightAttributes = new ConcurrentHashMap<>();
+    protected final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    protected boolean closed;
+    protected final LongAdder offeredValues = new LongAdder();
+    protected final LongAdder flushes = new LongAdder();
+    protected final LongAdder flushedAssets = new LongAdder();
+    protected final LongAdder flushedValues = new LongAdder();
+    protected final LongAdder failedFlushes = new LongAdder();
+
+    /**
+     * @return <code>false</code> if the buffer has been closed and the value must be stored directly.
+     */
+    public boolean offer(String assetId, Attribute<?> attribute) {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            offeredValues.increment();
+            pendingAttributes.compute(assetId, (id, attributes) -> {
+                if (attributes == null) {
+                    attributes = new HashMap<>();
+                }
+                putLatest(attributes, attribute);
+                return attributes;
+            });
+            return true;
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Moves all buffered attributes in flight and returns them, grouped by asset ID. The caller must either
+     * {@link #complete} or {@link #restore} them.
+     */
+    public Map<String, Collection<Attribute<?>>> drain() {
+        Map<String, Collection<Attribute<?>>> result = new LinkedHashMap<>();
+        for (String assetId : new ArrayList<>(pendingAttributes.keySet())) {
+            // Add to the in flight values before the buffered values are removed, so readers always see them
+            pendingAttributes.computeIfPresent(assetId, (id, attributes) -> {
+                inFlightAttributes.compute(assetId, (inFlightId, inFlight) -> {
+                    if (inFlight == null) {
+                        inFlight = new HashMap<>();
+                    }
+                    for (Attribute<?> attribute : attributes.values()) {
+                        putLatest(inFlight, attribute);
+                    }
+                    return inFlight;
+                });
+                result.put(assetId, new ArrayList<>(attributes.values()));
+                return null;
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Removes attributes from the in flight values once they have been stored in the database.
+     */
+    public void complete(String assetId, Collection<Attribute<?>> attributes) {
+        inFlightAttributes.computeIfPresent(assetId, (id, inFlight) -> {
+            for (Attribute<?> attribute : attributes) {
+                inFlight.remove(attribute.getName(), attribute);
+            }
+            return inFlight.isEmpty() ? null : inFlight;
+        });
+    }
+
+    /**
+     * Returns attributes that could not be stored to the buffer, unless a later value has been buffered since.
+     */
+    public void restore(String assetId, Collection<Attribute<?>> attributes) {
+        pendingAttributes.compute(assetId, (id, pending) -> {
+            if (pending == null) {
+                pending = new HashMap<>();
+            }
+            for (Attribute<?> attribute : attributes) {
+                putLatest(pending, attribute);
+            }
+            return pending;
+        });
+        complete(assetId, attributes);
+    }
+
+    /**
+     * @return A copy of the buffered and in flight attributes of the asset, these are not stored in the database yet.
+     */
+    public List<Attribute<?>> getPendingAttributes(String assetId) {
+        Map<String, Attribute<?>> result = new HashMap<>();
+        // Buffered values first, drain() adds them to the in flight values before it removes them
+        pendingAttributes.computeIfPresent(assetId, (id, attributes) -> {
+            attributes.values().forEach(attribute -> putLatest(result, attribute));
+            return attributes;
+        });
+        inFlightAttributes.computeIfPresent(assetId, (id, attributes) -> {
+            attributes.values().forEach(attribute -> putLatest(result, attribute));
+            return attributes;
+        });
+        return new ArrayList<>(result.values());
+    }
+
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+    }
+
+    public boolean isClosed() {
+        closeLock.readLock().lock();
+        try {
+            return closed;
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    protected void recordFlush(int assets, int values) {
+        flushes.increment();
+        flushedAssets.add(assets);
+        flushedValues.add(values);
+    }
+
+    protected void recordFailedFlush() {
+        failedFlushes.increment();
+    }
+
+    public int getPendingAssetCount() {
+        return pendingAttributes.size();
+    }
+
+    public int getInFlightAssetCount() {
+        return inFlightAttributes.size();
+    }
+
+    public long getOfferedValues() {
+        return offeredValues.sum();
+    }
+
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    public long getFlushedAssets() {
+        return flushedAssets.sum();
+    }
+
+    public long getFlushedValues() {
+        return flushedValues.sum();
+    }
+
+    public long getFailedFlushes() {
+        return failedFlushes.sum();
+    }
+
+    protected static void putLatest(Map<String, Attribute<?>> attributes, Attribute<?> attribute) {
+        attributes.merge(attribute.getName(), attribute, (existing, updated) ->
+            updated.getTimestamp().orElse(0L) >= existing.getTimestamp().orElse(0L) ? updated : existing
+        );
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "pendingAssets=" + getPendingAssetCount() +
+            ", offeredValues=" + getOfferedValues() +
+            ", flushes=" + getFlushes() +
+            ", flushedAssets=" + getFlushedAssets() +
+            ", flushedValues=" + getFlushedValues() +
+            ", failedFlushes=" + getFailedFlushes() +
+            '}';
+    }
+}
@@ -12,6 +12,7 @@ import org.openremote.model.asset.Asset;
 import org.openremote.model.attribute.Attribute;
 import org.openremote.model.attribute.AttributeRef;
 import org.openremote.model.datapoint.Datapoint;
+import org.openremote.model.datapoint.DatapointDownsampling;
 import org.openremote.model.datapoint.DatapointInterval;
 import org.openremote.model.datapoint.DatapointPeriod;
 import org.openremote.model.datapoint.ValueDatapoint;
@@ -20,34 +21,58 @@ import org.openremote.model.value.Values;
 import org.postgresql.util.PGInterval;
 import org.postgresql.util.PGobject;
 
-import javax.persistence.TypedQuery;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import static java.time.temporal.ChronoUnit.DAYS;
+import static org.openremote.container.util.MapAccess.getInteger;
 
 /**
  * Base class for all classes that store and retrieve {@link org.openremote.model.datapoint.Datapoint}.
+ * <p>
+ * The period and count of the datapoints of each attribute are maintained in a summary table when datapoints are
+ * stored and purged, see {@link #getSummaryTableName}.
  */
 public abstract class AbstractDatapointService<T extends Datapoint> implements ContainerService {
 
     public static final int PRIORITY = AssetStorageService.PRIORITY + 100;
+    // Rows per multi-row insert statement, stays well below the maximum number of bind parameters
+    public static final int UPSERT_MAX_ROWS = 1000;
+    // Rows fetched at once when downsampling, so the whole series is never loaded into memory
+    public static final int DOWNSAMPLE_FETCH_SIZE = 10000;
+    // Number of daily datapoint table partitions created ahead of time, 0 doesn't create partitions
+    public static final String DATA_POINTS_PARTITION_DAYS_AHEAD = "DATA_POINTS_PARTITION_DAYS_AHEAD";
+    public static final int DATA_POINTS_PARTITION_DAYS_AHEAD_DEFAULT = 0;
     protected PersistenceService persistenceService;
     protected AssetStorageService assetStorageService;
     protected TimerService timerService;
     protected ScheduledExecutorService executorService;
     protected ScheduledFuture<?> dataPointsPurgeScheduledFuture;
+    protected DatapointPartitions partitions;
+    protected int partitionDaysAhead;
 
     @Override
     public int getPriority() {
@@ -60,6 +85,8 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
         assetStorageService = container.getService(AssetStorageService.class);
         timerService = container.getService(TimerService.class);
         executorService = container.getExecutorService();
+        partitions = new DatapointPartitions(getDatapointTableName());
+        partitionDaysAhead = Math.max(0, getInteger(container.getConfig(), DATA_POINTS_PARTITION_DAYS_AHEAD, DATA_POINTS_PARTITION_DAYS_AHEAD_DEFAULT));
     }
 
     @Override
@@ -70,14 +97,15 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
     }
 
     public void upsertValue(String assetId, String attributeName, Object value, LocalDateTime timestamp) throws IllegalStateException {
-        persistenceService.doTransaction(em ->
+        doInsertTransaction(em ->
                 em.unwrap(Session.class).doWork(connection -> {
                     PreparedStatement st;
 
                     try {
-                        st = getUpsertPreparedStatement(connection);
+                        st = getUpsertPreparedStatement(connection, partitions.getTableName(timestamp));
                         setUpsertValues(st, assetId, attributeName, value, timestamp);
                         st.executeUpdate();
+                        updateSummaryRanges(connection, Collections.singletonList(new AttributeRef(assetId, attributeName)));
                     } catch (Exception e) {
                         String msg = "Failed to insert/update data point: ";
                         getLogger().log(Level.WARNING, msg, e);
@@ -87,20 +115,26 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
     }
 
     public void upsertValues(String assetId, String attributeName, List<Pair<?, LocalDateTime>> valuesAndTimestamps) throws IllegalStateException {
-        persistenceService.doTransaction(em ->
+        doInsertTransaction(em ->
                 em.unwrap(Session.class).doWork(connection -> {
 
                     getLogger().finest("Storing datapoints for: id=" + assetId + ", name=" + attributeName + ", count=" + valuesAndTimestamps.size());
-                    PreparedStatement st;
+                    Map<String, List<Pair<?, LocalDateTime>>> tableValuesAndTimestamps = new LinkedHashMap<>();
+                    for (Pair<?, LocalDateTime> valueAndTimestamp : valuesAndTimestamps) {
+                        tableValuesAndTimestamps.computeIfAbsent(partitions.getTableName(valueAndTimestamp.value), tableName -> new ArrayList<>()).add(valueAndTimestamp);
+                    }
 
                     try {
-                        st = getUpsertPreparedStatement(connection);
-
-                        for (Pair<?, LocalDateTime> valueAndTimestamp : valuesAndTimestamps) {
-                            setUpsertValues(st, assetId, attributeName, valueAndTimestamp.key, valueAndTimestamp.value);
-                            st.addBatch();
+                        for (Map.Entry<String, List<Pair<?, LocalDateTime>>> tableEntry : tableValuesAndTimestamps.entrySet()) {
+                            try (PreparedStatement st = getUpsertPreparedStatement(connection, tableEntry.getKey())) {
+                                for (Pair<?, LocalDateTime> valueAndTimestamp : tableEntry.getValue()) {
+                                    setUpsertValues(st, assetId, attributeName, valueAndTimestamp.key, valueAndTimestamp.value);
+                                    st.addBatch();
+                                }
+                                st.executeBatch();
+                            }
                         }
-                        st.executeBatch();
+                        updateSummaryRanges(connection, Collections.singletonList(new AttributeRef(assetId, attributeName)));
                     } catch (Exception e) {
                         String msg = "Failed to insert/update data points: " + assetId + ", name=" + attributeName + ", count=" + valuesAndTimestamps.size();
                         getLogger().log(Level.WARNING, msg, e);
@@ -109,6 +143,78 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
                 }));
     }
 
+    /**
+     * Inserts or updates datapoints of any attributes with multi-row statements, if there are several datapoints
+     * for the same attribute and timestamp the last one is stored.
+     */
+    public void upsertValues(List<? extends Datapoint> datapoints) throws IllegalStateException {
+        // A multi-row upsert must not affect the same row twice
+        Map<Pair<AttributeRef, Long>, Datapoint> uniqueDatapoints = new LinkedHashMap<>();
+        for (Datapoint datapoint : datapoints) {
+            uniqueDatapoints.put(new Pair<>(new AttributeRef(datapoint.getAssetId(), datapoint.getAttributeName()), datapoint.getTimestamp()), datapoint);
+        }
+        int count = uniqueDatapoints.size();
+
+        doInsertTransaction(em ->
+                em.unwrap(Session.class).doWork(connection -> {
+
+                    getLogger().finest("Storing datapoints: count=" + count);
+
+                    // Each statement inserts into the partition of its rows
+                    Map<String, List<Datapoint>> tableRows = new LinkedHashMap<>();
+                    for (Datapoint datapoint : uniqueDatapoints.values()) {
+                        LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(datapoint.getTimestamp()), ZoneId.systemDefault());
+                        tableRows.computeIfAbsent(partitions.getTableName(timestamp), tableName -> new ArrayList<>()).add(datapoint);
+                    }
+
+                    try {
+                        for (Map.Entry<String, List<Datapoint>> tableEntry : tableRows.entrySet()) {
+                            List<Datapoint> rows = tableEntry.getValue();
+                            for (int from = 0; from < rows.size(); from += UPSERT_MAX_ROWS) {
+                                List<Datapoint> chunk = rows.subList(from, Math.min(rows.size(), from + UPSERT_MAX_ROWS));
+                                try (PreparedStatement st = getUpsertPreparedStatement(connection, tableEntry.getKey(), chunk.size())) {
+                                    int parameterIndex = 0;
+                                    for (Datapoint datapoint : chunk) {
+                                        setUpsertValues(
+                                            st,
+                                            parameterIndex,
+                                            datapoint.getAssetId(),
+                                            datapoint.getAttributeName(),
+                                            datapoint.getValue(),
+                                            LocalDateTime.ofInstant(Instant.ofEpochMilli(datapoint.getTimestamp()), ZoneId.systemDefault())
+                                        );
+                                        parameterIndex += 5;
+                                    }
+                                    st.executeUpdate();
+                                }
+                            }
+                        }
+                        List<AttributeRef> attributeRefs = uniqueDatapoints.keySet().stream().map(key -> key.key).distinct().collect(Collectors.toList());
+                        for (int from = 0; from < attributeRefs.size(); from += UPSERT_MAX_ROWS) {
+                            updateSummaryRanges(connection, attributeRefs.subList(from, Math.min(attributeRefs.size(), from + UPSERT_MAX_ROWS)));
+                        }
+                    } catch (Exception e) {
+                        String msg = "Failed to insert/update data points: count=" + count;
+                        getLogger().log(Level.WARNING, msg, e);
+                        throw new IllegalStateException(msg, e);
+                    }
+                }));
+    }
+
+    /**
+     * Runs the transaction whilst holding the {@link DatapointPartitions#getInsertLock}, the table names of the
+     * inserted datapoints must be obtained within the transaction.
+     */
+    protected void doInsertTransaction(Consumer<EntityManager> transaction) {
+        Lock insertLock = partitions.getInsertLock();
+        insertLock.lock();
+        try {
+            persistenceService.doTransaction(transaction);
+        } finally {
+            insertLock.unlock();
+        }
+    }
+
     public List<T> getDatapoints(AttributeRef attributeRef) {
         return persistenceService.doReturningTransaction(entityManager ->
                 entityManager.createQuery(
@@ -130,12 +236,10 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
         return persistenceService.doReturningTransaction(entityManager -> {
 
             String queryStr = attributeRef == null ?
-                    "select count(dp) from " + getDatapointClass().getSimpleName() + " dp" :
-                    "select count(dp) from " + getDatapointClass().getSimpleName() + " dp where dp.assetId = :assetId and dp.attributeName = :attributeName";
+                    "select coalesce(sum(DATAPOINT_COUNT), 0) from " + getSummaryTableName() :
+                    "select coalesce(sum(DATAPOINT_COUNT), 0) from " + getSummaryTableName() + " where ENTITY_ID = :assetId and ATTRIBUTE_NAME = :attributeName";
 
-            TypedQuery<Long> query = entityManager.createQuery(
-                    queryStr,
-                    Long.class);
+            Query query = entityManager.createNativeQuery(queryStr);
 
             if (attributeRef != null) {
                 query
@@ -143,7 +247,7 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
                         .setParameter("attributeName", attributeRef.getName());
             }
 
-            return query.getSingleResult();
+            return ((Number) query.getSingleResult()).longValue();
         });
     }
 
@@ -170,11 +274,32 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
                                                   final Integer stepSize,
                                                   LocalDateTime fromTimestamp,
                                                   LocalDateTime toTimestamp) {
+        return getValueDatapoints(assetId, attribute, datapointInterval, stepSize, fromTimestamp, toTimestamp, null, null);
+    }
+
+    /**
+     * @param maxPoints    When set, datapoints of number and boolean attributes are reduced to at most this many points
+     *                     with the given downsampling algorithm (default {@link DatapointDownsampling#LTTB}) instead of
+     *                     averaging them per interval.
+     */
+    public ValueDatapoint<?>[] getValueDatapoints(String assetId,
+                                                  Attribute<?> attribute,
+                                                  DatapointInterval datapointInterval,
+                                                  final Integer stepSize,
+                                                  LocalDateTime fromTimestamp,
+                                                  LocalDateTime toTimestamp,
+                                                  Integer maxPoints,
+                                                  DatapointDownsampling downsampling) {
 
         AttributeRef attributeRef = new AttributeRef(assetId, attribute.getName());
 
         getLogger().finer("Getting datapoints for: " + attributeRef);
 
+        Class<?> valueType = attribute.getType().getType();
+        if (maxPoints != null && maxPoints > 0 && (Number.class.isAssignableFrom(valueType) || Boolean.class.isAssignableFrom(valueType))) {
+            return getDownsampledValueDatapoints(attributeRef, maxPoints, downsampling, fromTimestamp, toTimestamp);
+        }
+
         return persistenceService.doReturningTransaction(entityManager ->
 
                 entityManager.unwrap(Session.class).doReturningWork(new AbstractReturningWork<ValueDatapoint<?>[]>() {
@@ -248,23 +373,22 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
                                     "from generate_series(date_trunc(?, ?) + " + partQuery + " / ? * ?, date_trunc(?, ?) + " + partQuery + " / ? * ?, ?) PERIOD left join ( " +
                                     "select (date_trunc(?, TIMESTAMP) + " + partQuery2 + " / ? * ?)::timestamp as TS, ");
 
-                            if (isNumber) {
-                                query.append(" AVG(VALUE::text::numeric) as AVG_VALUE ");
-                            } else {
-                                query.append(" AVG(case when VALUE::text::boolean is true then 1 else 0 end) as AVG_VALUE ");
-                            }
+                            // Booleans are stored as 1 or 0, datapoints stored before NUMBER_VALUE was added are parsed
+                            query.append(" AVG(coalesce(NUMBER_VALUE, get_datapoint_number_value(VALUE))) as AVG_VALUE ");
 
                             query.append("from " + getDatapointTableName() +
                                     " where TIMESTAMP >= date_trunc(?, ?) and TIMESTAMP < (date_trunc(?, ?) + ?) and ENTITY_ID = ? and ATTRIBUTE_NAME = ? group by TS) DP on DP.TS = PERIOD order by PERIOD asc");
 
                         } else {
-                            query.append("select distinct TIMESTAMP AS X, value AS Y from " + getDatapointTableName() +
+                            // The primary key is unique per attribute and timestamp and already in timestamp order
+                            query.append("select TIMESTAMP AS X, value AS Y from " + getDatapointTableName() +
                                     " where " +
-                                    "TIMESTAMP >= ?" +
+                                    "ENTITY_ID = ? and ATTRIBUTE_NAME = ? " +
                                     "and " +
-                                    "TIMESTAMP <= ? " +
+                                    "TIMESTAMP >= ? " +
                                     "and " +
-                                    "ENTITY_ID = ? and ATTRIBUTE_NAME = ?"
+                                    "TIMESTAMP <= ? " +
+                                    "order by TIMESTAMP asc"
                             );
                         }
 
@@ -305,10 +429,10 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
                                 st.setString(counter++, attributeRef.getId());
                                 st.setString(counter++, attributeRef.getName());
                             } else {
-                                st.setObject(1, fromTimestamp);
-                                st.setObject(2, toTimestamp);
-                                st.setString(3, attributeRef.getId());
-                                st.setString(4, attributeRef.getName());
+                                st.setString(1, attributeRef.getId());
+                                st.setString(2, attributeRef.getName());
+                                st.setObject(3, fromTimestamp);
+                                st.setObject(4, toTimestamp);
                             }
 
                             try (ResultSet rs = st.executeQuery()) {
@@ -336,20 +460,82 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
         );
     }
 
+    /**
+     * Streams the datapoints of the period through a {@link DatapointDownsampler}, values are read from NUMBER_VALUE
+     * or parsed from their JSON representation if they were stored before it was added.
+     */
+    protected ValueDatapoint<?>[] getDownsampledValueDatapoints(AttributeRef attributeRef,
+                                                                int maxPoints,
+                                                                DatapointDownsampling downsampling,
+                                                                LocalDateTime fromTimestamp,
+                                                                LocalDateTime toTimestamp) {
+        DatapointDownsampler downsampler = DatapointDownsampler.create(
+            downsampling,
+            maxPoints,
+            fromTimestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+            toTimestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+        );
+
+        return persistenceService.doReturningTransaction(entityManager ->
+                entityManager.unwrap(Session.class).doReturningWork(new AbstractReturningWork<ValueDatapoint<?>[]>() {
+                    @Override
+                    public ValueDatapoint<?>[] execute(Connection connection) throws SQLException {
+                        String query = "select TIMESTAMP, NUMBER_VALUE, VALUE from " + getDatapointTableName() +
+                                " where TIMESTAMP >= ? and TIMESTAMP <= ? and ENTITY_ID = ? and ATTRIBUTE_NAME = ? order by TIMESTAMP asc";
+
+                        try (PreparedStatement st = connection.prepareStatement(query)) {
+                            st.setFetchSize(DOWNSAMPLE_FETCH_SIZE);
+                            st.setObject(1, fromTimestamp);
+                            st.setObject(2, toTimestamp);
+                            st.setString(3, attributeRef.getId());
+                            st.setString(4, attributeRef.getName());
+
+                            try (ResultSet rs = st.executeQuery()) {
+                                while (rs.next()) {
+                                    Double value = rs.getObject(2) != null ? (Double) rs.getDouble(2) : parseNumericValue(rs.getString(3));
+                                    if (value != null) {
+                                        downsampler.accept(rs.getTimestamp(1).getTime(), value);
+                                    }
+                                }
+                            }
+                        }
+                        return downsampler.finish();
+                    }
+                })
+        );
+    }
+
+    /**
+     * @return The JSON number or boolean (as 1 or 0) value, <code>null</code> for any other value.
+     */
+    protected static Double parseNumericValue(String json) {
+        if (json == null) {
+            return null;
+        }
+        switch (json) {
+            case "true":
+                return 1d;
+            case "false":
+                return 0d;
+            case "null":
+                return null;
+        }
+        try {
+            return Double.parseDouble(json);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     public DatapointPeriod getDatapointPeriod(String assetId, String attributeName) {
         return persistenceService.doReturningTransaction(em ->
                 em.unwrap(Session.class).doReturningWork(new AbstractReturningWork<DatapointPeriod>() {
                     @Override
                     public DatapointPeriod execute(Connection connection) throws SQLException {
-                        String tableName = getDatapointTableName();
-                        String query = "SELECT DISTINCT periods.* FROM " +
-                                "(SELECT entity_id, attribute_name, " +
-                                "MIN(timestamp) AS oldestTimestamp, MAX(timestamp) AS latestTimestamp " +
-                                "FROM " + tableName + " GROUP BY entity_id, attribute_name) AS periods " +
-                                "INNER JOIN " + tableName + " ON " + tableName + ".entity_id = periods.entity_id AND " +
-                                tableName + ".attribute_name = periods.attribute_name " +
-                                "WHERE " + tableName + ".entity_id = ? " +
-                                "AND " + tableName + ".attribute_name = ? ";
+                        String query = "SELECT entity_id, attribute_name, oldest_timestamp, latest_timestamp " +
+                                "FROM " + getSummaryTableName() + " " +
+                                "WHERE entity_id = ? " +
+                                "AND attribute_name = ? ";
                         try (PreparedStatement st = connection.prepareStatement(query)) {
                             st.setString(1, assetId);
                             st.setString(2, attributeName);
@@ -365,33 +551,237 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
         );
     }
 
-    protected PreparedStatement getUpsertPreparedStatement(Connection connection) throws SQLException {
-        return connection.prepareStatement("INSERT INTO " + getDatapointTableName() + " (entity_id, attribute_name, value, timestamp) " +
-                "VALUES (?, ?, ?, ?) " +
+    protected PreparedStatement getUpsertPreparedStatement(Connection connection, String tableName) throws SQLException {
+        return getUpsertPreparedStatement(connection, tableName, 1);
+    }
+
+    /**
+     * @param tableName The datapoint table or the partition the rows are inserted into.
+     */
+    protected PreparedStatement getUpsertPreparedStatement(Connection connection, String tableName, int rows) throws SQLException {
+        StringBuilder values = new StringBuilder("(?, ?, ?, ?, ?)");
+        for (int i = 1; i < rows; i++) {
+            values.append(", (?, ?, ?, ?, ?)");
+        }
+        // Summaries are locked in attribute order so concurrent upserts can't deadlock, an overwritten value may have
+        // been the minimum or maximum so the range of the summary is marked as outdated
+        return connection.prepareStatement("WITH upserted AS (" +
+                "INSERT INTO " + tableName + " (entity_id, attribute_name, value, timestamp, number_value) " +
+                "VALUES " + values + " " +
                 "ON CONFLICT (entity_id, attribute_name, timestamp) DO UPDATE " +
-                "SET value = excluded.value");
+                "SET value = excluded.value, number_value = excluded.number_value " +
+                "RETURNING entity_id, attribute_name, number_value, timestamp, (xmax = 0) AS inserted) " +
+                "INSERT INTO " + getSummaryTableName() + " AS summary " +
+                "(entity_id, attribute_name, oldest_timestamp, latest_timestamp, datapoint_count, min_value, max_value, range_outdated) " +
+                "SELECT entity_id, attribute_name, min(timestamp), max(timestamp), count(*) FILTER (WHERE inserted), " +
+                "min(number_value), max(number_value), bool_or(NOT inserted) " +
+                "FROM upserted GROUP BY entity_id, attribute_name ORDER BY entity_id, attribute_name " +
+                "ON CONFLICT (entity_id, attribute_name) DO UPDATE SET " +
+                "oldest_timestamp = least(summary.oldest_timestamp, excluded.oldest_timestamp), " +
+                "latest_timestamp = greatest(summary.latest_timestamp, excluded.latest_timestamp), " +
+                "datapoint_count = summary.datapoint_count + excluded.datapoint_count, " +
+                "min_value = least(summary.min_value, excluded.min_value), " +
+                "max_value = greatest(summary.max_value, excluded.max_value), " +
+                "range_outdated = summary.range_outdated OR excluded.range_outdated");
     }
 
     protected void setUpsertValues(PreparedStatement st, String assetId, String attributeName, Object value, LocalDateTime timestamp) throws Exception {
+        setUpsertValues(st, 0, assetId, attributeName, value, timestamp);
+    }
+
+    /**
+     * Number and boolean values are also stored as NUMBER_VALUE, so aggregations don't have to parse the JSON value.
+     *
+     * @param offset The number of parameters of the preceding rows of a multi-row statement.
+     */
+    protected void setUpsertValues(PreparedStatement st, int offset, String assetId, String attributeName, Object value, LocalDateTime timestamp) throws Exception {
+        String json = Values.asJSON(value).orElse("null");
         PGobject pgJsonValue = new PGobject();
         pgJsonValue.setType("jsonb");
-        pgJsonValue.setValue(Values.asJSON(value).orElse("null"));
-        st.setString(1, assetId);
-        st.setString(2, attributeName);
-        st.setObject(3, pgJsonValue);
-        st.setObject(4, timestamp);
+        pgJsonValue.setValue(json);
+        st.setString(offset + 1, assetId);
+        st.setString(offset + 2, attributeName);
+        st.setObject(offset + 3, pgJsonValue);
+        st.setObject(offset + 4, timestamp);
+        st.setObject(offset + 5, parseNumericValue(json), Types.DOUBLE);
     }
 
     protected abstract Class<T> getDatapointClass();
 
     protected abstract String getDatapointTableName();
 
+    /**
+     * @return The table with the oldest and latest timestamp, the count and the number value range of the datapoints
+     * of each attribute.
+     */
+    protected String getSummaryTableName() {
+        return getDatapointTableName() + "_SUMMARY";
+    }
+
     protected abstract Logger getLogger();
 
+    /**
+     * Deletes the datapoints matching the SQL where clause, which may use the datapoint table alias <code>dp</code>
+     * and the timestamp parameter <code>:dt</code>; the summaries of the attributes are updated.
+     */
     protected void doPurge(String whereClause, LocalDateTime dateTime) {
-        persistenceService.doTransaction(em -> em.createQuery(
-                "delete from " + getDatapointClass().getSimpleName() + " dp " + whereClause
-        ).setParameter("dt", dateTime).executeUpdate());
+        persistenceService.doTransaction(em -> {
+            em.createNativeQuery(getSummaryCountUpdate(
+                    "delete from " + getDatapointTableName() + " dp " + whereClause + " returning dp.ENTITY_ID, dp.ATTRIBUTE_NAME",
+                    false
+            )).setParameter("dt", dateTime).executeUpdate();
+            em.unwrap(Session.class).doWork(connection -> updateSummaryPeriods(connection, dateTime));
+        });
+    }
+
+    /**
+     * @return A statement updating the count of the summaries with the ENTITY_ID and ATTRIBUTE_NAME rows returned by
+     * the given statement, which adds or removes datapoints; the range of summaries with removed datapoints is marked
+     * as outdated, see {@link #updateSummaryRanges}.
+     */
+    protected String getSummaryCountUpdate(String rowsStatement, boolean added) {
+        return "with ROWS as (" + rowsStatement + ") " +
+            "update " + getSummaryTableName() + " S set DATAPOINT_COUNT = S.DATAPOINT_COUNT " + (added ? "+" : "-") + " R.ROW_COUNT" +
+            (added ? " " : ", RANGE_OUTDATED = true ") +
+            "from (select ENTITY_ID, ATTRIBUTE_NAME, count(*) as ROW_COUNT from ROWS group by ENTITY_ID, ATTRIBUTE_NAME) R " +
+            "where S.ENTITY_ID = R.ENTITY_ID and S.ATTRIBUTE_NAME = R.ATTRIBUTE_NAME";
+    }
+
+    /**
+     * Removes the summaries of attributes without datapoints and updates the oldest timestamp of summaries older
+     * than the given time and the outdated ranges, after datapoints up to that time have been purged.
+     */
+    protected void updateSummaryPeriods(Connection connection, LocalDateTime purgeTime) throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.executeUpdate("delete from " + getSummaryTableName() + " where DATAPOINT_COUNT <= 0");
+        }
+        try (PreparedStatement st = connection.prepareStatement(
+            "update " + getSummaryTableName() + " S set OLDEST_TIMESTAMP = coalesce(" +
+                "(select min(DP.TIMESTAMP) from " + getDatapointTableName() + " DP where DP.ENTITY_ID = S.ENTITY_ID and DP.ATTRIBUTE_NAME = S.ATTRIBUTE_NAME), " +
+                "S.OLDEST_TIMESTAMP) " +
+                "where S.OLDEST_TIMESTAMP < ?")) {
+            st.setObject(1, purgeTime);
+            st.executeUpdate();
+        }
+        updateSummaryRanges(connection, null);
+    }
+
+    /**
+     * Recomputes the value range of the summaries that are marked as outdated from their datapoints.
+     *
+     * @param attributeRefs Only the summaries of these attributes, or all summaries if <code>null</code>; the summaries
+     *                      of a transaction that upserted datapoints are locked already.
+     */
+    protected void updateSummaryRanges(Connection connection, List<AttributeRef> attributeRefs) throws SQLException {
+        StringBuilder where = new StringBuilder("where S.RANGE_OUTDATED");
+        if (attributeRefs != null) {
+            if (attributeRefs.isEmpty()) {
+                return;
+            }
+            where.append(" and (S.ENTITY_ID, S.ATTRIBUTE_NAME) in ((?, ?)");
+            for (int i = 1; i < attributeRefs.size(); i++) {
+                where.append(", (?, ?)");
+            }
+            where.append(")");
+        }
+
+        try (PreparedStatement st = connection.prepareStatement(
+            "update " + getSummaryTableName() + " S set (MIN_VALUE, MAX_VALUE) = (" +
+                "select min(coalesce(DP.NUMBER_VALUE, get_datapoint_number_value(DP.VALUE))), max(coalesce(DP.NUMBER_VALUE, get_datapoint_number_value(DP.VALUE))) " +
+                "from " + getDatapointTableName() + " DP where DP.ENTITY_ID = S.ENTITY_ID and DP.ATTRIBUTE_NAME = S.ATTRIBUTE_NAME), " +
+                "RANGE_OUTDATED = false " + where)) {
+            if (attributeRefs != null) {
+                int parameterIndex = 1;
+                for (AttributeRef attributeRef : attributeRefs) {
+                    st.setString(parameterIndex++, attributeRef.getId());
+                    st.setString(parameterIndex++, attributeRef.getName());
+                }
+            }
+            st.executeUpdate();
+        }
+    }
+
+    /**
+     * Loads the existing partitions of the datapoint table and creates the partitions of today and the next
+     * {@link #DATA_POINTS_PARTITION_DAYS_AHEAD} days.
+     */
+    protected void updatePartitions() {
+        try {
+            persistenceService.doTransaction(em -> em.unwrap(Session.class).doWork(partitions::load));
+
+            if (partitionDaysAhead > 0) {
+                LocalDate today = LocalDateTime.ofInstant(timerService.getNow(), ZoneId.systemDefault()).toLocalDate();
+                for (int i = 0; i <= partitionDaysAhead; i++) {
+                    LocalDate day = today.plusDays(i);
+                    if (!partitions.contains(day)) {
+                        getLogger().fine("Creating datapoint partition: " + partitions.getPartitionName(day));
+                        persistenceService.doTransaction(em -> em.unwrap(Session.class).doWork(connection -> partitions.create(connection, day)));
+                        // Only insert into the partition once it has been committed
+                        partitions.add(day);
+                        // Datapoints of the day stored in the datapoint table until now can't be upserted anymore
+                        persistenceService.doTransaction(em -> em.unwrap(Session.class).doWork(connection -> {
+                            partitions.moveDatapoints(connection, day, rowsStatement -> getSummaryCountUpdate(rowsStatement, false));
+                            updateSummaryRanges(connection, null);
+                        }));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            getLogger().log(Level.WARNING, "Failed to update datapoint partitions", e);
+        }
+    }
+
+    /**
+     * Drops the partitions that only contain datapoints older than the given time, datapoints of the given
+     * attributes that are newer than the time mapped to them are copied into the datapoint table first.
+     */
+    protected void dropExpiredPartitions(LocalDateTime before, Map<LocalDateTime, List<AttributeRef>> keepAttributeRefs) {
+        String tableName = getDatapointTableName();
+
+        for (LocalDate day : partitions.getExpired(before)) {
+            String partitionName = partitions.getPartitionName(day);
+            getLogger().fine("Dropping expired datapoint partition: " + partitionName);
+            partitions.remove(day);
+
+            try {
+                persistenceService.doTransaction(em -> em.unwrap(Session.class).doWork(connection -> {
+                    try (Statement st = connection.createStatement()) {
+                        st.executeUpdate(getSummaryCountUpdate("select ENTITY_ID, ATTRIBUTE_NAME from " + partitionName, false));
+                    }
+
+                    for (Map.Entry<LocalDateTime, List<AttributeRef>> keepEntry : keepAttributeRefs.entrySet()) {
+                        List<AttributeRef> attributeRefs = keepEntry.getValue();
+                        if (attributeRefs.isEmpty() || !day.plusDays(1).atStartOfDay().isAfter(keepEntry.getKey())) {
+                            continue;
+                        }
+
+                        StringBuilder refs = new StringBuilder("(?, ?)");
+                        for (int i = 1; i < attributeRefs.size(); i++) {
+                            refs.append(", (?, ?)");
+                        }
+
+                        try (PreparedStatement st = connection.prepareStatement(getSummaryCountUpdate(
+                            "insert into " + tableName + " select * from " + partitionName +
+                                " where TIMESTAMP >= ? and (ENTITY_ID, ATTRIBUTE_NAME) in (" + refs + ") returning ENTITY_ID, ATTRIBUTE_NAME",
+                            true))) {
+                            int parameterIndex = 1;
+                            st.setObject(parameterIndex++, keepEntry.getKey());
+                            for (AttributeRef attributeRef : attributeRefs) {
+                                st.setString(parameterIndex++, attributeRef.getId());
+                                st.setString(parameterIndex++, attributeRef.getName());
+                            }
+                            st.executeUpdate();
+                        }
+                    }
+                    partitions.drop(connection, day);
+                }));
+            } catch (Exception e) {
+                getLogger().log(Level.WARNING, "Failed to drop datapoint partition: " + partitionName, e);
+                partitions.add(day);
+            }
+        }
+
+        persistenceService.doTransaction(em -> em.unwrap(Session.class).doWork(connection -> updateSummaryPeriods(connection, before)));
     }
 
     protected long getFirstPurgeMillis(Instant currentTime) {
@@ -65,6 +65,20 @@ public class AssetDatapointHealthStatusProvider implements HealthStatusProvider,
     public Object getHealthStatus() {
         ObjectNode value = Values.JSON.createObjectNode();
         value.put("totalDatapoints", assetDatapointService.getDatapointsCount());
+        value.put("partitions", assetDatapointService.partitions.getSize());
+
+        DatapointIngestBuffer<?> ingestBuffer = assetDatapointService.ingestBuffer;
+        if (ingestBuffer != null) {
+            ObjectNode ingest = value.putObject("ingest");
+            ingest.put("bufferSize", ingestBuffer.getSize());
+            ingest.put("bufferCapacity", ingestBuffer.getCapacity());
+            ingest.put("offered", ingestBuffer.getOffered());
+            ingest.put("written", ingestBuffer.getWritten());
+            ingest.put("dropped", ingestBuffer.getDropped());
+            ingest.put("batches", ingestBuffer.getBatches());
+            ingest.put("failedBatches", ingestBuffer.getFailedBatches());
+            ingest.put("producerFlushes", ingestBuffer.getProducerFlushes());
+        }
         return value;
     }
 }
@@ -26,6 +26,7 @@ import org.openremote.manager.web.ManagerWebResource;
 import org.openremote.model.asset.Asset;
 import org.openremote.model.attribute.Attribute;
 import org.openremote.model.datapoint.AssetDatapointResource;
+import org.openremote.model.datapoint.DatapointDownsampling;
 import org.openremote.model.datapoint.DatapointInterval;
 import org.openremote.model.datapoint.DatapointPeriod;
 import org.openremote.model.datapoint.ValueDatapoint;
@@ -64,7 +65,9 @@ public class AssetDatapointResourceImpl extends ManagerWebResource implements As
                                              DatapointInterval interval,
                                              Integer stepSize,
                                              long fromTimestamp,
-                                             long toTimestamp) {
+                                             long toTimestamp,
+                                             Integer maxPoints,
+                                             DatapointDownsampling downsampling) {
         try {
 
             if (isRestrictedUser() && !assetStorageService.isUserAsset(getUserId(), assetId)) {
@@ -91,7 +94,9 @@ public class AssetDatapointResourceImpl extends ManagerWebResource implements As
                     interval,
                     stepSize,
                     LocalDateTime.ofInstant(Instant.ofEpochMilli(fromTimestamp), ZoneId.systemDefault()),
-                    LocalDateTime.ofInstant(Instant.ofEpochMilli(toTimestamp), ZoneId.systemDefault()));
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(toTimestamp), ZoneId.systemDefault()),
+                maxPoints,
+                downsampling);
         } catch (IllegalStateException ex) {
             throw new BadRequestException(ex);
         } catch (UnsupportedOperationException ex) {
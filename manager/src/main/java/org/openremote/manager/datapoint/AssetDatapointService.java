@@ -10,6 +10,7 @@ import org.openremote.model.Container;
 import org.openremote.model.asset.Asset;
 import org.openremote.model.attribute.Attribute;
 import org.openremote.model.attribute.AttributeEvent.Source;
+import org.openremote.model.attribute.AttributeRef;
 import org.openremote.model.attribute.AttributeWriteFailure;
 import org.openremote.model.datapoint.AssetDatapoint;
 import org.openremote.model.query.AssetQuery;
@@ -19,13 +20,13 @@ import org.openremote.model.util.Pair;
 import org.openremote.model.value.MetaItemType;
 
 import javax.persistence.EntityManager;
-import java.sql.Date;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -42,13 +43,28 @@ import static org.openremote.model.value.MetaItemType.STORE_DATA_POINTS;
  * {@link MetaItemType#DATA_POINTS_MAX_AGE_DAYS} {@link org.openremote.model.attribute.MetaItem}
  * and {@link #DATA_POINTS_MAX_AGE_DAYS} setting; storage duration defaults to {@value #DATA_POINTS_MAX_AGE_DAYS_DEFAULT}
  * days.
+ * <p>
+ * With {@link #DATA_POINTS_INGEST_BUFFER_SIZE} set, data points of attribute updates are buffered in a
+ * {@link DatapointIngestBuffer} and stored in batches every {@link #DATA_POINTS_INGEST_FLUSH_MILLIS}, a storage failure
+ * is then only logged and doesn't fail the attribute update.
+ * <p>
+ * With {@link #DATA_POINTS_PARTITION_DAYS_AHEAD} set, data points are stored in daily {@link DatapointPartitions} and
+ * the purge drops expired partitions; only data points of attributes with a custom max age are deleted row by row.
  */
 public class AssetDatapointService extends AbstractDatapointService<AssetDatapoint> implements AssetUpdateProcessor {
 
     public static final String DATA_POINTS_MAX_AGE_DAYS = "DATA_POINTS_MAX_AGE_DAYS";
     public static final int DATA_POINTS_MAX_AGE_DAYS_DEFAULT = 31;
+    // Maximum number of datapoints buffered for asynchronous storage, 0 stores each datapoint during processing
+    public static final String DATA_POINTS_INGEST_BUFFER_SIZE = "DATA_POINTS_INGEST_BUFFER_SIZE";
+    public static final int DATA_POINTS_INGEST_BUFFER_SIZE_DEFAULT = 0;
+    public static final String DATA_POINTS_INGEST_FLUSH_MILLIS = "DATA_POINTS_INGEST_FLUSH_MILLIS";
+    public static final int DATA_POINTS_INGEST_FLUSH_MILLIS_DEFAULT = 1000;
     private static final Logger LOG = Logger.getLogger(AssetDatapointService.class.getName());
     protected int maxDatapointAgeDays;
+    protected DatapointIngestBuffer<AssetDatapoint> ingestBuffer;
+    protected int ingestFlushMillis;
+    protected ScheduledFuture<?> ingestFlushScheduledFuture;
 
     @Override
     public void init(Container container) throws Exception {
@@ -68,10 +84,19 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
         if (maxDatapointAgeDays <= 0) {
             LOG.warning(DATA_POINTS_MAX_AGE_DAYS + " value is not a valid value so data points won't be auto purged");
         }
+
+        int ingestBufferSize = getInteger(container.getConfig(), DATA_POINTS_INGEST_BUFFER_SIZE, DATA_POINTS_INGEST_BUFFER_SIZE_DEFAULT);
+        ingestFlushMillis = Math.max(1, getInteger(container.getConfig(), DATA_POINTS_INGEST_FLUSH_MILLIS, DATA_POINTS_INGEST_FLUSH_MILLIS_DEFAULT));
+        if (ingestBufferSize > 0) {
+            LOG.info("Storing data points asynchronously, buffer size: " + ingestBufferSize + ", flush interval (ms): " + ingestFlushMillis);
+            ingestBuffer = new DatapointIngestBuffer<>(ingestBufferSize, UPSERT_MAX_ROWS, this::upsertValues);
+        }
     }
 
     @Override
     public void start(Container container) throws Exception {
+        updatePartitions();
+
         if (maxDatapointAgeDays > 0) {
             dataPointsPurgeScheduledFuture = executorService.scheduleAtFixedRate(
                 this::purgeDataPoints,
@@ -79,6 +104,28 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
                 Duration.ofDays(1).toMillis(), TimeUnit.MILLISECONDS
             );
         }
+
+        if (ingestBuffer != null) {
+            ingestFlushScheduledFuture = executorService.scheduleWithFixedDelay(
+                ingestBuffer::flush,
+                ingestFlushMillis,
+                ingestFlushMillis,
+                TimeUnit.MILLISECONDS
+            );
+        }
+    }
+
+    @Override
+    public void stop(Container container) throws Exception {
+        super.stop(container);
+
+        if (ingestBuffer != null) {
+            if (ingestFlushScheduledFuture != null) {
+                ingestFlushScheduledFuture.cancel(false);
+            }
+            // Data points arriving from now on are stored directly
+            ingestBuffer.close();
+        }
     }
 
     protected static boolean attributeIsStoreDatapoint(Attribute<?> attribute) {
@@ -93,7 +140,10 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
 
         if (attributeIsStoreDatapoint(attribute) && attribute.getValue().isPresent()) { // Don't store datapoints with null value
             try {
-                upsertValue(asset.getId(), attribute.getName(), attribute.getValue().orElse(null), LocalDateTime.ofInstant(Instant.ofEpochMilli(attribute.getTimestamp().orElseGet(timerService::getCurrentTimeMillis)), ZoneId.systemDefault()));
+                long timestamp = attribute.getTimestamp().orElseGet(timerService::getCurrentTimeMillis);
+                if (ingestBuffer == null || !ingestBuffer.offer(new AssetDatapoint(asset.getId(), attribute.getName(), attribute.getValue().orElse(null), timestamp))) {
+                    upsertValue(asset.getId(), attribute.getName(), attribute.getValue().orElse(null), LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()));
+                }
             } catch (Exception e) {
                 throw new AssetProcessingException(AttributeWriteFailure.STATE_STORAGE_FAILED, "Failed to insert or update asset data point for attribute: " + attribute, e);
             }
@@ -138,13 +188,18 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
                 .flatMap(List::stream)
                 .collect(toList());
 
+            // Drop partitions older than the default duration, keeping data points of attributes with a longer duration
+            Map<LocalDateTime, List<AttributeRef>> keepAttributeRefs = attributes.stream()
+                .filter(attributeRef -> attributeRef.value.getMetaValue(MetaItemType.DATA_POINTS_MAX_AGE_DAYS).orElse(maxDatapointAgeDays) > maxDatapointAgeDays)
+                .collect(groupingBy(
+                    attributeRef -> getPurgeTime(attributeRef.value.getMetaValue(MetaItemType.DATA_POINTS_MAX_AGE_DAYS).orElse(maxDatapointAgeDays)),
+                    Collectors.mapping(attributeRef -> new AttributeRef(attributeRef.key, attributeRef.value.getName()), toList())));
+            dropExpiredPartitions(getPurgeTime(maxDatapointAgeDays), keepAttributeRefs);
+
             // Purge data points not in the above list using default duration
             LOG.fine("Purging data points of attributes that use default max age days of " + maxDatapointAgeDays);
 
-            persistenceService.doTransaction(em -> em.createQuery(
-                "delete from AssetDatapoint dp " +
-                    "where dp.timestamp < :dt" + buildWhereClause(attributes, true)
-            ).setParameter("dt", Date.from(timerService.getNow().truncatedTo(DAYS).minus(maxDatapointAgeDays, DAYS))).executeUpdate());
+            doPurge("where dp.TIMESTAMP < :dt" + buildWhereClause(attributes, true), getPurgeTime(maxDatapointAgeDays));
 
             if (!attributes.isEmpty()) {
                 // Purge data points that have specific age constraints
@@ -158,10 +213,7 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
                     LOG.fine("Purging data points of " + attrs.size() + " attributes that use a max age of " + age);
 
                     try {
-                        persistenceService.doTransaction(em -> em.createQuery(
-                            "delete from AssetDatapoint dp " +
-                                "where dp.timestamp < :dt" + buildWhereClause(attrs, false)
-                        ).setParameter("dt", Date.from(timerService.getNow().truncatedTo(DAYS).minus(age, DAYS))).executeUpdate());
+                        doPurge("where dp.TIMESTAMP < :dt" + buildWhereClause(attrs, false), getPurgeTime(age));
                     } catch (Exception e) {
                         LOG.log(Level.SEVERE, "An error occurred whilst deleting data points, this should not happen", e);
                     }
@@ -171,9 +223,17 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
             LOG.log(Level.WARNING, "Failed to run data points purge", e);
         }
 
+        updatePartitions();
         LOG.info("Finished data points purge daily task");
     }
 
+    /**
+     * @return The time before which data points with the given max age are purged.
+     */
+    protected LocalDateTime getPurgeTime(int maxAgeDays) {
+        return LocalDateTime.ofInstant(timerService.getNow().truncatedTo(DAYS).minus(maxAgeDays, DAYS), ZoneId.systemDefault());
+    }
+
     protected String buildWhereClause(List<Pair<String, Attribute<?>>> attributes, boolean negate) {
 
         if (attributes.isEmpty()) {
@@ -184,6 +244,6 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
             .map(attributeRef -> "('" + attributeRef.key + "','" + attributeRef.value.getName() + "')")
             .collect(Collectors.joining(","));
 
-        return " and (dp.assetId, dp.attributeName) " + (negate ? "not " : "") + "in (" + whereStr + ")";
+        return " and (dp.ENTITY_ID, dp.ATTRIBUTE_NAME) " + (negate ? "not " : "") + "in (" + whereStr + ")";
     }
 }
@@ -64,6 +64,7 @@ public class AssetPredictedDatapointHealthStatusProvider implements HealthStatus
     public Object getHealthStatus() {
         ObjectNode value = Values.JSON.createObjectNode();
         value.put("totalDatapoints", assetPredictedDatapointService.getDatapointsCount());
+        value.put("partitions", assetPredictedDatapointService.partitions.getSize());
         return value;
     }
 }
@@ -34,6 +34,7 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -66,6 +67,8 @@ public class AssetPredictedDatapointService extends AbstractDatapointService<Ass
 
     @Override
     public void start(Container container) throws Exception {
+        updatePartitions();
+
         dataPointsPurgeScheduledFuture = executorService.scheduleAtFixedRate(
             this::purgeDataPoints,
             getFirstPurgeMillis(timerService.getNow()),
@@ -109,9 +112,13 @@ public class AssetPredictedDatapointService extends AbstractDatapointService<Ass
         try {
             // Purge data points not in the above list using default duration
             LOG.finer("Purging predicted data points older than now");
-            doPurge("where dp.timestamp < :dt", LocalDateTime.ofInstant(timerService.getNow().truncatedTo(HOURS), ZoneId.systemDefault()));
+            LocalDateTime purgeTime = LocalDateTime.ofInstant(timerService.getNow().truncatedTo(HOURS), ZoneId.systemDefault());
+            dropExpiredPartitions(purgeTime, Collections.emptyMap());
+            doPurge("where dp.TIMESTAMP < :dt", purgeTime);
         } catch (Exception e) {
             LOG.log(Level.WARNING, "Failed to run data points purge", e);
         }
+
+        updatePartitions();
     }
 }
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.datapoint;
+
+import org.openremote.model.datapoint.DatapointDownsampling;
+import org.openremote.model.datapoint.ValueDatapoint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reduces a series of numeric datapoints to at most a maximum number of points in a single pass, datapoints must be
+ * passed to {@link #accept} in timestamp order. The time range is divided into buckets of equal duration, so only the
+ * datapoints of the current buckets are kept in memory and not the whole series.
+ * <p>
+ * If the series has no more than the maximum number of points it is returned unchanged.
+ */
+public abstract class DatapointDownsampler {
+
+    /**
+     * See {@link DatapointDownsampling#LTTB}, the first and last datapoint are always returned (only the first one if
+     * the maximum is a single point).
+     */
+    public static class LargestTriangleThreeBuckets extends DatapointDownsampler {
+
+        protected final List<double[]> currentBucket = new ArrayList<>();
+        protected final List<double[]> nextBucket = new ArrayList<>();
+        protected long currentBucketIndex = -1;
+        protected long nextBucketIndex = -1;
+        protected double[] selected;
+
+        public LargestTriangleThreeBuckets(int maxPoints, long fromTimestamp, long toTimestamp) {
+            super(maxPoints, Math.max(1, maxPoints - 2), fromTimestamp, toTimestamp);
+        }
+
+        @Override
+        protected void downsample(long timestamp, double value) {
+            double[] point = new double[]{timestamp, value};
+
+            if (selected == null) {
+                selected = point;
+                emit(point);
+                return;
+            }
+
+            long bucketIndex = getBucketIndex(timestamp);
+
+            if (currentBucketIndex < 0 || bucketIndex == currentBucketIndex && nextBucketIndex < 0) {
+                currentBucketIndex = bucketIndex;
+                currentBucket.add(point);
+            } else if (nextBucketIndex < 0 || bucketIndex == nextBucketIndex) {
+                nextBucketIndex = bucketIndex;
+                nextBucket.add(point);
+            } else {
+                selectFromCurrentBucket(average(nextBucket));
+                currentBucket.addAll(nextBucket);
+                currentBucketIndex = nextBucketIndex;
+                nextBucket.clear();
+                nextBucket.add(point);
+                nextBucketIndex = bucketIndex;
+            }
+        }
+
+        @Override
+        protected void finishDownsample() {
+            // The last datapoint is always returned so take it out of its bucket
+            List<double[]> lastBucket = nextBucket.isEmpty() ? currentBucket : nextBucket;
+            if (lastBucket.isEmpty()) {
+                return;
+            }
+            double[] last = lastBucket.remove(lastBucket.size() - 1);
+
+            if (!currentBucket.isEmpty()) {
+                selectFromCurrentBucket(nextBucket.isEmpty() ? last : average(nextBucket));
+            }
+            if (!nextBucket.isEmpty()) {
+                currentBucket.addAll(nextBucket);
+                nextBucket.clear();
+                selectFromCurrentBucket(last);
+            }
+            if (maxPoints > 1) {
+                emit(last);
+            }
+        }
+
+        /**
+         * Selects the datapoint of the current bucket that forms the largest triangle with the previously selected
+         * datapoint and the given datapoint of the next bucket, then clears the current bucket.
+         */
+        protected void selectFromCurrentBucket(double[] next) {
+            double[] largest = null;
+            double largestArea = -1;
+
+            for (double[] point : currentBucket) {
+                double area = Math.abs(
+                    (selected[0] - next[0]) * (point[1] - selected[1]) - (selected[0] - point[0]) * (next[1] - selected[1])
+                );
+                if (area > largestArea) {
+                    largestArea = area;
+                    largest = point;
+                }
+            }
+
+            currentBucket.clear();
+
+            // With a maximum of two points or less there is no room for anything but the first and last datapoint
+            if (largest != null && maxPoints > 2) {
+                selected = largest;
+                emit(largest);
+            }
+        }
+
+        protected static double[] average(List<double[]> points) {
+            double timestamp = 0;
+            double value = 0;
+            for (double[] point : points) {
+                timestamp += point[0];
+                value += point[1];
+            }
+            return new double[]{timestamp / points.size(), value / points.size()};
+        }
+    }
+
+    /**
+     * See {@link DatapointDownsampling#MIN_MAX}, the datapoints of a bucket are returned in timestamp order. If the
+     * maximum is a single point only the highest datapoint is returned.
+     */
+    public static class MinMax extends DatapointDownsampler {
+
+        protected long bucketIndex = -1;
+        protected double[] min;
+        protected double[] max;
+
+        public MinMax(int maxPoints, long fromTimestamp, long toTimestamp) {
+            super(maxPoints, Math.max(1, maxPoints / 2), fromTimestamp, toTimestamp);
+        }
+
+        @Override
+        protected void downsample(long timestamp, double value) {
+            long index = getBucketIndex(timestamp);
+
+            if (index != bucketIndex) {
+                emitBucket();
+                bucketIndex = index;
+            }
+
+            if (min == null || value < min[1]) {
+                min = new double[]{timestamp, value};
+            }
+            if (max == null || value > max[1]) {
+                max = new double[]{timestamp, value};
+            }
+        }
+
+        @Override
+        protected void finishDownsample() {
+            emitBucket();
+        }
+
+        protected void emitBucket() {
+            if (min == null) {
+                return;
+            }
+            if (min[0] == max[0] || maxPoints - result.size() < 2) {
+                emit(max);
+            } else {
+                emit(min[0] < max[0] ? min : max);
+                emit(min[0] < max[0] ? max : min);
+            }
+            min = null;
+            max = null;
+        }
+    }
+
+    protected final int maxPoints;
+    protected final int buckets;
+    protected final long fromTimestamp;
+    protected final double bucketMillis;
+    // Datapoints are only downsampled once there are more than the maximum
+    protected List<double[]> buffer = new ArrayList<>();
+    protected final List<ValueDatapoint<?>> result = new ArrayList<>();
+
+    protected DatapointDownsampler(int maxPoints, int buckets, long fromTimestamp, long toTimestamp) {
+        this.maxPoints = Math.max(1, maxPoints);
+        this.buckets = buckets;
+        this.fromTimestamp = fromTimestamp;
+        this.bucketMillis = Math.max(1d, (double) (toTimestamp - fromTimestamp) / buckets);
+    }
+
+    public static DatapointDownsampler create(DatapointDownsampling downsampling, int maxPoints, long fromTimestamp, long toTimestamp) {
+        if (downsampling == DatapointDownsampling.MIN_MAX) {
+            return new MinMax(maxPoints, fromTimestamp, toTimestamp);
+        }
+        return new LargestTriangleThreeBuckets(maxPoints, fromTimestamp, toTimestamp);
+    }
+
+    public void accept(long timestamp, double value) {
+        if (buffer != null) {
+            buffer.add(new double[]{timestamp, value});
+            if (buffer.size() <= maxPoints) {
+                return;
+            }
+            List<double[]> points = buffer;
+            buffer = null;
+            points.forEach(point -> downsample((long) point[0], point[1]));
+            return;
+        }
+        downsample(timestamp, value);
+    }
+
+    public ValueDatapoint<?>[] finish() {
+        if (buffer != null) {
+            buffer.forEach(this::emit);
+            buffer = null;
+        } else {
+            finishDownsample();
+        }
+        return result.toArray(new ValueDatapoint<?>[0]);
+    }
+
+    protected long getBucketIndex(long timestamp) {
+        return Math.max(0, Math.min(buckets - 1, (long) ((timestamp - fromTimestamp) / bucketMillis)));
+    }
+
+    protected void emit(double[] point) {
+        result.add(new ValueDatapoint<>((long) point[0], point[1]));
+    }
+
+    protected abstract void downsample(long timestamp, double value);
+
+    protected abstract void finishDownsample();
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.datapoint;
+
+import org.openremote.model.datapoint.Datapoint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded buffer of {@link Datapoint}s that are stored asynchronously in batches by the given writer.
+ * <p>
+ * When the buffer is full, the thread offering a datapoint writes the buffered datapoints itself; this slows down
+ * producers to the rate at which the database can store datapoints instead of dropping them. Batches are written
+ * one at a time in the order the datapoints were offered. A batch that can't be stored is logged and dropped.
+ * <p>
+ * Once {@link #close} has been called no more datapoints are accepted and a final {@link #flush} stores all buffered
+ * datapoints.
+ */
+public class DatapointIngestBuffer<T extends Datapoint> {
+
+    private static final Logger LOG = Logger.getLogger(DatapointIngestBuffer.class.getName());
+    protected final BlockingQueue<T> queue;
+    protected final int maxBatchSize;
+    protected final Consumer<List<T>> writer;
+    protected final Object flushLock = new Object();
+    protected final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    protected boolean closed;
+    protected final LongAdder offered = new LongAdder();
+    protected final LongAdder written = new LongAdder();
+    protected final LongAdder dropped = new LongAdder();
+    protected final LongAdder batches = new LongAdder();
+    protected final LongAdder failedBatches = new LongAdder();
+    protected final LongAdder producerFlushes = new LongAdder();
+
+    /**
+     * @param capacity     The maximum number of buffered datapoints.
+     * @param maxBatchSize The maximum number of datapoints passed to the writer at once.
+     * @param writer       Stores a batch of datapoints, throws an exception if the batch could not be stored.
+     */
+    public DatapointIngestBuffer(int capacity, int maxBatchSize, Consumer<List<T>> writer) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatchSize = maxBatchSize;
+        this.writer = writer;
+    }
+
+    /**
+     * @return <code>false</code> if the buffer has been closed and the datapoint must be stored directly.
+     */
+    public boolean offer(T datapoint) {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            while (!queue.offer(datapoint)) {
+                producerFlushes.increment();
+                flush();
+            }
+            offered.increment();
+            return true;
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes batches until the buffer is empty.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<T> batch = new ArrayList<>(Math.min(maxBatchSize, queue.size() + 1));
+            while (queue.drainTo(batch, maxBatchSize) > 0) {
+                try {
+                    writer.accept(batch);
+                    written.add(batch.size());
+                } catch (Exception e) {
+                    LOG.log(Level.WARNING, "Failed to store batch of datapoints, dropping: " + batch.size(), e);
+                    failedBatches.increment();
+                    dropped.add(batch.size());
+                }
+                batches.increment();
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting datapoints and stores all buffered datapoints.
+     */
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        flush();
+    }
+
+    public int getSize() {
+        return queue.size();
+    }
+
+    public int getCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    public long getOffered() {
+        return offered.sum();
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getFailedBatches() {
+        return failedBatches.sum();
+    }
+
+    public long getProducerFlushes() {
+        return producerFlushes.sum();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "size=" + getSize() +
+            ", offered=" + getOffered() +
+            ", written=" + getWritten() +
+            ", dropped=" + getDropped() +
+            ", batches=" + getBatches() +
+            ", failedBatches=" + getFailedBatches() +
+            ", producerFlushes=" + getProducerFlushes() +
+            '}';
+    }
+}
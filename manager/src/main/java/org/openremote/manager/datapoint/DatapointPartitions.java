@@ -0,0 +1,230 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.datapoint;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Daily partitions of a datapoint table, these are child tables inheriting from the datapoint table with a check
+ * constraint on the timestamp so queries of the datapoint table only scan the partitions of the queried period.
+ * <p>
+ * Datapoints must be inserted into the partition of their day, see {@link #getTableName}; datapoints of a day without
+ * a partition are stored in the datapoint table itself and moved into the partition once it has been added. Inserts
+ * must hold the {@link #getInsertLock} so a partition is never added whilst a datapoint of its day is being inserted
+ * into the datapoint table. Expired datapoints are removed by dropping their partition instead of deleting rows.
+ */
+public class DatapointPartitions {
+
+    protected static final DateTimeFormatter PARTITION_SUFFIX_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+    protected final String tableName;
+    protected final NavigableSet<LocalDate> partitionDays = new ConcurrentSkipListSet<>();
+    protected final ReadWriteLock insertLock = new ReentrantReadWriteLock();
+
+    public DatapointPartitions(String tableName) {
+        this.tableName = tableName;
+    }
+
+    /**
+     * Reads the existing partitions of the datapoint table.
+     */
+    public void load(Connection connection) throws SQLException {
+        String prefix = (tableName + "_").toLowerCase();
+        List<LocalDate> days = new ArrayList<>();
+
+        try (PreparedStatement st = connection.prepareStatement(
+            "select C.RELNAME from PG_INHERITS I join PG_CLASS C on C.OID = I.INHRELID where I.INHPARENT = cast(? as regclass)")) {
+            st.setString(1, tableName);
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    String name = rs.getString(1);
+                    if (name.startsWith(prefix)) {
+                        try {
+                            days.add(LocalDate.parse(name.substring(prefix.length()), PARTITION_SUFFIX_FORMAT));
+                        } catch (DateTimeParseException ignored) {
+                        }
+                    }
+                }
+            }
+        }
+
+        // Partitions must not disappear temporarily for inserts
+        insertLock.writeLock().lock();
+        try {
+            partitionDays.retainAll(days);
+            partitionDays.addAll(days);
+        } finally {
+            insertLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Creates the partition of the day unless it exists; call {@link #add} once the transaction has been committed and
+     * then {@link #moveDatapoints}.
+     */
+    public void create(Connection connection, LocalDate day) throws SQLException {
+        String partitionName = getPartitionName(day);
+        List<String> foreignKeys = new ArrayList<>();
+
+        // Indexes are copied from the datapoint table but foreign keys are not
+        try (PreparedStatement st = connection.prepareStatement(
+            "select pg_get_constraintdef(OID) from PG_CONSTRAINT where CONRELID = cast(? as regclass) and CONTYPE = 'f'")) {
+            st.setString(1, tableName);
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    foreignKeys.add(rs.getString(1));
+                }
+            }
+        }
+
+        try (Statement st = connection.createStatement()) {
+            st.executeUpdate("create table if not exists " + partitionName + " (" +
+                "like " + tableName + " including defaults including indexes, " +
+                "check (TIMESTAMP >= '" + day.atStartOfDay() + "' and TIMESTAMP < '" + day.plusDays(1).atStartOfDay() + "')" +
+                ") inherits (" + tableName + ")");
+
+            for (String foreignKey : foreignKeys) {
+                st.executeUpdate("alter table " + partitionName + " add " + foreignKey);
+            }
+        }
+    }
+
+    /**
+     * Moves the datapoints of the day stored in the datapoint table into the partition, call once the partition has
+     * been added. Datapoints that have been stored in the partition since are kept, their older duplicates in the
+     * datapoint table are deleted with the statement returned by the given function for the ENTITY_ID and
+     * ATTRIBUTE_NAME rows deleted by the given statement.
+     */
+    public void moveDatapoints(Connection connection, LocalDate day, UnaryOperator<String> duplicatesDelete) throws SQLException {
+        String partitionName = getPartitionName(day);
+
+        try (Statement st = connection.createStatement()) {
+            // Waits for transactions that inserted into the datapoint table before the partition was added
+            st.executeUpdate("lock table only " + tableName + " in share mode");
+        }
+
+        try (PreparedStatement st = connection.prepareStatement(duplicatesDelete.apply(
+            "delete from only " + tableName + " D using " + partitionName + " P " +
+                "where D.TIMESTAMP >= ? and D.TIMESTAMP < ? " +
+                "and D.ENTITY_ID = P.ENTITY_ID and D.ATTRIBUTE_NAME = P.ATTRIBUTE_NAME and D.TIMESTAMP = P.TIMESTAMP " +
+                "returning D.ENTITY_ID, D.ATTRIBUTE_NAME"))) {
+            st.setObject(1, day.atStartOfDay());
+            st.setObject(2, day.plusDays(1).atStartOfDay());
+            st.executeUpdate();
+        }
+
+        try (PreparedStatement st = connection.prepareStatement(
+            "with MOVED as (delete from only " + tableName + " where TIMESTAMP >= ? and TIMESTAMP < ? returning *) " +
+                "insert into " + partitionName + " select * from MOVED")) {
+            st.setObject(1, day.atStartOfDay());
+            st.setObject(2, day.plusDays(1).atStartOfDay());
+            st.executeUpdate();
+        }
+    }
+
+    /**
+     * Drops the partition of the day, call {@link #remove} before so no more datapoints are inserted into it.
+     */
+    public void drop(Connection connection, LocalDate day) throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.executeUpdate("drop table if exists " + getPartitionName(day));
+        }
+    }
+
+    /**
+     * Datapoints are inserted into the partition of the day from now on, waits for inserts in progress to finish.
+     */
+    public void add(LocalDate day) {
+        insertLock.writeLock().lock();
+        try {
+            partitionDays.add(day);
+        } finally {
+            insertLock.writeLock().unlock();
+        }
+    }
+
+    public void remove(LocalDate day) {
+        partitionDays.remove(day);
+    }
+
+    public boolean contains(LocalDate day) {
+        return partitionDays.contains(day);
+    }
+
+    /**
+     * @return The days of partitions that only contain datapoints older than the given time.
+     */
+    public List<LocalDate> getExpired(LocalDateTime before) {
+        List<LocalDate> expired = new ArrayList<>();
+        for (LocalDate day : partitionDays) {
+            if (day.plusDays(1).atStartOfDay().isAfter(before)) {
+                break;
+            }
+            expired.add(day);
+        }
+        return expired;
+    }
+
+    /**
+     * @return The lock to hold from getting the table name of datapoints until they have been inserted.
+     */
+    public Lock getInsertLock() {
+        return insertLock.readLock();
+    }
+
+    /**
+     * @return The table a datapoint with the given timestamp must be inserted into.
+     */
+    public String getTableName(LocalDateTime timestamp) {
+        LocalDate day = timestamp.toLocalDate();
+        return partitionDays.contains(day) ? getPartitionName(day) : tableName;
+    }
+
+    public String getPartitionName(LocalDate day) {
+        return tableName + "_" + PARTITION_SUFFIX_FORMAT.format(day);
+    }
+
+    public int getSize() {
+        return partitionDays.size();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "tableName='" + tableName + '\'' +
+            ", partitions=" + getSize() +
+            '}';
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.event;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openremote.container.message.MessageBrokerService;
+import org.openremote.container.web.socket.WebsocketComponent;
+import org.openremote.container.web.socket.WebsocketSessionQueue;
+import org.openremote.container.web.socket.WebsocketSessions;
+import org.openremote.manager.mqtt.MqttBrokerService;
+import org.openremote.manager.mqtt.ORInterceptHandler;
+import org.openremote.model.Container;
+import org.openremote.model.ContainerService;
+import org.openremote.model.system.HealthStatusProvider;
+import org.openremote.model.value.Values;
+
+public class ClientEventHealthStatusProvider implements HealthStatusProvider, ContainerService {
+
+    public static final String NAME = "clientEvents";
+    public static final String VERSION = "1.0";
+    protected ClientEventService clientEventService;
+    protected MessageBrokerService messageBrokerService;
+    protected MqttBrokerService mqttBrokerService;
+
+    @Override
+    public int getPriority() {
+        return ContainerService.DEFAULT_PRIORITY;
+    }
+
+    @Override
+    public void init(Container container) throws Exception {
+        clientEventService = container.getService(ClientEventService.class);
+        messageBrokerService = container.getService(MessageBrokerService.class);
+        if (container.hasService(MqttBrokerService.class)) {
+            mqttBrokerService = container.getService(MqttBrokerService.class);
+        }
+    }
+
+    @Override
+    public void start(Container container) throws Exception {
+
+    }
+
+    @Override
+    public void stop(Container container) throws Exception {
+
+    }
+
+    @Override
+    public String getHealthStatusName() {
+        return NAME;
+    }
+
+    @Override
+    public String getHealthStatusVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public Object getHealthStatus() {
+        ObjectNode value = Values.JSON.createObjectNode();
+
+        if (clientEventService.eventSubscriptions != null) {
+            value.put("conflatedEvents", clientEventService.eventSubscriptions.getConflatedEvents());
+        }
+
+        WebsocketComponent websocketComponent = messageBrokerService.getContext().getComponent(WebsocketComponent.NAME, WebsocketComponent.class);
+        if (websocketComponent != null) {
+            WebsocketSessions sessions = websocketComponent.getWebsocketSessions();
+            WebsocketSessionQueue.Statistics statistics = sessions.getQueueStatistics();
+            ObjectNode websocketQueues = value.putObject("websocketQueues");
+            websocketQueues.put("sessions", sessions.getAll().size());
+            websocketQueues.put("queueDepth", sessions.getQueuedMessageCount());
+            websocketQueues.put("maxQueueDepth", statistics.getMaxQueueSize());
+            websocketQueues.put("queuedMessages", statistics.getQueuedMessages());
+            websocketQueues.put("sentMessages", statistics.getSentMessages());
+            websocketQueues.put("failedMessages", statistics.getFailedMessages());
+            websocketQueues.put("droppedMessages", statistics.getDroppedMessages());
+            websocketQueues.put("conflatedMessages", statistics.getConflatedMessages());
+            websocketQueues.put("disconnectedSessions", statistics.getDisconnectedSessions());
+        }
+
+        ORInterceptHandler interceptHandler = mqttBrokerService != null ? mqttBrokerService.getInterceptHandler() : null;
+        if (interceptHandler != null) {
+            ObjectNode mqtt = value.putObject("mqtt");
+            mqtt.put("tokenVerifications", interceptHandler.getTokenVerifications());
+            mqtt.put("cachedTokenUses", interceptHandler.getCachedTokenUses());
+            mqtt.put("directAttributeEvents", interceptHandler.getDirectAttributeEvents());
+        }
+
+        return value;
+    }
+}
@@ -25,6 +25,7 @@ import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.security.AuthContext;
 import org.openremote.container.timer.TimerService;
 import org.openremote.container.web.ConnectionConstants;
+import org.openremote.manager.gateway.GatewayEventBatcher;
 import org.openremote.manager.gateway.GatewayService;
 import org.openremote.manager.mqtt.MqttBrokerService;
 import org.openremote.manager.security.ManagerIdentityService;
@@ -32,6 +33,9 @@ import org.openremote.manager.web.ManagerWebService;
 import org.openremote.model.Constants;
 import org.openremote.model.Container;
 import org.openremote.model.ContainerService;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.attribute.AttributeRef;
+import org.openremote.model.event.TriggeredEventSubscription;
 import org.openremote.model.event.shared.*;
 import org.openremote.model.syslog.SyslogEvent;
 
@@ -163,7 +167,9 @@ public class ClientEventService implements ContainerService {
         gatewayService = container.getService(GatewayService.class);
 
         eventSubscriptions = new EventSubscriptions(
-            container.getService(TimerService.class)
+            container.getService(TimerService.class),
+            container.getExecutorService(),
+            this::sendToSession
         );
 
         messageBrokerService.getContext().getTypeConverterRegistry().addTypeConverters(
@@ -178,7 +184,14 @@ public class ClientEventService implements ContainerService {
                 from("websocket://" + WEBSOCKET_EVENTS)
                     .routeId("FromClientWebsocketEvents")
                     .process(exchange -> exchange.getIn().setHeader(HEADER_CONNECTION_TYPE, HEADER_CONNECTION_TYPE_WEBSOCKET))
-                    .to(ClientEventService.CLIENT_EVENT_QUEUE)
+                    .choice()
+                        .when(ClientEventService::isEventBatch)
+                            .split(method(ClientEventService.class, "splitEventBatch"))
+                                .to(ClientEventService.CLIENT_EVENT_QUEUE)
+                            .end()
+                        .endChoice()
+                        .otherwise()
+                            .to(ClientEventService.CLIENT_EVENT_QUEUE)
                     .end();
 
                 from(ClientEventService.CLIENT_EVENT_QUEUE)
@@ -375,10 +388,16 @@ public class ClientEventService implements ContainerService {
                 return;
             }
             if (sessionInfo.connectionType.equals(HEADER_CONNECTION_TYPE_WEBSOCKET)) {
-                messageBrokerService.getProducerTemplate().sendBodyAndHeader(
+                Map<String, Object> headers = new HashMap<>();
+                headers.put(ConnectionConstants.SESSION_KEY, sessionKey);
+                String conflationKey = getConflationKey(data);
+                if (conflationKey != null) {
+                    headers.put(ConnectionConstants.CONFLATION_KEY, conflationKey);
+                }
+                messageBrokerService.getProducerTemplate().sendBodyAndHeaders(
                         "websocket://" + WEBSOCKET_EVENTS,
                         data,
-                        ConnectionConstants.SESSION_KEY, sessionKey
+                        headers
                 );
             } else if (sessionInfo.connectionType.equals(HEADER_CONNECTION_TYPE_MQTT)) {
                 messageBrokerService.getProducerTemplate().sendBodyAndHeader(
@@ -390,6 +409,33 @@ public class ClientEventService implements ContainerService {
         }
     }
 
+    public static boolean isEventBatch(Exchange exchange) {
+        Object body = exchange.getIn().getBody();
+        return body instanceof String && GatewayEventBatcher.isEventBatch((String) body);
+    }
+
+    /**
+     * Splits a message containing a batch of events (see {@link GatewayEventBatcher}) into a message per event.
+     */
+    public static List<SharedEvent> splitEventBatch(Exchange exchange) throws Exception {
+        return Arrays.asList(GatewayEventBatcher.readEventBatch(exchange.getIn().getBody(String.class)));
+    }
+
+    /**
+     * A queued message for a single {@link AttributeEvent} can be replaced by a later message of the same subscription
+     * and attribute, if the websocket session queue policy allows it.
+     */
+    protected static String getConflationKey(Object data) {
+        if (data instanceof TriggeredEventSubscription) {
+            List<?> events = ((TriggeredEventSubscription<?>) data).getEvents();
+            if (events != null && events.size() == 1 && events.get(0) instanceof AttributeEvent) {
+                AttributeRef attributeRef = ((AttributeEvent) events.get(0)).getAttributeRef();
+                return ((TriggeredEventSubscription<?>) data).getSubscriptionId() + ":" + attributeRef.getId() + ":" + attributeRef.getName();
+            }
+        }
+        return null;
+    }
+
     public void closeSession(String sessionKey) {
         SessionInfo sessionInfo = sessionKeyInfoMap.get(sessionKey);
 
@@ -401,6 +447,17 @@ public class ClientEventService implements ContainerService {
         sessionInfo.closeRunnable.run();
     }
 
+    /**
+     * Passes an inbound client event that doesn't go through the {@link #CLIENT_EVENT_QUEUE} to the interceptors, e.g.
+     * an attribute write of an MQTT client that is sent straight to the asset queue.
+     *
+     * @return <code>false</code> if an interceptor marked the exchange as stop routing.
+     */
+    public boolean interceptInboundEvent(Exchange exchange) {
+        passToInterceptors(exchange);
+        return !exchange.getProperty(Exchange.ROUTE_STOP, false, Boolean.class);
+    }
+
     protected void passToInterceptors(Exchange exchange) {
         // Pass to each interceptor and stop if any interceptor marks the exchange as stop routing
         if (exchangeInterceptors.stream().anyMatch(interceptor -> {
@@ -24,26 +24,50 @@ import org.apache.camel.Message;
 import org.apache.camel.impl.DefaultMessage;
 import org.openremote.container.timer.TimerService;
 import org.openremote.container.web.ConnectionConstants;
+import org.openremote.model.asset.AssetFilter;
+import org.openremote.model.attribute.AttributeEvent;
 import org.openremote.model.event.TriggeredEventSubscription;
-import org.openremote.model.event.shared.CancelEventSubscription;
-import org.openremote.model.event.shared.EventSubscription;
-import org.openremote.model.event.shared.SharedEvent;
+import org.openremote.model.event.shared.*;
 import org.openremote.model.util.TextUtil;
 
 import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Manages subscriptions to events for WebSocket sessions.
+ * <p>
+ * Subscriptions are modified while holding the lock of {@link #sessionSubscriptionIdMap}, each modification publishes
+ * a new immutable {@link SubscriptionIndex} which is used without locking to find the candidate subscriptions of an
+ * event.
+ * <p>
+ * Events of a subscription with a {@link EventSubscription#getFlushIntervalMillis} are collected in an {@link
+ * EventBuffer} and sent to the session as one {@link TriggeredEventSubscription} per interval.
  */
 public class EventSubscriptions {
 
     private static final Logger LOG = Logger.getLogger(EventSubscriptions.class.getName());
+    public static final int MAX_FLUSH_INTERVAL_MILLIS = 60000;
 
     final protected TimerService timerService;
+    final protected ScheduledExecutorService executorService;
+    final protected BiConsumer<String, Object> sessionSender;
+    final protected LongAdder conflatedEvents = new LongAdder();
     final protected Map<String, SessionSubscriptions> sessionSubscriptionIdMap = new HashMap<>();
+    protected volatile SubscriptionIndex subscriptionIndex = new SubscriptionIndex(Collections.emptyMap());
 
     class SessionSubscriptions extends HashSet<SessionSubscription> {
+        final String sessionKey;
+
+        SessionSubscriptions(String sessionKey) {
+            this.sessionKey = sessionKey;
+        }
+
         public void createOrUpdate(boolean restrictedUser, EventSubscription<?> eventSubscription) {
 
             if (TextUtil.isNullOrEmpty(eventSubscription.getSubscriptionId())) {
@@ -52,7 +76,7 @@ public class EventSubscriptions {
                 cancelById(eventSubscription.getSubscriptionId());
             }
 
-            add(new SessionSubscription(restrictedUser, timerService.getCurrentTimeMillis(), eventSubscription));
+            add(new SessionSubscription(sessionKey, restrictedUser, timerService.getCurrentTimeMillis(), eventSubscription));
         }
 
         public void update(boolean resstrictedUser, String[] subscriptionIds) {
@@ -66,25 +90,46 @@ public class EventSubscriptions {
         }
 
         public void cancelByType(String eventType) {
-            removeIf(sessionSubscription -> sessionSubscription.subscriptionId == null && sessionSubscription.subscription.getEventType().equals(eventType));
+            cancelIf(sessionSubscription -> sessionSubscription.subscriptionId == null && sessionSubscription.subscription.getEventType().equals(eventType));
         }
 
         public void cancelById(String subscriptionId) {
-            removeIf(sessionSubscription -> sessionSubscription.subscription.getSubscriptionId().equals(subscriptionId));
+            cancelIf(sessionSubscription -> sessionSubscription.subscription.getSubscriptionId().equals(subscriptionId));
+        }
+
+        public void cancelAll() {
+            cancelIf(sessionSubscription -> true);
+        }
+
+        protected void cancelIf(Predicate<SessionSubscription> predicate) {
+            removeIf(sessionSubscription -> {
+                if (!predicate.test(sessionSubscription)) {
+                    return false;
+                }
+                if (sessionSubscription.eventBuffer != null) {
+                    sessionSubscription.eventBuffer.cancel();
+                }
+                return true;
+            });
         }
     }
 
     class SessionSubscription {
-        boolean restrictedUser;
-        long timestamp;
+        volatile boolean restrictedUser;
+        volatile long timestamp;
         final EventSubscription subscription;
         final String subscriptionId;
+        final EventBuffer eventBuffer;
 
-        public SessionSubscription(boolean restrictedUser, long timestamp, EventSubscription subscription) {
+        public SessionSubscription(String sessionKey, boolean restrictedUser, long timestamp, EventSubscription subscription) {
             this.restrictedUser = restrictedUser;
             this.timestamp = timestamp;
             this.subscription = subscription;
             this.subscriptionId = subscription.getSubscriptionId();
+            Integer flushIntervalMillis = subscription.getFlushIntervalMillis();
+            this.eventBuffer = subscription.getInternalConsumer() == null && flushIntervalMillis != null && flushIntervalMillis > 0
+                ? new EventBuffer(sessionKey, subscriptionId, Math.min(flushIntervalMillis, MAX_FLUSH_INTERVAL_MILLIS))
+                : null;
         }
 
         public boolean matches(boolean accessibleForRestrictedUsers, SharedEvent event) {
@@ -92,9 +137,168 @@ public class EventSubscriptions {
         }
     }
 
-    public EventSubscriptions(TimerService timerService) {
+    /**
+     * The pending events of a subscription with a flush interval. The first event of an interval schedules the flush,
+     * an {@link AttributeEvent} replaces a pending event of the same attribute so a slow session receives at most one
+     * event per attribute and interval. Other events are all delivered.
+     */
+    class EventBuffer {
+        final String sessionKey;
+        final String subscriptionId;
+        final long flushIntervalMillis;
+        final Map<Object, SharedEvent> pendingEvents = new LinkedHashMap<>();
+        boolean cancelled;
+
+        EventBuffer(String sessionKey, String subscriptionId, long flushIntervalMillis) {
+            this.sessionKey = sessionKey;
+            this.subscriptionId = subscriptionId;
+            this.flushIntervalMillis = flushIntervalMillis;
+        }
+
+        synchronized void add(SharedEvent event) {
+            if (cancelled) {
+                return;
+            }
+            if (pendingEvents.isEmpty()) {
+                executorService.schedule(this::flush, flushIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+            Object key = event instanceof AttributeEvent ? ((AttributeEvent) event).getAttributeRef() : new Object();
+            // Remove first so the latest event takes the position of the latest change
+            if (pendingEvents.remove(key) != null) {
+                conflatedEvents.increment();
+            }
+            pendingEvents.put(key, event);
+        }
+
+        void flush() {
+            List<SharedEvent> events;
+            synchronized (this) {
+                if (cancelled || pendingEvents.isEmpty()) {
+                    return;
+                }
+                events = new ArrayList<>(pendingEvents.values());
+                pendingEvents.clear();
+            }
+            try {
+                sessionSender.accept(sessionKey, new TriggeredEventSubscription<>(events, subscriptionId));
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Failed to send pending events to session '" + sessionKey + "': " + events.size(), e);
+            }
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            pendingEvents.clear();
+        }
+    }
+
+    /**
+     * The subscription of a session.
+     */
+    static class IndexedSubscription {
+        final String sessionKey;
+        final SessionSubscription sessionSubscription;
+
+        IndexedSubscription(String sessionKey, SessionSubscription sessionSubscription) {
+            this.sessionKey = sessionKey;
+            this.sessionSubscription = sessionSubscription;
+        }
+    }
+
+    /**
+     * The subscriptions of an event type, each subscription is only added to the most selective bucket its filter
+     * allows: by asset ID, by parent ID, by realm or, when it has no such criteria, to the unindexed subscriptions.
+     * The filter of a candidate must still be applied to the event.
+     */
+    static class EventTypeIndex {
+        final Map<String, List<IndexedSubscription>> byAssetId = new HashMap<>();
+        final Map<String, List<IndexedSubscription>> byParentId = new HashMap<>();
+        final Map<String, List<IndexedSubscription>> byRealm = new HashMap<>();
+        final List<IndexedSubscription> unindexed = new ArrayList<>();
+
+        void add(IndexedSubscription indexedSubscription) {
+            EventFilter<?> filter = indexedSubscription.sessionSubscription.subscription.getFilter();
+
+            if (filter instanceof AssetFilter) {
+                AssetFilter<?> assetFilter = (AssetFilter<?>) filter;
+                if (assetFilter.getAssetIds() != null && assetFilter.getAssetIds().length > 0) {
+                    // An event has one asset ID, so the subscription is a candidate at most once
+                    for (String assetId : new HashSet<>(Arrays.asList(assetFilter.getAssetIds()))) {
+                        byAssetId.computeIfAbsent(assetId, id -> new ArrayList<>()).add(indexedSubscription);
+                    }
+                    return;
+                }
+                if (assetFilter.getParentIds() != null && assetFilter.getParentIds().length > 0) {
+                    for (String parentId : new HashSet<>(Arrays.asList(assetFilter.getParentIds()))) {
+                        byParentId.computeIfAbsent(parentId, id -> new ArrayList<>()).add(indexedSubscription);
+                    }
+                    return;
+                }
+                if (!TextUtil.isNullOrEmpty(assetFilter.getRealm())) {
+                    byRealm.computeIfAbsent(assetFilter.getRealm(), realm -> new ArrayList<>()).add(indexedSubscription);
+                    return;
+                }
+            } else if (filter instanceof TenantFilter && ((TenantFilter<?>) filter).getRealm() != null) {
+                byRealm.computeIfAbsent(((TenantFilter<?>) filter).getRealm(), realm -> new ArrayList<>()).add(indexedSubscription);
+                return;
+            }
+
+            unindexed.add(indexedSubscription);
+        }
+
+        void collectCandidates(SharedEvent event, List<IndexedSubscription> candidates) {
+            if (event instanceof AssetInfo) {
+                AssetInfo assetInfo = (AssetInfo) event;
+                addAll(candidates, byAssetId.get(assetInfo.getAssetId()));
+                addAll(candidates, byParentId.get(assetInfo.getParentId()));
+                addAll(candidates, byRealm.get(assetInfo.getRealm()));
+            } else if (event instanceof TenantScopedEvent) {
+                addAll(candidates, byRealm.get(((TenantScopedEvent) event).getRealm()));
+            }
+            candidates.addAll(unindexed);
+        }
+
+        static void addAll(List<IndexedSubscription> candidates, List<IndexedSubscription> subscriptions) {
+            if (subscriptions != null) {
+                candidates.addAll(subscriptions);
+            }
+        }
+    }
+
+    /**
+     * An immutable snapshot of all subscriptions, indexed by event type and filter criteria.
+     */
+    static class SubscriptionIndex {
+        final Map<String, EventTypeIndex> eventTypeIndexMap = new HashMap<>();
+
+        SubscriptionIndex(Map<String, SessionSubscriptions> sessionSubscriptionIdMap) {
+            sessionSubscriptionIdMap.forEach((sessionKey, sessionSubscriptions) ->
+                sessionSubscriptions.forEach(sessionSubscription ->
+                    eventTypeIndexMap
+                        .computeIfAbsent(sessionSubscription.subscription.getEventType(), eventType -> new EventTypeIndex())
+                        .add(new IndexedSubscription(sessionKey, sessionSubscription))));
+        }
+
+        List<IndexedSubscription> getCandidates(SharedEvent event) {
+            EventTypeIndex eventTypeIndex = eventTypeIndexMap.get(event.getEventType());
+            if (eventTypeIndex == null) {
+                return Collections.emptyList();
+            }
+            List<IndexedSubscription> candidates = new ArrayList<>();
+            eventTypeIndex.collectCandidates(event, candidates);
+            return candidates;
+        }
+    }
+
+    /**
+     * @param executorService Flushes the events of subscriptions with a flush interval.
+     * @param sessionSender   Sends the flushed events to a session.
+     */
+    public EventSubscriptions(TimerService timerService, ScheduledExecutorService executorService, BiConsumer<String, Object> sessionSender) {
         LOG.info("Starting background task checking for expired event subscriptions from clients");
         this.timerService = timerService;
+        this.executorService = executorService;
+        this.sessionSender = sessionSender;
     }
 
     public void createOrUpdate(String sessionKey, boolean restrictedUser, EventSubscription<?> subscription) {
@@ -102,8 +306,9 @@ public class EventSubscriptions {
             // TODO Check if the user can actually subscribe to the events it wants, how do we do that?
             LOG.finer("For session '" + sessionKey + "', creating/updating: " + subscription);
             SessionSubscriptions sessionSubscriptions =
-                this.sessionSubscriptionIdMap.computeIfAbsent(sessionKey, k -> new SessionSubscriptions());
+                this.sessionSubscriptionIdMap.computeIfAbsent(sessionKey, k -> new SessionSubscriptions(k));
             sessionSubscriptions.createOrUpdate(restrictedUser, subscription);
+            updateIndex();
         }
     }
 
@@ -132,6 +337,7 @@ public class EventSubscriptions {
             } else {
                 sessionSubscriptions.cancelByType(subscription.getEventType());
             }
+            updateIndex();
         }
     }
 
@@ -139,11 +345,27 @@ public class EventSubscriptions {
         synchronized (this.sessionSubscriptionIdMap) {
             if (this.sessionSubscriptionIdMap.containsKey(sessionKey)) {
                 LOG.finer("Cancelling all subscriptions for session: " + sessionKey);
-                this.sessionSubscriptionIdMap.remove(sessionKey);
+                this.sessionSubscriptionIdMap.remove(sessionKey).cancelAll();
+                updateIndex();
             }
         }
     }
 
+    /**
+     * Must be called while holding the lock of {@link #sessionSubscriptionIdMap} after subscriptions were added or
+     * removed.
+     */
+    protected void updateIndex() {
+        subscriptionIndex = new SubscriptionIndex(sessionSubscriptionIdMap);
+    }
+
+    /**
+     * @return The number of events that were replaced by a later event of the same attribute before being flushed.
+     */
+    public long getConflatedEvents() {
+        return conflatedEvents.sum();
+    }
+
     @SuppressWarnings("unchecked")
     public <T extends SharedEvent> List<Message> splitForSubscribers(Exchange exchange) {
         List<Message> messageList = new ArrayList<>();
@@ -152,38 +374,37 @@ public class EventSubscriptions {
             return messageList;
 
         boolean accessibleForRestrictedUsers = exchange.getIn().getHeader(ClientEventService.HEADER_ACCESS_RESTRICTED, false, Boolean.class);
+        // Serialized at most once for all sessions
+        SharedEventPayload payload = new SharedEventPayload(event);
 
-        Set<Map.Entry<String, SessionSubscriptions>> sessionSubscriptionsSet;
-        synchronized (this.sessionSubscriptionIdMap) {
-            sessionSubscriptionsSet = new HashSet<>(sessionSubscriptionIdMap.entrySet());
-        }
-
-        for (Map.Entry<String, SessionSubscriptions> entry : sessionSubscriptionsSet) {
-            String sessionKey = entry.getKey();
-            SessionSubscriptions subscriptions = entry.getValue();
+        for (IndexedSubscription candidate : subscriptionIndex.getCandidates(event)) {
+            String sessionKey = candidate.sessionKey;
+            SessionSubscription sessionSubscription = candidate.sessionSubscription;
 
-            for (SessionSubscription sessionSubscription : subscriptions) {
+            if (!sessionSubscription.matches(accessibleForRestrictedUsers, event))
+                continue;
 
-                if (!sessionSubscription.matches(accessibleForRestrictedUsers, event))
+            if (sessionSubscription.subscription.getFilter() == null
+                || sessionSubscription.subscription.getFilter().apply(event)) {
+                if (sessionSubscription.eventBuffer != null) {
+                    LOG.finer("Buffering event for subscribed session '" + sessionKey + "': " + event);
+                    sessionSubscription.eventBuffer.add(event);
                     continue;
+                }
+
+                LOG.finer("Creating message for subscribed session '" + sessionKey + "': " + event);
+                TriggeredEventSubscription<?> triggeredEventSubscription = new SharedTriggeredEventSubscription<>(payload, sessionSubscription.subscriptionId);
 
-                if (sessionSubscription.subscription.getFilter() == null
-                    || sessionSubscription.subscription.getFilter().apply(event)) {
-                    LOG.finer("Creating message for subscribed session '" + sessionKey + "': " + event);
-                    List<SharedEvent> events = Collections.singletonList(event);
-                    TriggeredEventSubscription<?> triggeredEventSubscription = new TriggeredEventSubscription<>(events, sessionSubscription.subscriptionId);
-
-                    if (sessionSubscription.subscription.getInternalConsumer() == null) {
-                        Message msg = new DefaultMessage();
-                        msg.setBody(triggeredEventSubscription); // Don't copy the event, use same reference
-                        msg.setHeaders(new HashMap<>(exchange.getIn().getHeaders())); // Copy headers
-                        msg.setHeader(ConnectionConstants.SESSION_KEY, sessionKey);
-                        messageList.add(msg);
-                    } else {
-                        if (triggeredEventSubscription.getEvents() != null) {
-                            triggeredEventSubscription.getEvents().forEach(ev ->
-                                sessionSubscription.subscription.getInternalConsumer().accept(ev));
-                        }
+                if (sessionSubscription.subscription.getInternalConsumer() == null) {
+                    Message msg = new DefaultMessage();
+                    msg.setBody(triggeredEventSubscription); // Don't copy the event, use same reference
+                    msg.setHeaders(new HashMap<>(exchange.getIn().getHeaders())); // Copy headers
+                    msg.setHeader(ConnectionConstants.SESSION_KEY, sessionKey);
+                    messageList.add(msg);
+                } else {
+                    if (triggeredEventSubscription.getEvents() != null) {
+                        triggeredEventSubscription.getEvents().forEach(ev ->
+                            sessionSubscription.subscription.getInternalConsumer().accept(ev));
                     }
                 }
             }
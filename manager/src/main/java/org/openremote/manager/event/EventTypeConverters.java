@@ -68,6 +68,9 @@ public class EventTypeConverters implements TypeConverters {
 
     @Converter
     public String writeTriggeredEventSubscription(TriggeredEventSubscription triggeredEventSubscription, Exchange exchange) throws Exception {
+        if (triggeredEventSubscription instanceof SharedTriggeredEventSubscription) {
+            return ((SharedTriggeredEventSubscription<?>) triggeredEventSubscription).toMessage();
+        }
         return TriggeredEventSubscription.MESSAGE_PREFIX + Values.JSON.writeValueAsString(triggeredEventSubscription);
     }
 
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.event;
+
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.event.shared.SharedEvent;
+import org.openremote.model.value.Values;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The serialized forms of an event that is sent to many subscribed sessions. Each form is serialized on first use
+ * and then shared by all sessions, so fan-out to N sessions doesn't serialize the event N times.
+ * <p>
+ * Concurrent first use may serialize a form more than once, this is harmless as the result is identical.
+ */
+public class SharedEventPayload {
+
+    protected final SharedEvent event;
+    protected volatile String eventsJson;
+    protected volatile byte[] eventBytes;
+    protected volatile byte[] valueBytes;
+
+    public SharedEventPayload(SharedEvent event) {
+        this.event = event;
+    }
+
+    public SharedEvent getEvent() {
+        return event;
+    }
+
+    /**
+     * @return The JSON array containing only the event, as in the <code>events</code> of a serialized {@link
+     * org.openremote.model.event.TriggeredEventSubscription}.
+     */
+    public String getEventsJson() throws Exception {
+        String json = eventsJson;
+        if (json == null) {
+            json = "[" + Values.JSON.writeValueAsString(event) + "]";
+            eventsJson = json;
+        }
+        return json;
+    }
+
+    /**
+     * @return The JSON of the event, the returned array is shared and must not be modified.
+     */
+    public byte[] getEventBytes() {
+        byte[] bytes = eventBytes;
+        if (bytes == null) {
+            bytes = toJsonBytes(event);
+            eventBytes = bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return The JSON of the value of an {@link AttributeEvent}, the returned array is shared and must not be
+     * modified.
+     */
+    public byte[] getValueBytes() {
+        byte[] bytes = valueBytes;
+        if (bytes == null) {
+            Object value = event instanceof AttributeEvent ? ((AttributeEvent) event).getValue().orElse(null) : null;
+            bytes = toJsonBytes(value);
+            valueBytes = bytes;
+        }
+        return bytes;
+    }
+
+    protected static byte[] toJsonBytes(Object data) {
+        return Values.asJSON(data)
+            .orElseThrow(() -> new IllegalStateException("Failed to convert payload to JSON string: " + data))
+            .getBytes(UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "event=" + event +
+            '}';
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.event;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.openremote.container.web.socket.WebsocketTextMessage;
+import org.openremote.model.event.TriggeredEventSubscription;
+import org.openremote.model.event.shared.SharedEvent;
+import org.openremote.model.value.Values;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A {@link TriggeredEventSubscription} of a single event that is sent to many sessions, all instances created for
+ * the same event share its {@link SharedEventPayload} and only the subscription ID envelope is serialized per session.
+ * <p>
+ * Websocket sessions are written the envelope bytes with the shared event bytes spliced in, see {@link
+ * WebsocketTextMessage}.
+ */
+public class SharedTriggeredEventSubscription<T extends SharedEvent> extends TriggeredEventSubscription<T> implements WebsocketTextMessage {
+
+    protected static final byte[] ENVELOPE_PREFIX = (MESSAGE_PREFIX + "{\"events\":[").getBytes(UTF_8);
+    protected final SharedEventPayload payload;
+    protected byte[] envelopeSuffix;
+
+    @SuppressWarnings("unchecked")
+    public SharedTriggeredEventSubscription(SharedEventPayload payload, String subscriptionId) {
+        super(Collections.singletonList((T) payload.getEvent()), subscriptionId);
+        this.payload = payload;
+    }
+
+    @JsonIgnore
+    public SharedEventPayload getPayload() {
+        return payload;
+    }
+
+    /**
+     * @return The same message as the {@link EventTypeConverters} produce for a {@link TriggeredEventSubscription}.
+     */
+    public String toMessage() throws Exception {
+        StringBuilder sb = new StringBuilder(MESSAGE_PREFIX).append("{\"events\":").append(payload.getEventsJson());
+        if (subscriptionId != null) {
+            sb.append(",\"subscriptionId\":").append(Values.JSON.writeValueAsString(subscriptionId));
+        }
+        return sb.append('}').toString();
+    }
+
+    @JsonIgnore
+    @Override
+    public int getLength() {
+        return ENVELOPE_PREFIX.length + payload.getEventBytes().length + getEnvelopeSuffix().length;
+    }
+
+    /**
+     * Writes the same message as {@link #toMessage}, the event bytes are shared by all sessions.
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put(ENVELOPE_PREFIX).put(payload.getEventBytes()).put(getEnvelopeSuffix());
+    }
+
+    @JsonIgnore
+    @Override
+    public String getText() {
+        return WebsocketTextMessage.super.getText();
+    }
+
+    protected byte[] getEnvelopeSuffix() {
+        if (envelopeSuffix == null) {
+            StringBuilder sb = new StringBuilder("]");
+            if (subscriptionId != null) {
+                sb.append(",\"subscriptionId\":").append(Values.asJSON(subscriptionId).orElse("null"));
+            }
+            envelopeSuffix = sb.append('}').toString().getBytes(UTF_8);
+        }
+        return envelopeSuffix;
+    }
+}
@@ -25,6 +25,7 @@ import org.apache.http.client.utils.URIBuilder;
 import org.openremote.model.Container;
 import org.openremote.model.auth.OAuthClientCredentialsGrant;
 import org.openremote.agent.protocol.io.AbstractNettyIOClient;
+import org.openremote.agent.protocol.io.IOEventLoops;
 import org.openremote.agent.protocol.websocket.WebsocketIOClient;
 import org.openremote.model.ContainerService;
 import org.openremote.container.message.MessageBrokerService;
@@ -52,12 +53,14 @@ import org.openremote.model.syslog.SyslogCategory;
 import org.openremote.model.value.Values;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import static org.openremote.container.persistence.PersistenceEvent.PERSISTENCE_TOPIC;
+import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.container.persistence.PersistenceEvent.isPersistenceEventForEntityType;
 import static org.openremote.model.syslog.SyslogCategory.GATEWAY;
 
@@ -75,9 +78,14 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
     protected ClientEventService clientEventService;
     protected TimerService timerService;
     protected ScheduledExecutorService executorService;
+    protected IOEventLoops eventLoops;
     protected ManagerIdentityService identityService;
     protected final Map<String, GatewayConnection> connectionRealmMap = new HashMap<>();
     protected final Map<String, WebsocketIOClient<String>> clientRealmMap = new HashMap<>();
+    protected final Map<String, GatewayEventBatcher> eventBatcherRealmMap = new ConcurrentHashMap<>();
+    protected final GatewayEventBatcher.Statistics eventStatistics = new GatewayEventBatcher.Statistics();
+    protected int eventBatchMillis;
+    protected int eventBatchSize;
 
     @Override
     public int getPriority() {
@@ -87,12 +95,15 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
     @Override
     public void init(Container container) throws Exception {
         executorService = container.getExecutorService();
+        eventLoops = IOEventLoops.get(container);
         assetStorageService = container.getService(AssetStorageService.class);
         assetProcessingService = container.getService(AssetProcessingService.class);
         persistenceService = container.getService(PersistenceService.class);
         clientEventService = container.getService(ClientEventService.class);
         timerService = container.getService(TimerService.class);
         identityService = container.getService(ManagerIdentityService.class);
+        eventBatchMillis = getInteger(container.getConfig(), GatewayService.GATEWAY_EVENT_BATCH_MILLIS, GatewayService.GATEWAY_EVENT_BATCH_MILLIS_DEFAULT);
+        eventBatchSize = getInteger(container.getConfig(), GatewayService.GATEWAY_EVENT_BATCH_SIZE, GatewayService.GATEWAY_EVENT_BATCH_SIZE_DEFAULT);
 
         container.getService(ManagerWebService.class).getApiSingletons().add(
             new GatewayClientResourceImpl(timerService, identityService, this)
@@ -217,6 +228,7 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
                     null).setBasicAuthHeader(true)
             );
 
+            client.setEventLoops(eventLoops);
             client.setEncoderDecoderProvider(() ->
                 new ChannelHandler[] {new AbstractNettyIOClient.MessageToMessageDecoder<>(String.class, client)}
             );
@@ -227,20 +239,28 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
 
             client.addMessageConsumer(message -> onCentralManagerMessage(connection, message));
 
+            eventBatcherRealmMap.put(connection.getLocalRealm(), new GatewayEventBatcher(
+                executorService,
+                eventBatchMillis,
+                eventBatchSize,
+                message -> writeCentralManagerMessage(connection.getLocalRealm(), message),
+                eventStatistics
+            ));
+
             // Subscribe to Asset<?> and attribute events of local realm and pass through to connected manager
             clientEventService.addInternalSubscription(
                 getClientSessionKey(connection)+"Asset",
                 AssetEvent.class,
                 new AssetFilter<AssetEvent>().setRealm(connection.getLocalRealm()),
                 assetEvent ->
-                    sendCentralManagerMessage(connection.getLocalRealm(), messageToString(SharedEvent.MESSAGE_PREFIX, assetEvent)));
+                    sendCentralManagerMessage(connection.getLocalRealm(), assetEvent));
 
             clientEventService.addInternalSubscription(
                 getClientSessionKey(connection)+"Attribute",
                 AttributeEvent.class,
                 new AssetFilter<AttributeEvent>().setRealm(connection.getLocalRealm()),
                 attributeEvent ->
-                    sendCentralManagerMessage(connection.getLocalRealm(), messageToString(SharedEvent.MESSAGE_PREFIX, attributeEvent)));
+                    sendCentralManagerMessage(connection.getLocalRealm(), attributeEvent));
 
             client.connect();
             return client;
@@ -270,6 +290,7 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
         if (connection != null) {
             clientEventService.cancelInternalSubscription(getClientSessionKey(connection)+"Asset");
             clientEventService.cancelInternalSubscription(getClientSessionKey(connection)+"Attribute");
+            eventBatcherRealmMap.remove(connection.getLocalRealm());
         }
     }
 
@@ -282,6 +303,17 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
         String messageId = null;
         SharedEvent event = null;
 
+        if (GatewayEventBatcher.isEventBatch(message)) {
+            try {
+                for (SharedEvent batchEvent : GatewayEventBatcher.readEventBatch(message)) {
+                    onCentralManagerEvent(connection, null, batchEvent);
+                }
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Failed to read batch of events from central manager", e);
+            }
+            return;
+        }
+
         if (message.startsWith(EventRequestResponseWrapper.MESSAGE_PREFIX)) {
             EventRequestResponseWrapper<?> wrapper = messageFromString(
                 message,
@@ -295,6 +327,10 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
             event = messageFromString(message, SharedEvent.MESSAGE_PREFIX, SharedEvent.class);
         }
 
+        onCentralManagerEvent(connection, messageId, event);
+    }
+
+    protected void onCentralManagerEvent(GatewayConnection connection, String messageId, SharedEvent event) {
         if (event != null) {
             if (event instanceof GatewayDisconnectEvent) {
                 if (((GatewayDisconnectEvent)event).getReason() == GatewayDisconnectEvent.Reason.PERMANENT_ERROR) {
@@ -354,7 +390,21 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
         }
     }
 
-    protected void sendCentralManagerMessage(String realm, String message) {
+    /**
+     * Sends a message or an {@link AttributeEvent}/{@link AssetEvent}, the latter may be batched with other events
+     * (see {@link GatewayService#GATEWAY_EVENT_BATCH_MILLIS}).
+     */
+    protected void sendCentralManagerMessage(String realm, Object message) {
+        GatewayEventBatcher eventBatcher = eventBatcherRealmMap.get(realm);
+
+        if (eventBatcher != null) {
+            eventBatcher.send(message);
+        } else {
+            writeCentralManagerMessage(realm, message);
+        }
+    }
+
+    protected void writeCentralManagerMessage(String realm, Object message) {
         WebsocketIOClient<String> client;
 
         synchronized (clientRealmMap) {
@@ -362,7 +412,20 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
         }
 
         if (client != null) {
-            client.sendMessage(message);
+            client.sendMessage(message instanceof String ? (String) message : messageToString(SharedEvent.MESSAGE_PREFIX, message));
+        }
+    }
+
+    public GatewayEventBatcher.Statistics getEventStatistics() {
+        return eventStatistics;
+    }
+
+    /**
+     * @return The IO clients of the enabled gateway connections.
+     */
+    public List<WebsocketIOClient<String>> getClients() {
+        synchronized (clientRealmMap) {
+            return clientRealmMap.values().stream().filter(Objects::nonNull).collect(Collectors.toList());
         }
     }
 
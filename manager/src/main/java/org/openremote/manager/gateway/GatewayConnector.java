@@ -19,6 +19,7 @@
  */
 package org.openremote.manager.gateway;
 
+import org.openremote.container.timer.TimerService;
 import org.openremote.container.util.UniqueIdentifierGenerator;
 import org.openremote.manager.asset.AssetProcessingService;
 import org.openremote.manager.asset.AssetStorageService;
@@ -34,6 +35,7 @@ import org.openremote.model.syslog.SyslogCategory;
 import org.openremote.model.util.Pair;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -60,27 +62,41 @@ public class GatewayConnector {
     public static long SYNC_TIMEOUT_MILLIS = 10000; // How long to wait for a response before resending request
     public static long ASSET_CRUD_TIMEOUT_MILLIS = 10000; // How long to wait for a response when merging an asset before throwing an exception
     public static int MAX_SYNC_RETRIES = 5;
-    public static int SYNC_ASSET_BATCH_SIZE = 20;
+    public static int SYNC_ASSET_BATCH_SIZE = 20; // Size of the first batch, later batches adapt to the response time
+    public static int SYNC_ASSET_BATCH_SIZE_MAX = 500;
     public static final String ASSET_READ_EVENT_NAME_INITIAL = "INITIAL";
     public static final String ASSET_READ_EVENT_NAME_BATCH = "BATCH";
+    public static final String ASSET_READ_EVENT_NAME_VALUES = "VALUES";
     protected static final Map<String, Pair<Function<String, String>, Function<String, String>>> ASSET_ID_MAPPERS = new HashMap<>();
     protected final String realm;
     protected final String gatewayId;
     protected final AssetStorageService assetStorageService;
     protected final ScheduledExecutorService executorService;
     protected final AssetProcessingService assetProcessingService;
+    protected final TimerService timerService;
     protected final Map<String, Asset<?>> pendingAssetMerges = new HashMap<>();
     protected final AtomicReference<EventRequestResponseWrapper<DeleteAssetsRequestEvent>> pendingAssetDelete = new AtomicReference<>();
+    // Gateway version of each gateway asset stored locally, kept between connections to only sync modified assets
+    protected final Map<String, Long> syncedAssetVersions = new ConcurrentHashMap<>();
     protected List<AssetEvent> cachedAssetEvents;
     protected List<AttributeEvent> cachedAttributeEvents;
-    protected Consumer<Object> gatewayMessageConsumer;
+    // Read without synchronization when attribute events of the asset queue lanes are forwarded
+    protected volatile Consumer<Object> gatewayMessageConsumer;
     protected Runnable disconnectRunnable;
-    protected boolean disabled;
+    protected volatile boolean disabled;
     protected boolean initialSyncInProgress;
     protected ScheduledFuture<?> syncProcessorFuture;
+    protected ScheduledFuture<?> syncRefreshFuture;
     List<String> syncAssetIds;
+    Set<String> syncGatewayAssetIds;
+    Map<String, Integer> syncAssetOrder;
+    List<String> syncRequestedAssetIds;
+    List<String> syncRefreshAssetIds;
     int syncIndex;
+    int syncRefreshIndex;
     int syncErrors;
+    int syncBatchSize;
+    long syncRequestTime;
     GatewayAsset gateway;
     String expectedSyncResponseName;
 
@@ -125,11 +141,13 @@ public class GatewayConnector {
     public GatewayConnector(
         AssetStorageService assetStorageService,
         AssetProcessingService assetProcessingService,
+        TimerService timerService,
         ScheduledExecutorService executorService,
         GatewayAsset gateway) {
 
         this.assetStorageService = assetStorageService;
         this.assetProcessingService = assetProcessingService;
+        this.timerService = timerService;
         this.executorService = executorService;
         boolean disabled = gateway.getDisabled().orElse(false);
         this.realm = gateway.getRealm();
@@ -139,6 +157,7 @@ public class GatewayConnector {
     }
 
     public void sendMessageToGateway(Object message) {
+        Consumer<Object> gatewayMessageConsumer = this.gatewayMessageConsumer;
         try {
             if (gatewayMessageConsumer != null) {
                 gatewayMessageConsumer.accept(message);
@@ -157,18 +176,32 @@ public class GatewayConnector {
         }
         this.gatewayMessageConsumer = gatewayMessageConsumer;
         this.disconnectRunnable = disconnectRunnable;
-        initialSyncInProgress = true;
 
         LOG.info("Gateway connector starting: Gateway ID=" + gatewayId);
+        startInitialSync();
+    }
+
+    /**
+     * Reinitialise the sync state and request the list of gateway assets
+     */
+    synchronized protected void startInitialSync() {
+        initialSyncInProgress = true;
         assetProcessingService.sendAttributeEvent(new AttributeEvent(gatewayId, GatewayAsset.STATUS, ConnectionStatus.CONNECTING), AttributeEvent.Source.GATEWAY);
 
         // Reinitialise state
         syncProcessorFuture = null;
+        syncRefreshFuture = null;
         cachedAssetEvents = new ArrayList<>();
         cachedAttributeEvents = new ArrayList<>();
         syncAssetIds = null;
+        syncGatewayAssetIds = null;
+        syncAssetOrder = null;
+        syncRequestedAssetIds = null;
+        syncRefreshAssetIds = null;
         syncIndex = 0;
+        syncRefreshIndex = 0;
         syncErrors = 0;
+        syncBatchSize = SYNC_ASSET_BATCH_SIZE;
 
         startSync();
     }
@@ -193,6 +226,9 @@ public class GatewayConnector {
         if (syncProcessorFuture != null) {
             syncProcessorFuture.cancel(true);
         }
+        if (syncRefreshFuture != null) {
+            syncRefreshFuture.cancel(true);
+        }
 
         disconnectRunnable.run();
         assetProcessingService.sendAttributeEvent(new AttributeEvent(gatewayId, GatewayAsset.STATUS, ConnectionStatus.DISCONNECTED), AttributeEvent.Source.GATEWAY);
@@ -218,7 +254,7 @@ public class GatewayConnector {
         return disabled;
     }
 
-    public void setDisabled(boolean disabled) {
+    synchronized public void setDisabled(boolean disabled) {
         if (this.disabled == disabled) {
             return;
         }
@@ -229,6 +265,8 @@ public class GatewayConnector {
             if (isConnected()) {
                 disconnect();
             }
+            // Changes whilst disabled are not tracked so do a full sync once enabled again
+            syncedAssetVersions.clear();
             LOG.info("Gateway connector disabled: Gateway ID=" + gatewayId);
             assetProcessingService.sendAttributeEvent(new AttributeEvent(gatewayId, GatewayAsset.STATUS, ConnectionStatus.DISABLED), AttributeEvent.Source.GATEWAY);
         } else {
@@ -257,6 +295,8 @@ public class GatewayConnector {
                 onAttributeEvent((AttributeEvent) e);
             } else if (e instanceof DeleteAssetsResponseEvent) {
                 onAssetDeleteResponseEvent(messageId, (DeleteAssetsResponseEvent) e);
+            } else if (e instanceof AssetsEvent) {
+                onRefreshAssetsResponse(messageId, (AssetsEvent) e);
             }
         }
     }
@@ -296,6 +336,7 @@ public class GatewayConnector {
             // Haven't received initial list of assets so retry
             startSync();
         } else {
+            syncBatchSize = Math.max(1, syncBatchSize / 2);
             requestAssets();
         }
     }
@@ -303,6 +344,7 @@ public class GatewayConnector {
     protected boolean syncAborted() {
         if (syncErrors == MAX_SYNC_RETRIES) {
             LOG.warning("Gateway sync max retries reached so disconnecting the gateway: Gateway ID=" + gatewayId);
+            syncedAssetVersions.clear();
             sendMessageToGateway(new GatewayDisconnectEvent(GatewayDisconnectEvent.Reason.PERMANENT_ERROR));
             disconnect();
             return true;
@@ -312,7 +354,9 @@ public class GatewayConnector {
     }
 
     /**
-     * Request assets in batches of {@link #SYNC_ASSET_BATCH_SIZE} to avoid overloading the gateway
+     * Request assets in batches to avoid overloading the gateway; the first batch has {@link #SYNC_ASSET_BATCH_SIZE}
+     * assets, the size is doubled (up to {@link #SYNC_ASSET_BATCH_SIZE_MAX}) after a fast response and halved after a
+     * slow, failed or missing response.
      */
     protected void requestAssets() {
 
@@ -320,10 +364,11 @@ public class GatewayConnector {
             return;
         }
 
-        String[] requestAssetIds = syncAssetIds.stream().skip(syncIndex).limit(SYNC_ASSET_BATCH_SIZE).toArray(String[]::new);
+        syncRequestedAssetIds = new ArrayList<>(syncAssetIds.subList(syncIndex, Math.min(syncAssetIds.size(), syncIndex + syncBatchSize)));
         expectedSyncResponseName = ASSET_READ_EVENT_NAME_BATCH + syncIndex;
+        syncRequestTime = timerService.getCurrentTimeMillis();
 
-        LOG.fine("Synchronising gateway assets " + syncIndex+1 + "-" + syncIndex + requestAssetIds.length + " of " + syncAssetIds.size());
+        LOG.fine("Synchronising gateway assets " + (syncIndex+1) + "-" + (syncIndex + syncRequestedAssetIds.size()) + " of " + syncAssetIds.size());
 
         sendMessageToGateway(
             new EventRequestResponseWrapper<>(
@@ -331,11 +376,20 @@ public class GatewayConnector {
                 new ReadAssetsEvent(
                     new AssetQuery()
                         .select(new AssetQuery.Select().excludeParentInfo(true).excludePath(true))
-                        .ids(requestAssetIds)
+                        .ids(syncRequestedAssetIds.toArray(new String[0]))
                 )
             )
         );
-        syncProcessorFuture = executorService.schedule(this::requestAssets, SYNC_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        syncProcessorFuture = executorService.schedule(this::onSyncAssetsTimeout, SYNC_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    protected void adaptBatchSize() {
+        long responseMillis = timerService.getCurrentTimeMillis() - syncRequestTime;
+        if (responseMillis <= SYNC_TIMEOUT_MILLIS / 10) {
+            syncBatchSize = Math.min(SYNC_ASSET_BATCH_SIZE_MAX, syncBatchSize * 2);
+        } else if (responseMillis > SYNC_TIMEOUT_MILLIS / 2) {
+            syncBatchSize = Math.max(1, syncBatchSize / 2);
+        }
     }
 
     synchronized protected void onSyncAssetsResponse(String messageId, AssetsEvent e) {
@@ -368,15 +422,33 @@ public class GatewayConnector {
                 return level;
             };
 
-            syncAssetIds = e.getAssets()
+            List<Asset<?>> gatewayAssets = e.getAssets()
                 .stream()
                 .sorted(Comparator.comparingInt(assetLevelExtractor))
-                .map(Asset::getId)
                 .collect(Collectors.toList());
 
+            // Only assets that are missing locally or have a different version than when last synced are requested
+            Set<String> localAssetIds = getLocalAssetIds();
+            syncGatewayAssetIds = new HashSet<>(gatewayAssets.size());
+            syncAssetOrder = new HashMap<>(gatewayAssets.size());
+            syncAssetIds = new ArrayList<>();
+            syncRefreshAssetIds = new ArrayList<>();
+
+            gatewayAssets.forEach(asset -> {
+                String id = asset.getId();
+                syncGatewayAssetIds.add(id);
+                syncAssetOrder.put(id, syncAssetOrder.size());
+                if (localAssetIds.contains(id) && Objects.equals(syncedAssetVersions.get(id), asset.getVersion())) {
+                    syncRefreshAssetIds.add(id);
+                } else {
+                    syncAssetIds.add(id);
+                }
+            });
+
+            LOG.info("Synchronising " + syncAssetIds.size() + " of " + gatewayAssets.size() + " gateway assets, the others are unmodified: Gateway ID=" + gatewayId);
+
             if (syncAssetIds.isEmpty()) {
-                deleteObsoleteLocalAssets();
-                onInitialSyncComplete();
+                onAllSyncAssetsRetrieved();
                 return;
             }
 
@@ -384,30 +456,38 @@ public class GatewayConnector {
 
         } else {
 
-            List<String> requestedAssetIds = syncAssetIds.stream().skip(syncIndex).limit(SYNC_ASSET_BATCH_SIZE).collect(Collectors.toList());
+            List<String> requestedAssetIds = syncRequestedAssetIds;
             List<Asset<?>> returnedAssets = e.getAssets();
+            int requestedCount = requestedAssetIds.size();
 
             // Remove any assets that have been deleted since requested
             cachedAssetEvents.removeIf(
                 assetEvent -> {
-                    boolean remove = requestedAssetIds.stream().anyMatch(id -> id.equals(assetEvent.getAssetId()) && assetEvent.getCause() == AssetEvent.Cause.DELETE);
+                    boolean remove = assetEvent.getCause() == AssetEvent.Cause.DELETE && requestedAssetIds.contains(assetEvent.getAssetId());
                     if (remove) {
                         syncAssetIds.remove(assetEvent.getAssetId());
+                        syncGatewayAssetIds.remove(assetEvent.getAssetId());
                         requestedAssetIds.remove(assetEvent.getAssetId());
                     }
                     return remove;
                 });
 
-            if (returnedAssets.size() != requestedAssetIds.size() || !returnedAssets.stream().allMatch(asset -> requestedAssetIds.contains(asset.getId()))) {
+            Set<String> requestedAssetIdSet = new HashSet<>(requestedAssetIds);
+            if (returnedAssets.size() != requestedAssetIds.size() || !returnedAssets.stream().allMatch(asset -> requestedAssetIdSet.contains(asset.getId()))) {
                 LOG.warning("Retrieved gateway asset batch count or ID mismatch, attempting to re-send the request");
                 syncErrors++;
+                syncBatchSize = Math.max(1, syncBatchSize / 2);
                 requestAssets();
                 return;
             }
 
+            if (requestedCount == syncBatchSize) {
+                adaptBatchSize();
+            }
+
             // Returned asset order may not match request order so re-order
             returnedAssets = returnedAssets.stream()
-                .sorted(Comparator.comparingInt(a -> syncAssetIds.indexOf(a.getId())))
+                .sorted(Comparator.comparingInt(a -> syncAssetOrder.getOrDefault(a.getId(), Integer.MAX_VALUE)))
                 .collect(Collectors.toList());
 
             // Merge returned assets ensuring the latest version of each is merged
@@ -429,45 +509,145 @@ public class GatewayConnector {
             // Request next batch or move on
             syncIndex += requestedAssetIds.size();
             if (syncIndex >= syncAssetIds.size()) {
-                LOG.info("All requested gateway assets retrieved");
-
-                Set<String> refreshAssets = new HashSet<>();
-
-                cachedAssetEvents.forEach(
-                    assetEvent -> {
-                        if (assetEvent.getCause() == AssetEvent.Cause.DELETE) {
-                            syncAssetIds.remove(assetEvent.getAssetId());
-                        } else if (assetEvent.getCause() == AssetEvent.Cause.CREATE) {
-                            syncAssetIds.add(assetEvent.getAssetId());
-                            try {
-                                saveAssetLocally(assetEvent.getAsset());
-                            } catch (Exception ex) {
-                                LOG.log(Level.SEVERE, "Failed to add new gateway asset (Gateway ID=" + gatewayId + ", Asset=" + assetEvent.getAsset(), ex);
-                            }
-                        } else {
-                            refreshAssets.add(assetEvent.getAssetId());
-                        }
+                onAllSyncAssetsRetrieved();
+            } else {
+                requestAssets();
+            }
+        }
+    }
+
+    protected void onAllSyncAssetsRetrieved() {
+        LOG.info("All requested gateway assets retrieved");
+
+        Set<String> refreshAssets = new HashSet<>();
+
+        cachedAssetEvents.forEach(
+            assetEvent -> {
+                if (assetEvent.getCause() == AssetEvent.Cause.DELETE) {
+                    syncGatewayAssetIds.remove(assetEvent.getAssetId());
+                } else if (assetEvent.getCause() == AssetEvent.Cause.CREATE) {
+                    syncGatewayAssetIds.add(assetEvent.getAssetId());
+                    try {
+                        saveAssetLocally(assetEvent.getAsset());
+                    } catch (Exception ex) {
+                        LOG.log(Level.SEVERE, "Failed to add new gateway asset (Gateway ID=" + gatewayId + ", Asset=" + assetEvent.getAsset(), ex);
                     }
-                );
+                } else {
+                    refreshAssets.add(assetEvent.getAssetId());
+                }
+            }
+        );
+
+        deleteObsoleteLocalAssets();
+        onInitialSyncComplete();
+
+        // Refresh attributes that have changed
+        cachedAttributeEvents.forEach(attributeEvent -> {
+            String assetId = attributeEvent.getAssetId();
+            if (!refreshAssets.contains(assetId)) {
+                LOG.info("1 or more gateway asset attribute values have changed so requesting the asset again (Gateway ID=" + gatewayId + ", Asset<?> ID=" + assetId);
+                refreshAssets.add(assetId);
+            }
+        });
+
+        // Refresh assets that have changed
+        refreshAssets.forEach(id -> sendMessageToGateway(new ReadAssetEvent(id)));
+
+        // Attribute values of unmodified assets may have changed whilst disconnected (value updates don't change the
+        // asset version) so load them in the background
+        syncRefreshAssetIds.removeAll(refreshAssets);
+        syncRefreshAssetIds.retainAll(syncGatewayAssetIds);
+        requestRefreshAssets();
+    }
+
+    protected void requestRefreshAssets() {
+        if (syncRefreshIndex >= syncRefreshAssetIds.size()) {
+            syncRefreshAssetIds.clear();
+            syncRefreshFuture = null;
+            return;
+        }
+
+        String[] requestAssetIds = syncRefreshAssetIds.subList(syncRefreshIndex, Math.min(syncRefreshAssetIds.size(), syncRefreshIndex + syncBatchSize)).toArray(new String[0]);
+
+        sendMessageToGateway(
+            new EventRequestResponseWrapper<>(
+                ASSET_READ_EVENT_NAME_VALUES + syncRefreshIndex,
+                new ReadAssetsEvent(
+                    new AssetQuery()
+                        .select(new AssetQuery.Select().excludeParentInfo(true).excludePath(true))
+                        .ids(requestAssetIds)
+                )
+            )
+        );
+        syncRefreshFuture = executorService.schedule(this::onRefreshAssetsTimeout, SYNC_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Called if an attribute value refresh response isn't received from the gateway within {@link
+     * #SYNC_TIMEOUT_MILLIS}; the local values can't be trusted so fall back to a full sync
+     */
+    synchronized protected void onRefreshAssetsTimeout() {
+        if (!isConnected() || initialSyncInProgress || syncRefreshAssetIds == null || syncRefreshAssetIds.isEmpty()) {
+            return;
+        }
+
+        LOG.warning("Gateway attribute value refresh timeout occurred so doing a full sync: Gateway ID=" + gatewayId);
+        syncedAssetVersions.clear();
+        startInitialSync();
+    }
+
+    /**
+     * Applies attribute values of unmodified assets that are newer than the locally stored values.
+     */
+    synchronized protected void onRefreshAssetsResponse(String messageId, AssetsEvent e) {
+        if (syncRefreshAssetIds == null || !(ASSET_READ_EVENT_NAME_VALUES + syncRefreshIndex).equalsIgnoreCase(messageId)) {
+            return;
+        }
+
+        if (syncRefreshFuture != null) {
+            syncRefreshFuture.cancel(false);
+        }
+
+        List<Asset<?>> returnedAssets = e.getAssets();
 
-                deleteObsoleteLocalAssets();
-                onInitialSyncComplete();
+        if (!returnedAssets.isEmpty()) {
+            Map<String, Asset<?>> localAssets = assetStorageService.findAll(
+                new AssetQuery()
+                    .select(new AssetQuery.Select().excludeParentInfo(true).excludePath(true))
+                    .ids(returnedAssets.stream().map(asset -> mapAssetId(gatewayId, asset.getId(), false)).toArray(String[]::new))
+            ).stream().collect(Collectors.toMap(Asset::getId, Function.identity()));
 
-                // Refresh attributes that have changed
-                cachedAttributeEvents.forEach(attributeEvent -> {
-                    String assetId = attributeEvent.getAssetId();
-                    if (!refreshAssets.contains(assetId)) {
-                        LOG.info("1 or more gateway asset attribute values have changed so requesting the asset again (Gateway ID=" + gatewayId + ", Asset<?> ID=" + assetId);
-                        refreshAssets.add(assetId);
+            returnedAssets.forEach(asset -> {
+                Asset<?> localAsset = localAssets.get(mapAssetId(gatewayId, asset.getId(), false));
+                if (localAsset == null) {
+                    return;
+                }
+                asset.getAttributes().forEach(attribute -> {
+                    long timestamp = attribute.getTimestamp().orElse(0L);
+                    boolean modified = localAsset.getAttribute(attribute.getName())
+                        .map(localAttribute -> timestamp > localAttribute.getTimestamp().orElse(0L))
+                        .orElse(false);
+                    if (modified) {
+                        onAttributeEvent(new AttributeEvent(asset.getId(), attribute.getName(), attribute.getValue().orElse(null), timestamp));
                     }
                 });
-
-                // Refresh assets that have changed
-                refreshAssets.forEach(id -> sendMessageToGateway(new ReadAssetEvent(id)));
-            } else {
-                requestAssets();
-            }
+            });
         }
+
+        syncRefreshIndex += syncBatchSize;
+        requestRefreshAssets();
+    }
+
+    /**
+     * @return The gateway IDs of the gateway assets that are stored locally.
+     */
+    protected Set<String> getLocalAssetIds() {
+        return assetStorageService.findAll(
+            new AssetQuery()
+                .select(selectExcludeAll())
+                .recursive(true)
+                .parents(gatewayId)
+        ).stream().map(localAsset -> mapAssetId(gatewayId, localAsset.getId(), true)).collect(Collectors.toSet());
     }
 
     protected void deleteObsoleteLocalAssets() {
@@ -482,7 +662,7 @@ public class GatewayConnector {
 
         // Delete obsolete assets
         List<String> obsoleteLocalAssetIds = localAssets.stream()
-            .filter(localAsset -> !syncAssetIds.contains(mapAssetId(gatewayId, localAsset.getId(), true)))
+            .filter(localAsset -> !syncGatewayAssetIds.contains(mapAssetId(gatewayId, localAsset.getId(), true)))
             .map(Asset::getId).collect(Collectors.toList());
 
         if (!obsoleteLocalAssetIds.isEmpty()) {
@@ -677,11 +857,18 @@ public class GatewayConnector {
         asset.setParentId(asset.getParentId() != null ? mapAssetId(gatewayId, asset.getParentId(), false) : gatewayId);
         asset.setRealm(realm);
         LOG.fine("Creating/updating gateway asset: Gateway ID=" + gatewayId + ", Asset ID=" + assetId + ", Asset ID Mapped=" + asset.getId());
-        return assetStorageService.merge(asset, true, true, null);
+        long version = asset.getVersion();
+        T mergedAsset = assetStorageService.merge(asset, true, true, null);
+        syncedAssetVersions.put(assetId, version);
+        return mergedAsset;
     }
 
     protected boolean deleteAssetsLocally(List<String> assetIds) {
         LOG.fine("Removing gateway asset: Gateway ID=" + gatewayId + ", Asset IDs=" + Arrays.toString(assetIds.toArray()));
-        return assetStorageService.delete(assetIds, true);
+        boolean deleted = assetStorageService.delete(assetIds, true);
+        if (deleted) {
+            assetIds.forEach(id -> syncedAssetVersions.remove(mapAssetId(gatewayId, id, true)));
+        }
+        return deleted;
     }
 }
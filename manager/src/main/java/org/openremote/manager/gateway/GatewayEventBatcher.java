@@ -0,0 +1,218 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.gateway;
+
+import org.openremote.model.asset.AssetEvent;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.event.shared.SharedEvent;
+import org.openremote.model.syslog.SyslogCategory;
+import org.openremote.model.value.Values;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.openremote.model.syslog.SyslogCategory.GATEWAY;
+
+/**
+ * Coalesces the {@link AttributeEvent}s and {@link AssetEvent}s sent over a gateway connection during a short window
+ * into a single message containing an array of events ({@link SharedEvent#MESSAGE_PREFIX} followed by a JSON array).
+ * All other messages are passed through unchanged after the pending events have been sent, so message order is kept.
+ * <p>
+ * Batching is disabled when the window is 0, messages are then only counted.
+ */
+public class GatewayEventBatcher {
+
+    /**
+     * Counters shared by all connections of a service.
+     */
+    public static class Statistics {
+
+        protected final long startMillis = System.currentTimeMillis();
+        protected final LongAdder events = new LongAdder();
+        protected final LongAdder frames = new LongAdder();
+        protected final LongAdder batchFrames = new LongAdder();
+        protected final LongAdder batchBytes = new LongAdder();
+        protected final LongAdder savedBytes = new LongAdder();
+
+        public long getEvents() {
+            return events.sum();
+        }
+
+        public long getFrames() {
+            return frames.sum();
+        }
+
+        public long getBatchFrames() {
+            return batchFrames.sum();
+        }
+
+        public long getBatchBytes() {
+            return batchBytes.sum();
+        }
+
+        /**
+         * @return The size of the batched events when sent as individual messages minus the size of the batches.
+         */
+        public long getSavedBytes() {
+            return savedBytes.sum();
+        }
+
+        /**
+         * @return The average number of messages sent per second since the service was started.
+         */
+        public double getFramesPerSecond() {
+            long elapsedMillis = System.currentTimeMillis() - startMillis;
+            return elapsedMillis <= 0 ? 0d : getFrames() * 1000d / elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "{" +
+                "events=" + getEvents() +
+                ", frames=" + getFrames() +
+                ", batchFrames=" + getBatchFrames() +
+                ", batchBytes=" + getBatchBytes() +
+                ", savedBytes=" + getSavedBytes() +
+                ", framesPerSecond=" + getFramesPerSecond() +
+                '}';
+        }
+    }
+
+    private static final Logger LOG = SyslogCategory.getLogger(GATEWAY, GatewayEventBatcher.class.getName());
+    protected final ScheduledExecutorService executorService;
+    protected final long windowMillis;
+    protected final int maxBatchSize;
+    protected final Consumer<Object> sender;
+    protected final Statistics statistics;
+    protected final List<SharedEvent> pendingEvents = new ArrayList<>();
+    protected ScheduledFuture<?> flushFuture;
+
+    /**
+     * @param windowMillis How long an event may be delayed to be sent with later events, 0 disables batching.
+     * @param maxBatchSize Pending events are sent immediately once this many are pending.
+     * @param sender       Sends a message, batches are passed as strings.
+     */
+    public GatewayEventBatcher(ScheduledExecutorService executorService, long windowMillis, int maxBatchSize, Consumer<Object> sender, Statistics statistics) {
+        this.executorService = executorService;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.sender = sender;
+        this.statistics = statistics;
+    }
+
+    public boolean isEnabled() {
+        return windowMillis > 0;
+    }
+
+    public void send(Object message) {
+        if (isEnabled() && (message instanceof AttributeEvent || message instanceof AssetEvent)) {
+            boolean flush;
+            synchronized (this) {
+                pendingEvents.add((SharedEvent) message);
+                flush = pendingEvents.size() >= maxBatchSize;
+                if (!flush && flushFuture == null) {
+                    flushFuture = executorService.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+            if (flush) {
+                flush();
+            }
+            return;
+        }
+
+        synchronized (this) {
+            flush();
+            if (message instanceof SharedEvent) {
+                statistics.events.increment();
+            }
+            statistics.frames.increment();
+            sender.accept(message);
+        }
+    }
+
+    /**
+     * Sends all pending events.
+     */
+    synchronized public void flush() {
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
+            flushFuture = null;
+        }
+
+        if (pendingEvents.isEmpty()) {
+            return;
+        }
+
+        List<SharedEvent> events = new ArrayList<>(pendingEvents);
+        pendingEvents.clear();
+        statistics.events.add(events.size());
+        statistics.frames.increment();
+
+        if (events.size() == 1) {
+            sender.accept(events.get(0));
+            return;
+        }
+
+        try {
+            StringBuilder sb = new StringBuilder(SharedEvent.MESSAGE_PREFIX).append('[');
+            long individualBytes = 0;
+            for (int i = 0; i < events.size(); i++) {
+                String json = Values.JSON.writeValueAsString(events.get(i));
+                individualBytes += SharedEvent.MESSAGE_PREFIX.length() + json.getBytes(StandardCharsets.UTF_8).length;
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(json);
+            }
+            String message = sb.append(']').toString();
+            long bytes = message.getBytes(StandardCharsets.UTF_8).length;
+            statistics.batchFrames.increment();
+            statistics.batchBytes.add(bytes);
+            statistics.savedBytes.add(individualBytes - bytes);
+            sender.accept(message);
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to write batch of gateway events, sending them individually", e);
+            statistics.frames.add(events.size() - 1);
+            events.forEach(sender);
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the message is a batch of events sent by a {@link GatewayEventBatcher}.
+     */
+    public static boolean isEventBatch(String message) {
+        return message != null
+            && message.length() > SharedEvent.MESSAGE_PREFIX.length()
+            && message.startsWith(SharedEvent.MESSAGE_PREFIX)
+            && message.charAt(SharedEvent.MESSAGE_PREFIX.length()) == '[';
+    }
+
+    public static SharedEvent[] readEventBatch(String message) throws Exception {
+        return Values.JSON.readValue(message.substring(SharedEvent.MESSAGE_PREFIX.length()), SharedEvent[].class);
+    }
+}
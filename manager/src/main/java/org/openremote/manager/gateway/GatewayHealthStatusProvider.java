@@ -0,0 +1,112 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.gateway;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openremote.agent.protocol.io.IOChannelStatistics;
+import org.openremote.agent.protocol.websocket.WebsocketIOClient;
+import org.openremote.model.Container;
+import org.openremote.model.ContainerService;
+import org.openremote.model.system.HealthStatusProvider;
+import org.openremote.model.value.Values;
+
+import java.util.List;
+
+public class GatewayHealthStatusProvider implements HealthStatusProvider, ContainerService {
+
+    public static final String NAME = "gateway";
+    public static final String VERSION = "1.0";
+    protected GatewayService gatewayService;
+    protected GatewayClientService gatewayClientService;
+
+    @Override
+    public int getPriority() {
+        return ContainerService.DEFAULT_PRIORITY;
+    }
+
+    @Override
+    public void init(Container container) throws Exception {
+        if (container.hasService(GatewayService.class)) {
+            gatewayService = container.getService(GatewayService.class);
+        }
+        if (container.hasService(GatewayClientService.class)) {
+            gatewayClientService = container.getService(GatewayClientService.class);
+        }
+    }
+
+    @Override
+    public void start(Container container) throws Exception {
+
+    }
+
+    @Override
+    public void stop(Container container) throws Exception {
+
+    }
+
+    @Override
+    public String getHealthStatusName() {
+        return NAME;
+    }
+
+    @Override
+    public String getHealthStatusVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public Object getHealthStatus() {
+        ObjectNode value = Values.JSON.createObjectNode();
+
+        if (gatewayService != null) {
+            ObjectNode gateways = value.putObject("gateways");
+            gateways.put("connected", gatewayService.getConnectedGatewayCount());
+            putEventStatistics(gateways, gatewayService.getEventStatistics());
+        }
+
+        if (gatewayClientService != null) {
+            ObjectNode clients = value.putObject("clients");
+            List<WebsocketIOClient<String>> ioClients = gatewayClientService.getClients();
+            long wireBytesRead = 0;
+            long wireBytesWritten = 0;
+            for (WebsocketIOClient<String> client : ioClients) {
+                IOChannelStatistics statistics = client.getChannelStatistics();
+                wireBytesRead += statistics.getBytesRead();
+                wireBytesWritten += statistics.getBytesWritten();
+            }
+            clients.put("clients", ioClients.size());
+            // Bytes sent and received on the network, so after websocket framing and compression
+            clients.put("wireBytesRead", wireBytesRead);
+            clients.put("wireBytesWritten", wireBytesWritten);
+            putEventStatistics(clients, gatewayClientService.getEventStatistics());
+        }
+
+        return value;
+    }
+
+    protected static void putEventStatistics(ObjectNode value, GatewayEventBatcher.Statistics statistics) {
+        value.put("events", statistics.getEvents());
+        value.put("frames", statistics.getFrames());
+        value.put("framesPerSecond", statistics.getFramesPerSecond());
+        value.put("batchFrames", statistics.getBatchFrames());
+        value.put("batchBytes", statistics.getBatchBytes());
+        value.put("savedBytes", statistics.getSavedBytes());
+    }
+}
@@ -24,6 +24,7 @@ import org.apache.camel.Predicate;
 import org.apache.camel.builder.RouteBuilder;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.persistence.PersistenceEvent;
+import org.openremote.container.timer.TimerService;
 import org.openremote.container.web.ConnectionConstants;
 import org.openremote.manager.asset.AssetProcessingException;
 import org.openremote.manager.asset.AssetProcessingService;
@@ -54,6 +55,7 @@ import org.openremote.model.util.TextUtil;
 import javax.persistence.EntityManager;
 import javax.websocket.Session;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
@@ -66,6 +68,7 @@ import static org.apache.camel.builder.PredicateBuilder.and;
 import static org.apache.camel.builder.PredicateBuilder.or;
 import static org.openremote.container.persistence.PersistenceEvent.PERSISTENCE_TOPIC;
 import static org.openremote.container.persistence.PersistenceEvent.isPersistenceEventForEntityType;
+import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.manager.gateway.GatewayConnector.mapAssetId;
 import static org.openremote.model.syslog.SyslogCategory.GATEWAY;
 
@@ -78,6 +81,11 @@ public class GatewayService extends RouteBuilder implements ContainerService, As
 
     public static final int PRIORITY = HIGH_PRIORITY + 100;
     public static final String GATEWAY_CLIENT_ID_PREFIX = "gateway-";
+    // Attribute and asset events sent over a gateway connection within this window are sent as one message, 0 disables
+    public static final String GATEWAY_EVENT_BATCH_MILLIS = "GATEWAY_EVENT_BATCH_MILLIS";
+    public static final int GATEWAY_EVENT_BATCH_MILLIS_DEFAULT = 0;
+    public static final String GATEWAY_EVENT_BATCH_SIZE = "GATEWAY_EVENT_BATCH_SIZE";
+    public static final int GATEWAY_EVENT_BATCH_SIZE_DEFAULT = 100;
     private static final Logger LOG = SyslogCategory.getLogger(GATEWAY, GatewayService.class.getName());
     protected AssetStorageService assetStorageService;
     protected AssetProcessingService assetProcessingService;
@@ -87,10 +95,15 @@ public class GatewayService extends RouteBuilder implements ContainerService, As
     protected RulesetStorageService rulesetStorageService;
     protected RulesService rulesService;
     protected ScheduledExecutorService executorService;
-    protected final Map<String, GatewayConnector> gatewayConnectorMap = new HashMap<>();
-    protected final Map<String, String> assetIdGatewayIdMap = new HashMap<>();
+    protected TimerService timerService;
+    // Read by the asset queue lanes concurrently
+    protected final Map<String, GatewayConnector> gatewayConnectorMap = new ConcurrentHashMap<>();
+    protected final Map<String, String> assetIdGatewayIdMap = new ConcurrentHashMap<>();
     protected boolean active;
     protected List<String> tenantIds = new ArrayList<>();
+    protected final GatewayEventBatcher.Statistics eventStatistics = new GatewayEventBatcher.Statistics();
+    protected int eventBatchMillis;
+    protected int eventBatchSize;
 
     @SuppressWarnings("unchecked")
     public static Predicate isNotForGateway(GatewayService gatewayService) {
@@ -152,8 +165,11 @@ public class GatewayService extends RouteBuilder implements ContainerService, As
         identityService = container.getService(ManagerIdentityService.class);
         clientEventService = container.getService(ClientEventService.class);
         executorService = container.getExecutorService();
+        timerService = container.getService(TimerService.class);
         rulesetStorageService = container.getService(RulesetStorageService.class);
         rulesService = container.getService(RulesService.class);
+        eventBatchMillis = getInteger(container.getConfig(), GATEWAY_EVENT_BATCH_MILLIS, GATEWAY_EVENT_BATCH_MILLIS_DEFAULT);
+        eventBatchSize = getInteger(container.getConfig(), GATEWAY_EVENT_BATCH_SIZE, GATEWAY_EVENT_BATCH_SIZE_DEFAULT);
 
         if (!identityService.isKeycloakEnabled()) {
             LOG.warning("Incoming edge gateway connections disabled: Not supported when not using Keycloak identity provider");
@@ -197,7 +213,7 @@ public class GatewayService extends RouteBuilder implements ContainerService, As
                 }
 
                 // Create connector
-                GatewayConnector connector = new GatewayConnector(assetStorageService, assetProcessingService, executorService, gateway);
+                GatewayConnector connector = new GatewayConnector(assetStorageService, assetProcessingService, timerService, executorService, gateway);
                 gatewayConnectorMap.put(gateway.getId(), connector);
 
                 // Get IDs of all assets under this gateway
@@ -493,7 +509,7 @@ public class GatewayService extends RouteBuilder implements ContainerService, As
             case CREATE:
                 createGatewayClient(gateway);
                 synchronized (gatewayConnectorMap) {
-                    GatewayConnector connector = new GatewayConnector(assetStorageService, assetProcessingService, executorService, gateway);
+                    GatewayConnector connector = new GatewayConnector(assetStorageService, assetProcessingService, timerService, executorService, gateway);
                     gatewayConnectorMap.put(gateway.getId(), connector);
                 }
                 break;
@@ -618,7 +634,27 @@ public class GatewayService extends RouteBuilder implements ContainerService, As
     }
 
     protected Consumer<Object> createConnectorMessageConsumer(String sessionId) {
-        return msg -> clientEventService.sendToSession(sessionId, msg);
+        GatewayEventBatcher eventBatcher = new GatewayEventBatcher(
+            executorService,
+            eventBatchMillis,
+            eventBatchSize,
+            msg -> clientEventService.sendToSession(sessionId, msg),
+            eventStatistics
+        );
+        return eventBatcher::send;
+    }
+
+    public GatewayEventBatcher.Statistics getEventStatistics() {
+        return eventStatistics;
+    }
+
+    /**
+     * @return The number of gateways that are currently connected.
+     */
+    public long getConnectedGatewayCount() {
+        synchronized (gatewayConnectorMap) {
+            return gatewayConnectorMap.values().stream().filter(GatewayConnector::isConnected).count();
+        }
     }
 
     protected void onGatewayClientEventReceived(String gatewayId, String messageId, SharedEvent event) {
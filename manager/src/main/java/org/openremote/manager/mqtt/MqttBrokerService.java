@@ -32,8 +32,11 @@ import io.netty.handler.codec.mqtt.MqttQoS;
 import org.apache.camel.builder.RouteBuilder;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.security.AuthContext;
+import org.openremote.manager.asset.AssetProcessingService;
 import org.openremote.manager.asset.AssetStorageService;
 import org.openremote.manager.event.ClientEventService;
+import org.openremote.manager.event.SharedEventPayload;
+import org.openremote.manager.event.SharedTriggeredEventSubscription;
 import org.openremote.manager.security.ManagerIdentityService;
 import org.openremote.manager.security.ManagerKeycloakIdentityProvider;
 import org.openremote.model.Container;
@@ -77,6 +80,7 @@ public class MqttBrokerService implements ContainerService {
     protected ManagerKeycloakIdentityProvider identityProvider;
     protected ClientEventService clientEventService;
     protected MessageBrokerService messageBrokerService;
+    protected AssetProcessingService assetProcessingService;
     // Moquette doesn't provide any session id so cannot have multiple connections per realm-clientId combo
     protected Map<String, MqttConnection> sessionIdConnectionMap = new HashMap<>();
     protected final Set<MQTTCustomHandler> customHandlers = new CopyOnWriteArraySet<>();
@@ -87,6 +91,7 @@ public class MqttBrokerService implements ContainerService {
     protected String host;
     protected int port;
     protected Server mqttBroker;
+    protected ORInterceptHandler interceptHandler;
 
     @Override
     public int getPriority() {
@@ -101,6 +106,7 @@ public class MqttBrokerService implements ContainerService {
         clientEventService = container.getService(ClientEventService.class);
         ManagerIdentityService identityService = container.getService(ManagerIdentityService.class);
         messageBrokerService = container.getService(MessageBrokerService.class);
+        assetProcessingService = container.getService(AssetProcessingService.class);
 
         if (!identityService.isKeycloakEnabled()) {
             LOG.warning("MQTT connections are not supported when not using Keycloak identity provider");
@@ -143,7 +149,8 @@ public class MqttBrokerService implements ContainerService {
         properties.setProperty(BrokerConstants.HOST_PROPERTY_NAME, host);
         properties.setProperty(BrokerConstants.PORT_PROPERTY_NAME, String.valueOf(port));
         properties.setProperty(BrokerConstants.ALLOW_ANONYMOUS_PROPERTY_NAME, String.valueOf(false));
-        List<? extends InterceptHandler> interceptHandlers = Collections.singletonList(new ORInterceptHandler(this, identityProvider, messageBrokerService, sessionIdConnectionMap));
+        interceptHandler = new ORInterceptHandler(this, identityProvider, messageBrokerService, sessionIdConnectionMap);
+        List<? extends InterceptHandler> interceptHandlers = Collections.singletonList(interceptHandler);
 
         AssetStorageService assetStorageService = container.getService(AssetStorageService.class);
         mqttBroker.startServer(new MemoryConfig(properties), interceptHandlers, null, new KeycloakAuthenticator(identityProvider, sessionIdConnectionMap), new ORAuthorizatorPolicy(identityProvider, this, assetStorageService, clientEventService));
@@ -156,6 +163,13 @@ public class MqttBrokerService implements ContainerService {
         LOG.fine("Stopped MQTT broker");
     }
 
+    /**
+     * @return The intercept handler of the running broker, <code>null</code> if the broker has not been started.
+     */
+    public ORInterceptHandler getInterceptHandler() {
+        return interceptHandler;
+    }
+
     public void addCustomHandler(MQTTCustomHandler customHandler) {
         customHandlers.add(customHandler);
     }
@@ -168,19 +182,33 @@ public class MqttBrokerService implements ContainerService {
     public void sendToSession(String sessionId, String topic, Object data) {
         try {
             ByteBuf payload = Unpooled.copiedBuffer(Values.asJSON(data).orElseThrow(() -> new IllegalStateException("Failed to convert payload to JSON string: " + data)), Charset.defaultCharset());
+            publish(sessionId, topic, payload);
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Couldn't send AttributeEvent to MQTT client", e);
+        }
+    }
 
-            MqttPublishMessage publishMessage = MqttMessageBuilders.publish()
-                .qos(MqttQoS.AT_MOST_ONCE)
-                .topicName(topic)
-                .payload(payload)
-                .build();
-
-            mqttBroker.internalPublish(publishMessage, sessionId);
+    /**
+     * Sends already serialized JSON, the bytes are wrapped and not copied so they can be shared by many sessions.
+     */
+    public void sendToSession(String sessionId, String topic, byte[] json) {
+        try {
+            publish(sessionId, topic, Unpooled.wrappedBuffer(json));
         } catch (Exception e) {
             LOG.log(Level.WARNING, "Couldn't send AttributeEvent to MQTT client", e);
         }
     }
 
+    protected void publish(String sessionId, String topic, ByteBuf payload) {
+        MqttPublishMessage publishMessage = MqttMessageBuilders.publish()
+            .qos(MqttQoS.AT_MOST_ONCE)
+            .topicName(topic)
+            .payload(payload)
+            .build();
+
+        mqttBroker.internalPublish(publishMessage, sessionId);
+    }
+
     public static boolean isAttributeTopic(List<String> tokens) {
         return tokens.get(0).equals(ATTRIBUTE_TOPIC) || tokens.get(0).equals(ATTRIBUTE_VALUE_TOPIC);
     }
@@ -306,17 +334,36 @@ public class MqttBrokerService implements ContainerService {
     }
 
     protected void onSubscriptionTriggered(MqttConnection connection, TriggeredEventSubscription<SharedEvent> triggeredEventSubscription) {
-        triggeredEventSubscription.getEvents()
-            .forEach(event -> {
-                Consumer<SharedEvent> eventConsumer = connection.subscriptionHandlerMap.get(triggeredEventSubscription.getSubscriptionId());
-                if (eventConsumer != null) {
-                    eventConsumer.accept(event);
-                }
-            });
+        Consumer<SharedEvent> eventConsumer = connection.subscriptionHandlerMap.get(triggeredEventSubscription.getSubscriptionId());
+        if (eventConsumer == null) {
+            return;
+        }
+        if (triggeredEventSubscription instanceof SharedTriggeredEventSubscription && eventConsumer instanceof EventConsumer) {
+            // Use the payload that was serialized for the first session that received this event
+            ((EventConsumer) eventConsumer).accept(((SharedTriggeredEventSubscription<?>) triggeredEventSubscription).getPayload());
+            return;
+        }
+        triggeredEventSubscription.getEvents().forEach(eventConsumer);
     }
 
     protected Consumer<SharedEvent> getEventConsumer(MqttConnection connection, String topic, boolean isValueSubscription) {
-        return ev -> {
+        return new EventConsumer(connection, topic, isValueSubscription);
+    }
+
+    protected class EventConsumer implements Consumer<SharedEvent> {
+
+        protected final MqttConnection connection;
+        protected final String topic;
+        protected final boolean isValueSubscription;
+
+        protected EventConsumer(MqttConnection connection, String topic, boolean isValueSubscription) {
+            this.connection = connection;
+            this.topic = topic;
+            this.isValueSubscription = isValueSubscription;
+        }
+
+        @Override
+        public void accept(SharedEvent ev) {
             if (isValueSubscription) {
                 if (ev instanceof AttributeEvent) {
                     AttributeEvent attributeEvent = (AttributeEvent) ev;
@@ -327,7 +374,20 @@ public class MqttBrokerService implements ContainerService {
                     sendToSession(connection.getSessionId(), topic, ev);
                 }
             }
-        };
+        }
+
+        public void accept(SharedEventPayload payload) {
+            SharedEvent ev = payload.getEvent();
+            if (isValueSubscription) {
+                if (ev instanceof AttributeEvent) {
+                    sendToSession(connection.getSessionId(), topic, payload.getValueBytes());
+                }
+            } else {
+                if (ev instanceof AttributeEvent || ev instanceof AssetEvent) {
+                    sendToSession(connection.getSessionId(), topic, payload.getEventBytes());
+                }
+            }
+        }
     }
 
     protected Boolean customHandlerAuthorises(AuthContext authContext, MqttConnection connection, Topic topic, boolean isWrite) {
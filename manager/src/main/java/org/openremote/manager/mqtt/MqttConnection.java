@@ -1,5 +1,7 @@
 package org.openremote.manager.mqtt;
 
+import org.keycloak.representations.AccessToken;
+import org.openremote.container.security.keycloak.AccessTokenAuthContext;
 import org.openremote.manager.security.ManagerKeycloakIdentityProvider;
 import org.openremote.model.auth.OAuthClientCredentialsGrant;
 import org.openremote.model.auth.OAuthGrant;
@@ -8,6 +10,8 @@ import org.openremote.model.util.TextUtil;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.logging.Logger;
@@ -18,12 +22,31 @@ import java.util.logging.Logger;
 public class MqttConnection {
 
     protected static final Logger LOG = Logger.getLogger(MqttConnection.class.getSimpleName());
+    public static final int MAX_AUTHORIZED_WRITE_TOPICS = 1000;
     protected final String realm;
     protected final String username; // This is OAuth clientId
     protected final String password;
     protected final Map<String, Consumer<SharedEvent>> subscriptionHandlerMap = new HashMap<>();
     protected final String sessionId;
     protected Supplier<String> tokenSupplier;
+    protected volatile VerifiedToken verifiedToken;
+
+    /**
+     * The auth context of an access token that has been verified, so it isn't verified again for every message, and
+     * the topics that have been authorized for writing with this token.
+     */
+    protected static class VerifiedToken {
+        protected final String token;
+        protected final AccessToken accessToken;
+        protected final AccessTokenAuthContext authContext;
+        protected final Set<String> authorizedWriteTopics = ConcurrentHashMap.newKeySet();
+
+        protected VerifiedToken(String token, AccessToken accessToken, AccessTokenAuthContext authContext) {
+            this.token = token;
+            this.accessToken = accessToken;
+            this.authContext = authContext;
+        }
+    }
 
     public MqttConnection(ManagerKeycloakIdentityProvider identityProvider, String sessionId, String realm, String username, String password) {
         this.realm = realm;
@@ -74,6 +97,47 @@ public class MqttConnection {
         return tokenSupplier.get();
     }
 
+    /**
+     * @return The auth context of the given token if it has been verified and is still active, otherwise
+     * <code>null</code> and the token must be verified.
+     */
+    public AccessTokenAuthContext getVerifiedAuthContext(String token) {
+        VerifiedToken verified = verifiedToken;
+        if (verified == null || !verified.token.equals(token) || !verified.accessToken.isActive()) {
+            return null;
+        }
+        return verified.authContext;
+    }
+
+    public void setVerifiedAuthContext(String token, AccessToken accessToken, AccessTokenAuthContext authContext) {
+        verifiedToken = new VerifiedToken(token, accessToken, authContext);
+    }
+
+    /**
+     * @return <code>true</code> if writing to the topic has been authorized with the given token and the token is
+     * still active.
+     */
+    public boolean isWriteAuthorized(String token, String topic) {
+        VerifiedToken verified = verifiedToken;
+        return verified != null
+            && verified.token.equals(token)
+            && verified.accessToken.isActive()
+            && verified.authorizedWriteTopics.contains(topic);
+    }
+
+    /**
+     * Remembers that writing to the topic has been authorized with the given token, a new token must authorize the
+     * topic again.
+     */
+    public void setWriteAuthorized(String token, String topic) {
+        VerifiedToken verified = verifiedToken;
+        if (verified != null
+            && verified.token.equals(token)
+            && verified.authorizedWriteTopics.size() < MAX_AUTHORIZED_WRITE_TOPICS) {
+            verified.authorizedWriteTopics.add(topic);
+        }
+    }
+
     public String getSessionId() {
         return sessionId;
     }
@@ -73,9 +73,22 @@ public class ORAuthorizatorPolicy implements IAuthorizatorPolicy {
             return false;
         }
 
+        // Writes are checked for every publish, so topics already authorized with the current token are not checked again
+        String token = connection.getAccessToken();
+        if (isWrite && connection.isWriteAuthorized(token, topic.toString())) {
+            return true;
+        }
+
         try {
-            AccessToken accessToken = AdapterTokenVerifier.verifyToken(connection.getAccessToken(), identityProvider.getKeycloakDeployment(connection.realm, KEYCLOAK_CLIENT_ID));
-            authContext = accessToken != null ? new AccessTokenAuthContext(connection.realm, accessToken) : null;
+            authContext = connection.getVerifiedAuthContext(token);
+            if (authContext == null) {
+                AccessToken accessToken = AdapterTokenVerifier.verifyToken(token, identityProvider.getKeycloakDeployment(connection.realm, KEYCLOAK_CLIENT_ID));
+                if (accessToken != null) {
+                    AccessTokenAuthContext accessTokenAuthContext = new AccessTokenAuthContext(connection.realm, accessToken);
+                    connection.setVerifiedAuthContext(token, accessToken, accessTokenAuthContext);
+                    authContext = accessTokenAuthContext;
+                }
+            }
         } catch (VerificationException e) {
             LOG.log(Level.FINE, "Couldn't verify token: " + connection, e);
             return false;
@@ -157,6 +170,7 @@ public class ORAuthorizatorPolicy implements IAuthorizatorPolicy {
             }
 
             // Security of attribute write will be handled by the asset processing service so don't need to do anything here
+            connection.setWriteAuthorized(token, topic.toString());
         } else { // read
 
             // Build filter for the topic and verify that the filter is OK for given auth context
@@ -46,6 +46,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -61,6 +62,9 @@ public class ORInterceptHandler extends AbstractInterceptHandler {
     protected final MessageBrokerService messageBrokerService;
     protected final ManagerKeycloakIdentityProvider identityProvider;
     protected final Map<String, MqttConnection> sessionIdConnectionMap;
+    protected final LongAdder tokenVerifications = new LongAdder();
+    protected final LongAdder cachedTokenUses = new LongAdder();
+    protected final LongAdder directAttributeEvents = new LongAdder();
 
     public ORInterceptHandler(MqttBrokerService brokerService,
                               ManagerKeycloakIdentityProvider identityProvider,
@@ -240,27 +244,45 @@ public class ORInterceptHandler extends AbstractInterceptHandler {
             return;
         }
 
-        List<String> topicTokens = topic.getTokens().stream().map(Token::toString).collect(Collectors.toList());
-        boolean isValueWrite = topicTokens.get(0).equals(ATTRIBUTE_VALUE_TOPIC);
+        // Write topics have been authorized and can't contain wildcards, so the topic name can be split directly
+        String[] topicTokens = msg.getTopicName().split("/");
+        boolean isValueWrite = topicTokens[0].equals(ATTRIBUTE_VALUE_TOPIC);
         String payloadContent = msg.getPayload().toString(StandardCharsets.UTF_8);
-        AttributeEvent attributeEvent = null;
+        AttributeEvent[] attributeEvents = null;
 
         if (isValueWrite) {
-            String assetId = topicTokens.get(1);
-            String attributeName = topicTokens.get(2);
+            if (topicTokens.length < 3) {
+                LOG.fine("Invalid attribute value publish topic '" + topic + "': " + connection);
+                return;
+            }
+            String assetId = topicTokens[1];
+            String attributeName = topicTokens[2];
             Object value = Values.parse(payloadContent).orElse(null);
-            attributeEvent = new AttributeEvent(assetId, attributeName, value);
+            attributeEvents = new AttributeEvent[] {new AttributeEvent(assetId, attributeName, value)};
+        } else if (payloadContent.trim().startsWith("[")) {
+            // A batch of attribute events
+            attributeEvents = Values.parse(payloadContent, AttributeEvent[].class).orElse(null);
         } else {
-            attributeEvent = Values.parse(payloadContent, AttributeEvent.class).orElse(null);
+            attributeEvents = Values.parse(payloadContent, AttributeEvent.class).map(event -> new AttributeEvent[] {event}).orElse(null);
         }
 
-        if (attributeEvent == null) {
+        if (attributeEvents == null) {
             LOG.fine("Failed to parse payload for publish topic '" + topic + "': " + connection);
             return;
         }
 
-        Map<String, Object> headers = prepareHeaders(connection);
-        messageBrokerService.getProducerTemplate().sendBodyAndHeaders(ClientEventService.CLIENT_EVENT_QUEUE, attributeEvent, headers);
+        for (AttributeEvent attributeEvent : attributeEvents) {
+            if (attributeEvent == null) {
+                continue;
+            }
+            Map<String, Object> headers = prepareHeaders(connection);
+
+            // Skip the client event queue and topic, the client event interceptors (e.g. of gateway clients) are
+            // called before the event is sent to the asset queue
+            if (brokerService.assetProcessingService.sendClientAttributeEvent(attributeEvent, headers)) {
+                directAttributeEvents.increment();
+            }
+        }
     }
 
     protected Map<String, Object> prepareHeaders(MqttConnection connection) {
@@ -271,12 +293,33 @@ public class ORInterceptHandler extends AbstractInterceptHandler {
         try {
             String token = connection.getAccessToken();
             if (token != null) {
-                AccessToken accessToken = AdapterTokenVerifier.verifyToken(token, identityProvider.getKeycloakDeployment(connection.realm, connection.getUsername()));
-                headers.put(Constants.AUTH_CONTEXT, new AccessTokenAuthContext(connection.realm, accessToken));
+                // The token is only verified again when it has been refreshed or has expired
+                AccessTokenAuthContext authContext = connection.getVerifiedAuthContext(token);
+                if (authContext == null) {
+                    tokenVerifications.increment();
+                    AccessToken accessToken = AdapterTokenVerifier.verifyToken(token, identityProvider.getKeycloakDeployment(connection.realm, connection.getUsername()));
+                    authContext = new AccessTokenAuthContext(connection.realm, accessToken);
+                    connection.setVerifiedAuthContext(token, accessToken, authContext);
+                } else {
+                    cachedTokenUses.increment();
+                }
+                headers.put(Constants.AUTH_CONTEXT, authContext);
             }
         } catch (VerificationException e) {
             LOG.log(Level.FINE, "Couldn't verify token", e);
         }
         return headers;
     }
+
+    public long getTokenVerifications() {
+        return tokenVerifications.sum();
+    }
+
+    public long getCachedTokenUses() {
+        return cachedTokenUses.sum();
+    }
+
+    public long getDirectAttributeEvents() {
+        return directAttributeEvents.sum();
+    }
 }
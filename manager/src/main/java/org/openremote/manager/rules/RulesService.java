@@ -54,11 +54,12 @@ import org.openremote.model.security.ClientRole;
 import org.openremote.model.security.Tenant;
 import org.openremote.model.util.Pair;
 import org.openremote.model.value.MetaItemType;
-import org.openremote.model.value.Values;
 
 import javax.persistence.EntityManager;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiFunction;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -66,6 +67,7 @@ import java.util.stream.Stream;
 
 import static java.util.logging.Level.FINEST;
 import static java.util.logging.Level.SEVERE;
+import static java.util.logging.Level.WARNING;
 import static java.util.stream.Collectors.toList;
 import static org.openremote.container.concurrent.GlobalLock.withLock;
 import static org.openremote.container.concurrent.GlobalLock.withLockReturning;
@@ -127,6 +129,10 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
     // The objects are already in memory inside the rule engines but keeping them
     // here means we can quickly insert facts into newly started engines
     protected Set<AssetState<?>> assetStates = new HashSet<>();
+    // Fact changes of processed attribute updates, applied in order by a single task while holding the global lock so
+    // the asset queue lanes don't wait for a rules engine that is being deployed or fired
+    protected final Queue<Runnable> pendingFactChanges = new ConcurrentLinkedQueue<>();
+    protected final AtomicBoolean factChangesScheduled = new AtomicBoolean();
     protected String configEventExpires;
     protected boolean initDone;
 
@@ -322,6 +328,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
                 globalEngine = null;
             }
 
+            pendingFactChanges.clear();
             assetStates.clear();
         });
 
@@ -343,20 +350,54 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
 
         // First as asset state
         if (attributeIsRuleState(attribute)) {
-            updateAssetState(new AssetState<>(asset, attribute, source));
+            AssetState<?> assetState = new AssetState<>(asset, attribute, source);
+            queueFactChange(() -> updateAssetState(assetState));
         }
 
         // Then as asset event (if there wasn't an error), this will also fire the rules engines
         if (attribute.getMetaValue(MetaItemType.RULE_EVENT).orElse(false)) {
-            insertAssetEvent(
-                new AssetState<>(asset, attribute, source),
-                attribute.getMetaValue(MetaItemType.RULE_EVENT_EXPIRES).orElse(configEventExpires)
-            );
+            AssetState<?> assetState = new AssetState<>(asset, attribute, source);
+            String expires = attribute.getMetaValue(MetaItemType.RULE_EVENT_EXPIRES).orElse(configEventExpires);
+            queueFactChange(() -> insertAssetEvent(assetState, expires));
         }
 
         return false;
     }
 
+    protected void queueFactChange(Runnable factChange) {
+        pendingFactChanges.add(factChange);
+        if (factChangesScheduled.compareAndSet(false, true)) {
+            executorService.execute(this::applyQueuedFactChanges);
+        }
+    }
+
+    protected void applyQueuedFactChanges() {
+        try {
+            withLock(getClass().getSimpleName() + "::applyQueuedFactChanges", this::drainFactChanges);
+        } finally {
+            factChangesScheduled.set(false);
+        }
+        // A change queued after the queue was drained but before the flag was reset
+        if (!pendingFactChanges.isEmpty() && factChangesScheduled.compareAndSet(false, true)) {
+            executorService.execute(this::applyQueuedFactChanges);
+        }
+    }
+
+    /**
+     * Applies the queued fact changes, must be called while holding the global lock. Asset and ruleset changes drain
+     * the queue first so facts of earlier attribute updates are not applied after the change.
+     */
+    protected void drainFactChanges() {
+        Runnable factChange;
+        while ((factChange = pendingFactChanges.poll()) != null) {
+            try {
+                factChange.run();
+            } catch (Exception ex) {
+                LOG.log(WARNING, "Failed to apply fact change of attribute update", ex);
+            }
+        }
+    }
+
     public boolean isRulesetKnown(Ruleset ruleset) {
         if (ruleset instanceof GlobalRuleset) {
             return globalEngine != null
@@ -456,11 +497,12 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
 
     protected void processAssetChange(Asset<?> asset, PersistenceEvent<Asset<?>> persistenceEvent) {
         withLock(getClass().getSimpleName() + "::processAssetChange", () -> {
+            drainFactChanges();
 
             // We must load the asset from database (only when required), as the
             // persistence event might not contain a completely loaded asset
             BiFunction<Asset<?>, Attribute<?>, AssetState<?>> buildAssetState = (loadedAsset, attribute) ->
-                new AssetState<>(loadedAsset, Values.clone(attribute), Source.INTERNAL);
+                new AssetState<>(loadedAsset, attribute.copy(), Source.INTERNAL);
 
             switch (persistenceEvent.getCause()) {
                 case CREATE: {
@@ -545,6 +587,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
 
     protected void processRulesetChange(Ruleset ruleset, PersistenceEvent.Cause cause) {
         withLock(getClass().getSimpleName() + "::processRulesetChange", () -> {
+            drainFactChanges();
             if (cause == PersistenceEvent.Cause.DELETE || !ruleset.isEnabled()) {
                 if (ruleset instanceof GlobalRuleset) {
                     undeployGlobalRuleset((GlobalRuleset) ruleset);
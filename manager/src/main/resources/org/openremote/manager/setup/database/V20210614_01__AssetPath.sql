@@ -0,0 +1,40 @@
+/*
+  ############################# ASSET PATH #############################
+
+  Store the path of each asset instead of resolving it recursively for every queried row. The path starts with the
+  identifier of the asset itself and ends with the root asset, it is maintained by the AssetStorageService when an
+  asset is created or moved.
+ */
+alter table ASSET
+  add column PATH text [];
+
+with recursive ASSET_TREE(ID, PATH) as (
+  select
+    A1.ID,
+    array [text(A1.ID)]
+  from ASSET A1
+  where A1.PARENT_ID is null
+  union all
+  select
+    A2.ID,
+    array_prepend(text(A2.ID), AT.PATH)
+  from ASSET A2, ASSET_TREE AT
+  where A2.PARENT_ID = AT.ID
+) update ASSET A
+  set PATH = AT.PATH
+  from ASSET_TREE AT
+  where A.ID = AT.ID;
+
+alter table ASSET
+  alter column PATH set not null;
+
+create index ASSET_PATH on ASSET using gin (PATH);
+
+create or replace function GET_ASSET_TREE_PATH(ASSET_ID text)
+  returns text [] as
+$$
+  select PATH
+  from ASSET
+  where ID = ASSET_ID;
+$$
+language sql stable;
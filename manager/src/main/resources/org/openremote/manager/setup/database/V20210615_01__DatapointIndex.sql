@@ -0,0 +1,46 @@
+/*
+  ############################# DATAPOINT INDICES #############################
+
+  Datapoints are read per attribute and time range, so the primary key starts with the attribute instead of the
+  timestamp; purging by time uses a separate timestamp index. Existing datapoint partitions are changed the same way,
+  new partitions copy the indexes of the datapoint table.
+ */
+alter table ASSET_DATAPOINT
+  drop constraint ASSET_DATAPOINT_PKEY;
+
+alter table ASSET_DATAPOINT
+  add primary key (ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP);
+
+create index ASSET_DATAPOINT_TIMESTAMP on ASSET_DATAPOINT (TIMESTAMP);
+
+alter table ASSET_PREDICTED_DATAPOINT
+  drop constraint ASSET_PREDICTED_DATAPOINT_PKEY;
+
+alter table ASSET_PREDICTED_DATAPOINT
+  add primary key (ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP);
+
+create index ASSET_PREDICTED_DATAPOINT_TIMESTAMP on ASSET_PREDICTED_DATAPOINT (TIMESTAMP);
+
+do
+$$
+declare
+  PARTITION_NAME text;
+  PARTITION_KEY  text;
+begin
+  for PARTITION_NAME, PARTITION_KEY in
+  select
+    C.RELNAME,
+    CON.CONNAME
+  from PG_INHERITS I
+    join PG_CLASS C on C.OID = I.INHRELID
+    left join PG_CONSTRAINT CON on CON.CONRELID = C.OID and CON.CONTYPE = 'p'
+  where I.INHPARENT in (cast('ASSET_DATAPOINT' as regclass), cast('ASSET_PREDICTED_DATAPOINT' as regclass))
+  loop
+    if PARTITION_KEY is not null then
+      execute format('alter table %I drop constraint %I', PARTITION_NAME, PARTITION_KEY);
+    end if;
+    execute format('alter table %I add primary key (ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP)', PARTITION_NAME);
+    execute format('create index %I on %I (TIMESTAMP)', PARTITION_NAME || '_timestamp', PARTITION_NAME);
+  end loop;
+end
+$$;
@@ -0,0 +1,66 @@
+/*
+  ############################# DATAPOINT SUMMARIES #############################
+
+  The period, count and value range of the datapoints of each attribute, maintained by the datapoint services when
+  datapoints are stored and purged so these don't have to be aggregated from the datapoints. The value range only
+  includes number and boolean values and may be wider than the range of the stored datapoints as it isn't narrowed
+  when datapoints are overwritten or purged.
+ */
+create table ASSET_DATAPOINT_SUMMARY (
+  ENTITY_ID        varchar(22)      not null,
+  ATTRIBUTE_NAME   varchar(255)     not null,
+  OLDEST_TIMESTAMP timestamp        not null,
+  LATEST_TIMESTAMP timestamp        not null,
+  DATAPOINT_COUNT  int8             not null,
+  MIN_VALUE        double precision,
+  MAX_VALUE        double precision,
+  primary key (ENTITY_ID, ATTRIBUTE_NAME)
+);
+
+create table ASSET_PREDICTED_DATAPOINT_SUMMARY (
+  ENTITY_ID        varchar(36)      not null,
+  ATTRIBUTE_NAME   varchar(255)     not null,
+  OLDEST_TIMESTAMP timestamp        not null,
+  LATEST_TIMESTAMP timestamp        not null,
+  DATAPOINT_COUNT  int8             not null,
+  MIN_VALUE        double precision,
+  MAX_VALUE        double precision,
+  primary key (ENTITY_ID, ATTRIBUTE_NAME)
+);
+
+alter table ASSET_DATAPOINT_SUMMARY
+  add foreign key (ENTITY_ID) references ASSET (ID) on delete cascade;
+
+create or replace function GET_DATAPOINT_NUMBER_VALUE(VALUE jsonb)
+  returns double precision as
+$$
+  select case jsonb_typeof(VALUE)
+         when 'number' then cast(cast(VALUE as text) as double precision)
+         when 'boolean' then case when cast(cast(VALUE as text) as boolean) then 1 else 0 end
+         end;
+$$
+language sql immutable;
+
+insert into ASSET_DATAPOINT_SUMMARY
+  select
+    ENTITY_ID,
+    ATTRIBUTE_NAME,
+    min(TIMESTAMP),
+    max(TIMESTAMP),
+    count(*),
+    min(GET_DATAPOINT_NUMBER_VALUE(VALUE)),
+    max(GET_DATAPOINT_NUMBER_VALUE(VALUE))
+  from ASSET_DATAPOINT
+  group by ENTITY_ID, ATTRIBUTE_NAME;
+
+insert into ASSET_PREDICTED_DATAPOINT_SUMMARY
+  select
+    ENTITY_ID,
+    ATTRIBUTE_NAME,
+    min(TIMESTAMP),
+    max(TIMESTAMP),
+    count(*),
+    min(GET_DATAPOINT_NUMBER_VALUE(VALUE)),
+    max(GET_DATAPOINT_NUMBER_VALUE(VALUE))
+  from ASSET_PREDICTED_DATAPOINT
+  group by ENTITY_ID, ATTRIBUTE_NAME;
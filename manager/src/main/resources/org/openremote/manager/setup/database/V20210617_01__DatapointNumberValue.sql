@@ -0,0 +1,12 @@
+/*
+  ############################# DATAPOINT NUMBER VALUES #############################
+
+  Number and boolean (1 or 0) datapoint values are also stored as double precision so aggregations don't have to
+  parse the jsonb value of each row. Existing datapoints are not updated, queries fall back to
+  GET_DATAPOINT_NUMBER_VALUE(VALUE) when the column is null.
+ */
+alter table ASSET_DATAPOINT
+  add column NUMBER_VALUE double precision;
+
+alter table ASSET_PREDICTED_DATAPOINT
+  add column NUMBER_VALUE double precision;
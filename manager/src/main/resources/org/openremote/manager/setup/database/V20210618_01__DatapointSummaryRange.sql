@@ -0,0 +1,11 @@
+/*
+  ############################# DATAPOINT SUMMARY RANGES #############################
+
+  The value range of a summary is marked as outdated when datapoints of the attribute are overwritten or removed, the
+  datapoint services then recompute the range of the attribute from its datapoints so it is narrowed again.
+ */
+alter table ASSET_DATAPOINT_SUMMARY
+  add column RANGE_OUTDATED boolean not null default false;
+
+alter table ASSET_PREDICTED_DATAPOINT_SUMMARY
+  add column RANGE_OUTDATED boolean not null default false;
@@ -23,7 +23,6 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.databind.annotation.JsonTypeIdResolver;
 import org.hibernate.annotations.Check;
 import org.hibernate.annotations.DynamicUpdate;
-import org.hibernate.annotations.Formula;
 import org.openremote.model.Constants;
 import org.openremote.model.IdentifiableEntity;
 import org.openremote.model.asset.impl.ThingAsset;
@@ -41,6 +40,7 @@ import org.openremote.model.value.ValueType;
 import javax.persistence.*;
 import javax.validation.Valid;
 import javax.validation.constraints.*;
+import java.lang.reflect.Constructor;
 import java.util.*;
 
 import static javax.persistence.DiscriminatorType.STRING;
@@ -303,7 +303,7 @@ public abstract class Asset<T extends Asset<?>> implements IdentifiableEntity<T>
     protected String type = getClass().getSimpleName();
 
     // The following are expensive to query, so if they are null, they might not have been loaded
-    @Formula("get_asset_tree_path(ID)")
+    @Column(name = "PATH", nullable = false, columnDefinition = "text[]")
     @org.hibernate.annotations.Type(type = Constants.PERSISTENCE_STRING_ARRAY_TYPE)
     protected String[] path;
 
@@ -425,7 +425,8 @@ public abstract class Asset<T extends Asset<?>> implements IdentifiableEntity<T>
     }
 
     /**
-     * NOTE: This is a transient and optional property, set only in database query results.
+     * NOTE: This is an optional property, it is maintained when the asset is stored and might not be set in database
+     * query results.
      * <p>
      * The identifiers of all parents representing the path in the tree. The first element is the identifier of this
      * instance, the last is the root asset without a parent.
@@ -434,7 +435,7 @@ public abstract class Asset<T extends Asset<?>> implements IdentifiableEntity<T>
         return path;
     }
 
-    protected T setPath(String[] path) {
+    public T setPath(String[] path) {
         this.path = path;
         return (T) this;
     }
@@ -523,6 +524,35 @@ public abstract class Asset<T extends Asset<?>> implements IdentifiableEntity<T>
         return (T) this;
     }
 
+    /**
+     * Creates a structural copy of this asset with an {@link AttributeMap#copy} of the attributes, which is much
+     * cheaper than {@link org.openremote.model.value.Values#clone}. Attribute values are not copied, so they must not
+     * be modified in place.
+     */
+    public T copy() {
+        Asset<?> copy;
+        try {
+            Constructor<? extends Asset> constructor = getClass().getDeclaredConstructor();
+            constructor.setAccessible(true);
+            copy = constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Asset type has no default constructor: " + getClass().getName(), e);
+        }
+        copy.id = id;
+        copy.version = version;
+        copy.createdOn = createdOn;
+        copy.name = name;
+        copy.accessPublicRead = accessPublicRead;
+        copy.parentId = parentId;
+        copy.realm = realm;
+        copy.parentName = parentName;
+        copy.parentType = parentType;
+        copy.type = type;
+        copy.path = path;
+        copy.attributes = attributes != null ? attributes.copy() : null;
+        return (T) copy;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "{" +
@@ -76,9 +76,8 @@ import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
  * #SENSOR_QUEUE_SOURCE_PROTOCOL}.
  * <p>
  * If the user writes a new value into the linked attribute, the protocol translates this value change into a device (or
- * service) action. Write operations on attributes linked to an {@link Agent} can be consumed by the agent's protocol on
- * the {@link #ACTUATOR_TOPIC} where the message body will be an {@link AttributeEvent}. Each message also contains the
- * target protocol name in header {@link #ACTUATOR_TOPIC_TARGET_PROTOCOL}.
+ * service) action. Write operations on attributes linked to an {@link Agent} are passed directly to the agent's
+ * protocol instance with {@link #queueLinkedAttributeWrite}.
  * <p>
  * To simplify protocol development some common protocol behaviour is recommended for generic protocols:
  * <h1>Inbound value conversion (Protocol -> Linked Attribute)</h1>
@@ -152,13 +151,9 @@ import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
 public interface Protocol<T extends Agent<T, ?, ?>> {
 
     Logger LOG = SyslogCategory.getLogger(PROTOCOL, Protocol.class);
-    String ACTUATOR_TOPIC_TARGET_PROTOCOL = "Protocol";
     String SENSOR_QUEUE_SOURCE_PROTOCOL = "Protocol";
 
     // TODO: Some of these options should be configurable depending on expected load etc.
-    // Message topic for communicating from asset/thing to protocol layer (asset attribute changed, trigger actuator)
-    String ACTUATOR_TOPIC = "seda://ActuatorTopic?multipleConsumers=true&concurrentConsumers=1&waitForTaskToComplete=NEVER&purgeWhenStopping=true&discardIfNoConsumers=true&limitConcurrentConsumers=false&size=1000";
-
     // Message queue for communicating from protocol to asset/thing layer (sensor changed, trigger asset attribute update)
     String SENSOR_QUEUE = "seda://SensorQueue?waitForTaskToComplete=NEVER&purgeWhenStopping=true&discardIfNoConsumers=false&size=25000";
 
@@ -209,6 +204,15 @@ public interface Protocol<T extends Agent<T, ?, ?>> {
      */
     void unlinkAttribute(String assetId, Attribute<?> attribute) throws Exception;
 
+    /**
+     * Called with each write of an {@link Attribute} linked to this protocol instance, by the thread processing the
+     * {@link AttributeEvent}; the protocol must queue the write and process it asynchronously, in the order writes
+     * were queued.
+     *
+     * @return <code>false</code> if the write was dropped because the protocol's write queue is full.
+     */
+    boolean queueLinkedAttributeWrite(AttributeEvent event);
+
     /**
      * Called before any calls to {@link #linkAttribute} to allow the protocol to perform required tasks with {@link
      * ContainerService}s (e.g. register Camel routes). The protocol instance should validate the settings defined in
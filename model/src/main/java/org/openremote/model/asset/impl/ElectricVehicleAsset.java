@@ -266,7 +266,7 @@ public class ElectricVehicleAsset extends ElectricityBatteryAsset {
     }
 
     @Override
-    protected ElectricityStorageAsset setPath(String[] path) {
+    public ElectricityStorageAsset setPath(String[] path) {
         super.setPath(path);
         return this;
     }
@@ -136,6 +136,9 @@ public class Attribute<T> extends AbstractNameValueHolder<T> implements MetaHold
 
     @Valid
     protected MetaMap meta;
+    // The meta is shared with a copy of this attribute, see #copy
+    @JsonIgnore
+    protected transient boolean metaShared;
     @JsonProperty
     @JsonInclude(JsonInclude.Include.NON_DEFAULT)
     protected long timestamp;
@@ -230,19 +233,67 @@ public class Attribute<T> extends AbstractNameValueHolder<T> implements MetaHold
         this.name = name;
     }
 
+    /**
+     * @return The meta of this attribute, which can be modified. If the meta is shared with a {@link #copy} it is
+     * copied first.
+     */
+    @JsonIgnore
     public MetaMap getMeta() {
         if (meta == null) {
             meta = new MetaMap();
+        } else if (metaShared) {
+            meta = meta.copy();
+            metaShared = false;
         }
 
         return meta;
     }
 
+    /**
+     * Serialize the meta without copying shared meta.
+     */
+    @JsonProperty("meta")
+    protected MetaMap getMetaForSerialization() {
+        if (meta == null) {
+            meta = new MetaMap();
+        }
+        return meta;
+    }
+
     public Attribute<T> setMeta(MetaMap meta) {
         this.meta = meta;
+        this.metaShared = false;
         return this;
     }
 
+    /**
+     * @return The presence and boolean values of the well known meta items, see {@link MetaMap#getFlags}. {@link
+     * #hasMeta(MetaItemDescriptor)} and {@link #getMetaValue} use these flags for the meta items they contain.
+     */
+    @JsonIgnore
+    public MetaFlags getMetaFlags() {
+        return meta == null ? MetaFlags.NONE : meta.getFlags();
+    }
+
+    /**
+     * Creates a structural copy of this attribute, which is much cheaper than {@link Values#clone}. The value is not
+     * copied, so it must not be modified in place; the copy is meant to get a new value with {@link #setValue}. The
+     * meta is shared until either attribute's meta is modified through {@link #getMeta}, which then copies it.
+     */
+    public Attribute<T> copy() {
+        Attribute<T> copy = new Attribute<>();
+        copy.name = name;
+        copy.type = type;
+        copy.value = value;
+        copy.timestamp = timestamp;
+        if (meta != null) {
+            copy.meta = meta;
+            copy.metaShared = true;
+            metaShared = true;
+        }
+        return copy;
+    }
+
     public Attribute<T> addMeta(@NotNull MetaMap meta) {
         getMeta().addAll(meta);
         return this;
@@ -272,22 +323,40 @@ public class Attribute<T> extends AbstractNameValueHolder<T> implements MetaHold
         return this;
     }
 
+    // The following only read the meta, so they don't copy shared meta or reset the meta flags
+
+    @SuppressWarnings("unchecked")
     public <U> Optional<U> getMetaValue(MetaItemDescriptor<U> metaItemDescriptor) {
-        return getMeta().getValue(metaItemDescriptor);
+        if (meta == null) {
+            return Optional.empty();
+        }
+        if (metaItemDescriptor.getType().getType() == Boolean.class && MetaFlags.isFlag(metaItemDescriptor)) {
+            return (Optional<U>) getMetaFlags().getValue((MetaItemDescriptor<Boolean>) metaItemDescriptor);
+        }
+        return meta.getValue(metaItemDescriptor);
     }
 
     public <U> U getMetaValueOrDefault(MetaItemDescriptor<U> metaItemDescriptor) {
-        return getMeta().getValueOrDefault(metaItemDescriptor);
+        return meta == null ? null : meta.getValueOrDefault(metaItemDescriptor);
     }
 
     public boolean hasMeta(MetaItemDescriptor<?> metaItemDescriptor) {
-        return getMeta().has(metaItemDescriptor);
+        if (meta == null) {
+            return false;
+        }
+        if (MetaFlags.isFlag(metaItemDescriptor)) {
+            return getMetaFlags().has(metaItemDescriptor);
+        }
+        return meta.has(metaItemDescriptor);
     }
 
     public boolean hasMeta(String metaItemName) {
-        return getMeta().has(metaItemName);
+        return meta != null && meta.has(metaItemName);
     }
 
+    /**
+     * The returned meta item can be modified, so this copies shared meta like {@link #getMeta}.
+     */
     public <U> Optional<MetaItem<U>> getMetaItem(MetaItemDescriptor<U> metaItemDescriptor) {
         return getMeta().get(metaItemDescriptor);
     }
@@ -323,7 +392,7 @@ public class Attribute<T> extends AbstractNameValueHolder<T> implements MetaHold
             "name='" + name + '\'' +
             ", value='" + value + '\'' +
             ", timestamp='" + getTimestamp().orElse(0L) + '\'' +
-            ", meta='" + getMeta().values().stream().map(MetaItem::toString).collect(Collectors.joining(",")) + '\'' +
+            ", meta='" + (meta == null ? "" : meta.values().stream().map(MetaItem::toString).collect(Collectors.joining(","))) + '\'' +
             "} ";
     }
 
@@ -65,6 +65,15 @@ public class AttributeMap extends NamedMap<Attribute<?>> {
         });
     }
 
+    /**
+     * @return A copy with a {@link Attribute#copy} of each attribute.
+     */
+    public AttributeMap copy() {
+        AttributeMap copy = new AttributeMap();
+        values().forEach(attribute -> copy.putSilent(attribute.copy()));
+        return copy;
+    }
+
     public <T> void setValue(AttributeDescriptor<T> descriptor, T value) {
         getOrCreate(descriptor).setValue(value);
     }
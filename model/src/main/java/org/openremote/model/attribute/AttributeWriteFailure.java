@@ -117,6 +117,11 @@ public enum AttributeWriteFailure {
      */
     GATEWAY_DISCONNECTED,
 
+    /**
+     * The event is for an agent linked attribute but the write queue of the agent's protocol is full
+     */
+    PROTOCOL_WRITE_QUEUE_FULL,
+
     /**
      * Fallback failure when no other value makes sense
      */
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.model.attribute;
+
+import org.openremote.model.util.TsIgnore;
+import org.openremote.model.value.MetaItemDescriptor;
+
+import java.util.Optional;
+
+import static org.openremote.model.value.MetaItemType.*;
+
+/**
+ * An immutable snapshot of the presence and boolean values of the well known {@link
+ * org.openremote.model.value.MetaItemType}s that are checked for every attribute event, so these checks don't need
+ * map lookups or allocations. See {@link MetaMap#getFlags}.
+ */
+@TsIgnore
+public final class MetaFlags {
+
+    protected static final MetaItemDescriptor<?>[] DESCRIPTORS = {
+        AGENT_LINK,
+        ACCESS_PUBLIC_READ,
+        ACCESS_RESTRICTED_READ,
+        ACCESS_RESTRICTED_WRITE,
+        READ_ONLY,
+        STORE_DATA_POINTS,
+        RULE_STATE,
+        RULE_EVENT
+    };
+    // Bits of each descriptor
+    protected static final int HAS = 1;
+    protected static final int HAS_VALUE = 2;
+    protected static final int IS_TRUE = 4;
+    protected static final int BITS_PER_DESCRIPTOR = 3;
+    protected static final Optional<Boolean> OPTIONAL_TRUE = Optional.of(true);
+    protected static final Optional<Boolean> OPTIONAL_FALSE = Optional.of(false);
+
+    public static final MetaFlags NONE = new MetaFlags(0);
+
+    protected final int bits;
+
+    protected MetaFlags(int bits) {
+        this.bits = bits;
+    }
+
+    public static MetaFlags of(MetaMap meta) {
+        if (meta == null || meta.isEmpty()) {
+            return NONE;
+        }
+        int bits = 0;
+        for (int i = 0; i < DESCRIPTORS.length; i++) {
+            MetaItemDescriptor<?> descriptor = DESCRIPTORS[i];
+            if (!meta.has(descriptor)) {
+                continue;
+            }
+            int descriptorBits = HAS;
+            Optional<?> value = meta.getValue(descriptor);
+            if (value.isPresent()) {
+                descriptorBits |= HAS_VALUE;
+                if (Boolean.TRUE.equals(value.get())) {
+                    descriptorBits |= IS_TRUE;
+                }
+            }
+            bits |= descriptorBits << (i * BITS_PER_DESCRIPTOR);
+        }
+        return bits == 0 ? NONE : new MetaFlags(bits);
+    }
+
+    /**
+     * @return <code>true</code> if the presence and value of the given meta item are part of the flags.
+     */
+    public static boolean isFlag(MetaItemDescriptor<?> descriptor) {
+        return indexOf(descriptor) >= 0;
+    }
+
+    /**
+     * @return <code>true</code> if the meta item with the given name is part of the flags.
+     */
+    public static boolean isFlag(String name) {
+        for (MetaItemDescriptor<?> descriptor : DESCRIPTORS) {
+            if (descriptor.getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return <code>true</code> if the meta contains the given meta item, same as {@link MetaMap#has}.
+     */
+    public boolean has(MetaItemDescriptor<?> descriptor) {
+        return (getBits(descriptor) & HAS) != 0;
+    }
+
+    /**
+     * @return <code>true</code> if the meta contains the given meta item and its value is <code>true</code>.
+     */
+    public boolean isTrue(MetaItemDescriptor<Boolean> descriptor) {
+        return (getBits(descriptor) & IS_TRUE) != 0;
+    }
+
+    /**
+     * @return The same as {@link MetaMap#getValue} for a boolean meta item, without allocating.
+     */
+    public Optional<Boolean> getValue(MetaItemDescriptor<Boolean> descriptor) {
+        int descriptorBits = getBits(descriptor);
+        if ((descriptorBits & HAS_VALUE) == 0) {
+            return Optional.empty();
+        }
+        return (descriptorBits & IS_TRUE) != 0 ? OPTIONAL_TRUE : OPTIONAL_FALSE;
+    }
+
+    protected int getBits(MetaItemDescriptor<?> descriptor) {
+        int index = indexOf(descriptor);
+        if (index < 0) {
+            throw new IllegalArgumentException("Meta item is not part of the flags: " + descriptor.getName());
+        }
+        return (bits >>> (index * BITS_PER_DESCRIPTOR)) & (HAS | HAS_VALUE | IS_TRUE);
+    }
+
+    protected static int indexOf(MetaItemDescriptor<?> descriptor) {
+        for (int i = 0; i < DESCRIPTORS.length; i++) {
+            if (DESCRIPTORS[i] == descriptor) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(getClass().getSimpleName()).append("{");
+        for (int i = 0; i < DESCRIPTORS.length; i++) {
+            int descriptorBits = (bits >>> (i * BITS_PER_DESCRIPTOR)) & (HAS | HAS_VALUE | IS_TRUE);
+            if ((descriptorBits & HAS) != 0) {
+                if (sb.charAt(sb.length() - 1) != '{') {
+                    sb.append(", ");
+                }
+                sb.append(DESCRIPTORS[i].getName()).append('=')
+                    .append((descriptorBits & HAS_VALUE) == 0 ? "null" : (descriptorBits & IS_TRUE) != 0 ? "true" : "present");
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
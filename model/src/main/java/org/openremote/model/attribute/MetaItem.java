@@ -29,6 +29,7 @@ import org.openremote.model.value.ValueDescriptor;
 
 import java.io.IOException;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A named value whose name must match the name of a {@link MetaItemDescriptor} and whose value must match the value
@@ -53,6 +54,12 @@ public class MetaItem<T> extends AbstractNameValueHolder<T> {
         }
     }
 
+    // Incremented when the value of a flag meta item that is part of a MetaMap changes, see MetaMap#getFlags
+    protected static final AtomicLong FLAG_VERSION = new AtomicLong();
+
+    // Set when this item is put into a MetaMap
+    protected transient boolean attached;
+
     MetaItem() {
     }
 
@@ -66,6 +73,29 @@ public class MetaItem<T> extends AbstractNameValueHolder<T> {
         super(metaDescriptor.getName(), metaDescriptor.getType(), value);
     }
 
+    static long getFlagVersion() {
+        return FLAG_VERSION.get();
+    }
+
+    @Override
+    public void setValue(T value) {
+        super.setValue(value);
+        if (attached && name != null && MetaFlags.isFlag(name)) {
+            FLAG_VERSION.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return A copy of this meta item, the value is not copied.
+     */
+    public MetaItem<T> copy() {
+        MetaItem<T> copy = new MetaItem<>();
+        copy.name = name;
+        copy.type = type;
+        copy.value = value;
+        return copy;
+    }
+
     // For JPA/Hydrators
     protected void setNameInternal(String name) {
         this.name = name;
@@ -30,6 +30,9 @@ import org.openremote.model.value.*;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 @JsonDeserialize(using = MetaMap.MetaObjectDeserializer.class)
 public class MetaMap extends NamedMap<MetaItem<?>> {
@@ -87,6 +90,11 @@ public class MetaMap extends NamedMap<MetaItem<?>> {
         }
     }
 
+    // Computed on first use and reset on every modification of this map, see #getFlags
+    protected transient MetaFlags flags;
+    // The MetaItem#flagVersion the flags were computed at, any later value change of a flag meta item resets them
+    protected transient long flagsVersion;
+
     public MetaMap() {
     }
 
@@ -104,7 +112,86 @@ public class MetaMap extends NamedMap<MetaItem<?>> {
     }
 
     public <U extends MetaItemDescriptor<?>> void remove(U nameHolder) {
-        super.remove(nameHolder.getName());
+        remove(nameHolder.getName());
+    }
+
+    /**
+     * @return The presence and boolean values of the well known meta items, computed once and reused until this map
+     * or the value of one of its flag meta items is modified.
+     */
+    public MetaFlags getFlags() {
+        long version = MetaItem.getFlagVersion();
+        MetaFlags flags = this.flags;
+        if (flags == null || flagsVersion != version) {
+            flags = MetaFlags.of(this);
+            this.flags = flags;
+            flagsVersion = version;
+        }
+        return flags;
+    }
+
+    @Override
+    public MetaItem<?> put(String key, MetaItem<?> value) {
+        flags = null;
+        MetaItem<?> previous = super.put(key, value);
+        value.attached = true;
+        return previous;
+    }
+
+    @Override
+    protected MetaItem<?> putSilent(MetaItem<?> value) {
+        flags = null;
+        MetaItem<?> previous = super.putSilent(value);
+        value.attached = true;
+        return previous;
+    }
+
+    @Override
+    public MetaItem<?> remove(Object key) {
+        flags = null;
+        return super.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        flags = null;
+        super.clear();
+    }
+
+    // The views can modify this map so they reset the flags, read only iteration uses the delegate directly
+
+    @Override
+    public Set<String> keySet() {
+        flags = null;
+        return super.keySet();
+    }
+
+    @Override
+    public Collection<MetaItem<?>> values() {
+        flags = null;
+        return super.values();
+    }
+
+    @Override
+    public Set<Entry<String, MetaItem<?>>> entrySet() {
+        flags = null;
+        return super.entrySet();
+    }
+
+    @Override
+    public Stream<MetaItem<?>> stream() {
+        return delegate.values().stream();
+    }
+
+    @Override
+    public void forEach(Consumer<? super MetaItem<?>> action) {
+        delegate.values().forEach(action);
+    }
+
+    @Override
+    public void removeIf(Predicate<? super MetaItem<?>> filter) {
+        flags = null;
+        delegate.values().removeIf(filter);
     }
 
     public <S> MetaItem<S> getOrCreate(MetaItemDescriptor<S> metaDescriptor) {
@@ -113,6 +200,15 @@ public class MetaMap extends NamedMap<MetaItem<?>> {
         return metaItem;
     }
 
+    /**
+     * @return A copy with copies of the meta items, the meta item values are not copied.
+     */
+    public MetaMap copy() {
+        MetaMap copy = new MetaMap();
+        delegate.values().forEach(metaItem -> copy.putSilent(metaItem.copy()));
+        return copy;
+    }
+
     public <T> void set(MetaItemDescriptor<T> descriptor, T value) {
         MetaItem<T> metaItem = get(descriptor).orElse(new MetaItem<>(descriptor, null));
         metaItem.setValue(value);
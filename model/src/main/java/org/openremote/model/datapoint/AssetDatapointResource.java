@@ -36,7 +36,9 @@ public interface AssetDatapointResource {
      * authenticated realm, the superuser can access assets in other (all) realms. A 403 status is returned if a
      * regular user tries to access an asset in a realm different than its authenticated realm, or if the user is
      * restricted and the asset is not linked to the user. A 400 status is returned if the asset attribute does
-     * not have datapoint storage enabled.
+     * not have datapoint storage enabled. When maxPoints is set the datapoints of number and boolean attributes are
+     * reduced to at most that many points using the downsampling algorithm (LTTB by default) and the interval is
+     * ignored.
      */
     @GET
     @Path("{assetId}/attribute/{attributeName}")
@@ -48,7 +50,9 @@ public interface AssetDatapointResource {
                                    @QueryParam("interval") DatapointInterval datapointInterval,
                                    @QueryParam("step") Integer stepSize,
                                    @QueryParam("fromTimestamp") long fromTimestamp,
-                                   @QueryParam("toTimestamp") long toTimestamp);
+                                   @QueryParam("toTimestamp") long toTimestamp,
+                                   @QueryParam("maxPoints") Integer maxPoints,
+                                   @QueryParam("downsampling") DatapointDownsampling downsampling);
 
     @GET
     @Path("periods")
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.model.datapoint;
+
+/**
+ * How numeric datapoints are reduced to a maximum number of points.
+ */
+public enum DatapointDownsampling {
+
+    /**
+     * Largest-Triangle-Three-Buckets, keeps the visual shape of the series with one point per time bucket.
+     */
+    LTTB,
+
+    /**
+     * Keeps the lowest and highest point of each time bucket, so peaks are never lost.
+     */
+    MIN_MAX
+}
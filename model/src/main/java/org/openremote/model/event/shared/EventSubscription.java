@@ -32,6 +32,10 @@ import java.util.function.Consumer;
  * <p>
  * A subscription can optionally contain a {@link #subscriptionId} which allows a client
  * to have multiple subscriptions for the same event type.
+ * <p>
+ * A subscription can optionally set a {@link #flushIntervalMillis}, events are then delivered at most once per
+ * interval as one {@link TriggeredEventSubscription} and of several {@link org.openremote.model.attribute.AttributeEvent}s
+ * for the same attribute within an interval only the latest is delivered.
  */
 public class EventSubscription<E extends SharedEvent> {
 
@@ -41,6 +45,7 @@ public class EventSubscription<E extends SharedEvent> {
     protected String eventType;
     protected EventFilter<E> filter;
     protected String subscriptionId;
+    protected Integer flushIntervalMillis;
     @JsonIgnore
     protected boolean subscribed;
 
@@ -121,6 +126,14 @@ public class EventSubscription<E extends SharedEvent> {
         return subscriptionId;
     }
 
+    public Integer getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    public void setFlushIntervalMillis(Integer flushIntervalMillis) {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
     public void setSubscribed(boolean subscribed) {
         this.subscribed = subscribed;
     }
@@ -135,6 +148,7 @@ public class EventSubscription<E extends SharedEvent> {
             "eventType='" + eventType + '\'' +
             ", filter=" + filter +
             ", subscriptionId='" + subscriptionId + '\'' +
+            ", flushIntervalMillis=" + flushIntervalMillis +
             '}';
     }
 }
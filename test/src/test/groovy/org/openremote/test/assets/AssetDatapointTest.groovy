@@ -1,14 +1,23 @@
 package org.openremote.test.assets
 
+import org.hibernate.Session
 import org.openremote.agent.protocol.simulator.SimulatorProtocol
+import org.openremote.container.persistence.PersistenceService
 import org.openremote.manager.agent.AgentService
 import org.openremote.manager.asset.AssetProcessingService
 import org.openremote.manager.asset.AssetStorageService
 import org.openremote.manager.datapoint.AssetDatapointService
+import org.openremote.manager.datapoint.DatapointIngestBuffer
+import org.openremote.manager.datapoint.DatapointDownsampler
 import org.openremote.manager.setup.SetupService
 import org.openremote.test.setup.ManagerTestSetup
+import org.openremote.model.attribute.Attribute
 import org.openremote.model.attribute.AttributeRef
+import org.openremote.model.datapoint.AssetDatapoint
+import org.openremote.model.datapoint.DatapointDownsampling
 import org.openremote.model.datapoint.DatapointInterval
+import org.openremote.model.util.Pair
+import org.openremote.model.value.ValueType
 import org.openremote.model.value.Values
 import org.openremote.test.ManagerContainerTrait
 import spock.lang.Specification
@@ -19,6 +28,8 @@ import java.time.LocalDateTime
 import java.time.ZoneId
 import java.time.temporal.ChronoUnit
 import java.util.concurrent.TimeUnit
+import java.util.function.Consumer
+import java.util.function.UnaryOperator
 
 import static java.util.concurrent.TimeUnit.DAYS
 import static java.util.concurrent.TimeUnit.MINUTES
@@ -337,4 +348,316 @@ class AssetDatapointTest extends Specification implements ManagerContainerTrait
             assert datapoints.isEmpty()
         }
     }
+
+    def "Downsampled datapoints should never exceed the maximum number of points"() {
+
+        given: "a series of alternating datapoints"
+        def fromTimestamp = 0L
+        def toTimestamp = 99000L
+        def series = (0..99).collect { [it * 1000L, it % 2 == 0 ? (double) it : -(double) it] }
+
+        when: "the series is downsampled to various maximums"
+        def results = [:]
+        [DatapointDownsampling.LTTB, DatapointDownsampling.MIN_MAX].each { downsampling ->
+            [1, 2, 3, 5, 10].each { maxPoints ->
+                def downsampler = DatapointDownsampler.create(downsampling, maxPoints, fromTimestamp, toTimestamp)
+                series.each { downsampler.accept(it[0] as long, it[1] as double) }
+                results[downsampling.name() + maxPoints] = downsampler.finish()
+            }
+        }
+
+        then: "no result should contain more than the maximum number of points"
+        [1, 2, 3, 5, 10].each { maxPoints ->
+            assert results["LTTB" + maxPoints].length <= maxPoints
+            assert results["MIN_MAX" + maxPoints].length <= maxPoints
+        }
+
+        and: "LTTB should keep the first and last datapoint when there is room for them"
+        assert results["LTTB1"].collect { it.timestamp } == [fromTimestamp]
+        assert results["LTTB2"].collect { it.timestamp } == [fromTimestamp, toTimestamp]
+
+        and: "min/max should keep the highest datapoint when there is room for a single point only"
+        assert results["MIN_MAX1"].collect { it.value } == [98d]
+        assert results["MIN_MAX2"].collect { it.value } == [98d, -99d]
+
+        and: "datapoints should be returned in timestamp order"
+        results.values().each { datapoints ->
+            assert datapoints.collect { it.timestamp } == datapoints.collect { it.timestamp }.sort()
+        }
+    }
+
+    def "Datapoints stored before their partition was added should be moved into it without duplicates"() {
+
+        given: "the container environment is started"
+        def container = startContainer(defaultConfig(), defaultServices())
+        def managerTestSetup = container.getService(SetupService.class).getTaskOfType(ManagerTestSetup.class)
+        def assetDatapointService = container.getService(AssetDatapointService.class)
+        def persistenceService = container.getService(PersistenceService.class)
+        def attributeRef = new AttributeRef(managerTestSetup.thingId, "partitionTest")
+        def day = LocalDateTime.ofInstant(Instant.ofEpochMilli(getClockTimeOf(container)), ZoneId.systemDefault()).toLocalDate().plusDays(10)
+
+        when: "datapoints of a day without partition are stored"
+        assetDatapointService.upsertValue(attributeRef.id, attributeRef.name, 1d, day.atTime(1, 0))
+        assetDatapointService.upsertValue(attributeRef.id, attributeRef.name, 2d, day.atTime(2, 0))
+
+        then: "they should be stored in the datapoint table"
+        assert !assetDatapointService.partitions.contains(day)
+        assert assetDatapointService.partitions.getTableName(day.atTime(1, 0)) == assetDatapointService.getDatapointTableName()
+        assert assetDatapointService.getDatapointsCount(attributeRef) == 2
+
+        when: "the partition of the day is created and added"
+        persistenceService.doTransaction { em -> em.unwrap(Session.class).doWork { connection -> assetDatapointService.partitions.create(connection, day) } }
+        assetDatapointService.partitions.add(day)
+
+        and: "a datapoint with the timestamp of a datapoint stored in the datapoint table is upserted"
+        assetDatapointService.upsertValue(attributeRef.id, attributeRef.name, 3d, day.atTime(1, 0))
+
+        and: "the datapoints of the day are moved into the partition"
+        persistenceService.doTransaction { em -> em.unwrap(Session.class).doWork { connection ->
+            assetDatapointService.partitions.moveDatapoints(connection, day, { rowsStatement -> assetDatapointService.getSummaryCountUpdate(rowsStatement, false) } as UnaryOperator<String>)
+        } }
+
+        then: "each timestamp should only have one datapoint with the latest value"
+        def datapoints = assetDatapointService.getDatapoints(attributeRef)
+        assert datapoints.size() == 2
+        assert datapoints.find { it.timestamp == day.atTime(1, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() }.value == 3d
+        assert datapoints.find { it.timestamp == day.atTime(2, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() }.value == 2d
+        assert assetDatapointService.getDatapointsCount(attributeRef) == 2
+
+        and: "no datapoints of the day should be left in the datapoint table"
+        assert persistenceService.doReturningTransaction { em ->
+            ((Number) em.createNativeQuery("select count(*) from only " + assetDatapointService.getDatapointTableName() + " where ENTITY_ID = :assetId and ATTRIBUTE_NAME = :attributeName")
+                .setParameter("assetId", attributeRef.id)
+                .setParameter("attributeName", attributeRef.name)
+                .getSingleResult()).longValue()
+        } == 0
+
+        cleanup: "the partition and its datapoints are removed"
+        if (assetDatapointService != null && assetDatapointService.partitions.contains(day)) {
+            assetDatapointService.dropExpiredPartitions(day.plusDays(1).atStartOfDay(), [:])
+        }
+    }
+
+    def "Datapoint summary value range should be narrowed when datapoints are overwritten or purged"() {
+
+        given: "the container environment is started"
+        def container = startContainer(defaultConfig(), defaultServices())
+        def managerTestSetup = container.getService(SetupService.class).getTaskOfType(ManagerTestSetup.class)
+        def assetDatapointService = container.getService(AssetDatapointService.class)
+        def persistenceService = container.getService(PersistenceService.class)
+        def attributeRef = new AttributeRef(managerTestSetup.thingId, "rangeTest")
+        def time = LocalDateTime.ofInstant(Instant.ofEpochMilli(getClockTimeOf(container)), ZoneId.systemDefault()).minusHours(3)
+        def getRange = {
+            def row = persistenceService.doReturningTransaction { em ->
+                em.createNativeQuery("select MIN_VALUE, MAX_VALUE from " + assetDatapointService.getSummaryTableName() + " where ENTITY_ID = :assetId and ATTRIBUTE_NAME = :attributeName")
+                    .setParameter("assetId", attributeRef.id)
+                    .setParameter("attributeName", attributeRef.name)
+                    .getSingleResult()
+            } as Object[]
+            return row.collect { it == null ? null : ((Number) it).doubleValue() }
+        }
+
+        when: "datapoints of an attribute are stored"
+        assetDatapointService.upsertValue(attributeRef.id, attributeRef.name, 1d, time)
+        assetDatapointService.upsertValue(attributeRef.id, attributeRef.name, 10d, time.plusHours(1))
+        assetDatapointService.upsertValue(attributeRef.id, attributeRef.name, 5d, time.plusHours(2))
+
+        then: "the summary should have the range of the datapoints"
+        assert getRange() == [1d, 10d]
+
+        when: "the maximum datapoint is overwritten with a lower value"
+        assetDatapointService.upsertValues(attributeRef.id, attributeRef.name, [new Pair<>(4d, time.plusHours(1))])
+
+        then: "the range should be narrowed"
+        assert getRange() == [1d, 5d]
+        assert assetDatapointService.getDatapointsCount(attributeRef) == 3
+
+        when: "the minimum datapoint is purged"
+        assetDatapointService.doPurge("where dp.TIMESTAMP < :dt and dp.ATTRIBUTE_NAME = '" + attributeRef.name + "'", time.plusMinutes(30))
+
+        then: "the range should be narrowed"
+        assert getRange() == [4d, 5d]
+        assert assetDatapointService.getDatapointsCount(attributeRef) == 2
+
+        cleanup: "the datapoints are removed"
+        if (assetDatapointService != null) {
+            assetDatapointService.doPurge("where dp.TIMESTAMP < :dt and dp.ATTRIBUTE_NAME = 'rangeTest'", time.plusDays(1))
+        }
+    }
+
+    def "Datapoints offered to the ingest buffer should be stored in batches in offer order"() {
+
+        given: "an ingest buffer with a writer that fails for one batch"
+        List<List<AssetDatapoint>> batches = []
+        def failNextBatch = false
+        def buffer = new DatapointIngestBuffer<AssetDatapoint>(3, 2, { List<AssetDatapoint> batch ->
+            if (failNextBatch) {
+                failNextBatch = false
+                throw new IllegalStateException("Failed")
+            }
+            batches.add(new ArrayList<>(batch))
+        } as Consumer<List<AssetDatapoint>>)
+
+        when: "more datapoints are offered than the buffer can hold"
+        def offered = (1..5).collect { buffer.offer(new AssetDatapoint("asset", "attribute", it, it * 1000L)) }
+
+        then: "the offering thread should have stored the buffered datapoints itself"
+        offered.every { it }
+        buffer.producerFlushes == 1
+        buffer.size == 2
+        batches.collect { batch -> batch.collect { it.value } } == [[1, 2], [3]]
+
+        when: "the buffer is flushed whilst the writer fails"
+        failNextBatch = true
+        buffer.flush()
+
+        then: "the failed batch should be dropped"
+        buffer.size == 0
+        buffer.failedBatches == 1
+        buffer.dropped == 2
+        buffer.written == 3
+
+        when: "the buffer is closed"
+        buffer.offer(new AssetDatapoint("asset", "attribute", 6, 6000L))
+        buffer.close()
+
+        then: "the buffered datapoints should be stored and no more datapoints should be accepted"
+        batches.last().collect { it.value } == [6]
+        !buffer.offer(new AssetDatapoint("asset", "attribute", 7, 7000L))
+        buffer.offered == 6
+    }
+
+    def "Multi-row datapoint upserts should store the last value of each attribute and timestamp"() {
+
+        given: "the container environment is started"
+        def container = startContainer(defaultConfig(), defaultServices())
+        def managerTestSetup = container.getService(SetupService.class).getTaskOfType(ManagerTestSetup.class)
+        def assetDatapointService = container.getService(AssetDatapointService.class)
+        def attributeRef = new AttributeRef(managerTestSetup.thingId, "batchTest")
+        def timestamp = getClockTimeOf(container) - 60000
+
+        when: "datapoints with duplicate timestamps are upserted in one call"
+        assetDatapointService.upsertValues([
+            new AssetDatapoint(attributeRef, 1d, timestamp),
+            new AssetDatapoint(attributeRef, 2d, timestamp + 1000),
+            new AssetDatapoint(attributeRef, 3d, timestamp)
+        ])
+
+        then: "one datapoint per timestamp should be stored with the last value"
+        def datapoints = assetDatapointService.getDatapoints(attributeRef)
+        datapoints.size() == 2
+        datapoints.find { it.timestamp == timestamp }.value == 3d
+        datapoints.find { it.timestamp == timestamp + 1000 }.value == 2d
+        assetDatapointService.getDatapointsCount(attributeRef) == 2
+
+        cleanup: "the datapoints are removed"
+        if (assetDatapointService != null) {
+            assetDatapointService.doPurge("where dp.TIMESTAMP < :dt and dp.ATTRIBUTE_NAME = 'batchTest'", LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()).plusDays(1))
+        }
+    }
+
+    def "Datapoints should be keyed by attribute and timestamp and raw values returned in timestamp order"() {
+
+        given: "the container environment is started"
+        def container = startContainer(defaultConfig(), defaultServices())
+        def managerTestSetup = container.getService(SetupService.class).getTaskOfType(ManagerTestSetup.class)
+        def assetDatapointService = container.getService(AssetDatapointService.class)
+        def persistenceService = container.getService(PersistenceService.class)
+        def attribute = new Attribute<>("orderTest", ValueType.TEXT)
+        def time = LocalDateTime.ofInstant(Instant.ofEpochMilli(getClockTimeOf(container)), ZoneId.systemDefault()).minusHours(6)
+        def getPrimaryKeyColumns = { String tableName ->
+            persistenceService.doReturningTransaction { em ->
+                em.createNativeQuery("select K.COLUMN_NAME from INFORMATION_SCHEMA.TABLE_CONSTRAINTS C " +
+                    "join INFORMATION_SCHEMA.KEY_COLUMN_USAGE K on K.CONSTRAINT_SCHEMA = C.CONSTRAINT_SCHEMA and K.CONSTRAINT_NAME = C.CONSTRAINT_NAME and K.TABLE_NAME = C.TABLE_NAME " +
+                    "where C.CONSTRAINT_TYPE = 'PRIMARY KEY' and lower(C.TABLE_NAME) = lower(:tableName) order by K.ORDINAL_POSITION")
+                    .setParameter("tableName", tableName)
+                    .getResultList()
+            }.collect { it.toString().toLowerCase(Locale.ROOT) }
+        }
+
+        expect: "the primary keys of the datapoint tables to lead with the attribute"
+        getPrimaryKeyColumns("ASSET_DATAPOINT") == ["entity_id", "attribute_name", "timestamp"]
+        getPrimaryKeyColumns("ASSET_PREDICTED_DATAPOINT") == ["entity_id", "attribute_name", "timestamp"]
+
+        when: "datapoints with repeated values are stored out of timestamp order"
+        assetDatapointService.upsertValue(managerTestSetup.thingId, attribute.name, "c", time.plusHours(2))
+        assetDatapointService.upsertValue(managerTestSetup.thingId, attribute.name, "a", time)
+        assetDatapointService.upsertValue(managerTestSetup.thingId, attribute.name, "a", time.plusHours(1))
+        assetDatapointService.upsertValue(managerTestSetup.thingId, attribute.name, "d", time.plusHours(4))
+
+        and: "the raw values of a time range are requested"
+        def datapoints = assetDatapointService.getValueDatapoints(managerTestSetup.thingId, attribute, DatapointInterval.HOUR, null, time, time.plusHours(3))
+
+        then: "each datapoint within the range should be returned in timestamp order"
+        datapoints.collect { it.timestamp } == [time, time.plusHours(1), time.plusHours(2)].collect { it.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() }
+        datapoints.collect { Values.getValue(it.value, String.class).orElse(null) } == ["a", "a", "c"]
+
+        cleanup: "the datapoints are removed"
+        if (assetDatapointService != null) {
+            assetDatapointService.doPurge("where dp.TIMESTAMP < :dt and dp.ATTRIBUTE_NAME = 'orderTest'", time.plusDays(1))
+        }
+    }
+
+    def "Number and boolean datapoint values should be stored and averaged as numbers"() {
+
+        given: "the container environment is started"
+        def container = startContainer(defaultConfig(), defaultServices())
+        def managerTestSetup = container.getService(SetupService.class).getTaskOfType(ManagerTestSetup.class)
+        def assetDatapointService = container.getService(AssetDatapointService.class)
+        def persistenceService = container.getService(PersistenceService.class)
+        def numberAttribute = new Attribute<>("numberValueTest", ValueType.NUMBER)
+        def booleanAttribute = new Attribute<>("numberValueToggleTest", ValueType.BOOLEAN)
+        def textAttribute = new Attribute<>("numberValueTextTest", ValueType.TEXT)
+        def time = LocalDateTime.ofInstant(Instant.ofEpochMilli(getClockTimeOf(container)), ZoneId.systemDefault()).truncatedTo(ChronoUnit.HOURS).minusHours(3)
+        def getNumberValues = { String attributeName ->
+            persistenceService.doReturningTransaction { em ->
+                em.createNativeQuery("select NUMBER_VALUE from " + assetDatapointService.getDatapointTableName() + " where ENTITY_ID = :assetId and ATTRIBUTE_NAME = :attributeName order by TIMESTAMP")
+                    .setParameter("assetId", managerTestSetup.thingId)
+                    .setParameter("attributeName", attributeName)
+                    .getResultList()
+            }.collect { it == null ? null : ((Number) it).doubleValue() }
+        }
+
+        when: "number, boolean and text datapoints are stored"
+        assetDatapointService.upsertValue(managerTestSetup.thingId, numberAttribute.name, 10d, time.plusMinutes(10))
+        assetDatapointService.upsertValue(managerTestSetup.thingId, numberAttribute.name, 20d, time.plusMinutes(20))
+        assetDatapointService.upsertValue(managerTestSetup.thingId, booleanAttribute.name, true, time.plusMinutes(10))
+        assetDatapointService.upsertValue(managerTestSetup.thingId, booleanAttribute.name, false, time.plusMinutes(20))
+        assetDatapointService.upsertValue(managerTestSetup.thingId, booleanAttribute.name, true, time.plusMinutes(30))
+        assetDatapointService.upsertValue(managerTestSetup.thingId, textAttribute.name, "12.5", time.plusMinutes(10))
+
+        then: "the number values should be stored alongside the JSON values"
+        getNumberValues(numberAttribute.name) == [10d, 20d]
+        getNumberValues(booleanAttribute.name) == [1d, 0d, 1d]
+        getNumberValues(textAttribute.name) == [null]
+
+        when: "the number value of a datapoint is missing as if it was stored before the column was added"
+        persistenceService.doTransaction { em ->
+            em.createNativeQuery("update " + assetDatapointService.getDatapointTableName() + " set NUMBER_VALUE = null where ENTITY_ID = :assetId and ATTRIBUTE_NAME = :attributeName and NUMBER_VALUE = 20")
+                .setParameter("assetId", managerTestSetup.thingId)
+                .setParameter("attributeName", numberAttribute.name)
+                .executeUpdate()
+        }
+
+        and: "the hourly averages are requested"
+        def numberAverages = assetDatapointService.getValueDatapoints(managerTestSetup.thingId, numberAttribute, DatapointInterval.HOUR, null, time, time.plusHours(1))
+            .findAll { it.value != null }
+        def booleanAverages = assetDatapointService.getValueDatapoints(managerTestSetup.thingId, booleanAttribute, DatapointInterval.HOUR, null, time, time.plusHours(1))
+            .findAll { it.value != null }
+
+        then: "the averages should include the number values and the parsed JSON values"
+        getNumberValues(numberAttribute.name) == [10d, null]
+        numberAverages.size() == 1
+        numberAverages[0].timestamp == time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+        numberAverages[0].value == 15d
+        booleanAverages.size() == 1
+        Math.abs(((Number) booleanAverages[0].value).doubleValue() - 2d / 3d) < 0.0001
+
+        cleanup: "the datapoints are removed"
+        if (assetDatapointService != null) {
+            ["numberValueTest", "numberValueToggleTest", "numberValueTextTest"].each {
+                assetDatapointService.doPurge("where dp.TIMESTAMP < :dt and dp.ATTRIBUTE_NAME = '" + it + "'", time.plusDays(1))
+            }
+        }
+    }
 }
@@ -1,5 +1,8 @@
 package org.openremote.test.assets
 
+import org.openremote.container.concurrent.GlobalLock
+import org.openremote.container.persistence.PersistenceService
+import org.openremote.container.timer.TimerService
 import org.openremote.manager.agent.AgentService
 import org.openremote.manager.asset.*
 import org.openremote.manager.datapoint.AssetDatapointService
@@ -19,6 +22,11 @@ import spock.util.concurrent.PollingConditions
 
 import javax.persistence.EntityManager
 
+import static org.openremote.manager.asset.AssetProcessingService.ASSET_QUEUE_BATCH_MAX_WAIT_MILLIS
+import static org.openremote.manager.asset.AssetProcessingService.ASSET_QUEUE_BATCH_SIZE
+import static org.openremote.manager.asset.AssetProcessingService.ASSET_QUEUE_LANES
+import static org.openremote.manager.asset.AssetStorageService.ASSET_CACHE_MAX_SIZE
+import static org.openremote.manager.asset.AssetStorageService.ATTRIBUTE_WRITE_BEHIND_MILLIS
 import static org.openremote.model.value.ValueType.*
 import static org.openremote.model.value.MetaItemType.*
 
@@ -235,4 +243,342 @@ class AssetProcessingTest extends Specification implements ManagerContainerTrait
         }
 
     }
+
+    def "Check processors are called while holding the asset lock but not the global lock"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.2)
+
+        and: "a mock processor that records which locks are held"
+        List<Boolean> assetLockHeld = []
+        List<Boolean> globalLockHeld = []
+        AssetProcessingService assetProcessingService
+
+        AssetUpdateProcessor lockRecordingProcessor = new AssetUpdateProcessor() {
+            @Override
+            boolean processAssetUpdate(EntityManager em, Asset asset, Attribute attribute, AttributeEvent.Source source) throws AssetProcessingException {
+                if (attribute.name == "ruleStateAttribute") {
+                    def assetLock = assetProcessingService.assetLock
+                    assetLockHeld.add(assetLock.stripes[assetLock.getStripeIndex(asset.id)].isHeldByCurrentThread())
+                    globalLockHeld.add(GlobalLock.lock.isHeldByCurrentThread())
+                }
+                false
+            }
+        }
+
+        when: "the container is started"
+        def container = startContainer(defaultConfig(), defaultServices())
+        def assetStorageService = container.getService(AssetStorageService.class)
+        def rulesService = container.getService(RulesService.class)
+        assetProcessingService = container.getService(AssetProcessingService.class)
+        def keycloakTestSetup = container.getService(SetupService.class).getTaskOfType(KeycloakTestSetup.class)
+
+        then: "the container should be running and initialised"
+        conditions.eventually {
+            assert noEventProcessedIn(assetProcessingService, 500)
+        }
+
+        when: "the mock processor is registered and an asset with a rule state attribute is created"
+        assetProcessingService.processors.add(0, lockRecordingProcessor)
+        def thing = new ThingAsset("Lock Test Asset")
+            .setRealm(keycloakTestSetup.masterTenant.realm)
+        thing.addOrReplaceAttributes(
+            new Attribute<>("ruleStateAttribute", TEXT, "demo").addMeta(new MetaItem<>(RULE_STATE, true))
+        )
+        thing = assetStorageService.merge(thing)
+
+        and: "an attribute event occurs"
+        assetProcessingService.sendAttributeEvent(new AttributeEvent(thing.id, "ruleStateAttribute", "test"))
+
+        then: "the processor should have been called while holding the asset lock only"
+        conditions.eventually {
+            assert assetLockHeld == [true]
+            assert globalLockHeld == [false]
+        }
+
+        and: "the rules service should have applied the asset state fact outside of the asset queue lane"
+        conditions.eventually {
+            assert rulesService.pendingFactChanges.isEmpty()
+            assert rulesService.assetStates.any {
+                it.id == thing.id && it.name == "ruleStateAttribute" && it.value.orElse(null) == "test"
+            }
+        }
+
+        cleanup: "the mock processor is removed"
+        assetProcessingService.processors.remove(lockRecordingProcessor)
+    }
+
+    def "Check a synchronous attribute write is processed after the queued events of the asset"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.2)
+
+        when: "the container is started with several asset queue lanes"
+        def container = startContainer(defaultConfig() << [(ASSET_QUEUE_LANES): "4"], defaultServices())
+        def timerService = container.getService(TimerService.class)
+        def assetStorageService = container.getService(AssetStorageService.class)
+        def assetProcessingService = container.getService(AssetProcessingService.class)
+        def keycloakTestSetup = container.getService(SetupService.class).getTaskOfType(KeycloakTestSetup.class)
+
+        then: "the container should be running and initialised"
+        conditions.eventually {
+            assert noEventProcessedIn(assetProcessingService, 500)
+        }
+
+        when: "an asset is created"
+        def thing = new ThingAsset("Lane Test Asset")
+            .setRealm(keycloakTestSetup.masterTenant.realm)
+        thing.addOrReplaceAttributes(new Attribute<>("plainAttribute", TEXT, "demo"))
+        thing = assetStorageService.merge(thing)
+
+        and: "a mock processor records the processed values of the asset"
+        List<Object> processedValues = Collections.synchronizedList([])
+        AssetUpdateProcessor recordingProcessor = new AssetUpdateProcessor() {
+            @Override
+            boolean processAssetUpdate(EntityManager em, Asset asset, Attribute attribute, AttributeEvent.Source source) throws AssetProcessingException {
+                if (asset.id == thing.id) processedValues.add(attribute.value.orElse(null))
+                false
+            }
+        }
+        assetProcessingService.processors.add(0, recordingProcessor)
+
+        and: "events of the asset are queued and then an attribute write waits for its result"
+        def timestamp = timerService.getCurrentTimeMillis()
+        (1..50).each {
+            assetProcessingService.sendAttributeEvent(new AttributeEvent(thing.id, "plainAttribute", "value" + it, timestamp))
+        }
+        def failure = assetProcessingService.processAttributeEvent(
+            new AttributeEvent(thing.id, "plainAttribute", "final", timestamp),
+            [(AttributeEvent.HEADER_SOURCE): AttributeEvent.Source.INTERNAL] as Map<String, Object>
+        )
+
+        then: "the write should have been processed after all queued events, in order"
+        failure == null
+        processedValues == (1..50).collect {"value" + it} + ["final"]
+        assetStorageService.find(thing.id, true).getAttribute("plainAttribute").flatMap{it.value}.orElse(null) == "final"
+
+        cleanup: "the mock processor is removed"
+        assetProcessingService.processors.remove(recordingProcessor)
+    }
+
+    def "Check a failing event of a batch doesn't fail the other events of the batch"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.2)
+
+        when: "the container is started with batched asset queue processing"
+        def container = startContainer(defaultConfig() << [(ASSET_QUEUE_BATCH_SIZE): "10", (ASSET_QUEUE_BATCH_MAX_WAIT_MILLIS): "500"], defaultServices())
+        def assetStorageService = container.getService(AssetStorageService.class)
+        def assetProcessingService = container.getService(AssetProcessingService.class)
+        def keycloakTestSetup = container.getService(SetupService.class).getTaskOfType(KeycloakTestSetup.class)
+
+        then: "the container should be running and initialised"
+        conditions.eventually {
+            assert noEventProcessedIn(assetProcessingService, 500)
+        }
+
+        when: "an asset is created"
+        def thing = new ThingAsset("Batch Test Asset")
+            .setRealm(keycloakTestSetup.masterTenant.realm)
+        thing.addOrReplaceAttributes(
+            new Attribute<>("attribute1", TEXT, "demo"),
+            new Attribute<>("attribute2", TEXT, "demo"),
+            new Attribute<>("attribute3", TEXT, "demo")
+        )
+        thing = assetStorageService.merge(thing)
+
+        and: "a mock processor records the processed values of the asset and fails for one value"
+        List<Object> processedValues = Collections.synchronizedList([])
+        AssetUpdateProcessor failingProcessor = new AssetUpdateProcessor() {
+            @Override
+            boolean processAssetUpdate(EntityManager em, Asset asset, Attribute attribute, AttributeEvent.Source source) throws AssetProcessingException {
+                if (asset.id == thing.id) {
+                    processedValues.add(attribute.value.orElse(null))
+                    if (attribute.value.orElse(null) == "fail") {
+                        throw new IllegalStateException("Processing failed")
+                    }
+                }
+                false
+            }
+        }
+        assetProcessingService.processors.add(0, failingProcessor)
+        def batchCount = assetProcessingService.getAssetQueueBatchCount()
+
+        and: "events of the asset are queued, the second fails processing"
+        assetProcessingService.sendAttributeEvent(new AttributeEvent(thing.id, "attribute1", "value1"))
+        assetProcessingService.sendAttributeEvent(new AttributeEvent(thing.id, "attribute2", "fail"))
+        assetProcessingService.sendAttributeEvent(new AttributeEvent(thing.id, "attribute3", "value3"))
+
+        then: "the values of the other events should be stored and each event processed only once"
+        conditions.eventually {
+            assert assetProcessingService.getAssetQueueBatchCount() == batchCount + 1
+            assert processedValues == ["value1", "fail", "value3"]
+            def asset = assetStorageService.find(thing.id, true)
+            assert asset.getAttribute("attribute1").flatMap{it.value}.orElse(null) == "value1"
+            assert asset.getAttribute("attribute2").flatMap{it.value}.orElse(null) == "demo"
+            assert asset.getAttribute("attribute3").flatMap{it.value}.orElse(null) == "value3"
+        }
+
+        cleanup: "the mock processor is removed"
+        assetProcessingService.processors.remove(failingProcessor)
+    }
+
+    def "Check processors can't modify cached assets and cached assets are invalidated on merge"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.2)
+
+        when: "the container is started with the asset cache enabled"
+        def container = startContainer(defaultConfig() << [(ASSET_CACHE_MAX_SIZE): "100"], defaultServices())
+        def assetStorageService = container.getService(AssetStorageService.class)
+        def assetProcessingService = container.getService(AssetProcessingService.class)
+        def keycloakTestSetup = container.getService(SetupService.class).getTaskOfType(KeycloakTestSetup.class)
+
+        then: "the container should be running and initialised"
+        conditions.eventually {
+            assert noEventProcessedIn(assetProcessingService, 500)
+        }
+
+        when: "an asset with a publicly writable attribute is created"
+        def thing = new ThingAsset("Cache Test Asset")
+            .setRealm(keycloakTestSetup.masterTenant.realm)
+        thing.addOrReplaceAttributes(
+            new Attribute<>("publicAttribute", TEXT, "demo").addMeta(new MetaItem<>(ACCESS_PUBLIC_WRITE, true))
+        )
+        thing = assetStorageService.merge(thing)
+
+        and: "a mock processor records the asset names and modifies the asset"
+        List<String> processedAssetNames = Collections.synchronizedList([])
+        AssetUpdateProcessor modifyingProcessor = new AssetUpdateProcessor() {
+            @Override
+            boolean processAssetUpdate(EntityManager em, Asset asset, Attribute attribute, AttributeEvent.Source source) throws AssetProcessingException {
+                if (asset.id == thing.id) {
+                    processedAssetNames.add(asset.name)
+                    asset.setName("Modified by processor")
+                }
+                false
+            }
+        }
+        assetProcessingService.processors.add(0, modifyingProcessor)
+
+        and: "two public client writes are processed"
+        def clientHeaders = [(AttributeEvent.HEADER_SOURCE): AttributeEvent.Source.CLIENT] as Map<String, Object>
+        def failure1 = assetProcessingService.processAttributeEvent(new AttributeEvent(thing.id, "publicAttribute", "value1"), clientHeaders)
+        def failure2 = assetProcessingService.processAttributeEvent(new AttributeEvent(thing.id, "publicAttribute", "value2"), clientHeaders)
+
+        then: "both writes should succeed and the second should not see the modification of the first"
+        failure1 == null
+        failure2 == null
+        processedAssetNames == ["Cache Test Asset", "Cache Test Asset"]
+        assetStorageService.getAssetCache().getSize() > 0
+
+        when: "the public write access of the attribute is removed"
+        thing = assetStorageService.find(thing.id, true)
+        thing.getAttribute("publicAttribute").get().getMeta().remove(ACCESS_PUBLIC_WRITE)
+        thing = assetStorageService.merge(thing)
+
+        and: "a public client write is processed right away"
+        def failure3 = assetProcessingService.processAttributeEvent(new AttributeEvent(thing.id, "publicAttribute", "value3"), clientHeaders)
+
+        then: "the write should be rejected"
+        failure3 instanceof AssetProcessingException
+        ((AssetProcessingException) failure3).reason == AttributeWriteFailure.INSUFFICIENT_ACCESS
+        assetStorageService.find(thing.id, true).getAttribute("publicAttribute").flatMap{it.value}.orElse(null) == "value2"
+
+        cleanup: "the mock processor is removed"
+        assetProcessingService.processors.remove(modifyingProcessor)
+    }
+
+    def "Check attribute values are only buffered for write-behind when the transaction commits"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.2)
+
+        when: "the container is started with write-behind of attribute values"
+        def container = startContainer(defaultConfig() << [(ATTRIBUTE_WRITE_BEHIND_MILLIS): "600000"], defaultServices())
+        def timerService = container.getService(TimerService.class)
+        def persistenceService = container.getService(PersistenceService.class)
+        def assetStorageService = container.getService(AssetStorageService.class)
+        def assetProcessingService = container.getService(AssetProcessingService.class)
+        def keycloakTestSetup = container.getService(SetupService.class).getTaskOfType(KeycloakTestSetup.class)
+
+        then: "the container should be running and initialised"
+        conditions.eventually {
+            assert noEventProcessedIn(assetProcessingService, 500)
+        }
+
+        when: "an asset is created"
+        def thing = new ThingAsset("Write Behind Test Asset")
+            .setRealm(keycloakTestSetup.masterTenant.realm)
+        thing.addOrReplaceAttributes(new Attribute<>("plainAttribute", TEXT, "demo"))
+        thing = assetStorageService.merge(thing)
+        def rolledBackAttribute = thing.getAttribute("plainAttribute").get().copy()
+        rolledBackAttribute.setValue("rolled back", timerService.getCurrentTimeMillis())
+
+        and: "an attribute value is stored in a transaction that is rolled back"
+        persistenceService.doTransaction { em ->
+            assert assetStorageService.updateAttributeValue(em, thing, rolledBackAttribute)
+            throw new IllegalStateException("Rolling back")
+        }
+
+        then: "the value should not be buffered"
+        thrown(IllegalStateException)
+        assetStorageService.getAttributeWriteBehind().getPendingAttributes(thing.id).isEmpty()
+
+        when: "an attribute value is stored in a transaction that is committed"
+        def committedAttribute = thing.getAttribute("plainAttribute").get().copy()
+        committedAttribute.setValue("committed", timerService.getCurrentTimeMillis())
+        persistenceService.doTransaction { em ->
+            assert assetStorageService.updateAttributeValue(em, thing, committedAttribute)
+        }
+
+        then: "the value should be buffered and included when the asset is read"
+        assetStorageService.getAttributeWriteBehind().getPendingAttributes(thing.id)*.value*.orElse(null) == ["committed"]
+        assetStorageService.find(thing.id, true).getAttribute("plainAttribute").flatMap{it.value}.orElse(null) == "committed"
+
+        when: "the buffered values are flushed"
+        assetStorageService.flushAttributeValues()
+
+        then: "the value should be stored"
+        assetStorageService.getAttributeWriteBehind().getPendingAttributes(thing.id).isEmpty()
+        assetStorageService.find(thing.id, true).getAttribute("plainAttribute").flatMap{it.value}.orElse(null) == "committed"
+    }
+
+    def "Check drained write-behind values remain visible until the flush completes"() {
+
+        given: "a write-behind buffer with a value of an asset"
+        def writeBehind = new AttributeWriteBehind()
+        def attribute = new Attribute<>("plainAttribute", TEXT, "buffered", 1000L)
+        assert writeBehind.offer("asset1", attribute)
+
+        when: "the buffer is drained for a flush"
+        def drained = writeBehind.drain()
+
+        then: "the value should be in flight and still be returned as pending"
+        drained["asset1"] == [attribute]
+        writeBehind.getPendingAssetCount() == 0
+        writeBehind.getInFlightAssetCount() == 1
+        writeBehind.getPendingAttributes("asset1")*.value*.orElse(null) == ["buffered"]
+
+        when: "a later value is buffered while the flush is in flight"
+        writeBehind.offer("asset1", new Attribute<>("plainAttribute", TEXT, "later", 2000L))
+
+        then: "the later value should be returned as pending"
+        writeBehind.getPendingAttributes("asset1")*.value*.orElse(null) == ["later"]
+
+        when: "the flush fails"
+        writeBehind.restore("asset1", drained["asset1"])
+
+        then: "the later value should remain buffered and nothing should be in flight"
+        writeBehind.getInFlightAssetCount() == 0
+        writeBehind.getPendingAttributes("asset1")*.value*.orElse(null) == ["later"]
+
+        when: "the buffer is drained again and the flush completes"
+        drained = writeBehind.drain()
+        drained.each { assetId, attributes -> writeBehind.complete(assetId, attributes) }
+
+        then: "no value should be pending or in flight"
+        writeBehind.getInFlightAssetCount() == 0
+        writeBehind.getPendingAttributes("asset1").isEmpty()
+    }
 }
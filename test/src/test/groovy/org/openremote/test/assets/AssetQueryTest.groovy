@@ -1051,4 +1051,50 @@ class AssetQueryTest extends Specification implements ManagerContainerTrait {
         assets.size() == 1
         assets[0].id == lobby.id
     }
+
+    def "Asset paths are stored when assets are created and moved"() {
+
+        when: "a building with a room containing a thing is created"
+        def building1 = assetStorageService.merge(new BuildingAsset("Path building 1").setRealm(keycloakTestSetup.masterTenant.realm))
+        def room = assetStorageService.merge(new RoomAsset("Path room").setParent(building1))
+        def thing = assetStorageService.merge(new ThingAsset("Path thing").setParent(room))
+
+        then: "the stored paths should lead from each asset to the building"
+        building1.path == [building1.id] as String[]
+        room.path == [room.id, building1.id] as String[]
+        thing.path == [thing.id, room.id, building1.id] as String[]
+        assetStorageService.find(new AssetQuery().ids(thing.id)).path == [thing.id, room.id, building1.id] as String[]
+
+        and: "path queries and descendant checks should use the stored paths"
+        assetStorageService.findAll(new AssetQuery().select(selectExcludePathAndAttributes()).paths(new PathPredicate(building1.id))).collect { it.id } as Set == [building1.id, room.id, thing.id] as Set
+        assetStorageService.findAll(new AssetQuery().select(selectExcludePathAndAttributes()).paths(new PathPredicate(room.id, building1.id))).collect { it.id } as Set == [room.id, thing.id] as Set
+        assetStorageService.isDescendantAssets(building1.id, [room.id, thing.id])
+
+        when: "the room is moved to another building"
+        def building2 = assetStorageService.merge(new BuildingAsset("Path building 2").setRealm(keycloakTestSetup.masterTenant.realm))
+        room = assetStorageService.find(room.id, true)
+        room.setParent(building2)
+        room = assetStorageService.merge(room)
+
+        then: "the paths of the room and its descendants should lead to the other building"
+        room.path == [room.id, building2.id] as String[]
+        assetStorageService.find(thing.id, true).path == [thing.id, room.id, building2.id] as String[]
+        assetStorageService.findAll(new AssetQuery().select(selectExcludePathAndAttributes()).paths(new PathPredicate(building1.id))).collect { it.id } == [building1.id]
+        assetStorageService.isDescendantAssets(building2.id, [room.id, thing.id])
+        !assetStorageService.isDescendantAsset(building1.id, thing.id)
+
+        cleanup: "the assets are removed"
+        if (thing != null) {
+            assetStorageService.delete([thing.id])
+        }
+        if (room != null) {
+            assetStorageService.delete([room.id])
+        }
+        if (building2 != null) {
+            assetStorageService.delete([building2.id])
+        }
+        if (building1 != null) {
+            assetStorageService.delete([building1.id])
+        }
+    }
 }
@@ -14,6 +14,7 @@ import org.openremote.manager.asset.AssetProcessingService
 import org.openremote.manager.asset.AssetStorageService
 import org.openremote.manager.gateway.GatewayClientService
 import org.openremote.manager.gateway.GatewayConnector
+import org.openremote.manager.gateway.GatewayEventBatcher
 import org.openremote.manager.gateway.GatewayService
 import org.openremote.manager.security.ManagerIdentityService
 import org.openremote.manager.security.ManagerKeycloakIdentityProvider
@@ -42,6 +43,7 @@ import org.openremote.test.ManagerContainerTrait
 import spock.lang.Specification
 import spock.util.concurrent.PollingConditions
 
+import java.util.concurrent.Executors
 import java.util.concurrent.ScheduledFuture
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicReference
@@ -705,6 +707,181 @@ class GatewayTest extends Specification implements ManagerContainerTrait {
         def gatewayAssets = assetStorageService.findAll(new AssetQuery().parents(gateway.getId()).recursive(true))
         assert gatewayAssets.size() == 2 + agentAssets.size() + assets.size()
 
+        when: "the gateway client disconnects without the gateway being disabled"
+        List<Asset> allGatewayAssets = [building1Room5Asset, building2Room5Asset]
+        allGatewayAssets.addAll(agentAssets)
+        allGatewayAssets.addAll(assets)
+        def replyToReadAssetsRequest = { String message ->
+            def request = Values.JSON.readValue(message.substring(EventRequestResponseWrapper.MESSAGE_PREFIX.length()), EventRequestResponseWrapper.class)
+            def requestedIds = (request.event as ReadAssetsEvent).assetQuery.ids
+            def reply = new EventRequestResponseWrapper(
+                request.messageId,
+                new AssetsEvent(Arrays.stream(requestedIds).map{id -> allGatewayAssets.find{it.id == id}}.collect(Collectors.toList())))
+            gatewayClient.sendMessage(EventRequestResponseWrapper.MESSAGE_PREFIX + Values.asJSON(reply).get())
+            return request
+        }
+        clientReceivedMessages.clear()
+        gatewayClient.disconnect()
+
+        then: "the gateway connector should be disconnected"
+        conditions.eventually {
+            assert !gatewayService.gatewayConnectorMap.get(gateway.getId()).connected
+        }
+
+        when: "an attribute value of an unmodified gateway asset changes whilst disconnected"
+        advancePseudoClock(1, TimeUnit.SECONDS, container)
+        assets[1].getAttribute("temp").ifPresent{it.setValue(25d, timerService.getCurrentTimeMillis())}
+
+        and: "the gateway client reconnects"
+        gatewayClient.connect()
+
+        then: "the local manager should have sent an asset read request"
+        conditions.eventually {
+            assert clientReceivedMessages.size() >= 1
+            assert clientReceivedMessages[0].contains("read-assets")
+        }
+
+        when: "the previously received messages are cleared"
+        clientReceivedMessages.clear()
+
+        and: "the gateway client replies with the unchanged asset IDs and versions"
+        readAssetsReplyEvent = new EventRequestResponseWrapper(
+            GatewayConnector.ASSET_READ_EVENT_NAME_INITIAL,
+            new AssetsEvent(allGatewayAssets)
+        )
+        gatewayClient.sendMessage(EventRequestResponseWrapper.MESSAGE_PREFIX + Values.asJSON(readAssetsReplyEvent).get())
+
+        then: "the gateway should become connected without any asset batches being requested"
+        conditions.eventually {
+            gateway = assetStorageService.find(gateway.getId())
+            assert gateway.getGatewayStatus().orElse(null) == ConnectionStatus.CONNECTED
+        }
+
+        and: "the attribute values of the unmodified assets should have been requested"
+        conditions.eventually {
+            assert clientReceivedMessages.size() == 1
+            def request = Values.JSON.readValue(clientReceivedMessages[0].substring(EventRequestResponseWrapper.MESSAGE_PREFIX.length()), EventRequestResponseWrapper.class)
+            assert request.messageId == GatewayConnector.ASSET_READ_EVENT_NAME_VALUES + "0"
+            assert (request.event as ReadAssetsEvent).assetQuery.ids.length == GatewayConnector.SYNC_ASSET_BATCH_SIZE
+        }
+
+        when: "the gateway returns the requested attribute values"
+        replyToReadAssetsRequest(clientReceivedMessages[0])
+
+        then: "the remaining attribute values should have been requested"
+        conditions.eventually {
+            assert clientReceivedMessages.size() == 2
+            def request = Values.JSON.readValue(clientReceivedMessages[1].substring(EventRequestResponseWrapper.MESSAGE_PREFIX.length()), EventRequestResponseWrapper.class)
+            assert request.messageId == GatewayConnector.ASSET_READ_EVENT_NAME_VALUES + GatewayConnector.SYNC_ASSET_BATCH_SIZE
+            assert (request.event as ReadAssetsEvent).assetQuery.ids.length == allGatewayAssets.size() - GatewayConnector.SYNC_ASSET_BATCH_SIZE
+        }
+
+        when: "the gateway returns the remaining attribute values"
+        replyToReadAssetsRequest(clientReceivedMessages[1])
+
+        then: "the newer attribute value should have been applied locally without any further requests"
+        conditions.eventually {
+            def localAsset = assetStorageService.find(mapAssetId(gateway.id, assets[1].id, false))
+            assert localAsset.getAttribute("temp").flatMap{it.value}.orElse(null) == 25d
+            assert clientReceivedMessages.size() == 2
+        }
+
+        when: "the gateway client disconnects again"
+        gatewayClient.disconnect()
+
+        then: "the gateway connector should be disconnected"
+        conditions.eventually {
+            assert !gatewayService.gatewayConnectorMap.get(gateway.getId()).connected
+        }
+
+        when: "a gateway asset is modified whilst disconnected"
+        assets[2].setName("Test Building 1 Room 3 Updated")
+        assets[2].setVersion(assets[2].getVersion() + 1)
+        clientReceivedMessages.clear()
+
+        and: "the gateway client reconnects"
+        gatewayClient.connect()
+
+        then: "the local manager should have sent an asset read request"
+        conditions.eventually {
+            assert clientReceivedMessages.size() >= 1
+            assert clientReceivedMessages[0].contains("read-assets")
+        }
+
+        when: "the previously received messages are cleared"
+        clientReceivedMessages.clear()
+
+        and: "the gateway client replies with the asset IDs and versions"
+        gatewayClient.sendMessage(EventRequestResponseWrapper.MESSAGE_PREFIX + Values.asJSON(readAssetsReplyEvent).get())
+
+        then: "only the modified asset should have been requested"
+        conditions.eventually {
+            assert clientReceivedMessages.size() == 1
+            def request = Values.JSON.readValue(clientReceivedMessages[0].substring(EventRequestResponseWrapper.MESSAGE_PREFIX.length()), EventRequestResponseWrapper.class)
+            assert request.messageId == GatewayConnector.ASSET_READ_EVENT_NAME_BATCH + "0"
+            assert (request.event as ReadAssetsEvent).assetQuery.ids as List == [assets[2].id]
+        }
+
+        when: "the gateway returns the modified asset"
+        replyToReadAssetsRequest(clientReceivedMessages[0])
+
+        then: "the gateway should become connected and the modified asset should be updated locally"
+        conditions.eventually {
+            gateway = assetStorageService.find(gateway.getId())
+            assert gateway.getGatewayStatus().orElse(null) == ConnectionStatus.CONNECTED
+            assert assetStorageService.find(mapAssetId(gateway.id, assets[2].id, false)).name == "Test Building 1 Room 3 Updated"
+        }
+
+        and: "the attribute values of the unmodified assets should have been requested"
+        conditions.eventually {
+            assert clientReceivedMessages.size() == 2
+            assert clientReceivedMessages[1].contains(GatewayConnector.ASSET_READ_EVENT_NAME_VALUES + "0")
+        }
+
+        when: "the gateway doesn't return the requested attribute values"
+        clientReceivedMessages.clear()
+
+        then: "the local manager should fall back to a full sync"
+        new PollingConditions(timeout: GatewayConnector.SYNC_TIMEOUT_MILLIS / 1000 + 10, delay: 0.2).eventually {
+            gateway = assetStorageService.find(gateway.getId())
+            assert gateway.getGatewayStatus().orElse(null) == ConnectionStatus.CONNECTING
+            assert clientReceivedMessages.size() == 1
+            def request = Values.JSON.readValue(clientReceivedMessages[0].substring(EventRequestResponseWrapper.MESSAGE_PREFIX.length()), EventRequestResponseWrapper.class)
+            assert request.messageId == GatewayConnector.ASSET_READ_EVENT_NAME_INITIAL
+        }
+
+        when: "the gateway client replies with the asset IDs and versions"
+        clientReceivedMessages.clear()
+        gatewayClient.sendMessage(EventRequestResponseWrapper.MESSAGE_PREFIX + Values.asJSON(readAssetsReplyEvent).get())
+
+        then: "all assets should be requested again"
+        conditions.eventually {
+            assert clientReceivedMessages.size() == 1
+            def request = Values.JSON.readValue(clientReceivedMessages[0].substring(EventRequestResponseWrapper.MESSAGE_PREFIX.length()), EventRequestResponseWrapper.class)
+            assert request.messageId == GatewayConnector.ASSET_READ_EVENT_NAME_BATCH + "0"
+            assert (request.event as ReadAssetsEvent).assetQuery.ids.length == GatewayConnector.SYNC_ASSET_BATCH_SIZE
+        }
+
+        when: "the gateway returns the requested assets"
+        replyToReadAssetsRequest(clientReceivedMessages[0])
+
+        then: "the remaining assets should be requested in a larger batch"
+        conditions.eventually {
+            assert clientReceivedMessages.size() == 2
+            def request = Values.JSON.readValue(clientReceivedMessages[1].substring(EventRequestResponseWrapper.MESSAGE_PREFIX.length()), EventRequestResponseWrapper.class)
+            assert request.messageId == GatewayConnector.ASSET_READ_EVENT_NAME_BATCH + GatewayConnector.SYNC_ASSET_BATCH_SIZE
+            assert (request.event as ReadAssetsEvent).assetQuery.ids.length == allGatewayAssets.size() - GatewayConnector.SYNC_ASSET_BATCH_SIZE
+        }
+
+        when: "the gateway returns the remaining assets"
+        replyToReadAssetsRequest(clientReceivedMessages[1])
+
+        then: "the gateway should become connected"
+        conditions.eventually {
+            gateway = assetStorageService.find(gateway.getId())
+            assert gateway.getGatewayStatus().orElse(null) == ConnectionStatus.CONNECTED
+        }
+
         when: "the gateway asset is deleted"
         deleted = assetStorageService.delete([gateway.id])
 
@@ -895,4 +1072,70 @@ class GatewayTest extends Specification implements ManagerContainerTrait {
             assert assetStorageService.find(mapAssetId(gateway.id, managerTestSetup.microphone1Id, false)) == null
         }
     }
+
+    def "Gateway events sent within the batch window should be sent as one message"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.1)
+
+        and: "an event batcher"
+        def executor = Executors.newSingleThreadScheduledExecutor()
+        List<Object> sentMessages = Collections.synchronizedList([])
+        def statistics = new GatewayEventBatcher.Statistics()
+        def batcher = new GatewayEventBatcher(executor, 300, 3, { sentMessages.add(it) }, statistics)
+
+        when: "two attribute events are sent within the window"
+        batcher.send(new AttributeEvent("asset1", "temperature", 20))
+        batcher.send(new AttributeEvent("asset2", "temperature", 21))
+
+        then: "they should be sent as one batch message when the window ends"
+        conditions.eventually {
+            assert sentMessages.size() == 1
+            assert sentMessages[0] instanceof String
+            assert GatewayEventBatcher.isEventBatch((String) sentMessages[0])
+            def events = GatewayEventBatcher.readEventBatch((String) sentMessages[0])
+            assert events.length == 2
+            assert ((AttributeEvent) events[0]).attributeRef == new AttributeRef("asset1", "temperature")
+            assert ((AttributeEvent) events[0]).value.orElse(null) == 20
+            assert ((AttributeEvent) events[1]).attributeRef == new AttributeRef("asset2", "temperature")
+            assert ((AttributeEvent) events[1]).value.orElse(null) == 21
+        }
+
+        when: "an attribute event is followed by another message"
+        batcher.send(new AttributeEvent("asset1", "temperature", 22))
+        batcher.send(EventRequestResponseWrapper.MESSAGE_PREFIX + "{}")
+
+        then: "the pending event should be sent on its own before the other message"
+        sentMessages.size() == 3
+        sentMessages[1] instanceof AttributeEvent
+        ((AttributeEvent) sentMessages[1]).value.orElse(null) == 22
+        sentMessages[2] == EventRequestResponseWrapper.MESSAGE_PREFIX + "{}"
+
+        when: "as many events as the maximum batch size are sent"
+        (1..3).each { batcher.send(new AttributeEvent("asset1", "temperature", it)) }
+
+        then: "they should be sent as one batch message without waiting for the window to end"
+        sentMessages.size() == 4
+        GatewayEventBatcher.readEventBatch((String) sentMessages[3]).collect { ((AttributeEvent) it).value.orElse(null) } == [1, 2, 3]
+
+        and: "the statistics should count the events, messages and saved bytes"
+        statistics.events == 6
+        statistics.frames == 4
+        statistics.batchFrames == 2
+        statistics.batchBytes == ((String) sentMessages[0]).bytes.length + ((String) sentMessages[3]).bytes.length
+        statistics.savedBytes > 0
+
+        when: "an event is sent to a batcher without a window"
+        def unbatchedMessages = []
+        def unbatched = new GatewayEventBatcher(executor, 0, 3, { unbatchedMessages.add(it) }, new GatewayEventBatcher.Statistics())
+        def event = new AttributeEvent("asset1", "temperature", 23)
+        unbatched.send(event)
+
+        then: "it should be sent immediately as it is"
+        !unbatched.enabled
+        unbatchedMessages == [event]
+
+        cleanup: "the executor is stopped"
+        executor.shutdownNow()
+    }
 }
@@ -12,6 +12,7 @@ import org.openremote.model.asset.impl.GroupAsset
 import org.openremote.model.asset.impl.LightAsset
 import org.openremote.model.asset.impl.ThingAsset
 import org.openremote.model.attribute.Attribute
+import org.openremote.model.attribute.AttributeMap
 import org.openremote.model.attribute.MetaItem
 import org.openremote.model.rules.AssetState
 import org.openremote.model.asset.AssetTypeInfo
@@ -182,4 +183,103 @@ class AssetModelTest extends Specification implements ManagerContainerTrait {
         assetStateObjectNode.get("value").isTextual()
         assetStateObjectNode.get("value").asText() == "#3264c8"
     }
+
+    def "Meta flags reflect every meta modification"() {
+
+        given: "an attribute without flag meta items"
+        def attribute = new Attribute<>("flagsAttribute", ValueType.NUMBER, 1d)
+        def meta = attribute.getMeta()
+
+        expect: "the flags to be computed"
+        !attribute.hasMeta(MetaItemType.READ_ONLY)
+        !attribute.hasMeta(MetaItemType.STORE_DATA_POINTS)
+
+        when: "a flag meta item is added through a held meta reference"
+        meta.add(new MetaItem<>(MetaItemType.READ_ONLY))
+
+        then: "the flags should include it"
+        attribute.hasMeta(MetaItemType.READ_ONLY)
+        attribute.getMetaValue(MetaItemType.READ_ONLY).orElse(false)
+
+        when: "the value of the flag meta item is changed in place"
+        meta.get(MetaItemType.READ_ONLY).get().setValue(false)
+
+        then: "the flags should have the new value"
+        attribute.hasMeta(MetaItemType.READ_ONLY)
+        !attribute.getMetaValue(MetaItemType.READ_ONLY).orElse(true)
+
+        when: "a copy of the attribute modifies its meta"
+        def copy = attribute.copy()
+        copy.getMeta().addOrReplace(new MetaItem<>(MetaItemType.STORE_DATA_POINTS))
+
+        then: "only the copy should have the new flag"
+        copy.hasMeta(MetaItemType.STORE_DATA_POINTS)
+        !attribute.hasMeta(MetaItemType.STORE_DATA_POINTS)
+
+        when: "flag meta items are removed through the map and its views"
+        meta.removeIf { it.name == MetaItemType.READ_ONLY.name }
+        copy.getMeta().keySet().remove(MetaItemType.STORE_DATA_POINTS.name)
+
+        then: "the flags should no longer include them"
+        !attribute.hasMeta(MetaItemType.READ_ONLY)
+        !copy.hasMeta(MetaItemType.STORE_DATA_POINTS)
+    }
+
+    def "Attribute copies share their meta until either attribute modifies it"() {
+
+        given: "an attribute with a value, timestamp and meta"
+        def attribute = new Attribute<>("copyAttribute", ValueType.NUMBER, 1d, 1000L)
+            .addMeta(new MetaItem<>(MetaItemType.READ_ONLY), new MetaItem<>(MetaItemType.LABEL, "Label"))
+
+        when: "the attribute is copied"
+        def copy = attribute.copy()
+
+        then: "the copy should equal a clone of the attribute and share its meta"
+        Values.asJSON(copy).get() == Values.asJSON(Values.clone(attribute)).get()
+        copy.getTimestamp().orElse(0L) == 1000L
+        copy.@meta.is(attribute.@meta)
+
+        when: "the copy gets a new value and its meta is read"
+        copy.setValue(2d)
+        copy.setTimestamp(2000L)
+        def label = copy.getMetaValue(MetaItemType.LABEL).orElse(null)
+
+        then: "the attribute should keep its value and the meta should still be shared"
+        label == "Label"
+        copy.hasMeta(MetaItemType.READ_ONLY)
+        attribute.getValue().orElse(null) == 1d
+        attribute.getTimestamp().orElse(0L) == 1000L
+        copy.@meta.is(attribute.@meta)
+
+        when: "the copy modifies its meta"
+        copy.getMeta().addOrReplace(new MetaItem<>(MetaItemType.LABEL, "Copy label"))
+
+        then: "only the meta of the copy should have changed"
+        copy.getMetaValue(MetaItemType.LABEL).orElse(null) == "Copy label"
+        attribute.getMetaValue(MetaItemType.LABEL).orElse(null) == "Label"
+
+        when: "the attribute modifies its meta"
+        attribute.getMeta().removeIf { it.name == MetaItemType.READ_ONLY.name }
+
+        then: "the copy should keep its meta"
+        !attribute.hasMeta(MetaItemType.READ_ONLY)
+        copy.hasMeta(MetaItemType.READ_ONLY)
+
+        when: "an attribute map is copied and an attribute of the copy is modified"
+        def attributes = new AttributeMap([
+            new Attribute<>("first", ValueType.NUMBER, 1d).addMeta(new MetaItem<>(MetaItemType.READ_ONLY)),
+            new Attribute<>("second", ValueType.TEXT, "value")
+        ])
+        def attributesCopy = attributes.copy()
+        attributesCopy.get("first").get().setValue(2d)
+        attributesCopy.get("first").get().getMeta().addOrReplace(new MetaItem<>(MetaItemType.LABEL, "First"))
+
+        then: "the copy should have all attributes and the original attributes should be unchanged"
+        attributesCopy.keySet() == attributes.keySet()
+        attributesCopy.get("second").get().getValue().orElse(null) == "value"
+        attributes.get("first").get().getValue().orElse(null) == 1d
+        attributes.get("first").get().hasMeta(MetaItemType.READ_ONLY)
+        !attributes.get("first").get().hasMeta(MetaItemType.LABEL)
+        attributesCopy.get("first").get().hasMeta(MetaItemType.READ_ONLY)
+    }
 }
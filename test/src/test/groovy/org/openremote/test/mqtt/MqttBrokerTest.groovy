@@ -2,10 +2,12 @@ package org.openremote.test.mqtt
 
 import com.google.common.collect.Lists
 import io.moquette.BrokerConstants
+import org.apache.camel.Exchange
 import org.openremote.agent.protocol.simulator.SimulatorProtocol
 import org.openremote.container.util.UniqueIdentifierGenerator
 import org.openremote.manager.agent.AgentService
 import org.openremote.manager.asset.AssetStorageService
+import org.openremote.manager.event.ClientEventService
 import org.openremote.manager.mqtt.MqttBrokerService
 import org.openremote.manager.mqtt.MqttConnection
 import org.openremote.manager.setup.SetupService
@@ -21,6 +23,8 @@ import org.openremote.test.setup.ManagerTestSetup
 import spock.lang.Specification
 import spock.util.concurrent.PollingConditions
 
+import java.util.function.Consumer
+
 import static org.openremote.container.util.MapAccess.getInteger
 import static org.openremote.container.util.MapAccess.getString
 import static org.openremote.manager.mqtt.MqttBrokerService.*
@@ -63,6 +67,7 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
         def mqttBrokerService = container.getService(MqttBrokerService.class)
         def assetStorageService = container.getService(AssetStorageService.class)
         def agentService = container.getService(AgentService.class)
+        def clientEventService = container.getService(ClientEventService.class)
         def mqttClientId = UniqueIdentifierGenerator.generateId()
         def username = keycloakTestSetup.tenantBuilding.realm + ":" + KeycloakTestSetup.serviceUserId // realm and OAuth client id
         def password = KeycloakTestSetup.serviceUserSecret
@@ -264,6 +269,62 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
             assert mqttBrokerServiceAttributeEventCalls == 3
         }
 
+        when: "a mqtt client publishes to an attribute value topic without an attribute name"
+        def interceptedAttributeEvents = []
+        def clientEventInterceptor = { Exchange exchange ->
+            if (exchange.getIn().getBody() instanceof AttributeEvent) {
+                interceptedAttributeEvents.add(exchange.getIn().getBody(AttributeEvent.class))
+            }
+        } as Consumer<Exchange>
+        clientEventService.addExchangeInterceptor(clientEventInterceptor)
+        def tokenVerifications = mqttBrokerService.getInterceptHandler().getTokenVerifications()
+        def cachedTokenUses = mqttBrokerService.getInterceptHandler().getCachedTokenUses()
+        def directAttributeEvents = mqttBrokerService.getInterceptHandler().getDirectAttributeEvents()
+        topic = "attributevalue/" + managerTestSetup.apartment1HallwayId
+        payload = Values.asJSON(true).orElse(null)
+        remainingLength = 2 + topic.size() + payload.length()
+
+        //PUBLISH
+        client.write(0x30) // MQTT Control Packet type(10) with QoS level 0
+                .write(remainingLength.byteValue()) // Remaining Length
+                .write(0x00, topic.size().byteValue()) // Topic Length
+                .write(topic) // Topic
+                .write(payload) // content
+                .flush()
+
+        and: "then publishes a valid attribute value"
+        topic = "attributevalue/" + managerTestSetup.apartment1HallwayId + "/lights"
+        payload = Values.asJSON(true).orElse(null)
+        remainingLength = 2 + topic.size() + payload.length()
+
+        //PUBLISH
+        client.write(0x30) // MQTT Control Packet type(10) with QoS level 0
+                .write(remainingLength.byteValue()) // Remaining Length
+                .write(0x00, topic.size().byteValue()) // Topic Length
+                .write(topic) // Topic
+                .write(payload) // content
+                .flush()
+
+        then: "the invalid publish should be ignored and the valid write should pass the client event interceptors"
+        conditions.eventually {
+            assert client.isConnected()
+            assert mqttBrokerService.sessionIdConnectionMap.size() == 1
+            def asset = assetStorageService.find(managerTestSetup.apartment1HallwayId)
+            assert asset.getAttribute("lights").get().value.orElse(false)
+            assert interceptedAttributeEvents.size() == 1
+            assert interceptedAttributeEvents[0].attributeName == "lights"
+            assert mqttBrokerServiceAttributeEventCalls == 4
+        }
+
+        and: "the already verified access token of the connection should have been reused"
+        mqttBrokerService.getInterceptHandler().getTokenVerifications() == tokenVerifications
+        mqttBrokerService.getInterceptHandler().getCachedTokenUses() == cachedTokenUses + 1
+
+        and: "the valid write should have been sent straight to the asset queue"
+        mqttBrokerService.getInterceptHandler().getDirectAttributeEvents() == directAttributeEvents + 1
+
+        clientEventService.removeExchangeInterceptor(clientEventInterceptor)
+
         when: "a mqtt client unsubscribes to an asset"
         topic = "attribute/" + managerTestSetup.apartment1HallwayId
         remainingLength = 4 + topic.size()
@@ -291,7 +352,7 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
 
         then: "No publish event message should be sent"
         conditions.eventually {
-            assert mqttBrokerServiceAttributeEventCalls == 3
+            assert mqttBrokerServiceAttributeEventCalls == 4
         }
 
         when: "a mqtt client subscribes to an asset attribute"
@@ -321,7 +382,7 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
 
         then: "A publish event message should be sent"
         conditions.eventually {
-            assert mqttBrokerServiceAttributeEventCalls == 4
+            assert mqttBrokerServiceAttributeEventCalls == 5
         }
 
         when: "Another asset attribute changed without any subscriptions on that attribute"
@@ -330,7 +391,7 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
 
         then: "No publish event message should be sent"
         conditions.eventually {
-            assert mqttBrokerServiceAttributeEventCalls == 4
+            assert mqttBrokerServiceAttributeEventCalls == 5
         }
 
         when: "a mqtt client unsubscribes to an asset attribute"
@@ -381,7 +442,7 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
 
         then: "A publish event message should be sent"
         conditions.eventually {
-            assert mqttBrokerServiceAttributeEventCalls == 5
+            assert mqttBrokerServiceAttributeEventCalls == 6
         }
 
         when: "a mqtt client subscribes to an asset attribute value"
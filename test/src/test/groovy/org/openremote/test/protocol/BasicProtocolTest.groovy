@@ -20,6 +20,7 @@
 package org.openremote.test.protocol
 
 
+import org.openremote.agent.protocol.ProtocolWriteQueue
 import org.openremote.manager.agent.AgentService
 import org.openremote.manager.asset.AssetProcessingService
 import org.openremote.manager.asset.AssetStorageService
@@ -33,6 +34,9 @@ import org.openremote.test.ManagerContainerTrait
 import spock.lang.Specification
 import spock.util.concurrent.PollingConditions
 
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
 import java.util.regex.Pattern
 
 import static org.openremote.model.Constants.MASTER_REALM
@@ -384,4 +388,53 @@ class BasicProtocolTest extends Specification implements ManagerContainerTrait {
             assert !mockThing.getAttribute("filterRegexSubstring").get().getValue().isPresent()
         }
     }
+
+    def "Check the write queue of a protocol is bounded and processes writes in order on its own thread"() {
+
+        given: "a write queue with a writer that blocks until released"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.2)
+        def release = new CountDownLatch(1)
+        def writtenValues = new CopyOnWriteArrayList<Object>()
+        def writerThreads = new CopyOnWriteArrayList<String>()
+        def writeQueue = new ProtocolWriteQueue("test", 2, { AttributeEvent event ->
+            writerThreads.add(Thread.currentThread().getName())
+            release.await(10, TimeUnit.SECONDS)
+            writtenValues.add(event.getValue().orElse(null))
+        })
+
+        when: "a write is offered"
+        def accepted = writeQueue.offer(new AttributeEvent("asset1", "attribute1", 0))
+
+        then: "it should be processed by the queue's own thread"
+        accepted
+        conditions.eventually {
+            assert writerThreads.size() == 1
+            assert writerThreads.get(0).startsWith("Protocol writes test")
+            assert writeQueue.getSize() == 0
+        }
+
+        when: "more writes are offered than the queue can hold while the writer is blocked"
+        def results = (1..3).collect { writeQueue.offer(new AttributeEvent("asset1", "attribute1", it)) }
+
+        then: "the writes beyond the capacity should be dropped"
+        results == [true, true, false]
+        writeQueue.getSize() == 2
+        writeQueue.getDroppedWrites() == 1
+
+        when: "the writer is released"
+        release.countDown()
+
+        then: "the queued writes should be processed in order"
+        conditions.eventually {
+            assert writtenValues == [0, 1, 2]
+            assert writeQueue.getProcessedWrites() == 3
+        }
+
+        when: "the queue is closed"
+        writeQueue.close()
+
+        then: "writes should be dropped"
+        !writeQueue.offer(new AttributeEvent("asset1", "attribute1", 4))
+        writeQueue.getDroppedWrites() == 2
+    }
 }
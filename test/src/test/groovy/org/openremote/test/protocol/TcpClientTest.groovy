@@ -24,6 +24,7 @@ import io.netty.handler.codec.string.StringDecoder
 import io.netty.handler.codec.string.StringEncoder
 import io.netty.util.CharsetUtil
 import org.openremote.agent.protocol.io.AbstractNettyIOClient
+import org.openremote.agent.protocol.io.IOEventLoops
 import org.openremote.agent.protocol.tcp.TCPIOClient
 import org.openremote.agent.protocol.tcp.TCPStringServer
 import org.openremote.model.asset.agent.ConnectionStatus
@@ -189,4 +190,98 @@ class TcpClientTest extends Specification implements ManagerContainerTrait {
         client.disconnect()
         echoServer.stop()
     }
+
+    def "Check clients and servers share the event loops of the container and report their own channel statistics"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.2)
+
+        and: "the container is started with the IO event loops"
+        def container = startContainer(defaultConfig() << [(IOEventLoops.IO_EVENT_LOOP_THREADS): "2"], [])
+        def eventLoops = new IOEventLoops()
+        eventLoops.init(container)
+
+        and: "a simple TCP echo server using the event loops"
+        def echoServerPort = findEphemeralPort()
+        def echoServer = new TCPStringServer(new InetSocketAddress("127.0.0.1", echoServerPort), ";", Integer.MAX_VALUE, true)
+        echoServer.setEventLoops(eventLoops)
+        echoServer.addMessageConsumer({
+            message, channel, sender -> echoServer.sendMessage(message)
+        })
+
+        and: "two simple TCP clients using the event loops"
+        def clients = (1..2).collect {
+            TCPIOClient<String> client = new TCPIOClient<String>("127.0.0.1", echoServerPort)
+            client.setEventLoops(eventLoops)
+            client.setEncoderDecoderProvider({
+                [new StringEncoder(CharsetUtil.UTF_8),
+                 new StringDecoder(CharsetUtil.UTF_8),
+                 new AbstractNettyIOClient.MessageToMessageDecoder<String>(String.class, client)].toArray(new ChannelHandler[0])
+            })
+            client
+        }
+
+        when: "the server is started and the clients connect"
+        echoServer.start()
+        conditions.eventually {
+            assert echoServer.channelFuture.isDone()
+            assert echoServer.channelFuture.isSuccess()
+        }
+        clients.each { it.connect() }
+
+        then: "the clients should connect on the event loop group of the container"
+        conditions.eventually {
+            assert clients.every { it.connectionStatus == ConnectionStatus.CONNECTED }
+            assert echoServer.allChannels.size() == 2
+        }
+        eventLoops.getThreads() == 2
+        clients.every { eventLoops.isShared(it.workerGroup) }
+        eventLoops.isShared(echoServer.workerGroup)
+        eventLoops.getClients().size() == 2
+        eventLoops.getServers().size() == 1
+        eventLoops.getServers()[0].getServerAddress() != null
+
+        when: "only the first client sends a message"
+        clients[0].sendMessage("Test;")
+
+        then: "the channel statistics should be counted per client and in total"
+        conditions.eventually {
+            assert clients[0].getChannelStatistics().getBytesWritten() == 5
+            assert clients[0].getChannelStatistics().getBytesRead() > 0
+            assert clients[1].getChannelStatistics().getBytesWritten() == 0
+            assert echoServer.getChannelStatistics().getMessagesRead() > 0
+            assert eventLoops.getChannelStatistics().getActiveChannels() >= 4
+            assert eventLoops.getChannelStatistics().getBytesWritten() >= 5
+        }
+
+        when: "a client disconnects"
+        clients[0].disconnect()
+
+        then: "it should no longer be registered but the shared group should still be running"
+        conditions.eventually {
+            assert clients[0].connectionStatus == ConnectionStatus.DISCONNECTED
+            assert eventLoops.getClients().size() == 1
+            assert clients[1].connectionStatus == ConnectionStatus.CONNECTED
+        }
+        !eventLoops.getGroup().isShuttingDown()
+
+        when: "the event loops are stopped with the container"
+        def group = eventLoops.getGroup()
+        clients[1].disconnect()
+        echoServer.stop()
+        eventLoops.stop(container)
+
+        then: "the group should be shut down"
+        conditions.eventually {
+            assert group.isShuttingDown()
+            assert eventLoops.getClients().isEmpty()
+            assert eventLoops.getServers().isEmpty()
+            assert eventLoops.getThreads() == 0
+        }
+
+        cleanup: "the clients and server should be stopped"
+        clients?.each { it.disconnect() }
+        echoServer?.stop()
+        eventLoops?.stop(container)
+    }
 }
@@ -496,4 +496,46 @@ class HttpClientProtocolTest extends Specification implements ManagerContainerTr
             assert mockServer.successCount == 1
         }
     }
+
+    def "Check the polling executor is created per container from its config and shut down when the last protocol stops"() {
+
+        given: "two containers with different polling configuration"
+        def container1 = [getConfig: { [(HTTPProtocol.HTTP_POLLING_THREADS_MAX): "3"] }] as org.openremote.model.Container
+        def container2 = [getConfig: { [(HTTPProtocol.HTTP_POLLING_THREADS_MAX): "5"] }] as org.openremote.model.Container
+
+        when: "two protocol instances of the first container and one of the second container start"
+        def executor1 = HTTPProtocol.acquirePollingExecutor(container1)
+        def executor1b = HTTPProtocol.acquirePollingExecutor(container1)
+        def executor2 = HTTPProtocol.acquirePollingExecutor(container2)
+
+        then: "the instances of each container should share an executor configured from the container config"
+        executor1.is(executor1b)
+        !executor1.is(executor2)
+        executor1.getMaximumPoolSize() == 3
+        executor2.getMaximumPoolSize() == 5
+
+        when: "one protocol instance of the first container stops"
+        HTTPProtocol.releasePollingExecutor(container1)
+
+        then: "the executor should still be running"
+        !executor1.isShutdown()
+
+        when: "the other protocol instance of the first container stops"
+        HTTPProtocol.releasePollingExecutor(container1)
+
+        then: "only the executor of the first container should be shut down"
+        executor1.isShutdown()
+        !executor2.isShutdown()
+
+        when: "a protocol instance of the first container starts again"
+        def executor1c = HTTPProtocol.acquirePollingExecutor(container1)
+
+        then: "a new executor should be created"
+        !executor1c.is(executor1)
+        !executor1c.isShutdown()
+
+        cleanup: "the executors should be released"
+        HTTPProtocol.releasePollingExecutor(container1)
+        HTTPProtocol.releasePollingExecutor(container2)
+    }
 }
@@ -20,25 +20,44 @@
 package org.openremote.test.protocol.websocket
 
 import io.netty.channel.ChannelHandler
+import org.apache.camel.CamelContext
+import org.apache.camel.Message
+import org.apache.camel.impl.DefaultCamelContext
+import org.apache.camel.impl.DefaultExchange
 import org.apache.http.client.utils.URIBuilder
 import org.openremote.agent.protocol.io.AbstractNettyIOClient
 import org.openremote.agent.protocol.websocket.WebsocketIOClient
+import org.openremote.container.timer.TimerService
+import org.openremote.container.web.ConnectionConstants
+import org.openremote.container.web.socket.WebsocketSessionQueue
 import org.openremote.manager.agent.AgentService
 import org.openremote.manager.asset.AssetProcessingService
 import org.openremote.manager.asset.AssetStorageService
+import org.openremote.manager.event.ClientEventService
+import org.openremote.manager.event.EventSubscriptions
+import org.openremote.manager.event.SharedTriggeredEventSubscription
 import org.openremote.manager.setup.SetupService
 import org.openremote.test.setup.ManagerTestSetup
+import org.openremote.model.asset.AssetEvent
 import org.openremote.model.asset.AssetFilter
 import org.openremote.model.asset.agent.ConnectionStatus
 import org.openremote.model.attribute.AttributeEvent
 import org.openremote.model.auth.OAuthPasswordGrant
 import org.openremote.model.event.TriggeredEventSubscription
+import org.openremote.model.event.shared.CancelEventSubscription
 import org.openremote.model.event.shared.EventSubscription
+import org.openremote.model.event.shared.SharedEvent
 import org.openremote.model.value.Values
 import org.openremote.test.ManagerContainerTrait
 import spock.lang.Specification
 import spock.util.concurrent.PollingConditions
 
+import javax.websocket.CloseReason
+import javax.websocket.RemoteEndpoint
+import javax.websocket.SendHandler
+import javax.websocket.SendResult
+import javax.websocket.Session
+import java.util.concurrent.Executors
 import java.util.concurrent.TimeUnit
 
 import static org.openremote.container.util.MapAccess.getString
@@ -71,6 +90,37 @@ class WebsocketClientTest extends Specification implements ManagerContainerTrait
         }
     }
 
+    protected static List<Message> splitForSubscribers(CamelContext context, EventSubscriptions eventSubscriptions, SharedEvent event, boolean accessRestricted) {
+        def exchange = new DefaultExchange(context)
+        exchange.getIn().setBody(event)
+        exchange.getIn().setHeader(ClientEventService.HEADER_ACCESS_RESTRICTED, accessRestricted)
+        return eventSubscriptions.splitForSubscribers(exchange)
+    }
+
+    protected static Set<String> sessionKeysOf(List<Message> messages) {
+        return messages.collect { it.getHeader(ConnectionConstants.SESSION_KEY, String.class) } as Set
+    }
+
+    protected static Session mockSession(List<List<Object>> pendingSends, List<CloseReason> closeReasons) {
+        def asyncRemote = [
+            sendText: { String text, SendHandler handler -> pendingSends.add([text, handler]) }
+        ] as RemoteEndpoint.Async
+        return [
+            getId: { "session1" },
+            getAsyncRemote: { asyncRemote },
+            close: { CloseReason closeReason -> closeReasons.add(closeReason) }
+        ] as Session
+    }
+
+    /**
+     * Completes the oldest pending send and returns its message.
+     */
+    protected static String completeSend(List<List<Object>> pendingSends) {
+        def pendingSend = pendingSends.remove(0)
+        ((SendHandler) pendingSend[1]).onResult(new SendResult())
+        return pendingSend[0]
+    }
+
     def "Check client"() {
 
         given: "expected conditions"
@@ -213,4 +263,282 @@ class WebsocketClientTest extends Specification implements ManagerContainerTrait
             client.disconnect()
         }
     }
+
+    def "Check events are only dispatched to sessions with a matching subscription"() {
+
+        given: "event subscriptions"
+        def context = new DefaultCamelContext()
+        def executor = Executors.newSingleThreadScheduledExecutor()
+        def timerService = new TimerService() {
+            @Override
+            long getCurrentTimeMillis() {
+                return 0
+            }
+        }
+        List<Object> sentToSessions = []
+        def eventSubscriptions = new EventSubscriptions(timerService, executor, { sessionKey, data -> sentToSessions.add(data) })
+
+        and: "sessions subscribed by asset ID, parent ID, realm, without filter and to other assets and event types"
+        eventSubscriptions.createOrUpdate("asset", false, new EventSubscription(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAssetIds("asset1"), "1"))
+        eventSubscriptions.createOrUpdate("parent", false, new EventSubscription(AttributeEvent.class, new AssetFilter<AttributeEvent>().setParentIds("parent1"), "1"))
+        eventSubscriptions.createOrUpdate("realm", false, new EventSubscription(AttributeEvent.class, new AssetFilter<AttributeEvent>().setRealm("realm1"), "1"))
+        eventSubscriptions.createOrUpdate("all", false, new EventSubscription(AttributeEvent.class, null, "1"))
+        eventSubscriptions.createOrUpdate("otherAsset", false, new EventSubscription(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAssetIds("asset2"), "1"))
+        eventSubscriptions.createOrUpdate("otherAttribute", false, new EventSubscription(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAssetIds("asset1").setAttributeNames("humidity"), "1"))
+        eventSubscriptions.createOrUpdate("restricted", true, new EventSubscription(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAssetIds("asset1"), "1"))
+        eventSubscriptions.createOrUpdate("assetEvents", false, new EventSubscription(AssetEvent.class, new AssetFilter<AssetEvent>().setAssetIds("asset1"), "1"))
+
+        when: "an attribute event of asset 1 is dispatched"
+        def messages = splitForSubscribers(context, eventSubscriptions, new AttributeEvent("asset1", "temperature", 1).setParentId("parent1").setRealm("realm1"), false)
+
+        then: "only the sessions with a matching subscription should get a message"
+        sessionKeysOf(messages) == ["asset", "parent", "realm", "all"] as Set
+        messages.size() == 4
+
+        when: "an attribute event of asset 2 in another realm is dispatched"
+        messages = splitForSubscribers(context, eventSubscriptions, new AttributeEvent("asset2", "temperature", 1).setParentId("parent2").setRealm("realm2"), false)
+
+        then: "only the sessions subscribed to asset 2 and to all events should get a message"
+        sessionKeysOf(messages) == ["otherAsset", "all"] as Set
+        messages.size() == 2
+
+        when: "an attribute event of asset 1 accessible for restricted users is dispatched"
+        messages = splitForSubscribers(context, eventSubscriptions, new AttributeEvent("asset1", "humidity", 1).setParentId("parent1").setRealm("realm1"), true)
+
+        then: "the restricted session and the session subscribed to the attribute should also get a message"
+        sessionKeysOf(messages) == ["asset", "parent", "realm", "all", "otherAttribute", "restricted"] as Set
+        messages.size() == 6
+
+        when: "subscriptions are cancelled and replaced"
+        eventSubscriptions.cancelAll("all")
+        eventSubscriptions.cancel("parent", new CancelEventSubscription("1"))
+        eventSubscriptions.createOrUpdate("asset", false, new EventSubscription(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAssetIds("asset2"), "1"))
+        messages = splitForSubscribers(context, eventSubscriptions, new AttributeEvent("asset1", "temperature", 1).setParentId("parent1").setRealm("realm1"), false)
+
+        then: "the cancelled and replaced subscriptions should no longer get a message"
+        sessionKeysOf(messages) == ["realm"] as Set
+        messages.size() == 1
+
+        and: "no events should have been sent directly to the sessions"
+        sentToSessions.isEmpty()
+
+        cleanup: "the executor is stopped"
+        executor.shutdownNow()
+    }
+
+    def "Check an event is serialized once for all subscribed sessions"() {
+
+        given: "event subscriptions"
+        def context = new DefaultCamelContext()
+        def executor = Executors.newSingleThreadScheduledExecutor()
+        def timerService = new TimerService() {
+            @Override
+            long getCurrentTimeMillis() {
+                return 0
+            }
+        }
+        def eventSubscriptions = new EventSubscriptions(timerService, executor, { sessionKey, data -> })
+
+        and: "two sessions subscribed to the same asset"
+        eventSubscriptions.createOrUpdate("session1", false, new EventSubscription(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAssetIds("asset1"), "1"))
+        eventSubscriptions.createOrUpdate("session2", false, new EventSubscription(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAssetIds("asset1"), "2"))
+
+        when: "an attribute event of the asset is dispatched"
+        def event = new AttributeEvent("asset1", "temperature", 21.5d, 1000L)
+        def messages = splitForSubscribers(context, eventSubscriptions, event, false)
+        def triggered = messages.collect { it.getBody(SharedTriggeredEventSubscription.class) }
+
+        then: "both sessions should get a triggered event sharing the same payload"
+        triggered.size() == 2
+        triggered.every { it != null && it.events == [event] }
+        triggered[0].payload.is(triggered[1].payload)
+        triggered.collect { it.subscriptionId } as Set == ["1", "2"] as Set
+
+        and: "the payload should only be serialized once"
+        triggered[0].payload.getEventsJson().is(triggered[1].payload.getEventsJson())
+        triggered[0].payload.getEventBytes().is(triggered[1].payload.getEventBytes())
+        triggered[0].payload.getValueBytes().is(triggered[1].payload.getValueBytes())
+
+        and: "the messages should be the same as those of an event serialized per session"
+        triggered.every {
+            it.toMessage() == TriggeredEventSubscription.MESSAGE_PREFIX + Values.JSON.writeValueAsString(new TriggeredEventSubscription([event], it.subscriptionId))
+        }
+        triggered[0].payload.getEventBytes() == Values.asJSON(event).get().getBytes()
+        triggered[0].payload.getValueBytes() == Values.asJSON(21.5d).get().getBytes()
+
+        and: "the messages should be readable by clients"
+        triggered.every {
+            def received = messageFromString(it.toMessage(), TriggeredEventSubscription.MESSAGE_PREFIX, TriggeredEventSubscription.class)
+            received.subscriptionId == it.subscriptionId &&
+                received.events.size() == 1 &&
+                ((AttributeEvent)received.events[0]).attributeRef == event.attributeRef &&
+                ((AttributeEvent)received.events[0]).value.orElse(null) == 21.5d
+        }
+
+        and: "the websocket bytes of each session should be its envelope with the shared event bytes spliced in"
+        triggered.every {
+            def buffer = it.toByteBuffer()
+            buffer.remaining() == it.length && new String(buffer.array(), 0, buffer.remaining(), "UTF-8") == it.toMessage()
+        }
+
+        when: "a message is queued for a session that can't be written to as bytes"
+        List<List<Object>> pendingSends = []
+        def queue = new WebsocketSessionQueue(mockSession(pendingSends, []), 10, WebsocketSessionQueue.Policy.DROP_OLDEST, new WebsocketSessionQueue.Statistics())
+        queue.send(triggered[0], null)
+
+        then: "the message should be sent as text"
+        completeSend(pendingSends) == triggered[0].toMessage()
+
+        when: "an event with a non-ASCII text value is dispatched"
+        def textEvent = new AttributeEvent("asset1", "label", "Grüße °C", 1000L)
+        def textTriggered = splitForSubscribers(context, eventSubscriptions, textEvent, false).collect { it.getBody(SharedTriggeredEventSubscription.class) }
+
+        then: "the shared bytes should be UTF-8 encoded"
+        textTriggered[0].payload.getEventBytes() == Values.asJSON(textEvent).get().getBytes("UTF-8")
+        textTriggered[0].payload.getValueBytes() == Values.asJSON("Grüße °C").get().getBytes("UTF-8")
+        textTriggered.every { new String(it.toByteBuffer().array(), "UTF-8") == it.toMessage() }
+
+        cleanup: "the executor is stopped"
+        executor.shutdownNow()
+    }
+
+    def "Check events of a subscription with a flush interval are conflated and sent once per interval"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.1)
+
+        and: "event subscriptions"
+        def context = new DefaultCamelContext()
+        def executor = Executors.newSingleThreadScheduledExecutor()
+        def timerService = new TimerService() {
+            @Override
+            long getCurrentTimeMillis() {
+                return 0
+            }
+        }
+        List<List<Object>> sentToSessions = Collections.synchronizedList([])
+        def eventSubscriptions = new EventSubscriptions(timerService, executor, { sessionKey, data -> sentToSessions.add([sessionKey, data]) })
+
+        and: "a session subscribed with a flush interval and a session subscribed without"
+        def bufferedSubscription = new EventSubscription(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAssetIds("asset1"), "1")
+        bufferedSubscription.setFlushIntervalMillis(300)
+        eventSubscriptions.createOrUpdate("buffered", false, bufferedSubscription)
+        eventSubscriptions.createOrUpdate("direct", false, new EventSubscription(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAssetIds("asset1"), "1"))
+
+        when: "several events of the asset are dispatched within the interval"
+        def messages = []
+        messages.addAll(splitForSubscribers(context, eventSubscriptions, new AttributeEvent("asset1", "temperature", 1), false))
+        messages.addAll(splitForSubscribers(context, eventSubscriptions, new AttributeEvent("asset1", "humidity", 50), false))
+        messages.addAll(splitForSubscribers(context, eventSubscriptions, new AttributeEvent("asset1", "temperature", 2), false))
+        messages.addAll(splitForSubscribers(context, eventSubscriptions, new AttributeEvent("asset1", "temperature", 3), false))
+
+        then: "only the session without a flush interval should get a message per event"
+        messages.size() == 4
+        sessionKeysOf(messages) == ["direct"] as Set
+
+        and: "the buffered session should get the latest event of each attribute in one triggered event"
+        conditions.eventually {
+            assert sentToSessions.size() == 1
+            assert sentToSessions[0][0] == "buffered"
+            def triggered = (TriggeredEventSubscription) sentToSessions[0][1]
+            assert triggered.subscriptionId == "1"
+            assert triggered.events.size() == 2
+            assert ((AttributeEvent)triggered.events[0]).attributeName == "humidity"
+            assert ((AttributeEvent)triggered.events[0]).value.orElse(null) == 50
+            assert ((AttributeEvent)triggered.events[1]).attributeName == "temperature"
+            assert ((AttributeEvent)triggered.events[1]).value.orElse(null) == 3
+        }
+        eventSubscriptions.conflatedEvents == 2
+
+        when: "another event is dispatched in the next interval"
+        splitForSubscribers(context, eventSubscriptions, new AttributeEvent("asset1", "temperature", 4), false)
+
+        then: "the buffered session should get it in a new triggered event"
+        conditions.eventually {
+            assert sentToSessions.size() == 2
+            def triggered = (TriggeredEventSubscription) sentToSessions[1][1]
+            assert triggered.events.size() == 1
+            assert ((AttributeEvent)triggered.events[0]).value.orElse(null) == 4
+        }
+
+        when: "an event is dispatched and the subscription is cancelled before the interval ends"
+        splitForSubscribers(context, eventSubscriptions, new AttributeEvent("asset1", "temperature", 5), false)
+        eventSubscriptions.cancelAll("buffered")
+
+        and: "the interval passes"
+        sleep(600)
+
+        then: "the pending event should have been discarded"
+        sentToSessions.size() == 2
+
+        cleanup: "the executor is stopped"
+        executor.shutdownNow()
+    }
+
+    def "Check the outbound queue of a slow websocket session applies its policy when full"() {
+
+        given: "a slow session"
+        List<List<Object>> pendingSends = []
+        List<CloseReason> closeReasons = []
+        def session = mockSession(pendingSends, closeReasons)
+
+        when: "more messages than the capacity are sent to a queue that drops the oldest message"
+        def statistics = new WebsocketSessionQueue.Statistics()
+        def queue = new WebsocketSessionQueue(session, 2, WebsocketSessionQueue.Policy.DROP_OLDEST, statistics)
+        ["m1", "m2", "m3", "m4"].each { queue.send(it, null) }
+
+        then: "only the first message should be sent while the others are queued and the oldest queued message dropped"
+        pendingSends.size() == 1
+        queue.size == 2
+        statistics.droppedMessages == 1
+        statistics.maxQueueSize == 2
+
+        when: "the session completes the sends"
+        def sent = [completeSend(pendingSends), completeSend(pendingSends), completeSend(pendingSends)]
+
+        then: "the remaining messages should be sent one at a time in order"
+        sent == ["m1", "m3", "m4"]
+        pendingSends.isEmpty()
+        queue.size == 0
+        statistics.queuedMessages == 4
+        statistics.sentMessages == 3
+
+        when: "messages with conflation keys are sent to a queue that conflates"
+        statistics = new WebsocketSessionQueue.Statistics()
+        queue = new WebsocketSessionQueue(session, 2, WebsocketSessionQueue.Policy.CONFLATE, statistics)
+        queue.send("a1", "a")
+        queue.send("a2", "a")
+        queue.send("b1", "b")
+        queue.send("a3", "a")
+
+        and: "the session completes the sends"
+        sent = [completeSend(pendingSends), completeSend(pendingSends), completeSend(pendingSends)]
+
+        then: "the queued message should have been replaced by the latest message with the same key"
+        sent == ["a1", "a3", "b1"]
+        pendingSends.isEmpty()
+        statistics.conflatedMessages == 1
+        statistics.droppedMessages == 0
+        statistics.sentMessages == 3
+
+        when: "more messages than the capacity are sent to a queue that disconnects"
+        statistics = new WebsocketSessionQueue.Statistics()
+        queue = new WebsocketSessionQueue(session, 1, WebsocketSessionQueue.Policy.DISCONNECT, statistics)
+        ["m1", "m2", "m3"].each { queue.send(it, null) }
+
+        then: "the session should be closed and the queued messages discarded"
+        closeReasons.size() == 1
+        closeReasons[0].closeCode == CloseReason.CloseCodes.TRY_AGAIN_LATER
+        statistics.disconnectedSessions == 1
+        statistics.droppedMessages == 2
+        queue.size == 0
+
+        when: "the pending send completes and another message is sent"
+        sent = [completeSend(pendingSends)]
+        queue.send("m4", null)
+
+        then: "no further messages should be sent to the session"
+        sent == ["m1"]
+        pendingSends.isEmpty()
+    }
 }